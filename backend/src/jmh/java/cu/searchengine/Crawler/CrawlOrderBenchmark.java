@@ -0,0 +1,186 @@
+package cu.searchengine.Crawler;
+
+import cu.searchengine.model.Documents;
+import cu.searchengine.ranker.PopularityScorer;
+import cu.searchengine.ranker.WebGraph;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How much of the PageRank of a synthetic web a crawl with a fixed page budget collects, with the frontier
+ * in discovery order (FIFO) and ordered by OPIC cash.
+ * <p>
+ * The graph has power-law in-degrees: a link goes to a page picked uniformly at random or, as often, to the
+ * target of an earlier link (the copying model), and half of the links stay on the page's own host.
+ * Its PageRank is computed once with the ranker's {@link PopularityScorer}, then the crawl is simulated on
+ * the real {@link Frontier} and {@link OpicScorer} without politeness delays: fetching a page collects its
+ * PageRank and queues its links, the same way the crawler does.
+ * <p>
+ * main prints the share of the total PageRank captured after every N pages, next to the best possible
+ * order (the N pages with the highest PageRank). The JMH benchmark measures the cost of the ordering per
+ * crawled page.
+ * <p>
+ * Run with: ./gradlew jmh -Pjmh.includes=CrawlOrderBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CrawlOrderBenchmark {
+    private static final int PAGES = 100_000;
+    private static final int HOSTS = 1_000;
+    private static final int SEEDS = 10;
+    private static final int BUDGET = 6_000;
+
+    @Param({"FIFO", "OPIC"})
+    public String order;
+
+    private SyntheticWeb web;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        web = new SyntheticWeb(PAGES, HOSTS, SEEDS, 42);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BUDGET)
+    public double crawl() {
+        double[] captured = web.crawl(order.equals("OPIC"), BUDGET, BUDGET);
+        return captured[captured.length - 1];
+    }
+
+    public static void main(String[] args) {
+        int budget = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int step = budget / 10;
+        SyntheticWeb web = new SyntheticWeb(PAGES, HOSTS, SEEDS, 42);
+        double[] fifo = web.crawl(false, budget, step);
+        double[] opic = web.crawl(true, budget, step);
+        double[] best = web.best(budget, step);
+
+        System.out.printf("%d pages, %d links, %d seeds%n", PAGES, web.linkCount, SEEDS);
+        System.out.printf("%8s %8s %8s %8s%n", "fetched", "FIFO", "OPIC", "best");
+        for (int i = 0; i < best.length; i++) {
+            System.out.printf("%8d %7.1f%% %7.1f%% %7.1f%%%n", (i + 1) * step, fifo[i] * 100, opic[i] * 100, best[i] * 100);
+        }
+    }
+
+    static class SyntheticWeb {
+        final int[][] links;
+        final double[] pageRank;
+        final int[] seeds;
+        final long linkCount;
+        private final int hosts;
+
+        SyntheticWeb(int pages, int hosts, int seedCount, long randomSeed) {
+            this.hosts = hosts;
+            Random random = new Random(randomSeed);
+            links = new int[pages][];
+            int[] targets = new int[pages * 20];
+            int targetCount = 0;
+            for (int page = 0; page < pages; page++) {
+                int degree = 1 + (int) (-Math.log(1 - random.nextDouble()) * 9);
+                Set<Integer> out = new HashSet<>();
+                for (int i = 0; i < degree; i++) {
+                    int target;
+                    if (targetCount > 0 && random.nextBoolean()) {
+                        target = targets[random.nextInt(targetCount)];
+                    } else if (random.nextBoolean()) {
+                        // Same host: page ids of a host are page % hosts
+                        target = page % hosts + hosts * random.nextInt(pages / hosts);
+                    } else {
+                        target = random.nextInt(pages);
+                    }
+                    if (target != page && out.add(target) && targetCount < targets.length) {
+                        targets[targetCount++] = target;
+                    }
+                }
+                links[page] = out.stream().mapToInt(Integer::intValue).toArray();
+            }
+            linkCount = Arrays.stream(links).mapToLong(out -> out.length).sum();
+
+            List<Documents> documents = new ArrayList<>(pages);
+            for (int page = 0; page < pages; page++) {
+                Documents document = new Documents(url(page), "", List.of(), List.of(), "", List.of());
+                document.setId(page);
+                Set<Long> webGraph = new HashSet<>();
+                for (int target : links[page]) {
+                    webGraph.add(UrlFingerprint.of(url(target)));
+                }
+                document.setWebGraph(webGraph);
+                documents.add(document);
+            }
+            pageRank = PopularityScorer.calculatePageRank(WebGraph.of(documents));
+
+            seeds = random.ints(0, pages).distinct().limit(seedCount).toArray();
+        }
+
+        /**
+         * Crawls budget pages.
+         *
+         * @return PageRank captured after every step pages
+         */
+        double[] crawl(boolean opic, int budget, int step) {
+            Frontier frontier = new Frontier(0, Integer.MAX_VALUE);
+            OpicScorer scorer = opic ? new OpicScorer() : null;
+            boolean[] seen = new boolean[links.length];
+            for (int seed : seeds) {
+                seen[seed] = true;
+                frontier.add(url(seed), scorer == null ? 0 : scorer.seed(url(seed)));
+            }
+
+            double[] captured = new double[budget / step];
+            double sum = 0;
+            for (int fetched = 0; fetched < budget; fetched++) {
+                String url = frontier.poll();
+                if (url != null) {
+                    frontier.release(url);
+                    int page = pageOf(url);
+                    sum += pageRank[page];
+                    double share = scorer == null ? 0 : scorer.spend(url, links[page].length);
+                    for (int target : links[page]) {
+                        String link = url(target);
+                        if (!seen[target]) {
+                            seen[target] = true;
+                            frontier.add(link, scorer == null ? 0 : scorer.credit(link, share));
+                        } else if (scorer != null && share > 0) {
+                            double cash = scorer.credit(link, share);
+                            if (cash > 0) frontier.raisePriority(link, cash);
+                        }
+                    }
+                }
+                if ((fetched + 1) % step == 0) captured[fetched / step] = sum;
+            }
+            return captured;
+        }
+
+        // PageRank of the best pages, what a crawler that knew the ranks in advance would capture
+        double[] best(int budget, int step) {
+            double[] sorted = pageRank.clone();
+            Arrays.sort(sorted);
+            double[] captured = new double[budget / step];
+            double sum = 0;
+            for (int i = 0; i < budget; i++) {
+                sum += sorted[sorted.length - 1 - i];
+                if ((i + 1) % step == 0) captured[i / step] = sum;
+            }
+            return captured;
+        }
+
+        String url(int page) {
+            return "https://host" + page % hosts + ".example.com/page/" + page;
+        }
+
+        static int pageOf(String url) {
+            return Integer.parseInt(url.substring(url.lastIndexOf('/') + 1));
+        }
+    }
+}
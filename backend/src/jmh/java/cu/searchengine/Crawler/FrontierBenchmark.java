@@ -0,0 +1,75 @@
+package cu.searchengine.Crawler;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dequeue/enqueue throughput of the per-host frontier under contention.
+ * <p>
+ * Each operation takes one URL, releases its host and puts the URL back, so the frontier stays at a
+ * steady size. Crawl delay is 0 so the benchmark measures the data structure, not the politeness wait.
+ * The old single LinkedBlockingQueue is measured the same way as a baseline.
+ * <p>
+ * Run with: ./gradlew jmh -Pjmh.includes=FrontierBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrontierBenchmark {
+
+    @Param({"10", "1000"})
+    public int hosts;
+
+    private static final int URLS_PER_HOST = 200;
+
+    private Frontier frontier;
+    private LinkedBlockingQueue<String> queue;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Enough in-flight slots per host that 16 threads never starve on a small host count
+        frontier = new Frontier(0, 16);
+        queue = new LinkedBlockingQueue<>();
+        for (int h = 0; h < hosts; h++) {
+            for (int i = 0; i < URLS_PER_HOST; i++) {
+                String url = "https://host" + h + ".example.com/page/" + i;
+                frontier.add(url, i % 7);
+                queue.add(url);
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String frontierCycleSingleThread() {
+        return cycle();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public String frontierCycleContended() {
+        return cycle();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public String linkedBlockingQueueCycleContended() {
+        String url = queue.poll();
+        if (url != null) queue.add(url);
+        return url;
+    }
+
+    private String cycle() {
+        String url = frontier.poll();
+        if (url != null) {
+            frontier.release(url);
+            frontier.add(url, 1);
+        }
+        return url;
+    }
+}
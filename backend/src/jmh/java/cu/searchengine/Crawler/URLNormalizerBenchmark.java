@@ -0,0 +1,94 @@
+package cu.searchengine.Crawler;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per link of URL normalization: the single-pass fast path, the URI-based implementation it
+ * replaced (still used as its fallback), and the fingerprint-only output used for dedup.
+ * <p>
+ * Links are generated to look like what pages link to: absolute http/https URLs with www prefixes,
+ * default ports, trailing slashes, tracking query parameters and percent-encoded paths, plus a small
+ * share of schemeless and rejected (mailto:, fragment) links.
+ * <p>
+ * Run with: ./gradlew jmh -Pjmh.includes=URLNormalizerBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class URLNormalizerBenchmark {
+    private static final int LINKS = 4096;
+
+    private static final String[] HOSTS = {"example.com", "www.example.org", "news.example.net", "en.wikipedia.org",
+            "WWW.Shop.Example.com", "blog.example.io", "cdn.example.co.uk"};
+    private static final String[] SEGMENTS = {"news", "2024", "article-slug-with-words", "wiki", "Caf%C3%A9", "index.html",
+            "products", "category", "item", "%E6%9D%B1%E4%BA%AC", "user", "docs"};
+    private static final String[] PARAMS = {"q=java", "page=2", "utm_source=newsletter", "id=42", "ref=", "sort=asc", "lang=en"};
+
+    private final URLNormalizer normalizer = new URLNormalizer();
+    private String[] links;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        links = new String[LINKS];
+        for (int i = 0; i < LINKS; i++) {
+            links[i] = link(random);
+        }
+    }
+
+    @Benchmark
+    public String singlePass(Cursor cursor) {
+        return normalizer.normalize(next(cursor));
+    }
+
+    @Benchmark
+    public String legacyUri(Cursor cursor) {
+        return normalizer.normalizeWithUri(next(cursor));
+    }
+
+    @Benchmark
+    public long fingerprint(Cursor cursor) {
+        return normalizer.fingerprint(next(cursor));
+    }
+
+    private String next(Cursor cursor) {
+        String link = links[cursor.next];
+        cursor.next = (cursor.next + 1) & (LINKS - 1);
+        return link;
+    }
+
+    private static String link(Random random) {
+        int kind = random.nextInt(100);
+        if (kind < 2) return "mailto:someone@example.com";
+        if (kind < 4) return "https://example.com/page#section";
+
+        StringBuilder link = new StringBuilder();
+        // A few schemeless links, the rest http or https
+        if (kind >= 8) link.append(random.nextBoolean() ? "https://" : "http://");
+        link.append(HOSTS[random.nextInt(HOSTS.length)]);
+        if (random.nextInt(10) == 0) link.append(random.nextBoolean() ? ":443" : ":8080");
+        int segments = random.nextInt(5);
+        for (int s = 0; s < segments; s++) {
+            link.append('/').append(SEGMENTS[random.nextInt(SEGMENTS.length)]);
+        }
+        if (random.nextInt(4) == 0) link.append('/');
+        if (random.nextInt(3) == 0) {
+            int params = 1 + random.nextInt(3);
+            for (int p = 0; p < params; p++) {
+                link.append(p == 0 ? '?' : '&').append(PARAMS[random.nextInt(PARAMS.length)]);
+            }
+        }
+        return link.toString();
+    }
+}
@@ -0,0 +1,114 @@
+package cu.searchengine.Indexer;
+
+import cu.searchengine.model.Documents;
+import cu.searchengine.utils.Tokenizer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to build the postings of a fixed corpus against the number of threads: the term-partitioned build,
+ * and the build it replaced, where every thread merged its local index into one map under a single lock.
+ * <p>
+ * The corpus is 10,000 documents of 400 words each, drawn from a 50,000 word vocabulary with Zipf-like
+ * frequencies, so a few terms have long posting lists and most have short ones, as in real text.
+ * <p>
+ * Run with: ./gradlew jmh -Pjmh.includes=IndexBuildBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class IndexBuildBenchmark {
+    private static final int DOCUMENTS = 10_000;
+    private static final int WORDS_PER_DOCUMENT = 400;
+    private static final int VOCABULARY = 50_000;
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int threads;
+
+    private List<Documents> corpus;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        corpus = corpus(DOCUMENTS, WORDS_PER_DOCUMENT, 42);
+    }
+
+    // Documents of Zipf-distributed words, shared with the segment benchmark
+    static List<Documents> corpus(int documents, int wordsPerDocument, long seed) {
+        Random random = new Random(seed);
+        String[] words = new String[VOCABULARY];
+        for (int i = 0; i < VOCABULARY; i++) {
+            words[i] = word(i);
+        }
+        // Zipf with exponent 1: rank r is drawn with probability proportional to 1 / r
+        double[] cumulative = new double[VOCABULARY];
+        double sum = 0;
+        for (int i = 0; i < VOCABULARY; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+
+        List<Documents> corpus = new ArrayList<>(documents);
+        for (int id = 0; id < documents; id++) {
+            StringBuilder content = new StringBuilder();
+            for (int i = 0; i < wordsPerDocument; i++) {
+                int index = java.util.Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+                content.append(words[index < 0 ? -index - 1 : index]).append(' ');
+            }
+            Documents document = new Documents("https://example.com/" + id, words[random.nextInt(1000)] + " " + words[random.nextInt(1000)],
+                    List.of(words[random.nextInt(5000)]), List.of(), content.toString(), List.of());
+            document.setId(id);
+            document.setPopularityScore(0.0);
+            corpus.add(document);
+        }
+        return corpus;
+    }
+
+    @Benchmark
+    public List<Map<String, PostingData>> partitioned() {
+        return new PartitionedIndexBuilder(threads, 4 * threads).build(corpus);
+    }
+
+    @Benchmark
+    public Map<String, PostingData> synchronizedMerge() throws InterruptedException {
+        ConcurrentHashMap<String, PostingData> globalIndex = new ConcurrentHashMap<>();
+        ConcurrentHashMap<String, Integer> wordfreq = new ConcurrentHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        int batchSize = (int) Math.ceil((double) corpus.size() / threads);
+        for (int i = 0; i < corpus.size(); i += batchSize) {
+            List<Documents> batch = corpus.subList(i, Math.min(i + batchSize, corpus.size()));
+            executor.execute(() -> {
+                BuildInvertedIndex localIndex = new BuildInvertedIndex(batch, new Tokenizer(), wordfreq);
+                synchronized (globalIndex) {
+                    for (Map.Entry<String, PostingData> entry : localIndex.getInvertedIndex().entrySet()) {
+                        globalIndex.putIfAbsent(entry.getKey(), new PostingData());
+                        globalIndex.get(entry.getKey()).merge(entry.getValue());
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.MINUTES);
+        return globalIndex;
+    }
+
+    // Letters only, so the tokenizer keeps every word
+    private static String word(int i) {
+        StringBuilder word = new StringBuilder("w");
+        do {
+            word.append((char) ('a' + i % 26));
+            i /= 26;
+        } while (i > 0);
+        return word.toString();
+    }
+}
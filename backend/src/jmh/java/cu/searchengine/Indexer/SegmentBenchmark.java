@@ -0,0 +1,138 @@
+package cu.searchengine.Indexer;
+
+import cu.searchengine.model.Documents;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Decode speed of the segment format on the 100 longest posting lists of a 10,000 document Zipf corpus
+ * (the same corpus as {@link IndexBuildBenchmark}). Each invocation decodes all of them, divide by the
+ * postings count main prints for the time per posting:
+ * <ul>
+ *     <li>docsAndTfs: every docId and tf, what ranking reads</li>
+ *     <li>withPositions: also every position list, what phrase matching reads</li>
+ *     <li>conjunction: docs of the 2 longest lists that are in both, found with advance over the skips</li>
+ * </ul>
+ * Each is run with the segment read into the heap and memory-mapped. main prints the size of the segment
+ * per posting, split into the docId/tf blocks and the position lists.
+ * <p>
+ * Run with: ./gradlew jmh -Pjmh.includes=SegmentBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SegmentBenchmark {
+    private static final int DOCUMENTS = 10_000;
+    private static final int WORDS_PER_DOCUMENT = 400;
+    private static final int HOT_TERMS = 100;
+
+    @Param({"false", "true"})
+    public boolean mapped;
+
+    private Path file;
+    private SegmentReader reader;
+    private int[] hotTerms;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("segment-benchmark", ".seg");
+        List<Documents> corpus = IndexBuildBenchmark.corpus(DOCUMENTS, WORDS_PER_DOCUMENT, 42);
+        SegmentWriter.write(file, new PartitionedIndexBuilder().build(corpus), corpus);
+        reader = SegmentReader.open(file, mapped);
+        hotTerms = IntStream.range(0, reader.termCount()).boxed()
+                .sorted(Comparator.comparingInt(reader::docFrequency).reversed())
+                .limit(HOT_TERMS).mapToInt(Integer::intValue).toArray();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void docsAndTfs(Blackhole blackhole) throws IOException {
+        for (int term : hotTerms) {
+            SegmentPostings postings = reader.postings(term);
+            while (postings.nextDoc() != SegmentPostings.NO_MORE_DOCS) {
+                blackhole.consume(postings.tf());
+            }
+        }
+    }
+
+    @Benchmark
+    public void withPositions(Blackhole blackhole) throws IOException {
+        for (int term : hotTerms) {
+            SegmentPostings postings = reader.postings(term);
+            while (postings.nextDoc() != SegmentPostings.NO_MORE_DOCS) {
+                blackhole.consume(postings.positions());
+            }
+        }
+    }
+
+    @Benchmark
+    public int conjunction() throws IOException {
+        SegmentPostings first = reader.postings(hotTerms[0]);
+        SegmentPostings second = reader.postings(hotTerms[1]);
+        int matches = 0;
+        for (int doc = second.nextDoc(); doc != SegmentPostings.NO_MORE_DOCS; ) {
+            int other = first.advance(doc);
+            if (other == doc) {
+                matches++;
+                doc = second.nextDoc();
+            } else {
+                doc = second.advance(other);
+            }
+        }
+        return matches;
+    }
+
+    public static void main(String[] args) throws IOException {
+        SegmentBenchmark benchmark = new SegmentBenchmark();
+        benchmark.setUp();
+        try {
+            SegmentReader reader = benchmark.reader;
+            long positionBytes = 0;
+            long hotPostings = 0;
+            for (int term = 0; term < reader.termCount(); term++) {
+                SegmentPostings postings = reader.postings(term);
+                while (postings.nextDoc() != SegmentPostings.NO_MORE_DOCS) {
+                    positionBytes += postings.positionBytes().length;
+                }
+            }
+            for (int term : benchmark.hotTerms) {
+                hotPostings += reader.docFrequency(term);
+            }
+            long postingsBytes = sectionBytes(reader);
+            System.out.printf("%d documents, %d terms, %d postings, segment %d bytes%n",
+                    reader.docCount(), reader.termCount(), reader.postingsCount(), reader.sizeBytes());
+            System.out.printf("bytes per posting: %.2f total, %.2f docId/tf/skips, %.2f positions%n",
+                    (double) reader.sizeBytes() / reader.postingsCount(),
+                    (double) (postingsBytes - positionBytes) / reader.postingsCount(),
+                    (double) positionBytes / reader.postingsCount());
+            System.out.printf("postings decoded per invocation of docsAndTfs and withPositions: %d%n", hotPostings);
+        } finally {
+            benchmark.tearDown();
+        }
+    }
+
+    // Size of the postings section: everything before the dictionary
+    private static long sectionBytes(SegmentReader reader) throws IOException {
+        long bytes = 0;
+        for (int term = 0; term < reader.termCount(); term++) {
+            bytes += reader.postings(term).sizeBytes();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,176 @@
+package cu.searchengine.PageParser;
+
+import cu.searchengine.Crawler.URLNormalizer;
+import cu.searchengine.Crawler.UrlFingerprint;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU time per page of the crawler's extraction stage, before and after the single-pass extractor.
+ * <p>
+ * "legacy" is what Crawler did per page: select("div, p").text(), one parallelStream'd select() per
+ * heading level and for links, then select("a") again and normalize every link a second time for the
+ * frontier. "singlePass" is {@link PageExtractor} plus one normalization per distinct link. Pages are
+ * parsed once in setup, so only extraction is measured.
+ * <p>
+ * By default the pages are the saved pages in src/jmh/resources/pages, listed in its index.txt: real
+ * pages of the Node.js API documentation, with a long navigation, many headings and code samples. The
+ * pagesDir parameter can instead name a directory of saved pages (all *.html files), or "synthetic" for
+ * generated pages with nested divs, headings and relative links.
+ * <p>
+ * Run with: ./gradlew jmh -Pjmh.includes=PageExtractorBenchmark
+ * or, on other pages: ./gradlew jmhJar && java -jar build/libs/backend-0.0.1-SNAPSHOT-jmh.jar PageExtractorBenchmark -p pagesDir=/path/to/pages
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PageExtractorBenchmark {
+
+    @Param({SAVED_PAGES})
+    public String pagesDir;
+
+    private static final String SAVED_PAGES = "classpath:pages";
+    private static final String SYNTHETIC = "synthetic";
+    private static final String SAVED_PAGES_BASE_URI = "https://nodejs.org/api/";
+    private static final int SYNTHETIC_PAGES = 32;
+
+    private final URLNormalizer normalizer = new URLNormalizer();
+    private List<Document> pages;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        pages = new ArrayList<>();
+        if (pagesDir.equals(SYNTHETIC)) {
+            Random random = new Random(42);
+            for (int i = 0; i < SYNTHETIC_PAGES; i++) {
+                pages.add(Jsoup.parse(syntheticPage(random, i), "https://site" + i + ".example.com/section/page.html"));
+            }
+        } else if (pagesDir.startsWith("classpath:")) {
+            loadResources(pagesDir.substring("classpath:".length()));
+        } else {
+            File[] files = new File(pagesDir).listFiles((dir, name) -> name.endsWith(".html"));
+            if (files == null) throw new IOException("Not a directory: " + pagesDir);
+            for (File file : files) {
+                pages.add(Jsoup.parse(file, null, "https://" + file.getName().replace(".html", "") + "/"));
+            }
+        }
+        if (pages.isEmpty()) throw new IOException("No pages in " + pagesDir);
+    }
+
+    // Pages listed in the index.txt of a classpath directory, a jar can't be listed
+    private void loadResources(String dir) throws IOException {
+        try (InputStream index = resource(dir + "/index.txt")) {
+            for (String line : new String(index.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                String name = line.trim();
+                if (name.isEmpty() || name.startsWith("#")) continue;
+                try (InputStream page = resource(dir + "/" + name)) {
+                    pages.add(Jsoup.parse(page, null, SAVED_PAGES_BASE_URI + name.substring(name.lastIndexOf('/') + 1)));
+                }
+            }
+        }
+    }
+
+    private static InputStream resource(String name) throws IOException {
+        InputStream in = PageExtractorBenchmark.class.getClassLoader().getResourceAsStream(name);
+        if (in == null) throw new FileNotFoundException("No resource " + name);
+        return in;
+    }
+
+    @Benchmark
+    public void legacy(Cursor cursor, Blackhole blackhole) {
+        Document doc = nextPage(cursor);
+        blackhole.consume(doc.title());
+        blackhole.consume(doc.select("div, p").text());
+        blackhole.consume(doc.select("h1").parallelStream().map(Element::text).filter(text -> !text.trim().isEmpty()).toList());
+        blackhole.consume(doc.select("h2, h3, h4, h5, h6").parallelStream().map(Element::text).filter(text -> !text.trim().isEmpty()).toList());
+
+        List<String> links = doc.select("a").parallelStream().map(link -> {
+            String linkURL = link.attr("href");
+            if (!linkURL.startsWith("http")) {
+                linkURL = doc.baseUri() + linkURL;
+            }
+            return linkURL;
+        }).filter(text -> !text.trim().isEmpty()).toList();
+        Set<Long> webGraph = new HashSet<>();
+        for (String link : links) {
+            String normalized = normalizer.normalize(link);
+            if (normalized != null && !normalized.isEmpty()) webGraph.add(UrlFingerprint.of(normalized));
+        }
+        blackhole.consume(webGraph);
+
+        for (Element link : doc.select("a")) {
+            blackhole.consume(normalizer.normalize(link.attr("abs:href")));
+        }
+    }
+
+    @Benchmark
+    public void singlePass(Cursor cursor, Blackhole blackhole) {
+        PageExtractor.ExtractedPage page = PageExtractor.extract(nextPage(cursor));
+        Set<String> outLinks = new LinkedHashSet<>();
+        for (String link : page.getLinks()) {
+            String normalized = normalizer.normalize(link);
+            if (normalized != null && !normalized.isEmpty()) outLinks.add(normalized);
+        }
+        Set<Long> webGraph = new HashSet<>();
+        for (String link : outLinks) {
+            webGraph.add(UrlFingerprint.of(link));
+        }
+        blackhole.consume(page);
+        blackhole.consume(webGraph);
+    }
+
+    private Document nextPage(Cursor cursor) {
+        Document doc = pages.get(cursor.next);
+        cursor.next = (cursor.next + 1) % pages.size();
+        return doc;
+    }
+
+    // Typical layout: nested wrappers, a nav with many links, article sections with headings and paragraphs
+    private static String syntheticPage(Random random, int id) {
+        StringBuilder html = new StringBuilder("<html><head><title>Page ").append(id).append("</title>");
+        html.append("<script>var x = 1;</script><style>p { margin: 0 }</style></head><body>");
+        html.append("<div class=\"wrapper\"><div class=\"container\"><nav><ul>");
+        for (int i = 0; i < 40; i++) {
+            html.append("<li><a href=\"/nav/").append(i).append("\">Link ").append(i).append("</a></li>");
+        }
+        html.append("</ul></nav><div class=\"content\"><h1>Main title ").append(id).append("</h1>");
+        for (int section = 0; section < 8; section++) {
+            html.append("<div class=\"section\"><h2>Section ").append(section).append("</h2>");
+            for (int p = 0; p < 5; p++) {
+                html.append("<div><p>");
+                for (int w = 0; w < 60; w++) {
+                    html.append("word").append(random.nextInt(5000)).append(' ');
+                }
+                html.append("<a href=\"https://other").append(random.nextInt(50)).append(".example.org/a?b=")
+                        .append(random.nextInt(100)).append("\">external</a></p></div>");
+            }
+            html.append("</div>");
+        }
+        html.append("</div></div></div><footer><p>Footer text</p></footer></body></html>");
+        return html.toString();
+    }
+}
@@ -1,7 +1,10 @@
 package cu.searchengine;
 
+import cu.searchengine.Crawler.ArchiveReparser;
 import cu.searchengine.Crawler.Crawler;
+import cu.searchengine.Crawler.RecrawlScheduler;
 import cu.searchengine.Indexer.InvertedIndex;
+import cu.searchengine.config.CrawlerProperties;
 import cu.searchengine.ranker.PopularityScorer;
 import cu.searchengine.service.DocumentService;
 import cu.searchengine.service.InvertedIndexService;
@@ -28,16 +31,22 @@ public class BackendApplication implements CommandLineRunner {
     private static final Logger logger = LoggerFactory.getLogger(BackendApplication.class);
     private final Crawler crawler; // Make sure Crawler is a @Component or @Service
     private final InvertedIndex invertedIndex; // Make sure ThreadPool is a @Component or @Service
+    private final RecrawlScheduler recrawlScheduler;
+    private final CrawlerProperties crawlerProperties;
+    private final ArchiveReparser archiveReparser;
     private PopularityScorer popularityScorer;
 
     @Autowired
-    public BackendApplication(RankingService rankingService, SearchService searchService, DocumentService documentService, InvertedIndexService invertedIndexService, Crawler crawler, InvertedIndex invertedIndex, PopularityScorer popularityScorer) {
+    public BackendApplication(RankingService rankingService, SearchService searchService, DocumentService documentService, InvertedIndexService invertedIndexService, Crawler crawler, InvertedIndex invertedIndex, PopularityScorer popularityScorer, RecrawlScheduler recrawlScheduler, CrawlerProperties crawlerProperties, ArchiveReparser archiveReparser) {
         this.rankingService = rankingService;
         this.searchService = searchService;
         this.documentService = documentService;
         this.invertedIndexService = invertedIndexService;
         this.crawler = crawler;
         this.invertedIndex = invertedIndex;
+        this.recrawlScheduler = recrawlScheduler;
+        this.crawlerProperties = crawlerProperties;
+        this.archiveReparser = archiveReparser;
     }
 
 
@@ -47,6 +56,14 @@ public class BackendApplication implements CommandLineRunner {
 
     @Override
     public void run(String... args) throws Exception {
+        // e.g. one shard of a distributed crawl:
+        // --crawler.crawl-on-startup=true --crawler.shard-index=0 --crawler.shard-count=3 --server.port=0
+        if (crawlerProperties.isReparseOnStartup()) {
+            archiveReparser.reparse();
+        }
+        if (crawlerProperties.isCrawlOnStartup()) {
+            runCrawler();
+        }
 //        runCrawler();
 //
 //        popularityScorer = new PopularityScorer(documentService);
@@ -65,7 +82,19 @@ public class BackendApplication implements CommandLineRunner {
         }
     }
 
+    // Refetch stored pages that are due, only does work when crawler.recrawl-enabled=true
+    @Scheduled(fixedDelayString = "${crawler.recrawl-poll-millis:60000}")
+    public void runRecrawler() {
+        try {
+            recrawlScheduler.recrawlDue();
+        } catch (Exception e) {
+            logger.error("Recrawler error: {}", e.getMessage());
+        }
+    }
+
     // Run the indexer periodically (every 5 minutes, adjust as needed)
+    // With crawler.pipeline-enabled=true crawled pages are indexed as they arrive, this only picks up
+    // recrawled pages and pipeline batches that failed
     @Scheduled(fixedDelay = 300_000)
     public void runIndexer() {
         try {
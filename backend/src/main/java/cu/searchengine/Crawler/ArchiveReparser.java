@@ -0,0 +1,126 @@
+package cu.searchengine.Crawler;
+
+import cu.searchengine.config.CrawlerProperties;
+import cu.searchengine.model.Documents;
+import cu.searchengine.service.DocIdDictionary;
+import cu.searchengine.service.DocumentService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rebuilds the stored documents from the page archive instead of crawling again, e.g. after a change to
+ * field extraction or tokenization. Runs on startup with crawler.reparse-on-startup=true.
+ * <p>
+ * Only the latest archived copy of each URL is used. Segments are read one after the other in a single
+ * sequential pass; decompression, parsing and extraction run on reparseThreads threads, and the reader
+ * waits when they fall behind. Rebuilt documents replace the stored ones with invertedIndexProcessed=false,
+ * so the indexer picks them up on its next run. Ids come from the {@link DocIdDictionary}, so a reparse also
+ * moves documents stored under the old hash-based ids onto dense ids and rewrites their link graph.
+ */
+@Component
+public class ArchiveReparser {
+    private static final Logger logger = LoggerFactory.getLogger(ArchiveReparser.class);
+
+    private final Crawler crawler;
+    private final DocumentService documentService;
+    private final DocIdDictionary docIds;
+    private final CrawlerProperties properties;
+
+    public ArchiveReparser(Crawler crawler, DocumentService documentService, DocIdDictionary docIds, CrawlerProperties properties) {
+        this.crawler = crawler;
+        this.documentService = documentService;
+        this.docIds = docIds;
+        this.properties = properties;
+    }
+
+    /**
+     * @return number of documents rebuilt and stored
+     */
+    public long reparse() throws IOException, InterruptedException {
+        long start = System.currentTimeMillis();
+        PageArchiveReader reader = new PageArchiveReader(crawler.getArchiveDir());
+        Map<String, PageArchiveReader.Entry> latest = reader.latest();
+        logger.info("Reparsing {} archived pages from {}", latest.size(), crawler.getArchiveDir());
+
+        int threads = Math.max(1, properties.getReparseThreads());
+        // The reading thread runs a task itself when the queue is full, which holds it back to parsing speed
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 4), new ThreadPoolExecutor.CallerRunsPolicy());
+        BlockingQueue<Documents> batch = new LinkedBlockingQueue<>();
+        AtomicLong rebuilt = new AtomicLong();
+        AtomicLong skipped = new AtomicLong();
+        AtomicLong bytesRead = new AtomicLong();
+
+        try {
+            for (Path segment : reader.segments()) {
+                reader.scan(segment, (entry, compressed) -> {
+                    // Older copies of refetched pages
+                    if (!entry.equals(latest.get(entry.url()))) return;
+                    bytesRead.addAndGet(compressed.length);
+                    pool.execute(() -> {
+                        if (rebuild(entry, compressed, batch)) {
+                            rebuilt.incrementAndGet();
+                        } else {
+                            skipped.incrementAndGet();
+                        }
+                        if (batch.size() >= properties.getReparseBatchSize()) store(batch);
+                    });
+                });
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(1, TimeUnit.HOURS);
+        }
+        store(batch);
+
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        logger.info("Reparsed {} pages ({} skipped) from {} MB of archive in {} ms, {} pages/s",
+                rebuilt.get(), skipped.get(), bytesRead.get() >> 20, elapsed, rebuilt.get() * 1000 / elapsed);
+        return rebuilt.get();
+    }
+
+    private boolean rebuild(PageArchiveReader.Entry entry, byte[] compressed, BlockingQueue<Documents> batch) {
+        try {
+            PageArchiveReader.ArchivedPage page = PageArchiveReader.decode(compressed);
+            if (page.getStatusCode() < 200 || page.getStatusCode() >= 300) return false;
+
+            Documents document = crawler.extractDocument(page.parse());
+            // The id the page was stored under, a new one for pages stored before the dictionary existed
+            document.setId(docIds.idOf(document.getUrl()));
+            // The stored copy may already have postings
+            document.setReindex(true);
+            document.setEtag(page.getEtag());
+            document.setLastModified(page.getLastModified());
+            RecrawlScheduler.recordFetch(document, RecrawlScheduler.contentHash(document), entry.fetchedAt());
+            batch.add(document);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Failed to reparse {}: {}", entry.url(), e.getMessage());
+            return false;
+        }
+    }
+
+    private void store(BlockingQueue<Documents> batch) {
+        List<Documents> documents = new ArrayList<>();
+        batch.drainTo(documents);
+        if (documents.isEmpty()) return;
+        try {
+            documentService.replaceAll(documents);
+        } catch (Exception e) {
+            logger.error("Failed to store {} reparsed documents: {}", documents.size(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package cu.searchengine.Crawler;
+
+import com.google.common.io.CountingInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only write-ahead log of crawler state changes.
+ * <p>
+ * Instead of rewriting the whole queue and visited set on every checkpoint, the crawler appends one small
+ * record per event and a checkpoint only has to flush what was appended since the last one. From time to
+ * time the crawler writes a compacted snapshot: it first {@link #rotate() rotates} the journal, captures
+ * its state, and once the snapshot is safely on disk {@link #dropRotated() drops} the rotated journal.
+ * <p>
+ * Recovery is the snapshot followed by {@link #replay(Replay)} of the rotated journal (if a crash happened
+ * mid-compaction) and the current one. Replaying an event that is already in the snapshot is harmless:
+ * enqueue/dequeue are applied to a set, visited fingerprints are a set, and the page count is absolute.
+ */
+public class CrawlJournal implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(CrawlJournal.class);
+
+    private static final byte ENQUEUE = 1;
+    private static final byte DEQUEUE = 2;
+    private static final byte VISITED = 3;
+    private static final byte PAGES = 4;
+    private static final int MAX_URL_LENGTH = 16 * 1024;
+
+    private final Path journalFile;
+    private final Path rotatedFile;
+    private FileOutputStream fileStream;
+    private DataOutputStream out;
+    private long bytesSinceRotation;
+
+    public interface Replay {
+        void enqueued(String url);
+
+        void dequeued(String url);
+
+        void visited(long fingerprint);
+
+        void pages(int count);
+    }
+
+    public CrawlJournal(Path journalFile) {
+        this.journalFile = journalFile;
+        this.rotatedFile = journalFile.resolveSibling(journalFile.getFileName() + ".old");
+        try {
+            this.bytesSinceRotation = Files.exists(journalFile) ? Files.size(journalFile) : 0;
+        } catch (IOException e) {
+            this.bytesSinceRotation = 0;
+        }
+    }
+
+    public synchronized void enqueued(String url) {
+        writeUrlRecord(ENQUEUE, url);
+    }
+
+    public synchronized void dequeued(String url) {
+        writeUrlRecord(DEQUEUE, url);
+    }
+
+    public synchronized void visited(long fingerprint) {
+        try {
+            stream().writeByte(VISITED);
+            stream().writeLong(fingerprint);
+            bytesSinceRotation += 9;
+        } catch (IOException e) {
+            logger.error("Failed to journal visited fingerprint: {}", e.getMessage());
+        }
+    }
+
+    public synchronized void pages(int count) {
+        try {
+            stream().writeByte(PAGES);
+            stream().writeInt(count);
+            bytesSinceRotation += 5;
+        } catch (IOException e) {
+            logger.error("Failed to journal page count: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Makes every record appended so far durable. Cost is proportional to what was appended since the last sync.
+     */
+    public synchronized void sync() {
+        if (out == null) return;
+        try {
+            out.flush();
+            fileStream.getFD().sync();
+        } catch (IOException e) {
+            logger.error("Failed to sync crawl journal: {}", e.getMessage());
+        }
+    }
+
+    // Approximate size of the journal since the last compaction
+    public synchronized long size() {
+        return bytesSinceRotation;
+    }
+
+    /**
+     * Closes the current journal as the rotated file and starts an empty one.
+     * Events appended after this call are not covered by the snapshot being written.
+     */
+    public synchronized void rotate() throws IOException {
+        sync();
+        closeStream();
+        if (Files.exists(journalFile)) {
+            if (Files.exists(rotatedFile)) {
+                // A previous compaction never finished, keep both journals in order
+                appendFile(journalFile, rotatedFile);
+                Files.delete(journalFile);
+            } else {
+                Files.move(journalFile, rotatedFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        bytesSinceRotation = 0;
+    }
+
+    // Called once the snapshot taken after rotate() is durable
+    public void dropRotated() {
+        try {
+            Files.deleteIfExists(rotatedFile);
+        } catch (IOException e) {
+            logger.error("Failed to delete rotated crawl journal: {}", e.getMessage());
+        }
+    }
+
+    public boolean exists() {
+        return Files.exists(journalFile) || Files.exists(rotatedFile);
+    }
+
+    /**
+     * Replays the rotated journal (left over from an interrupted compaction) and then the current one.
+     * A torn record at the end of a file, from a crash mid-write, ends that file's replay and is cut off
+     * the file, so that records appended after it are read by the next replay.
+     *
+     * @return number of records replayed
+     */
+    public synchronized long replay(Replay target) {
+        sync();
+        return replayFile(rotatedFile, target) + replayFile(journalFile, target);
+    }
+
+    public synchronized void delete() throws IOException {
+        closeStream();
+        Files.deleteIfExists(journalFile);
+        Files.deleteIfExists(rotatedFile);
+        bytesSinceRotation = 0;
+    }
+
+    @Override
+    public synchronized void close() {
+        sync();
+        try {
+            closeStream();
+        } catch (IOException e) {
+            logger.error("Failed to close crawl journal: {}", e.getMessage());
+        }
+    }
+
+    private long replayFile(Path file, Replay target) {
+        if (!Files.exists(file)) return 0;
+        long records = 0;
+        // Length of the complete records read so far
+        long complete = 0;
+        boolean torn = false;
+        try (CountingInputStream counter = new CountingInputStream(new BufferedInputStream(Files.newInputStream(file)));
+             DataInputStream in = new DataInputStream(counter)) {
+            while (true) {
+                int type = in.read();
+                if (type < 0) break;
+                switch (type) {
+                    case ENQUEUE -> target.enqueued(in.readUTF());
+                    case DEQUEUE -> target.dequeued(in.readUTF());
+                    case VISITED -> target.visited(in.readLong());
+                    case PAGES -> target.pages(in.readInt());
+                    default -> throw new StreamCorruptedException("Unknown journal record type " + type);
+                }
+                records++;
+                complete = counter.getCount();
+            }
+        } catch (EOFException | StreamCorruptedException | UTFDataFormatException e) {
+            logger.warn("Crawl journal {} ends with a torn record after {} records, ignoring the rest", file, records);
+            torn = true;
+        } catch (IOException e) {
+            logger.error("Failed to replay crawl journal {}: {}", file, e.getMessage());
+        }
+        if (torn) truncate(file, complete);
+        return records;
+    }
+
+    private void truncate(Path file, long length) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+            if (file.equals(journalFile)) bytesSinceRotation = length;
+        } catch (IOException e) {
+            logger.error("Failed to cut the torn record off crawl journal {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void writeUrlRecord(byte type, String url) {
+        // writeUTF caps strings at 64KB, such URLs are not worth a torn record
+        if (url.length() > MAX_URL_LENGTH) return;
+        try {
+            stream().writeByte(type);
+            stream().writeUTF(url);
+            bytesSinceRotation += 3 + url.length();
+        } catch (IOException e) {
+            logger.error("Failed to journal {} of {}: {}", type == ENQUEUE ? "enqueue" : "dequeue", url, e.getMessage());
+        }
+    }
+
+    private DataOutputStream stream() throws IOException {
+        if (out == null) {
+            fileStream = new FileOutputStream(journalFile.toFile(), true);
+            out = new DataOutputStream(new BufferedOutputStream(fileStream, 64 * 1024));
+        }
+        return out;
+    }
+
+    private void closeStream() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+            fileStream = null;
+        }
+    }
+
+    private static void appendFile(Path from, Path to) throws IOException {
+        try (OutputStream target = new FileOutputStream(to.toFile(), true)) {
+            Files.copy(from, target);
+        }
+    }
+}
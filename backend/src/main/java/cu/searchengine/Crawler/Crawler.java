@@ -1,15 +1,18 @@
 package cu.searchengine.Crawler;
 
+import cu.searchengine.config.CrawlerProperties;
+import cu.searchengine.Indexer.IndexingPipeline;
+import cu.searchengine.PageParser.PageExtractor;
 import cu.searchengine.model.Documents;
+import cu.searchengine.service.CounterService;
+import cu.searchengine.service.DocIdDictionary;
 import cu.searchengine.service.DocumentService;
+import cu.searchengine.service.LinkExchangeService;
 import cu.searchengine.utils.ResourceReader;
 import lombok.Setter;
 import org.jsoup.Connection;
-import org.jsoup.HttpStatusException;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,10 +21,14 @@ import org.springframework.stereotype.Component;
 
 import java.io.*;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -30,6 +37,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  * The crawler maintains a single set:
  * <p>
  * visitedURLSet: URLs we've seen anywhere (links we've discovered)
+ * - Stored as 64-bit fingerprints, see {@link VisitedUrlSet}
  * - Populated initially from the database
  * - Prevents re-queueing the same URLs
  * - Preserves discovery history across runs
@@ -37,68 +45,158 @@ import java.util.concurrent.atomic.AtomicInteger;
  * <p>
  * We rely on MongoDB's unique constraint on URL to prevent duplicate documents
  * from being inserted in the database.
+ * <p>
+ * URLs waiting to be fetched live in a per-host {@link Frontier} that enforces
+ * crawl delay and in-flight limits per host.
+ * <p>
+ * With crawler.shard-count > 1 several crawler processes split the hosts between them with a
+ * {@link ShardRouter}. Links to another shard's hosts go through a {@link LinkExchange}, the page budget
+ * is shared through a {@link PageBudget}, and each shard checkpoints to its own state files.
  */
 
 @Component
 public class Crawler implements Runnable {
     private static final Logger logger = LoggerFactory.getLogger(Crawler.class);
-    private final ConcurrentHashMap<String, Boolean> visitedURLSet;
-    private final BlockingQueue<String> urlQueue;
+    private final VisitedUrlSet visitedURLSet;
+    private final Frontier frontier;
+    private final FrontierSpill frontierSpill;
+    private final HostConcurrencyController hostController;
     private final URLNormalizer normalizer;
     private final RobotsTxtParser robotsParser;
+    private final CrawlerNetwork network;
+    private final HttpFetcher fetcher;
     private final ResourceReader resourceReader;
     private final String userAgent;
     private final int MAX_PAGE_COUNT;
     private final int WAIT_QUEUE_CAPACITY;
     private final AtomicInteger currentPage;
     private final ExecutorService executorService;
-    private final HashMap<String, Boolean> pages404;
+    private final ConcurrentHashMap<String, Boolean> pages404;
+    // Times each URL was put back after a throttled or timed out fetch
+    private final ConcurrentHashMap<String, Integer> retries = new ConcurrentHashMap<>();
     private final DocumentService documentService;
+    private final DocIdDictionary docIds;
+    private final CrawlerProperties properties;
+    private final IndexingPipeline pipeline;
+    private final CrawlerMetrics metrics;
     private final BlockingQueue<Documents> buffer = new LinkedBlockingQueue<>();
     static final int GLOBAL_TIMEOUT = 10_000;
 
     // AtomicBoolean for checkpoint coordination across threads
     private final AtomicBoolean checkpointLock = new AtomicBoolean(false);
 
-    // File name for serialization
-    private static final String STATE_FILE = "crawler_state.ser";
+    // File name for serialization (compacted snapshot) and the journal of changes made after it (.wal),
+    // shards add their index so several can run from one directory
+    private static final String STATE_FILE = "crawler_state";
+    private final String stateFile;
+    private final CrawlJournal journal;
+    private final NearDuplicateIndex nearDuplicates;
+
+    // Sharded crawl, linkExchange and pageBudget are null when this is the only crawler
+    private final ShardRouter shardRouter;
+    private final LinkExchange linkExchange;
+    private final PageBudget pageBudget;
+
+    // Online importance of discovered URLs, the frontier's priority; null when the frontier is FIFO
+    private final OpicScorer importance;
+
+    // Raw copies of fetched pages, null unless crawler.archive-enabled=true
+    private final Path archiveDir;
+    private final PageArchive pageArchive;
 
     // Checkpoint frequency (save state every X pages)
     private static final int CHECKPOINT_FREQUENCY = 100;
 
+    // Upper bound on a robots.txt Crawl-delay, larger values would park the host for the whole crawl
+    static final long MAX_CRAWL_DELAY_MS = 30_000;
+
     @Autowired
-    public Crawler(DocumentService documentService) {
+    public Crawler(DocumentService documentService, CrawlerProperties properties, IndexingPipeline pipeline,
+                   LinkExchangeService linkExchangeService, CounterService counterService, DocIdDictionary docIds, CrawlerMetrics metrics) {
         // Set default values for other fields as needed
         this("Mozilla/5.0 (Windows NT 11.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/134.0.6998.166 Safari/537.36", // userAgent
                 6000, // MAX_PAGE_COUNT
                 128, // numberOfThreads
                 60000, // queueCapacity
-                documentService);
+                documentService,
+                properties,
+                pipeline,
+                linkExchangeService,
+                counterService,
+                docIds,
+                metrics);
     }
 
-    public Crawler(String userAgent, int pgCount, int numberOfThreads, int queueCapacity, DocumentService documentService) {
+    public Crawler(String userAgent, int pgCount, int numberOfThreads, int queueCapacity, DocumentService documentService, CrawlerProperties properties, IndexingPipeline pipeline,
+                   LinkExchangeService linkExchangeService, CounterService counterService, DocIdDictionary docIds, CrawlerMetrics metrics) {
         this.userAgent = userAgent;
         this.MAX_PAGE_COUNT = pgCount;
         this.documentService = documentService;
+        this.docIds = docIds;
+        this.properties = properties;
+        this.pipeline = pipeline;
+        this.metrics = metrics;
         this.currentPage = new AtomicInteger(0);
-        this.visitedURLSet = new ConcurrentHashMap<>();
-        this.urlQueue = new LinkedBlockingQueue<>();
+        this.visitedURLSet = new VisitedUrlSet(properties.getVisitedExpectedUrls());
         this.normalizer = new URLNormalizer();
-        this.robotsParser = new RobotsTxtParser();
+        // Robots.txt loads and page fetches share one connection pool and DNS cache
+        this.network = new CrawlerNetwork(new DnsCache(properties.getDnsCacheMaxHosts(), properties.getDnsCacheTtlSeconds(),
+                properties.getDnsNegativeTtlSeconds(), TimeUnit.SECONDS), GLOBAL_TIMEOUT);
+        this.robotsParser = new RobotsTxtParser(network);
+        this.fetcher = new HttpFetcher(network, userAgent, properties.getMaxConcurrentFetches(), GLOBAL_TIMEOUT, properties.getFetchMaxBodyBytes());
         this.resourceReader = new ResourceReader(new DefaultResourceLoader());
         this.WAIT_QUEUE_CAPACITY = queueCapacity;
         this.executorService = new ThreadPoolExecutor(numberOfThreads, numberOfThreads, 10L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(this.WAIT_QUEUE_CAPACITY), new ThreadPoolExecutor.CallerRunsPolicy());
-        this.pages404 = new HashMap<>();
+        this.pages404 = new ConcurrentHashMap<>();
+        this.shardRouter = new ShardRouter(properties.getShardIndex(), properties.getShardCount(), properties.getShardVirtualNodes());
+        String stateName = STATE_FILE;
+        if (shardRouter.getShardCount() > 1) {
+            this.linkExchange = new LinkExchange(shardRouter, linkExchangeService, properties.getLinkExchangeBatchSize());
+            this.pageBudget = new PageBudget(counterService, "crawler.pages." + properties.getCrawlId(), pgCount, properties.getPageBudgetBlockSize());
+            stateName += "-shard" + shardRouter.getShardIndex();
+            this.archiveDir = Path.of(properties.getArchiveDir(), "shard-" + shardRouter.getShardIndex());
+        } else {
+            this.archiveDir = Path.of(properties.getArchiveDir());
+            this.linkExchange = null;
+            this.pageBudget = null;
+        }
+        Path stateDir = Path.of(properties.getStateDir());
+        this.stateFile = stateDir.resolve(stateName + ".ser").toString();
+        this.journal = new CrawlJournal(stateDir.resolve(stateName + ".wal"));
+        this.frontierSpill = openFrontierSpill(stateDir.resolve(stateName + ".frontier"));
+        this.frontier = frontierSpill != null ? new Frontier(frontierSpill, properties.getFrontierMemoryUrls()) : new Frontier();
+        this.hostController = new HostConcurrencyController(frontier, properties, GLOBAL_TIMEOUT);
+        this.importance = properties.getFrontierOrder() == CrawlerProperties.FrontierOrder.OPIC ? new OpicScorer() : null;
+        this.pageArchive = properties.isArchiveEnabled() ? new PageArchive(archiveDir, properties.getArchiveSegmentBytes()) : null;
+        this.nearDuplicates = new NearDuplicateIndex(Math.min(properties.getNearDuplicateDistance(), NearDuplicateIndex.MAX_DISTANCE));
 
 //        logger.info("Crawler initialized with userAgent={}, maxPages={}, threads={}, queueCapacity={}", userAgent, pgCount, numberOfThreads, queueCapacity);
 
         // Try to restore previous state or load initial state if restoration fails
-        if (!restoreState()) {
+        boolean restored = restoreState();
+        // Restored URLs are in the snapshot and journal already, only URLs queued from here on are journaled
+        frontier.setListener(new Frontier.Listener() {
+            @Override
+            public void queued(String url) {
+                journal.enqueued(url);
+            }
+
+            @Override
+            public void spilled(String url) {
+                // The spill keeps the URL itself, the journal only has to remember it was seen
+                journal.visited(UrlFingerprint.of(url));
+            }
+        });
+        if (!restored) {
+            discardFrontierSpill();
             // Load visited URLs from DB to persist across runs
 //            loadVisitedUrlsFromDb();
             loadSeeds();
         }
 
+        metrics.bind(frontier, visitedURLSet, buffer, robotsParser, network, nearDuplicates, pipeline);
+        metrics.bindHostController(hostController);
+
         // Add shutdown hook to save state when application exits
         Runtime.getRuntime().addShutdownHook(new Thread(this::saveState));
     }
@@ -107,8 +205,10 @@ public class Crawler implements Runnable {
         try {
             List<Documents> allDocs = documentService.getAllDocuments();
             for (Documents doc : allDocs) {
-                String normalized = normalizer.normalize(doc.getUrl());
-                visitedURLSet.put(normalized, true);
+                long fingerprint = normalizer.fingerprint(doc.getUrl());
+                if (fingerprint != 0 && visitedURLSet.addFingerprint(fingerprint)) {
+                    journal.visited(fingerprint);
+                }
             }
             logger.info("Loaded {} visited URLs from DB", visitedURLSet.size());
         } catch (Exception e) {
@@ -122,40 +222,51 @@ public class Crawler implements Runnable {
         logger.debug("[{}] Crawler thread started.", threadName);
         long startTime = System.currentTimeMillis();
 
-        // Change the while condition to prevent possible thread starvation
-        // Note: In previous condition, !urlQueue.isEmpty() || currentPage.get() < MAX_PAGE_COUNT,
-        // if crawling is over and queue is empty but currentPage.get() < MAX_PAGE_COUNT is true, this thread will get starved
-        while (!urlQueue.isEmpty() || currentPage.get() < MAX_PAGE_COUNT) {
-            if (currentPage.get() >= MAX_PAGE_COUNT)
+        // Workers block on the frontier until some host is eligible instead of spinning on an empty queue.
+        // A timed out take only ends the thread once the frontier is exhausted: while other threads are
+        // still fetching, they may discover new links.
+        while (hasBudget()) {
+            String url;
+            try {
+                url = frontier.take(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
                 break;
-
-            String url = urlQueue.poll();
-            if (url == null) continue;
-
-            String normalizedURL = normalizer.normalize(url);
-
-            if (!robotsParser.isLoaded(normalizedURL)) {
-                logger.debug("[{}] Loading robots.txt for: {}", threadName, normalizedURL);
-                robotsParser.loadRobotsTxt(normalizedURL);
             }
-
-            if (!robotsParser.isAllowed(url, userAgent)) {
-                logger.debug("[{}] Crawling disallowed by robots.txt: {}", threadName, url);
+            if (url == null) {
+                if (isOutOfWork()) break;
                 continue;
             }
+            journal.dequeued(url);
 
             try {
-//                if (!headRequest(url)) continue;
+                // Everything in the frontier was normalized before it was added
+                if (!network.isResolvable(Frontier.hostOf(url))) {
+                    logger.debug("[{}] Host does not resolve: {}", threadName, url);
+                    pages404.put(url, true);
+                    continue;
+                }
+                if (!robotsParser.isLoaded(url)) {
+                    logger.debug("[{}] Loading robots.txt for: {}", threadName, url);
+                    robotsParser.loadRobotsTxt(url);
+                    applyCrawlDelay(url);
+                }
 
-                // This block ensures the crawler does not exceed the maximum allowed pages.
-                // It increments the page count, checks if it exceeds the limit, and if so, decrements and exits.
+                if (!robotsParser.isAllowed(url, userAgent)) {
+                    logger.debug("[{}] Crawling disallowed by robots.txt: {}", threadName, url);
+                    continue;
+                }
 
+//                if (!headRequest(url)) continue;
 
-                logger.debug("[{}] Processing page: {}", threadName, normalizedURL);
-                processPage(normalizedURL);
+                logger.debug("[{}] Processing page: {}", threadName, url);
+                processPage(url);
 
             } catch (Exception e) {
                 logger.debug("[{}] Error: {}", threadName, e.getMessage());
+            } finally {
+                // Frees the host's in-flight slot, its crawl delay runs from when this fetch started
+                frontier.release(url);
             }
         }
         logger.info("[{}] finished. Elapsed: {} ms", threadName, System.currentTimeMillis() - startTime);
@@ -163,13 +274,17 @@ public class Crawler implements Runnable {
 
     private void loadSeeds() {
         try {
-            String content = resourceReader.loadResourceAsString("classpath:static/seeds.txt");
+            String content = resourceReader.loadResourceAsString(properties.getSeeds());
             String[] lines = content.split("\\n");
             for (String line : lines) {
                 line = line.trim();
                 if (isValidURL(line)) {
-                    urlQueue.add(line);
-                    visitedURLSet.put(normalizer.normalize(line), true);
+                    // Every shard reads the same seeds and keeps the ones it owns
+                    String seed = normalizer.normalize(line);
+                    String host = Frontier.hostOf(seed);
+                    if (host != null && !shardRouter.isLocal(host)) continue;
+                    if (importance != null) importance.seed(seed);
+                    addURLToQueue(seed);
                 } else {
                     logger.debug("Skipping invalid URL: {}", line);
                 }
@@ -207,46 +322,42 @@ public class Crawler implements Runnable {
         }
     }
 
-    // if a given url isn't in the visitedUrlSet then putIfAbsent inserts it and returns null
-    // consequently it gets added to the urlQueue to get processed
+    // if a given url isn't in the visitedUrlSet then add inserts its fingerprint and returns true
+    // consequently it gets added to its host's queue in the frontier to get processed
+    // URLs of hosts owned by another shard are sent to it instead, the visited set keeps us from sending one twice
     private void addURLToQueue(String normalizedLinkURL) {
-        if (visitedURLSet.putIfAbsent(normalizedLinkURL, true) == null) {
-            urlQueue.add(normalizedLinkURL);
-        }
+        addURLToQueue(normalizedLinkURL, 0);
     }
 
-    private void parseDocument(Document doc) {
-        String title = doc.title();
-        String url = doc.baseUri();
-
-        if (pages404.get(url) != null) return;
-
-        String content = doc.select("div, p").text();
-
-        List<String> mainHeadings = doc.select("h1").parallelStream().map(Element::text).filter(text -> !text.trim().isEmpty()).toList();
+    // Queues a new URL, and credits it with a share of the cash of the page linking to it
+    private void addURLToQueue(String normalizedLinkURL, double share) {
+        if (normalizedLinkURL == null || normalizedLinkURL.isEmpty()) return;
+        if (visitedURLSet.add(normalizedLinkURL)) {
+            if (linkExchange != null && linkExchange.routeIfRemote(normalizedLinkURL)) return;
+            frontier.add(normalizedLinkURL, importance == null ? 0 : importance.credit(normalizedLinkURL, share));
+        } else if (importance != null && share > 0 && ownsHost(Frontier.hostOf(normalizedLinkURL))) {
+            // Seen before: fetched already, which the scorer knows, or still queued and now worth more
+            double cash = importance.credit(normalizedLinkURL, share);
+            if (cash > 0) frontier.raisePriority(normalizedLinkURL, cash);
+        }
+    }
 
-        List<String> subHeadings = doc.select("h2, h3, h4, h5, h6").parallelStream().map(Element::text).filter(text -> !text.trim().isEmpty()).toList();
+    // Priority to queue a URL again with, after a retry or a robots.txt load
+    private double priorityOf(String url) {
+        return importance == null ? 0 : importance.cashOf(url);
+    }
 
-        List<String> links = doc.select("a").parallelStream().map(link -> {
-            String linkURL = link.attr("href");
-            if (!linkURL.startsWith("http")) {
-                linkURL = doc.baseUri() + linkURL;
-            }
-            return linkURL;
-        }).filter(text -> !text.trim().isEmpty()).toList();
+    private void parseDocument(Documents document, String etag, String lastModified) {
+        if (pages404.get(document.getUrl()) != null) return;
 
-        // --- Populate webGraph (outgoing links as IDs) using Java streams ---
-        HashSet<Integer> webGraph = links.stream()
-                .map(normalizer::normalize)
-                .filter(normalized -> normalized != null && !normalized.isEmpty())
-                .map(String::hashCode)
-                .collect(HashSet::new, HashSet::add, HashSet::addAll);
+        document.setEtag(etag);
+        document.setLastModified(lastModified);
+        RecrawlScheduler.recordFetch(document, RecrawlScheduler.contentHash(document), System.currentTimeMillis());
 
-        Documents document = new Documents(url, title, mainHeadings, subHeadings, content, links);
-        document.setWebGraph(webGraph); // set webGraph as outgoing link IDs
+        if (isNearDuplicate(document)) return;
 
-        // The correct approach - Always add current document to buffer
-        buffer.add(document);
+        // Sharded crawls draw every stored page from the budget shared by all shards
+        if (pageBudget != null && !pageBudget.tryAcquire()) return;
 
         int currentCount = currentPage.incrementAndGet();
         if (currentCount > MAX_PAGE_COUNT) {
@@ -254,6 +365,23 @@ public class Crawler implements Runnable {
             return;
         }
 
+        // Ids are only handed out to pages that are stored, so they stay dense for the link graph
+        try {
+            document.setId(docIds.idOf(document.getUrl()));
+        } catch (RuntimeException e) {
+            logger.error("Failed to assign a document id to {}: {}", document.getUrl(), e.getMessage());
+            currentPage.decrementAndGet();
+            return;
+        }
+        recordNearDuplicate(document);
+
+        // In pipeline mode the page goes straight to the indexer and is stored from there,
+        // otherwise it is buffered, stored at the next checkpoint and indexed by the periodic run
+        if (!pipeline.isEnabled() || !pipeline.submit(document)) {
+            buffer.add(document);
+        }
+        metrics.recordPage();
+
         if (currentCount % CHECKPOINT_FREQUENCY == 0) {
             // Try to acquire the lock - returns true only for the first thread that succeeds
             if (checkpointLock.compareAndSet(false, true)) {
@@ -272,51 +400,104 @@ public class Crawler implements Runnable {
         }
     }
 
+    // Extracts the stored fields of a page, shared with the recrawler
+    Documents extractDocument(Document doc) {
+        PageExtractor.ExtractedPage page = PageExtractor.extract(doc);
+        return toDocument(doc.baseUri(), page, normalizeLinks(page.getLinks()));
+    }
+
+    private Documents toDocument(String url, PageExtractor.ExtractedPage page, Set<String> outLinks) {
+        // Outgoing links as fingerprints, resolved to document ids when the link graph is built
+        HashSet<Long> webGraph = new HashSet<>();
+        for (String link : outLinks) {
+            webGraph.add(UrlFingerprint.of(link));
+        }
+
+        Documents document = new Documents(url, page.getTitle(), page.getMainHeadings(), page.getSubHeadings(), page.getContent(), page.getLinks());
+        document.setWebGraph(webGraph);
+        return document;
+    }
+
+    // Normalized, distinct and non-empty
+    private Set<String> normalizeLinks(List<String> links) {
+        Set<String> normalized = new LinkedHashSet<>();
+        for (String link : links) {
+            String normalizedLink = normalizer.normalize(link);
+            if (normalizedLink != null && !normalizedLink.isEmpty()) normalized.add(normalizedLink);
+        }
+        return normalized;
+    }
+
+    // Fingerprints the content and applies crawler.near-duplicate-mode, true if the page must not be stored
+    // Checked before the page has an id, the page is only recorded once it gets one
+    private boolean isNearDuplicate(Documents document) {
+        if (properties.getNearDuplicateMode() == CrawlerProperties.NearDuplicateMode.OFF) return false;
+
+        long simHash = SimHash.of(document.getContent());
+        document.setSimHash(simHash);
+        if (simHash == 0) return false;
+
+        Integer original = nearDuplicates.find(simHash);
+        if (original == null) return false;
+
+        logger.debug("{} is a near duplicate of document {}", document.getUrl(), original);
+        if (properties.getNearDuplicateMode() == CrawlerProperties.NearDuplicateMode.DROP) return true;
+        document.setNearDuplicateOf(original);
+        return false;
+    }
+
+    private void recordNearDuplicate(Documents document) {
+        if (properties.getNearDuplicateMode() == CrawlerProperties.NearDuplicateMode.OFF) return;
+        if (document.getSimHash() == 0 || document.getNearDuplicateOf() != null) return;
+
+        // A mirror processed at the same time may have been recorded since the check. This page already
+        // has its id, so it is stored anyway and only marked.
+        Integer original = nearDuplicates.findOrAdd(document.getSimHash(), document.getId());
+        if (original != null) document.setNearDuplicateOf(original);
+    }
+
     private void processPage(String url) {
-        Document doc;
+        HttpFetcher.FetchResult result;
+        long start = System.nanoTime();
         try {
-            Connection.Response response = Jsoup.connect(url)
-                    .method(Connection.Method.GET)
-                    .timeout(GLOBAL_TIMEOUT)
-                    .followRedirects(true)
-                    .execute();
-
-            int statusCode = response.statusCode();
-            if (statusCode >= 200 && statusCode < 300) {
-                // Only process successful responses (2xx status codes)
-                doc = response.parse();
-            } else {
-                logger.info("Error with status code {} at {}", statusCode, url);
-                pages404.put(url, true);
-                return;
-            }
-        } catch (HttpStatusException e) {
-            // JSoup throws this for 404 and other HTTP errors
-            logger.debug("HTTP status error {}: {} at {}", e.getStatusCode(), e.getMessage(), url);
-            pages404.put(url, true);
-            return;
+            // Blocking GET through the shared client, so the connection is reused for the host's next page
+            result = fetcher.get(url, hostController.timeoutMillis(Frontier.hostOf(url)));
+            recordFetch(url, result, null, System.nanoTime() - start);
         } catch (IOException e) {
+            recordFetch(url, null, e, System.nanoTime() - start);
             logger.debug("IO error while crawling {}: {}", url, e.getMessage());
-            pages404.put(url, true);
+            if (!retryLater(url, null, e)) pages404.put(url, true);
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             return;
         }
 
-        parseDocument(doc);
-        logger.debug("Thread {}: Crawling URL: {}", Thread.currentThread().getName(), url);
+        if (!result.isSuccess()) {
+            // Only process successful responses (2xx status codes)
+            logger.info("Error with status code {} at {}", result.getStatusCode(), url);
+            if (!retryLater(url, result, null)) pages404.put(url, true);
+            return;
+        }
+        handleFetchResult(result);
+    }
 
-        Elements links = doc.select("a");
-        for (Element link : links) {
-            String linkURL = link.attr("abs:href");
-            String normalizedLinkURL = normalizer.normalize(linkURL);
-            if (normalizedLinkURL == null || normalizedLinkURL.isEmpty()) continue;
+    // Shared by both fetch modes once a page has been downloaded, parsed and extracted
+    private void handleDocument(String url, Document doc, PageExtractor.ExtractedPage page, Set<String> outLinks, String etag, String lastModified) {
+        parseDocument(toDocument(doc.baseUri(), page, outLinks), etag, lastModified);
+        logger.debug("Thread {}: Crawling URL: {}", Thread.currentThread().getName(), doc.baseUri());
 
-            addURLToQueue(normalizedLinkURL);
+        // The cash of the URL taken from the frontier, the page may have been redirected elsewhere
+        double share = importance == null ? 0 : importance.spend(url, outLinks.size());
+        for (String link : outLinks) {
+            addURLToQueue(link, share);
         }
     }
 
     private synchronized void flushBuffer() {
         if (buffer.isEmpty()) return;
         logger.info("Thread {}: Flushing buffer with size {}", Thread.currentThread().getName(), buffer.size());
+        long start = System.nanoTime();
         try {
             documentService.addAll(buffer);
         } catch (Exception e) {
@@ -326,6 +507,63 @@ public class Crawler implements Runnable {
             }
         }
         buffer.clear();
+        metrics.recordFlush(System.nanoTime() - start);
+    }
+
+    private boolean hasBudget() {
+        return pageBudget != null ? !pageBudget.isExhausted() : currentPage.get() < MAX_PAGE_COUNT;
+    }
+
+    // Nothing left to fetch here, and for a shard no links have come in from the others for a while
+    private boolean isOutOfWork() {
+        if (!frontier.isExhausted()) return false;
+        return linkExchange == null || linkExchange.millisSinceLastReceived() > properties.getShardIdleExitMillis();
+    }
+
+    // Periodically sends partly filled link batches and queues the links other shards sent here
+    private ScheduledExecutorService startLinkExchange() {
+        if (linkExchange == null) return null;
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                linkExchange.flush();
+                for (String url : linkExchange.poll()) {
+                    addURLToQueue(url);
+                }
+            } catch (Exception e) {
+                logger.warn("Link exchange error: {}", e.getMessage());
+            }
+        }, 0, properties.getLinkExchangePollMillis(), TimeUnit.MILLISECONDS);
+        logger.info("Crawling as shard {} of {}", shardRouter.getShardIndex(), shardRouter.getShardCount());
+        return timer;
+    }
+
+    private void stopLinkExchange(ScheduledExecutorService timer) {
+        if (timer == null) return;
+        timer.shutdown();
+        try {
+            timer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        linkExchange.flush();
+        pageBudget.releaseUnused();
+    }
+
+    // Lets the recrawler skip pages of hosts another shard owns
+    boolean ownsHost(String host) {
+        return host != null && shardRouter.isLocal(host);
+    }
+
+    private void flushPipeline() {
+        if (!pipeline.isEnabled()) return;
+        try {
+            if (!pipeline.flush(5, TimeUnit.MINUTES)) {
+                logger.warn("Indexing pipeline still has {} pages queued", pipeline.getQueueSize());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     private void shutdownExecutorService() {
@@ -345,87 +583,421 @@ public class Crawler implements Runnable {
     }
 
     public void crawl() {
-        int numThreads = ((ThreadPoolExecutor) executorService).getCorePoolSize();
-        logger.info("Starting crawl with {} threads. URL queue size: {}", numThreads, urlQueue.size());
         long start = System.currentTimeMillis();
-        for (int i = 0; i < numThreads; i++) {
-            executorService.submit(this);
+        ScheduledExecutorService exchangeTimer = startLinkExchange();
+        if (properties.getFetchMode() == CrawlerProperties.FetchMode.ASYNC) {
+            crawlAsync();
+        } else {
+            int numThreads = ((ThreadPoolExecutor) executorService).getCorePoolSize();
+            logger.info("Starting crawl with {} threads. URL queue size: {}", numThreads, frontier.size());
+            for (int i = 0; i < numThreads; i++) {
+                executorService.submit(this);
+            }
+            shutdownExecutorService();
         }
-        shutdownExecutorService();
+        stopLinkExchange(exchangeTimer);
 
         // Make sure to flush any remaining documents in buffer
         flushBuffer();
+        flushPipeline();
 
         // Save state before finishing
         saveState();
 
         // Clear the URL queue once at the end
-        urlQueue.clear();
+        frontier.clear();
 
         logger.info("Crawling finished in {} ms", System.currentTimeMillis() - start);
     }
 
+    /**
+     * Async fetch mode: a single dispatcher thread takes URLs from the frontier and starts non-blocking
+     * requests on the shared {@link HttpFetcher}, so concurrency is bounded by maxConcurrentFetches instead
+     * of the thread count. Response bodies are parsed with Jsoup on a small pool sized to the CPU.
+     */
+    private void crawlAsync() {
+        ExecutorService parsePool = Executors.newFixedThreadPool(Math.max(1, properties.getParseThreads()));
+        Set<CompletableFuture<Void>> pending = ConcurrentHashMap.newKeySet();
+        logger.info("Starting async crawl with up to {} concurrent fetches. URL queue size: {}", properties.getMaxConcurrentFetches(), frontier.size());
+
+        try {
+            while (hasBudget()) {
+                // Don't put more requests on the wire than the page budget can still use
+                if (pageBudget == null && currentPage.get() + pending.size() >= MAX_PAGE_COUNT && !pending.isEmpty()) {
+                    try {
+                        CompletableFuture.anyOf(pending.toArray(new CompletableFuture[0])).get(1, TimeUnit.SECONDS);
+                    } catch (ExecutionException | TimeoutException ignored) {
+                        // Failures are handled per request, we only wait for a slot in the budget
+                    }
+                    continue;
+                }
+
+                String url = frontier.take(1, TimeUnit.SECONDS);
+                if (url == null) {
+                    if (isOutOfWork() && pending.isEmpty()) break;
+                    continue;
+                }
+                journal.dequeued(url);
+
+                // Only a cached DNS failure is checked here, robots.txt loading below resolves new hosts
+                if (network.isKnownUnresolvable(Frontier.hostOf(url))) {
+                    logger.debug("Host does not resolve: {}", url);
+                    pages404.put(url, true);
+                    frontier.release(url);
+                    continue;
+                }
+
+                // Loading robots.txt is blocking, keep it off the dispatcher and retry the URL once it is cached
+                if (!robotsParser.isLoaded(url)) {
+                    parsePool.execute(() -> {
+                        try {
+                            robotsParser.loadRobotsTxt(url);
+                            applyCrawlDelay(url);
+                        } finally {
+                            frontier.release(url);
+                            frontier.add(url, priorityOf(url));
+                        }
+                    });
+                    continue;
+                }
+                if (!robotsParser.isAllowed(url, userAgent)) {
+                    logger.debug("Crawling disallowed by robots.txt: {}", url);
+                    frontier.release(url);
+                    continue;
+                }
+
+                CompletableFuture<Void> task;
+                try {
+                    // fetch() returns once a slot is free and the request is on its way, latency is measured from there
+                    CompletableFuture<HttpFetcher.FetchResult> response = fetcher.fetch(url, hostController.timeoutMillis(Frontier.hostOf(url)));
+                    long sentAt = System.nanoTime();
+                    task = response.whenComplete((result, error) -> recordFetch(url, result, error, System.nanoTime() - sentAt))
+                            .thenAcceptAsync(this::handleFetchResult, parsePool);
+                } catch (RuntimeException e) {
+                    task = CompletableFuture.failedFuture(e);
+                }
+                CompletableFuture<Void> tracked = task.whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        logger.debug("Error while crawling {}: {}", url, error.getMessage());
+                        if (!retryLater(url, null, error)) pages404.put(url, true);
+                    }
+                    frontier.release(url);
+                });
+                pending.add(tracked);
+                tracked.whenComplete((ignored, error) -> pending.remove(tracked));
+            }
+
+            // Let the requests already on the wire finish before flushing
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).get(GLOBAL_TIMEOUT * 3L, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Async crawl interrupted");
+        } catch (ExecutionException | TimeoutException e) {
+            logger.warn("Some fetches did not finish cleanly: {}", e.getMessage());
+        } finally {
+            parsePool.shutdown();
+            try {
+                if (!parsePool.awaitTermination(1, TimeUnit.MINUTES)) parsePool.shutdownNow();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                parsePool.shutdownNow();
+            }
+        }
+    }
+
+    // Shared with the recrawler so robots.txt is fetched once per host for both
+    RobotsTxtParser getRobotsParser() {
+        return robotsParser;
+    }
+
+    String getUserAgent() {
+        return userAgent;
+    }
+
+    HttpFetcher getFetcher() {
+        return fetcher;
+    }
+
+    // Where this crawler archives pages, also where a reparse reads them from
+    Path getArchiveDir() {
+        return archiveDir;
+    }
+
+    void archive(HttpFetcher.FetchResult result) {
+        if (pageArchive != null) pageArchive.append(result);
+    }
+
+    // Null if spilling is off or the directory can't be used, the frontier then stays in memory
+    private FrontierSpill openFrontierSpill(Path dir) {
+        if (properties.getFrontierMemoryUrls() <= 0) return null;
+        try {
+            return new FrontierSpill(dir, properties.getFrontierSpillSegmentBytes());
+        } catch (IOException e) {
+            logger.error("Failed to open frontier spill in {}, keeping the whole frontier in memory: {}", dir, e.getMessage());
+            return null;
+        }
+    }
+
+    // Spilled URLs of an earlier crawl whose state is gone
+    private void discardFrontierSpill() {
+        if (frontierSpill == null) return;
+        try {
+            frontierSpill.deleteAll();
+        } catch (IOException e) {
+            logger.error("Failed to discard old frontier spill: {}", e.getMessage());
+        }
+    }
+
+    // Lets the frontier honour the Crawl-delay of a host whose robots.txt was just loaded
+    private void applyCrawlDelay(String url) {
+        long delay = robotsParser.getCrawlDelay(url, userAgent);
+        String host = Frontier.hostOf(url);
+        if (delay > 0 && host != null) {
+            hostController.setMinDelay(host, Math.min(delay, MAX_CRAWL_DELAY_MS));
+        }
+    }
+
+    private void handleFetchResult(HttpFetcher.FetchResult result) {
+        if (!result.isSuccess()) {
+            logger.debug("Error with status code {} at {}", result.getStatusCode(), result.getUrl());
+            if (!retryLater(result.getUrl(), result, null)) pages404.put(result.getUrl(), true);
+            return;
+        }
+        if (!result.isParseable()) {
+            logger.debug("Skipping {} ({}, content type {})", result.getUrl(), result.getSkipReason(), result.getHeader("Content-Type"));
+            if (result.getSkipReason() != null) metrics.recordSkipped(result.getSkipReason());
+            return;
+        }
+        // Archived before parsing, so a page the current extractor chokes on can still be reparsed later
+        archive(result);
+        try {
+            // The DOM is walked once, links are normalized once for both the web graph and the frontier
+            long start = System.nanoTime();
+            Document doc = result.parse();
+            PageExtractor.ExtractedPage page = PageExtractor.extract(doc);
+            Set<String> outLinks = normalizeLinks(page.getLinks());
+            metrics.recordParse(System.nanoTime() - start);
+
+            handleDocument(result.getUrl(), doc, page, outLinks, result.getHeader("ETag"), result.getHeader("Last-Modified"));
+        } catch (IOException e) {
+            logger.debug("Parse error at {}: {}", result.getUrl(), e.getMessage());
+            pages404.put(result.getUrl(), true);
+        }
+    }
+
+    // Feeds the outcome of a fetch to the metrics and to the host's concurrency controller
+    private void recordFetch(String url, HttpFetcher.FetchResult result, Throwable error, long nanos) {
+        String host = Frontier.hostOf(url);
+        if (result == null) {
+            metrics.recordFetch(url, -1, nanos, 0);
+            hostController.onFailure(host, isTimeout(error));
+            return;
+        }
+        int status = result.getStatusCode();
+        metrics.recordFetch(url, status, nanos, result.getBody() == null ? 0 : result.getBody().length);
+        if (status == 429 || status == 503) {
+            hostController.onThrottled(host, result.getHeader("Retry-After"));
+        } else if (status >= 500) {
+            hostController.onFailure(host, false);
+        } else {
+            hostController.onResponse(host, TimeUnit.NANOSECONDS.toMillis(nanos));
+            retries.remove(url);
+        }
+    }
+
+    /**
+     * Puts a URL back in the frontier when the fetch failed because the host was busy (429, 503 or a
+     * timeout) rather than because the page is gone, at most crawler.max-fetch-retries times.
+     *
+     * @return false if the failure is final
+     */
+    private boolean retryLater(String url, HttpFetcher.FetchResult result, Throwable error) {
+        boolean busy = result != null ? result.getStatusCode() == 429 || result.getStatusCode() == 503 : isTimeout(error);
+        if (!busy) return false;
+        int attempts = retries.merge(url, 1, Integer::sum);
+        if (attempts > properties.getMaxFetchRetries()) {
+            retries.remove(url);
+            return false;
+        }
+        logger.debug("Retrying {} later, attempt {}", url, attempts);
+        frontier.add(url, priorityOf(url));
+        return true;
+    }
+
+    private static boolean isTimeout(Throwable error) {
+        while (error instanceof CompletionException || error instanceof ExecutionException) {
+            if (error.getCause() == null) break;
+            error = error.getCause();
+        }
+        return error instanceof HttpTimeoutException;
+    }
+
     void print() {
         logger.info("PageCount: {}", currentPage.get());
-        logger.info("URLQueue: {}", urlQueue.size());
-        logger.info("VisitedURLSet: {}", visitedURLSet.size());
+        logger.info("URLQueue: {} ({} hosts, {} spilled to disk)", frontier.size(), frontier.hostCount(), frontier.spilledCount());
+        logger.info("VisitedURLSet: {} ({} bytes/entry)", visitedURLSet.size(), String.format("%.1f", visitedURLSet.bytesPerEntry()));
+        if (pipeline.isEnabled()) {
+            logger.info("Pipeline: {} indexed, {} failed, {} queued, {} ms fetch-to-searchable", pipeline.getIndexedCount(), pipeline.getFailedCount(), pipeline.getQueueSize(), String.format("%.0f", pipeline.getAverageLatencyMillis()));
+        }
+        DnsCache dnsCache = network.getDnsCache();
+        logger.info("DNS cache: {} hosts, {} unresolvable, {}% hit rate", dnsCache.size(), dnsCache.getNegativeSize(), String.format("%.1f", dnsCache.getHitRate() * 100));
+        logger.info("Connection reuse: {}% of TLS requests", String.format("%.1f", network.getReuseRate() * 100));
+        for (CrawlerNetwork.HostStats host : network.getBusiestHosts(10)) {
+            logger.info("  {}: {} requests, {} connections, {}% reused", host.getHost(), host.getRequests(), host.getConnections(), String.format("%.1f", host.getReuseRate() * 100));
+        }
+        if (linkExchange != null) {
+            logger.info("Shard {}/{}: {} links sent, {} received, {} pages crawled by all shards", shardRouter.getShardIndex(), shardRouter.getShardCount(), linkExchange.getSentCount(), linkExchange.getReceivedCount(), pageBudget.getGlobalCount());
+        }
+        if (properties.isAdaptiveThrottling()) {
+            logger.info("Hosts: {} backoffs, {} suspensions, {} suspended now", hostController.getBackoffCount(), hostController.getSuspensionCount(), hostController.getSuspendedHostCount());
+        }
+        if (pageArchive != null) {
+            logger.info("Archive: {} pages, {} MB compressed in {}", pageArchive.getRecordCount(), pageArchive.getBytesWritten() >> 20, archiveDir);
+        }
+        logger.info("NearDuplicates: {} of {} pages ({}%)", nearDuplicates.getDuplicateCount(), nearDuplicates.getCheckedCount(), String.format("%.1f", nearDuplicates.getDuplicateRate() * 100));
     }
 
     /**
-     * Saves the current state of the crawler to disk for recovery
+     * Checkpoints the crawler state for recovery.
+     * <p>
+     * Usually this only syncs the journal, so its cost is proportional to what changed since the last
+     * checkpoint. Once the journal grows past crawler.journal-compact-bytes a compacted snapshot is written
+     * and the journal starts over, which bounds how much has to be replayed on restart.
      */
     public synchronized void saveState() {
-        logger.info("Saving crawler state: {} pages crawled, {} URLs in queue, pages404: {}", currentPage.get(), urlQueue.size(), pages404.size());
-        List<String> queueArray = new ArrayList<>(urlQueue);
+        long start = System.nanoTime();
+        // Links for other shards leave before the checkpoint that marks them visited here
+        if (linkExchange != null) linkExchange.flush();
+        if (pageArchive != null) pageArchive.flush();
+        // Spilled URLs read back before this point are journaled, so the spill may forget them once the journal is synced
+        FrontierSpill.Position spillCursor = frontierSpill != null ? frontierSpill.committed() : null;
+        journal.pages(currentPage.get());
+        journal.sync();
+        if (frontierSpill != null) frontierSpill.checkpoint(spillCursor);
+        // Incoming links are in the synced journal now, their batches can be deleted
+        if (linkExchange != null) linkExchange.acknowledge();
+        if (journal.size() < properties.getJournalCompactBytes() && new File(stateFile).exists()) {
+            logger.debug("Crawler journal synced: {} pages crawled, {} bytes since last snapshot", currentPage.get(), journal.size());
+        } else {
+            writeSnapshot();
+        }
+        metrics.recordCheckpoint(System.nanoTime() - start);
+    }
+
+    private void writeSnapshot() {
+        try {
+            // Changes made from here on go to the fresh journal and are replayed on top of this snapshot
+            journal.rotate();
+        } catch (IOException e) {
+            logger.error("Failed to rotate crawler journal, keeping it: {}", e.getMessage());
+            return;
+        }
+
+        List<String> queueArray = frontier.snapshot();
+        logger.info("Saving crawler snapshot: {} pages crawled, {} URLs in queue, pages404: {}", currentPage.get(), queueArray.size(), pages404.size());
         // Wrap all state data in a single object
         CrawlerState fullState = new CrawlerState(
                 currentPage.get(),
                 queueArray,
-                new HashMap<>(visitedURLSet)
+                visitedURLSet.toArray()
         );
 
-        try (FileOutputStream fos = new FileOutputStream(STATE_FILE);
-             ObjectOutputStream oos = new ObjectOutputStream(fos)) {
+        File tmpFile = new File(stateFile + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmpFile);
+             ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(fos))) {
             oos.writeObject(fullState);
-            logger.info("Full crawler state saved successfully ({} URLs, {} visited)", fullState.urlQueue.size(), fullState.visitedURLs.size());
+            oos.flush();
+            fos.getFD().sync();
         } catch (IOException e) {
             logger.error("Failed to save crawler state: {}", e.getMessage());
+            return;
+        }
+
+        try {
+            Files.move(tmpFile.toPath(), Path.of(stateFile), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journal.dropRotated();
+            logger.info("Full crawler state saved successfully ({} URLs, {} visited)", fullState.urlQueue.size(), fullState.visitedFingerprints.length);
+        } catch (IOException e) {
+            logger.error("Failed to replace crawler state snapshot: {}", e.getMessage());
         }
     }
 
     /**
-     * Restores the crawler state from disk
+     * Restores the crawler state from disk: the last snapshot, then every journaled change made after it
      *
      * @return true if state was successfully restored, false otherwise
      */
-    @SuppressWarnings("unchecked")
     public boolean restoreState() {
-        File stateFile = new File(STATE_FILE);
+        File snapshot = new File(stateFile);
 
-        if (!stateFile.exists()) {
+        if (!snapshot.exists() && !journal.exists()) {
             logger.info("No previous state found, starting fresh crawl");
             return false;
         }
 
-        try (FileInputStream fis = new FileInputStream(STATE_FILE);
-             ObjectInputStream ois = new ObjectInputStream(fis)) {
+        try {
+            long start = System.currentTimeMillis();
+            Set<String> queue = new LinkedHashSet<>();
+            visitedURLSet.clear();
+
+            if (snapshot.exists()) {
+                try (FileInputStream fis = new FileInputStream(snapshot);
+                     ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(fis))) {
+                    CrawlerState fullState = (CrawlerState) ois.readObject();
+                    currentPage.set(fullState.getCurrentPage());
+                    queue.addAll(fullState.getUrlQueue());
+                    visitedURLSet.addAll(fullState.getVisitedFingerprints());
+                }
+            }
+
+            long replayed = journal.replay(new CrawlJournal.Replay() {
+                @Override
+                public void enqueued(String url) {
+                    visitedURLSet.add(url);
+                    queue.add(url);
+                }
 
-            CrawlerState fullState = (CrawlerState) ois.readObject();
-            currentPage.set(fullState.getCurrentPage());
+                @Override
+                public void dequeued(String url) {
+                    queue.remove(url);
+                }
 
-            urlQueue.clear();
-            urlQueue.addAll(fullState.getUrlQueue());
+                @Override
+                public void visited(long fingerprint) {
+                    visitedURLSet.addFingerprint(fingerprint);
+                }
 
-            visitedURLSet.clear();
-            visitedURLSet.putAll(fullState.getVisitedURLs());
+                @Override
+                public void pages(int count) {
+                    currentPage.set(Math.max(currentPage.get(), count));
+                }
+            });
 
-            logger.info("Restored crawler state: {} pages, {} queued URLs, {} visited URLs",
-                    currentPage.get(), urlQueue.size(), visitedURLSet.size());
+            frontier.clear();
+            for (String url : queue) {
+                // The cash is not checkpointed, the resumed crawl starts from its queue like from seeds
+                frontier.add(url, importance == null ? 0 : importance.seed(url));
+            }
+
+            logger.info("Restored crawler state: {} pages, {} queued URLs, {} visited URLs ({} journal records replayed in {} ms)",
+                    currentPage.get(), frontier.size(), visitedURLSet.size(), replayed, System.currentTimeMillis() - start);
 
             return true;
 
         } catch (Exception e) {
             logger.error("Failed to restore crawler state: {}", e.getMessage());
+            // Start over cleanly instead of appending to a journal that belongs to an unreadable snapshot
+            try {
+                journal.delete();
+                if (snapshot.exists()) {
+                    Files.move(snapshot.toPath(), Path.of(stateFile + ".unreadable"), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException ex) {
+                logger.error("Failed to set aside unreadable crawler state: {}", ex.getMessage());
+            }
+            currentPage.set(0);
+            visitedURLSet.clear();
+            frontier.clear();
             return false;
         }
     }
@@ -435,16 +1007,17 @@ public class Crawler implements Runnable {
      * Serializable class to store crawler state
      */
     private static class CrawlerState implements Serializable {
-        private static final long serialVersionUID = 1L;
+        // 2: visited URLs are stored as fingerprints instead of a HashMap of strings
+        private static final long serialVersionUID = 2L;
         @Setter
         private int currentPage;
         private List<String> urlQueue;
-        private HashMap<String, Boolean> visitedURLs;
+        private long[] visitedFingerprints;
 
-        public CrawlerState(int currentPage, List<String> urlQueue, HashMap<String, Boolean> visitedURLs) {
+        public CrawlerState(int currentPage, List<String> urlQueue, long[] visitedFingerprints) {
             this.currentPage = currentPage;
             this.urlQueue = urlQueue;
-            this.visitedURLs = visitedURLs;
+            this.visitedFingerprints = visitedFingerprints;
         }
 
         public int getCurrentPage() {
@@ -455,8 +1028,8 @@ public class Crawler implements Runnable {
             return urlQueue;
         }
 
-        public HashMap<String, Boolean> getVisitedURLs() {
-            return visitedURLs;
+        public long[] getVisitedFingerprints() {
+            return visitedFingerprints;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,173 @@
+package cu.searchengine.Crawler;
+
+import cu.searchengine.Indexer.IndexingPipeline;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Micrometer meters for every crawler stage, published on /actuator/metrics.
+ * <p>
+ * Fetch latency is a timer tagged with host and status class (2xx, 3xx, 4xx, 5xx or error) with a
+ * percentile histogram; the number of distinct host tags is capped by the filter in
+ * {@link cu.searchengine.config.MetricsConfig}, hosts past the cap are not recorded per host. Queue depths and
+ * cache sizes are gauges read from the crawler's own structures when the endpoint is scraped.
+ */
+@Component
+public class CrawlerMetrics {
+    static final String FETCH = "crawler.fetch";
+
+    private final MeterRegistry registry;
+    private final Counter pages;
+    private final Timer parse;
+    private final DistributionSummary downloaded;
+    private final Timer flush;
+    private final Timer checkpoint;
+    private final RateWindow pageRate = new RateWindow(60);
+
+    public CrawlerMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.pages = Counter.builder("crawler.pages").description("Pages stored").register(registry);
+        this.parse = Timer.builder("crawler.parse").description("HTML parsing and field extraction per page").register(registry);
+        this.downloaded = DistributionSummary.builder("crawler.download.size").baseUnit("bytes")
+                .description("Response body size").register(registry);
+        this.flush = Timer.builder("crawler.buffer.flush").description("Bulk insert of buffered pages").register(registry);
+        this.checkpoint = Timer.builder("crawler.checkpoint").description("Journal sync or snapshot").register(registry);
+        Gauge.builder("crawler.pages.rate", pageRate, RateWindow::perSecond).baseUnit("pages/s")
+                .description("Pages stored per second over the last minute").register(registry);
+    }
+
+    // Gauges over the crawler's state, bound once by the crawler that owns it
+    void bind(Frontier frontier, VisitedUrlSet visited, Collection<?> buffer, RobotsTxtParser robots,
+              CrawlerNetwork network, NearDuplicateIndex nearDuplicates, IndexingPipeline pipeline) {
+        Gauge.builder("crawler.frontier.size", frontier, Frontier::size).description("URLs waiting to be fetched").register(registry);
+        Gauge.builder("crawler.frontier.hosts", frontier, Frontier::hostCount).register(registry);
+        Gauge.builder("crawler.frontier.inflight", frontier, Frontier::inFlight).register(registry);
+        Gauge.builder("crawler.frontier.spilled", frontier, Frontier::spilledCount).description("Queued URLs held on disk").register(registry);
+        Gauge.builder("crawler.visited.size", visited, VisitedUrlSet::size).register(registry);
+        Gauge.builder("crawler.visited.memory", visited, VisitedUrlSet::memoryBytes).baseUnit("bytes").register(registry);
+        Gauge.builder("crawler.buffer.size", buffer, Collection::size).description("Pages waiting for the next flush").register(registry);
+
+        FunctionCounter.builder("crawler.robots.cache", robots, RobotsTxtParser::getCacheHitCount).tag("result", "hit").register(registry);
+        FunctionCounter.builder("crawler.robots.cache", robots, RobotsTxtParser::getCacheMissCount).tag("result", "miss").register(registry);
+        Gauge.builder("crawler.robots.hosts", robots, RobotsTxtParser::getCachedHostsCount).register(registry);
+
+        DnsCache dns = network.getDnsCache();
+        Gauge.builder("crawler.dns.size", dns, DnsCache::size).register(registry);
+        Gauge.builder("crawler.dns.hit.ratio", dns, DnsCache::getHitRate).register(registry);
+        FunctionCounter.builder("crawler.dns.lookups", dns, DnsCache::getLookupCount).register(registry);
+        Gauge.builder("crawler.connections.reuse.ratio", network, CrawlerNetwork::getReuseRate).register(registry);
+
+        Gauge.builder("crawler.nearduplicates.ratio", nearDuplicates, NearDuplicateIndex::getDuplicateRate).register(registry);
+        FunctionCounter.builder("crawler.nearduplicates", nearDuplicates, NearDuplicateIndex::getDuplicateCount).register(registry);
+
+        if (pipeline.isEnabled()) {
+            Gauge.builder("crawler.pipeline.queue", pipeline, IndexingPipeline::getQueueSize).register(registry);
+            FunctionCounter.builder("crawler.pipeline.indexed", pipeline, IndexingPipeline::getIndexedCount).register(registry);
+            FunctionCounter.builder("crawler.pipeline.failed", pipeline, IndexingPipeline::getFailedCount).register(registry);
+            Gauge.builder("crawler.pipeline.latency", pipeline, IndexingPipeline::getAverageLatencyMillis).baseUnit("milliseconds")
+                    .description("Mean time from fetch to searchable").register(registry);
+        }
+    }
+
+    void bindHostController(HostConcurrencyController controller) {
+        Gauge.builder("crawler.hosts.suspended", controller, HostConcurrencyController::getSuspendedHostCount)
+                .description("Hosts paused for being slow or asking for a break").register(registry);
+        FunctionCounter.builder("crawler.hosts.backoffs", controller, HostConcurrencyController::getBackoffCount).register(registry);
+        FunctionCounter.builder("crawler.hosts.suspensions", controller, HostConcurrencyController::getSuspensionCount).register(registry);
+    }
+
+    void bindRecrawler(RecrawlScheduler recrawler) {
+        FunctionCounter.builder("crawler.recrawl", recrawler, RecrawlScheduler::getChangedCount).tag("result", "changed").register(registry);
+        FunctionCounter.builder("crawler.recrawl", recrawler, RecrawlScheduler::getUnchangedCount).tag("result", "unchanged").register(registry);
+        FunctionCounter.builder("crawler.recrawl", recrawler, RecrawlScheduler::getFailedCount).tag("result", "failed").register(registry);
+    }
+
+    /**
+     * Records one page fetch.
+     *
+     * @param status HTTP status, or -1 if the request failed without a response
+     */
+    void recordFetch(String url, int status, long nanos, long bytes) {
+        String host = Frontier.hostOf(url);
+        Timer.builder(FETCH)
+                .tag("host", host == null ? "unknown" : host)
+                .tag("status", statusClass(status))
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(10))
+                .maximumExpectedValue(Duration.ofMillis(Crawler.GLOBAL_TIMEOUT * 3L))
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (bytes > 0) downloaded.record(bytes);
+    }
+
+    void recordParse(long nanos) {
+        parse.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordPage() {
+        pages.increment();
+        pageRate.increment();
+    }
+
+    // A successful response that was dropped or cut off instead of parsed
+    void recordSkipped(HttpFetcher.SkipReason reason) {
+        Counter.builder("crawler.fetch.skipped").tag("reason", reason.name().toLowerCase(Locale.ROOT)).register(registry).increment();
+    }
+
+    void recordFlush(long nanos) {
+        flush.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordCheckpoint(long nanos) {
+        checkpoint.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    static String statusClass(int status) {
+        if (status < 100 || status > 599) return "error";
+        return (status / 100) + "xx";
+    }
+
+    // Events per second over a sliding window of one-second buckets
+    static class RateWindow {
+        private final int seconds;
+        private final AtomicLongArray counts;
+        private final AtomicLongArray bucketSecond;
+
+        RateWindow(int seconds) {
+            this.seconds = seconds;
+            this.counts = new AtomicLongArray(seconds);
+            this.bucketSecond = new AtomicLongArray(seconds);
+        }
+
+        void increment() {
+            long now = System.currentTimeMillis() / 1000;
+            int bucket = (int) (now % seconds);
+            long owner = bucketSecond.get(bucket);
+            // The first event of a new second takes the bucket over from the one a window ago
+            if (owner != now && bucketSecond.compareAndSet(bucket, owner, now)) {
+                counts.set(bucket, 0);
+            }
+            counts.incrementAndGet(bucket);
+        }
+
+        double perSecond() {
+            long now = System.currentTimeMillis() / 1000;
+            long total = 0;
+            for (int i = 0; i < seconds; i++) {
+                if (now - bucketSecond.get(i) < seconds) total += counts.get(i);
+            }
+            return (double) total / seconds;
+        }
+    }
+}
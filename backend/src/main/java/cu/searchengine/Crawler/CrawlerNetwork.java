@@ -0,0 +1,167 @@
+package cu.searchengine.Crawler;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import javax.net.ssl.SSLSession;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Network layer shared by page fetches and robots.txt loads.
+ * <p>
+ * Everything goes through one HttpClient, whose connection pool keeps connections to each host alive
+ * between requests (HTTP/1.1 keep-alive, or a single multiplexed HTTP/2 connection), so robots.txt and the
+ * pages of a host share TCP and TLS setup. Connections per host are bounded by the frontier's in-flight
+ * limit. Host names are checked against a {@link DnsCache} before anything is sent, so hosts that don't
+ * resolve are skipped without a connection attempt.
+ * <p>
+ * The JDK client exposes no pool statistics, so connection reuse is estimated per host from the TLS
+ * sessions seen on responses: a response on a session already seen for that host came over a reused
+ * connection. Plain http responses are counted as requests but not in the reuse rate.
+ */
+public class CrawlerNetwork {
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10_000;
+    private static final long MAX_TRACKED_HOSTS = 10_000;
+    // Recent sessions remembered per host, more than the connections the frontier allows to one host
+    private static final int MAX_SESSIONS_PER_HOST = 64;
+
+    private final HttpClient client;
+    private final DnsCache dnsCache;
+    private final Cache<String, HostConnections> connectionsByHost;
+
+    public CrawlerNetwork() {
+        this(new DnsCache(), DEFAULT_CONNECT_TIMEOUT_MILLIS);
+    }
+
+    public CrawlerNetwork(DnsCache dnsCache, int connectTimeoutMillis) {
+        this.dnsCache = dnsCache;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .build();
+        this.connectionsByHost = CacheBuilder.newBuilder().maximumSize(MAX_TRACKED_HOSTS).build();
+    }
+
+    public HttpClient client() {
+        return client;
+    }
+
+    public DnsCache getDnsCache() {
+        return dnsCache;
+    }
+
+    // Accepts a host with or without a port, as returned by Frontier.hostOf. May block on a DNS lookup
+    public boolean isResolvable(String host) {
+        return host != null && dnsCache.isResolvable(stripPort(host));
+    }
+
+    // Non-blocking variant for the async dispatcher, only hosts that recently failed to resolve are rejected
+    public boolean isKnownUnresolvable(String host) {
+        return host == null || dnsCache.isKnownUnresolvable(stripPort(host));
+    }
+
+    private static String stripPort(String host) {
+        int colon = host.lastIndexOf(':');
+        return colon > 0 && host.indexOf(']') < colon ? host.substring(0, colon) : host;
+    }
+
+    // Called with every response received through the shared client
+    public void recordResponse(HttpResponse<?> response) {
+        String host = response.uri().getHost();
+        if (host == null) return;
+        try {
+            connectionsByHost.get(host, HostConnections::new).record(response.sslSession());
+        } catch (ExecutionException e) {
+            // HostConnections::new does not throw
+        }
+    }
+
+    // Estimated share of TLS requests served on an already open connection, over all hosts
+    public double getReuseRate() {
+        long requests = 0;
+        long connections = 0;
+        for (HostConnections host : connectionsByHost.asMap().values()) {
+            synchronized (host) {
+                requests += host.tlsRequests;
+                connections += host.connections;
+            }
+        }
+        return requests == 0 ? 0 : 1 - (double) connections / requests;
+    }
+
+    // Hosts with the most requests, for reporting
+    public List<HostStats> getBusiestHosts(int limit) {
+        List<HostStats> stats = new ArrayList<>();
+        connectionsByHost.asMap().forEach((host, connections) -> stats.add(connections.snapshot(host)));
+        stats.sort(Comparator.comparingLong(HostStats::getRequests).reversed());
+        return stats.subList(0, Math.min(limit, stats.size()));
+    }
+
+    private static class HostConnections {
+        long requests;
+        long tlsRequests;
+        long connections;
+        final Set<String> sessions = new LinkedHashSet<>();
+
+        synchronized void record(Optional<SSLSession> sslSession) {
+            requests++;
+            if (sslSession.isEmpty() || sslSession.get().getId().length == 0) return;
+            tlsRequests++;
+            // The client wraps the session in a new object per response, its id and creation time identify it
+            SSLSession session = sslSession.get();
+            String key = HexFormat.of().formatHex(session.getId()) + '@' + session.getCreationTime();
+            if (sessions.add(key)) {
+                connections++;
+                if (sessions.size() > MAX_SESSIONS_PER_HOST) {
+                    sessions.remove(sessions.iterator().next());
+                }
+            }
+        }
+
+        synchronized HostStats snapshot(String host) {
+            return new HostStats(host, requests, tlsRequests, connections);
+        }
+    }
+
+    public static class HostStats {
+        private final String host;
+        private final long requests;
+        private final long tlsRequests;
+        private final long connections;
+
+        HostStats(String host, long requests, long tlsRequests, long connections) {
+            this.host = host;
+            this.requests = requests;
+            this.tlsRequests = tlsRequests;
+            this.connections = connections;
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        // TLS connections opened, estimated from distinct sessions
+        public long getConnections() {
+            return connections;
+        }
+
+        public double getReuseRate() {
+            return tlsRequests == 0 ? 0 : 1 - (double) connections / tlsRequests;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package cu.searchengine.Crawler;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded host name cache shared by every crawler thread.
+ * <p>
+ * Resolved addresses are kept for a TTL and lookups are single-flight, so a burst of links to a new host
+ * costs one DNS query. Names that fail to resolve are remembered for a shorter negative TTL, which lets the
+ * crawler drop every queued URL of a dead host without a connection attempt per URL.
+ */
+public class DnsCache {
+    public static final long DEFAULT_MAX_HOSTS = 100_000;
+    public static final long DEFAULT_TTL_SECONDS = 300;
+    public static final long DEFAULT_NEGATIVE_TTL_SECONDS = 60;
+
+    interface Resolver {
+        InetAddress[] resolve(String host) throws UnknownHostException;
+    }
+
+    private final Cache<String, InetAddress[]> resolved;
+    private final Cache<String, Boolean> unresolvable;
+    private final Resolver resolver;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong negativeHits = new AtomicLong();
+    private final AtomicLong lookups = new AtomicLong();
+
+    public DnsCache() {
+        this(DEFAULT_MAX_HOSTS, DEFAULT_TTL_SECONDS, DEFAULT_NEGATIVE_TTL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public DnsCache(long maxHosts, long ttl, long negativeTtl, TimeUnit unit) {
+        this(maxHosts, ttl, negativeTtl, unit, InetAddress::getAllByName, Ticker.systemTicker());
+    }
+
+    DnsCache(long maxHosts, long ttl, long negativeTtl, TimeUnit unit, Resolver resolver, Ticker ticker) {
+        this.resolved = CacheBuilder.newBuilder().maximumSize(maxHosts).expireAfterWrite(ttl, unit).ticker(ticker).build();
+        this.unresolvable = CacheBuilder.newBuilder().maximumSize(maxHosts).expireAfterWrite(negativeTtl, unit).ticker(ticker).build();
+        this.resolver = resolver;
+    }
+
+    /**
+     * Addresses of a host, from the cache when possible. Blocks while another thread resolves the same host.
+     *
+     * @throws UnknownHostException if the name does not resolve, now or within the negative TTL
+     */
+    public InetAddress[] resolve(String host) throws UnknownHostException {
+        if (unresolvable.getIfPresent(host) != null) {
+            negativeHits.incrementAndGet();
+            throw new UnknownHostException(host + " (cached)");
+        }
+        InetAddress[] addresses = resolved.getIfPresent(host);
+        if (addresses != null) {
+            hits.incrementAndGet();
+            return addresses;
+        }
+        // Callers that waited for another thread's lookup are counted as cache hits
+        boolean[] looked = new boolean[1];
+        try {
+            addresses = resolved.get(host, () -> {
+                looked[0] = true;
+                lookups.incrementAndGet();
+                return resolver.resolve(host);
+            });
+            if (!looked[0]) hits.incrementAndGet();
+            return addresses;
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (!looked[0]) negativeHits.incrementAndGet();
+            unresolvable.put(host, Boolean.TRUE);
+            if (e.getCause() instanceof UnknownHostException unknown) throw unknown;
+            throw new UnknownHostException(host + ": " + e.getCause());
+        }
+    }
+
+    // Never blocks: true only if a recent lookup of the host failed
+    public boolean isKnownUnresolvable(String host) {
+        return unresolvable.getIfPresent(host) != null;
+    }
+
+    // False for names that don't resolve, without throwing
+    public boolean isResolvable(String host) {
+        try {
+            return resolve(host).length > 0;
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    public long size() {
+        return resolved.size();
+    }
+
+    public long getNegativeSize() {
+        return unresolvable.size();
+    }
+
+    // Share of requests answered from the cache, positive or negative
+    public double getHitRate() {
+        long cached = hits.get() + negativeHits.get();
+        long total = cached + lookups.get();
+        return total == 0 ? 0 : (double) cached / total;
+    }
+
+    public long getLookupCount() {
+        return lookups.get();
+    }
+}
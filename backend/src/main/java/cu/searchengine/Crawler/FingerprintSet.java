@@ -0,0 +1,176 @@
+package cu.searchengine.Crawler;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrent set of non-zero 64-bit fingerprints in an open-addressing table of primitive longs.
+ * <p>
+ * Inserts and lookups are lock-free: a slot is claimed with a single CAS from EMPTY to the fingerprint and
+ * collisions are resolved by linear probing. When the table passes its load factor one thread migrates
+ * it to a table twice the size. Migration marks every empty slot it passes as MOVED, so an insert that
+ * races with it either lands before the slot is copied or sees MOVED and retries in the new table.
+ * Only the resizing threads take a lock.
+ */
+public class FingerprintSet {
+    private static final long EMPTY = 0;
+    private static final long MOVED = Long.MIN_VALUE;
+    private static final double LOAD_FACTOR = 0.6;
+
+    private volatile AtomicLongArray table;
+    private final AtomicInteger size = new AtomicInteger();
+    private final ReentrantLock resizeLock = new ReentrantLock();
+
+    public FingerprintSet(int expectedSize) {
+        this.table = new AtomicLongArray(capacityFor(expectedSize));
+    }
+
+    /**
+     * Adds the fingerprint if it is not already present.
+     *
+     * @return true if it was added, false if it was already in the set
+     */
+    public boolean add(long fingerprint) {
+        long key = sanitize(fingerprint);
+        while (true) {
+            AtomicLongArray current = table;
+            int mask = current.length() - 1;
+            int index = (int) UrlFingerprint.mix(key) & mask;
+            boolean moved = false;
+
+            for (int probes = 0; probes <= mask; probes++) {
+                long value = current.get(index);
+                if (value == key) return false;
+                if (value == MOVED) {
+                    moved = true;
+                    break;
+                }
+                if (value == EMPTY) {
+                    if (current.compareAndSet(index, EMPTY, key)) {
+                        if (size.incrementAndGet() > current.length() * LOAD_FACTOR) {
+                            resize(current);
+                        }
+                        return true;
+                    }
+                    // Lost the slot to another insert or to the migration, look at it again
+                    continue;
+                }
+                index = (index + 1) & mask;
+            }
+
+            if (moved) {
+                awaitResize(current);
+            } else {
+                resize(current);
+            }
+        }
+    }
+
+    public boolean contains(long fingerprint) {
+        long key = sanitize(fingerprint);
+        while (true) {
+            AtomicLongArray current = table;
+            int mask = current.length() - 1;
+            int index = (int) UrlFingerprint.mix(key) & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                long value = current.get(index);
+                if (value == key) return true;
+                if (value == EMPTY) return false;
+                if (value == MOVED) break;
+                index = (index + 1) & mask;
+            }
+            awaitResize(current);
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public int capacity() {
+        return table.length();
+    }
+
+    // Bytes held by the table itself
+    public long memoryBytes() {
+        return (long) table.length() * Long.BYTES;
+    }
+
+    public long[] toArray() {
+        resizeLock.lock();
+        try {
+            AtomicLongArray current = table;
+            long[] values = new long[size.get()];
+            int n = 0;
+            for (int i = 0; i < current.length() && n < values.length; i++) {
+                long value = current.get(i);
+                if (value != EMPTY && value != MOVED) values[n++] = value;
+            }
+            return n == values.length ? values : java.util.Arrays.copyOf(values, n);
+        } finally {
+            resizeLock.unlock();
+        }
+    }
+
+    public void clear() {
+        resizeLock.lock();
+        try {
+            table = new AtomicLongArray(table.length());
+            size.set(0);
+        } finally {
+            resizeLock.unlock();
+        }
+    }
+
+    private void resize(AtomicLongArray old) {
+        resizeLock.lock();
+        try {
+            if (table != old) return; // Someone else already grew it
+
+            AtomicLongArray grown = new AtomicLongArray(old.length() * 2);
+            int mask = grown.length() - 1;
+            for (int i = 0; i < old.length(); i++) {
+                long value;
+                // Close empty slots so late inserts go to the new table, copy everything else
+                while ((value = old.get(i)) == EMPTY && !old.compareAndSet(i, EMPTY, MOVED)) {
+                    Thread.onSpinWait();
+                }
+                if (value == EMPTY) continue;
+
+                int index = (int) UrlFingerprint.mix(value) & mask;
+                while (grown.get(index) != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                grown.set(index, value);
+            }
+            table = grown;
+        } finally {
+            resizeLock.unlock();
+        }
+    }
+
+    private void awaitResize(AtomicLongArray old) {
+        while (table == old) {
+            if (!resizeLock.isLocked()) {
+                // The table filled up without anyone resizing yet
+                resize(old);
+                return;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    // EMPTY and MOVED are reserved markers
+    private static long sanitize(long fingerprint) {
+        if (fingerprint == EMPTY) return 1;
+        if (fingerprint == MOVED) return 2;
+        return fingerprint;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long needed = (long) Math.ceil(Math.max(16, expectedSize) / LOAD_FACTOR);
+        long capacity = Long.highestOneBit(needed - 1) << 1;
+        return (int) Math.min(capacity, 1 << 30);
+    }
+}
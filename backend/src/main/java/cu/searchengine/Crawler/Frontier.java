@@ -0,0 +1,559 @@
+package cu.searchengine.Crawler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-host crawl frontier.
+ * <p>
+ * Every host gets its own priority queue of URLs. Hosts that have work are kept in two heaps:
+ * - delayed: hosts waiting for their crawl-delay to pass, ordered by the time they become eligible
+ * - ready: hosts that can be fetched right now, ordered by the priority of their best URL
+ * <p>
+ * Workers block in {@link #take(long, TimeUnit)} until some host is eligible instead of spinning on an
+ * empty queue. Each host has a crawl delay (minimum time between two fetch starts) and a maximum number
+ * of in-flight fetches; a URL handed out by take must be given back with {@link #release(String)}.
+ * <p>
+ * Heap entries are tickets stamped with the host's version, a host is rescheduled by bumping its version
+ * and pushing a new ticket, stale tickets are dropped when they reach the top of a heap. URLs are moved up
+ * the same way by {@link #raisePriority(String, double)}: the old entry is marked stale and skipped when it
+ * comes up, a URL is queued at most once.
+ * <p>
+ * With a {@link FrontierSpill} at most memoryLimit URLs are held in memory. URLs added past that go to
+ * the spill's segment files, and a background thread reads them back once the in-memory part is down to
+ * half the limit. A {@link Listener} sees every URL as it is queued in memory or spilled, so it can be
+ * journaled before it can be handed out.
+ */
+public class Frontier {
+    private static final Logger logger = LoggerFactory.getLogger(Frontier.class);
+
+    static final long DEFAULT_CRAWL_DELAY_MS = 250;
+    static final int DEFAULT_MAX_IN_FLIGHT = 2;
+    private static final int REFILL_BATCH = 10_000;
+    // A raise smaller than this factor isn't worth a new heap entry
+    private static final double RAISE_FACTOR = 1.25;
+
+    private final long defaultCrawlDelayMs;
+    private final int defaultMaxInFlight;
+    private final FrontierSpill spill;
+    private final int memoryLimit;
+    private volatile Listener listener;
+    private ExecutorService refiller;
+    private boolean refilling;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final HashMap<String, HostQueue> hosts = new HashMap<>();
+    private final PriorityQueue<Ticket> delayed = new PriorityQueue<>(Ticket::compareReadyAt);
+    private final PriorityQueue<Ticket> ready = new PriorityQueue<>(Ticket::comparePriority);
+    private long sequence;
+    private int size;
+    private int inFlight;
+
+    public Frontier() {
+        this(DEFAULT_CRAWL_DELAY_MS, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    public Frontier(long defaultCrawlDelayMs, int defaultMaxInFlight) {
+        this(defaultCrawlDelayMs, defaultMaxInFlight, null, Integer.MAX_VALUE);
+    }
+
+    // Keeps at most memoryLimit URLs in memory and the rest in the spill
+    public Frontier(FrontierSpill spill, int memoryLimit) {
+        this(DEFAULT_CRAWL_DELAY_MS, DEFAULT_MAX_IN_FLIGHT, spill, memoryLimit);
+    }
+
+    public Frontier(long defaultCrawlDelayMs, int defaultMaxInFlight, FrontierSpill spill, int memoryLimit) {
+        this.defaultCrawlDelayMs = defaultCrawlDelayMs;
+        this.defaultMaxInFlight = defaultMaxInFlight;
+        this.spill = spill;
+        this.memoryLimit = Math.max(1, memoryLimit);
+    }
+
+    public interface Listener {
+        // Before the URL can be handed out, for URLs added to memory and URLs read back from the spill
+        void queued(String url);
+
+        // After the URL was written to the spill
+        void spilled(String url);
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public boolean add(String url) {
+        return add(url, 0);
+    }
+
+    /**
+     * Higher priority URLs of a host are fetched first, equal priorities keep insertion order.
+     *
+     * @return true if the URL is held in memory, false if it went to the spill or has no host
+     */
+    public boolean add(String url, double priority) {
+        String host = hostOf(url);
+        if (host == null) return false;
+
+        boolean full;
+        lock.lock();
+        try {
+            full = spill != null && size >= memoryLimit;
+        } finally {
+            lock.unlock();
+        }
+        // Concurrent adds may overshoot the limit by a few URLs, the spill is written outside the lock
+        if (full && spill.append(url, priority)) {
+            Listener current = listener;
+            if (current != null) current.spilled(url);
+            return false;
+        }
+
+        Listener current = listener;
+        if (current != null) current.queued(url);
+        lock.lock();
+        try {
+            insert(host, url, priority, System.currentTimeMillis());
+        } finally {
+            lock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Moves a URL queued in memory up to a higher priority, e.g. when more pages link to it.
+     *
+     * @return false if the URL is not queued in memory or the raise is too small to matter
+     */
+    public boolean raisePriority(String url, double priority) {
+        String host = hostOf(url);
+        if (host == null) return false;
+
+        lock.lock();
+        try {
+            HostQueue hostQueue = hosts.get(host);
+            if (hostQueue == null) return false;
+            Entry entry = hostQueue.queued.get(url);
+            if (entry == null || priority < entry.priority * RAISE_FACTOR || priority <= entry.priority) return false;
+            // Keeps its place among URLs of the same priority
+            replace(hostQueue, entry, new Entry(url, priority, entry.sequence));
+            schedule(hostQueue, System.currentTimeMillis());
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void addAll(Collection<String> urls) {
+        for (String url : urls) {
+            add(url);
+        }
+    }
+
+    /**
+     * Returns the best URL of an eligible host without waiting, or null if no host is eligible right now.
+     */
+    public String poll() {
+        lock.lock();
+        try {
+            return next(System.currentTimeMillis());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits up to the given timeout for a host to become eligible.
+     *
+     * @return the URL to fetch, or null if the timeout elapsed first
+     */
+    public String take(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                long now = System.currentTimeMillis();
+                String url = next(now);
+                if (url != null) {
+                    // Pass the wake-up on if more hosts are ready
+                    if (!ready.isEmpty()) available.signal();
+                    return url;
+                }
+                if (remaining <= 0) return null;
+
+                long wait = remaining;
+                Ticket head = peekValid(delayed);
+                if (head != null) {
+                    wait = Math.min(wait, TimeUnit.MILLISECONDS.toNanos(Math.max(1, head.readyAt - now)));
+                }
+                long waited = wait - available.awaitNanos(wait);
+                remaining -= waited;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks a fetch handed out by {@link #poll()} or {@link #take(long, TimeUnit)} as finished.
+     */
+    public void release(String url) {
+        String host = hostOf(url);
+        if (host == null) return;
+
+        lock.lock();
+        try {
+            HostQueue hostQueue = hosts.get(host);
+            if (hostQueue == null || hostQueue.inFlight == 0) return;
+            hostQueue.inFlight--;
+            inFlight--;
+            schedule(hostQueue, System.currentTimeMillis());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Minimum time between two fetch starts on this host (e.g. robots.txt Crawl-delay)
+    public void setCrawlDelay(String host, long delayMs) {
+        lock.lock();
+        try {
+            hosts.computeIfAbsent(host, HostQueue::new).crawlDelayMs = Math.max(0, delayMs);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void setMaxInFlight(String host, int maxInFlight) {
+        lock.lock();
+        try {
+            HostQueue hostQueue = hosts.computeIfAbsent(host, HostQueue::new);
+            hostQueue.maxInFlight = Math.max(1, maxInFlight);
+            schedule(hostQueue, System.currentTimeMillis());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Hands out nothing from this host before the given time, fetches already running are not affected
+    public void pauseHost(String host, long untilMillis) {
+        lock.lock();
+        try {
+            HostQueue hostQueue = hosts.computeIfAbsent(host, HostQueue::new);
+            hostQueue.readyAt = Math.max(hostQueue.readyAt, untilMillis);
+            schedule(hostQueue, System.currentTimeMillis());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Number of queued URLs, spilled ones included, not counting the ones currently being fetched
+    public long size() {
+        lock.lock();
+        try {
+            return size + spilledCount();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long spilledCount() {
+        return spill == null ? 0 : spill.size();
+    }
+
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int hostCount() {
+        lock.lock();
+        try {
+            return hosts.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // Nothing queued and nothing being fetched, so no new URLs can show up anymore
+    public boolean isExhausted() {
+        lock.lock();
+        try {
+            return size == 0 && inFlight == 0 && !refilling && spilledCount() == 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Copy of every URL queued in memory, used for checkpointing. Spilled URLs are checkpointed by the spill.
+    public List<String> snapshot() {
+        lock.lock();
+        try {
+            List<String> urls = new ArrayList<>(size);
+            for (HostQueue hostQueue : hosts.values()) {
+                for (Entry entry : hostQueue.entries) {
+                    if (!entry.stale) urls.add(entry.url);
+                }
+            }
+            return urls;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Drops the URLs held in memory, spilled ones stay on disk
+    public void clear() {
+        lock.lock();
+        try {
+            hosts.clear();
+            delayed.clear();
+            ready.clear();
+            size = 0;
+            inFlight = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Must hold lock
+    private String next(long now) {
+        if (spill != null && size <= memoryLimit / 2) requestRefill();
+
+        // Move every host whose crawl delay has passed to the ready heap
+        Ticket ticket;
+        while ((ticket = peekValid(delayed)) != null && ticket.readyAt <= now) {
+            delayed.poll();
+            ticket.hostQueue.version++;
+            pushReady(ticket.hostQueue);
+        }
+
+        ticket = peekValid(ready);
+        if (ticket == null) return null;
+        ready.poll();
+
+        HostQueue hostQueue = ticket.hostQueue;
+        // The ticket was pushed with a live head
+        Entry entry = hostQueue.entries.poll();
+        hostQueue.queued.remove(entry.url);
+        size--;
+        hostQueue.inFlight++;
+        inFlight++;
+        hostQueue.readyAt = now + hostQueue.crawlDelayMs;
+        schedule(hostQueue, now);
+        return entry.url;
+    }
+
+    // Must hold lock
+    private void insert(String host, String url, double priority, long now) {
+        HostQueue hostQueue = hosts.computeIfAbsent(host, HostQueue::new);
+        Entry queued = hostQueue.queued.get(url);
+        if (queued != null) {
+            // Already queued, e.g. a retry of a URL read back from the spill: keep the higher priority
+            if (priority > queued.priority) replace(hostQueue, queued, new Entry(url, priority, queued.sequence));
+        } else {
+            Entry entry = new Entry(url, priority, sequence++);
+            hostQueue.entries.add(entry);
+            hostQueue.queued.put(url, entry);
+            size++;
+        }
+        // A new head may change the host's rank in the ready heap, so always reschedule
+        schedule(hostQueue, now);
+    }
+
+    // Must hold lock
+    private static void replace(HostQueue hostQueue, Entry old, Entry entry) {
+        old.stale = true;
+        hostQueue.entries.add(entry);
+        hostQueue.queued.put(entry.url, entry);
+    }
+
+    // Must hold lock. Starts reading the spill back on the refill thread unless that is already running.
+    private void requestRefill() {
+        if (refilling || spill.isEmpty()) return;
+        refilling = true;
+        if (refiller == null) {
+            refiller = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "frontier-refill");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        refiller.execute(this::refill);
+    }
+
+    // Reads spilled URLs back in batches until memory is full again or the spill is empty
+    private void refill() {
+        try {
+            while (true) {
+                int room;
+                lock.lock();
+                try {
+                    room = memoryLimit - size;
+                } finally {
+                    lock.unlock();
+                }
+                if (room <= 0 || spill.isEmpty()) break;
+
+                FrontierSpill.Batch batch = spill.read(Math.min(room, REFILL_BATCH));
+                if (batch.urls().isEmpty()) break;
+                Listener current = listener;
+                if (current != null) batch.urls().forEach(current::queued);
+                lock.lock();
+                try {
+                    long now = System.currentTimeMillis();
+                    for (int i = 0; i < batch.urls().size(); i++) {
+                        String url = batch.urls().get(i);
+                        String host = hostOf(url);
+                        if (host != null) insert(host, url, batch.priorities()[i], now);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                // Queued and journaled, a checkpoint may move the spill's cursor past them now
+                spill.commit(batch.end());
+            }
+        } catch (IOException e) {
+            logger.error("Failed to read the frontier spill back: {}", e.getMessage());
+        } finally {
+            lock.lock();
+            try {
+                refilling = false;
+                // Waiting workers re-check isExhausted
+                available.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Must hold lock. Puts the host in the heap matching its state, or nowhere if it has nothing to hand out.
+    private void schedule(HostQueue hostQueue, long now) {
+        hostQueue.version++;
+        Entry head;
+        while ((head = hostQueue.entries.peek()) != null && head.stale) {
+            hostQueue.entries.poll();
+        }
+        if (head == null || hostQueue.inFlight >= hostQueue.maxInFlight) {
+            return;
+        }
+        if (hostQueue.readyAt <= now) {
+            pushReady(hostQueue);
+        } else {
+            delayed.add(new Ticket(hostQueue, hostQueue.version, hostQueue.readyAt, 0, 0));
+        }
+        available.signal();
+    }
+
+    // The head is live, schedule drops stale heads and nothing else changes the entries until it runs again
+    private void pushReady(HostQueue hostQueue) {
+        Entry head = hostQueue.entries.peek();
+        ready.add(new Ticket(hostQueue, hostQueue.version, hostQueue.readyAt, head.priority, head.sequence));
+    }
+
+    private static Ticket peekValid(PriorityQueue<Ticket> heap) {
+        Ticket ticket;
+        while ((ticket = heap.peek()) != null && ticket.version != ticket.hostQueue.version) {
+            heap.poll();
+        }
+        return ticket;
+    }
+
+    /**
+     * Extracts the authority (host and optional port) from an absolute URL without building a URI object.
+     */
+    static String hostOf(String url) {
+        if (url == null) return null;
+        int start = url.indexOf("://");
+        if (start < 0) return null;
+        start += 3;
+        int end = start;
+        while (end < url.length()) {
+            char c = url.charAt(end);
+            if (c == '/' || c == '?' || c == '#') break;
+            end++;
+        }
+        int at = url.lastIndexOf('@', end - 1);
+        if (at >= start) start = at + 1;
+        return end > start ? url.substring(start, end) : null;
+    }
+
+    private class HostQueue {
+        final String host;
+        final PriorityQueue<Entry> entries = new PriorityQueue<>();
+        // The live entry of every URL in entries
+        final HashMap<String, Entry> queued = new HashMap<>();
+        long crawlDelayMs = defaultCrawlDelayMs;
+        int maxInFlight = defaultMaxInFlight;
+        long readyAt;
+        int inFlight;
+        long version;
+
+        HostQueue(String host) {
+            this.host = host;
+        }
+    }
+
+    private static class Entry implements Comparable<Entry> {
+        final String url;
+        final double priority;
+        final long sequence;
+        // Replaced by an entry with a higher priority
+        boolean stale;
+
+        Entry(String url, double priority, long sequence) {
+            this.url = url;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byPriority = Double.compare(other.priority, priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private static class Ticket {
+        final HostQueue hostQueue;
+        final long version;
+        final long readyAt;
+        final double priority;
+        final long sequence;
+
+        Ticket(HostQueue hostQueue, long version, long readyAt, double priority, long sequence) {
+            this.hostQueue = hostQueue;
+            this.version = version;
+            this.readyAt = readyAt;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        static int compareReadyAt(Ticket a, Ticket b) {
+            return Long.compare(a.readyAt, b.readyAt);
+        }
+
+        static int comparePriority(Ticket a, Ticket b) {
+            int byPriority = Double.compare(b.priority, a.priority);
+            return byPriority != 0 ? byPriority : Long.compare(a.sequence, b.sequence);
+        }
+    }
+}
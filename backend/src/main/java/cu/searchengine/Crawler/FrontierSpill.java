@@ -0,0 +1,339 @@
+package cu.searchengine.Crawler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Disk overflow of the {@link Frontier}: URLs that don't fit in memory are appended to sequential segment
+ * files and read back, oldest first, when the in-memory frontier runs low.
+ * <p>
+ * Segments are named frontier-%05d.spill, a record is the URL's priority, its length and its UTF-8 bytes.
+ * Only sealed segments are read; the one being written is sealed when the reader has caught up with it.
+ * A read moves a pending position, {@link #commit(Position)} marks the records up to it as safely
+ * elsewhere (queued in memory and journaled), and {@link #checkpoint(Position)} makes a committed position
+ * durable in the cursor file and deletes the segments before it. After a restart reading resumes from the
+ * last checkpointed cursor, so records read after it are read again: the spill is at-least-once, like the
+ * crawl journal. A record torn by a crash ends its segment.
+ */
+public class FrontierSpill implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(FrontierSpill.class);
+
+    private static final String PREFIX = "frontier-";
+    private static final String SUFFIX = ".spill";
+    private static final String CURSOR = "cursor";
+    private static final int MAX_URL_BYTES = 16 * 1024;
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final AtomicLong size = new AtomicLong();
+
+    // Guarded by this: the segment being written
+    private DataOutputStream out;
+    private FileOutputStream fileStream;
+    private int writeSegment;
+    private long writeOffset;
+
+    // Segments complete on disk and not read to the end yet
+    private final Deque<Integer> sealed = new ConcurrentLinkedDeque<>();
+    // Guarded by readLock, which is always taken before this: the read position
+    private final Object readLock = new Object();
+    private DataInputStream in;
+    private int readSegment = -1;
+    private long readOffset;
+    private volatile Position committed;
+
+    // Where the next record would be read from
+    public record Position(int segment, long offset) {
+    }
+
+    public record Batch(List<String> urls, double[] priorities, Position end) {
+    }
+
+    /**
+     * Opens the spill in dir, picking up where the last checkpoint left off. Records in segments written
+     * before a crash count as spilled, the next append starts a new segment.
+     */
+    public FrontierSpill(Path dir, long segmentBytes) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(dir);
+
+        Position cursor = readCursor();
+        int last = -1;
+        for (int segment : segments()) {
+            last = segment;
+            if (segment < cursor.segment()) {
+                Files.deleteIfExists(segmentPath(segment));
+                continue;
+            }
+            sealed.add(segment);
+            size.addAndGet(countRecords(segment, segment == cursor.segment() ? cursor.offset() : 0));
+        }
+        this.committed = cursor;
+        this.writeSegment = last + 1;
+        if (!sealed.isEmpty()) {
+            logger.info("Frontier spill in {} holds {} URLs in {} segments", dir, size.get(), sealed.size());
+        }
+    }
+
+    /**
+     * Appends a URL to the segment being written.
+     *
+     * @return false if it could not be written, the caller should keep the URL in memory instead
+     */
+    public synchronized boolean append(String url, double priority) {
+        byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_URL_BYTES) return false;
+        try {
+            if (out == null) openWriteSegment();
+            out.writeDouble(priority);
+            out.writeShort(bytes.length);
+            out.write(bytes);
+            writeOffset += 10 + bytes.length;
+            size.incrementAndGet();
+            if (writeOffset >= segmentBytes) seal();
+            return true;
+        } catch (IOException e) {
+            logger.error("Failed to spill frontier URL, keeping it in memory: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Reads up to max records, oldest first, without committing them.
+     *
+     * @return the records read, none if the spill is empty
+     */
+    public Batch read(int max) throws IOException {
+        synchronized (readLock) {
+            List<String> urls = new ArrayList<>(Math.min(max, 4096));
+            double[] priorities = new double[max];
+            while (urls.size() < max) {
+                if (in == null && !openReadSegment()) break;
+                try {
+                    double priority = in.readDouble();
+                    int length = in.readUnsignedShort();
+                    byte[] bytes = in.readNBytes(length);
+                    if (bytes.length < length) throw new EOFException();
+                    priorities[urls.size()] = priority;
+                    urls.add(new String(bytes, StandardCharsets.UTF_8));
+                    readOffset += 10 + length;
+                    size.decrementAndGet();
+                } catch (EOFException e) {
+                    // End of the segment, or a record torn by a crash
+                    closeReadSegment();
+                }
+            }
+            return new Batch(urls, priorities, new Position(readSegment, readOffset));
+        }
+    }
+
+    // The records up to this position are queued in memory and journaled
+    public void commit(Position position) {
+        committed = position;
+    }
+
+    // Committed position to hand to checkpoint once everything journaled before it is synced
+    public Position committed() {
+        return committed;
+    }
+
+    /**
+     * Makes the segment being written durable, records the position as the restart cursor and deletes the
+     * segments read to the end before it.
+     */
+    public void checkpoint(Position position) {
+        synchronized (this) {
+            try {
+                if (out != null) {
+                    out.flush();
+                    fileStream.getFD().sync();
+                }
+            } catch (IOException e) {
+                logger.error("Failed to sync frontier spill: {}", e.getMessage());
+                return;
+            }
+        }
+        try {
+            Path tmp = dir.resolve(CURSOR + ".tmp");
+            Files.writeString(tmp, position.segment() + "\t" + position.offset() + "\n", StandardCharsets.UTF_8);
+            Files.move(tmp, dir.resolve(CURSOR), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            for (int segment : segments()) {
+                if (segment >= position.segment()) break;
+                Files.deleteIfExists(segmentPath(segment));
+            }
+        } catch (IOException e) {
+            logger.error("Failed to checkpoint frontier spill: {}", e.getMessage());
+        }
+    }
+
+    // Spilled URLs not read back yet
+    public long size() {
+        return size.get();
+    }
+
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    // Drops every spilled URL, for a crawl that starts fresh
+    public void deleteAll() throws IOException {
+        synchronized (readLock) {
+            synchronized (this) {
+                closeWriteSegment();
+                closeReadSegment();
+                sealed.clear();
+                for (int segment : segments()) {
+                    Files.deleteIfExists(segmentPath(segment));
+                }
+                Files.deleteIfExists(dir.resolve(CURSOR));
+                size.set(0);
+                writeSegment = 0;
+                readSegment = -1;
+                readOffset = 0;
+                committed = new Position(0, 0);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (readLock) {
+            synchronized (this) {
+                closeWriteSegment();
+                closeReadSegment();
+            }
+        }
+    }
+
+    // Must hold readLock
+    private boolean openReadSegment() throws IOException {
+        if (sealed.isEmpty()) {
+            // Caught up with the writer, seal its segment so it can be read
+            synchronized (this) {
+                if (out == null || writeOffset == 0) return false;
+                seal();
+            }
+        }
+        int segment = sealed.poll();
+        long skip = segment == committed.segment() && readSegment < segment ? committed.offset() : 0;
+        InputStream stream = Files.newInputStream(segmentPath(segment));
+        stream.skipNBytes(skip);
+        in = new DataInputStream(new BufferedInputStream(stream, 64 * 1024));
+        readSegment = segment;
+        readOffset = skip;
+        return true;
+    }
+
+    // Must hold readLock. Position stays at the end of the closed segment until the next one is opened
+    private void closeReadSegment() {
+        if (in == null) return;
+        try {
+            in.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close frontier spill segment: {}", e.getMessage());
+        }
+        in = null;
+        // Everything in this segment is read, resuming here means starting at the next one
+        readSegment++;
+        readOffset = 0;
+    }
+
+    // Must hold this
+    private void openWriteSegment() throws IOException {
+        // Never append to an existing file, its tail may be torn
+        while (Files.exists(segmentPath(writeSegment))) writeSegment++;
+        fileStream = new FileOutputStream(segmentPath(writeSegment).toFile());
+        out = new DataOutputStream(new BufferedOutputStream(fileStream, 64 * 1024));
+        writeOffset = 0;
+    }
+
+    // Must hold this
+    private void seal() throws IOException {
+        int segment = writeSegment;
+        // A sealed segment is never written again, make it durable once
+        out.flush();
+        fileStream.getFD().sync();
+        closeWriteSegment();
+        writeSegment++;
+        sealed.add(segment);
+    }
+
+    // Must hold this
+    private void closeWriteSegment() throws IOException {
+        if (out == null) return;
+        out.close();
+        out = null;
+        fileStream = null;
+    }
+
+    private long countRecords(int segment, long from) throws IOException {
+        long count = 0;
+        try (DataInputStream stream = new DataInputStream(new BufferedInputStream(Files.newInputStream(segmentPath(segment)), 64 * 1024))) {
+            stream.skipNBytes(from);
+            while (true) {
+                stream.readDouble();
+                int length = stream.readUnsignedShort();
+                stream.skipNBytes(length);
+                count++;
+            }
+        } catch (EOFException e) {
+            return count;
+        }
+    }
+
+    private Position readCursor() throws IOException {
+        try {
+            String[] fields = Files.readString(dir.resolve(CURSOR), StandardCharsets.UTF_8).trim().split("\t");
+            return new Position(Integer.parseInt(fields[0]), Long.parseLong(fields[1]));
+        } catch (NoSuchFileException e) {
+            return new Position(0, 0);
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Unreadable frontier spill cursor in " + dir, e);
+        }
+    }
+
+    private List<Integer> segments() throws IOException {
+        try (var files = Files.list(dir)) {
+            return files.map(FrontierSpill::segmentNumber)
+                    .filter(segment -> segment >= 0)
+                    .sorted(Comparator.naturalOrder())
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(int segment) {
+        return dir.resolve(String.format("%s%05d%s", PREFIX, segment, SUFFIX));
+    }
+
+    private static int segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) return -1;
+        try {
+            return Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
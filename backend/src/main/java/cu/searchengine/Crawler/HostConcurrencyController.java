@@ -0,0 +1,236 @@
+package cu.searchengine.Crawler;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import cu.searchengine.config.CrawlerProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adapts each host's parallelism and request rate to how the host copes, with additive increase and
+ * multiplicative decrease (AIMD) as in TCP congestion control.
+ * <p>
+ * A host starts at the frontier's defaults. Each round of healthy responses (as many as the host may have in
+ * flight) adds one fetch of parallelism, up to hostMaxInFlight, and one request per second, up to the rate
+ * its crawl delay allows. A 429, a 5xx, a timeout or a response slower than hostLatencyTargetMillis halves
+ * the parallelism and doubles the delay between fetches. A host whose smoothed latency passes
+ * hostSuspendLatencyMillis, or that asks to be left alone with Retry-After, gets nothing scheduled for a
+ * while; repeated suspensions double the pause. robots.txt Crawl-delay is a floor the delay never goes under.
+ * <p>
+ * Each host also gets its own request timeout, its smoothed latency plus four deviations like a TCP
+ * retransmission timeout, so a host that normally answers in 200 ms doesn't hold a thread for the global
+ * 10 s timeout. The settings are pushed into the {@link Frontier}, which does the actual scheduling.
+ */
+public class HostConcurrencyController {
+    private static final Logger logger = LoggerFactory.getLogger(HostConcurrencyController.class);
+
+    private static final long MAX_TRACKED_HOSTS = 100_000;
+    // Latency samples before a host gets its own timeout
+    private static final int MIN_TIMEOUT_SAMPLES = 5;
+    private static final long MAX_SUSPEND_MILLIS = 10 * 60_000;
+    private static final double LATENCY_GAIN = 0.125;
+    private static final double DEVIATION_GAIN = 0.25;
+
+    private final Frontier frontier;
+    private final boolean enabled;
+    private final int maxInFlight;
+    private final long latencyTargetMillis;
+    private final long suspendLatencyMillis;
+    private final long suspendMillis;
+    private final long minTimeoutMillis;
+    private final long maxTimeoutMillis;
+    private final Cache<String, HostState> states;
+
+    private final AtomicLong backoffs = new AtomicLong();
+    private final AtomicLong suspensions = new AtomicLong();
+
+    public HostConcurrencyController(Frontier frontier, CrawlerProperties properties, long maxTimeoutMillis) {
+        this.frontier = frontier;
+        this.enabled = properties.isAdaptiveThrottling();
+        this.maxInFlight = Math.max(1, properties.getHostMaxInFlight());
+        this.latencyTargetMillis = properties.getHostLatencyTargetMillis();
+        this.suspendLatencyMillis = properties.getHostSuspendLatencyMillis();
+        this.suspendMillis = properties.getHostSuspendMillis();
+        this.minTimeoutMillis = Math.min(properties.getMinFetchTimeoutMillis(), maxTimeoutMillis);
+        this.maxTimeoutMillis = maxTimeoutMillis;
+        this.states = CacheBuilder.newBuilder().maximumSize(MAX_TRACKED_HOSTS).build();
+    }
+
+    // Lowest delay between fetch starts the host allows, from robots.txt
+    public void setMinDelay(String host, long delayMs) {
+        HostState state = state(host);
+        synchronized (state) {
+            state.minDelayMs = Math.max(state.minDelayMs, delayMs);
+            state.delayMs = Math.max(state.delayMs, state.minDelayMs);
+            frontier.setCrawlDelay(host, state.delayMs);
+        }
+    }
+
+    public long timeoutMillis(String host) {
+        if (!enabled || host == null) return maxTimeoutMillis;
+        HostState state = states.getIfPresent(host);
+        if (state == null) return maxTimeoutMillis;
+        synchronized (state) {
+            if (state.samples < MIN_TIMEOUT_SAMPLES) return maxTimeoutMillis;
+            long timeout = (long) (state.latencyMs + 4 * state.deviationMs);
+            return Math.max(minTimeoutMillis, Math.min(maxTimeoutMillis, timeout));
+        }
+    }
+
+    // Any response that says nothing about load: 2xx, 3xx and 4xx other than 429
+    public void onResponse(String host, long latencyMillis) {
+        if (!enabled || host == null) return;
+        HostState state = state(host);
+        synchronized (state) {
+            state.addSample(latencyMillis);
+            if (state.latencyMs > suspendLatencyMillis) {
+                suspend(host, state, 0, "smoothed latency " + (long) state.latencyMs + " ms");
+            } else if (latencyMillis > latencyTargetMillis) {
+                backOff(host, state);
+            } else if (++state.healthy >= state.maxInFlight) {
+                increase(host, state);
+            }
+        }
+    }
+
+    // 429 Too Many Requests or 503 Service Unavailable, with the Retry-After header if there was one
+    public void onThrottled(String host, String retryAfter) {
+        if (!enabled || host == null) return;
+        HostState state = state(host);
+        synchronized (state) {
+            backOff(host, state);
+            long pause = retryAfterMillis(retryAfter, System.currentTimeMillis());
+            if (pause > 0) suspend(host, state, pause, "Retry-After " + retryAfter);
+        }
+    }
+
+    // Other 5xx responses, timeouts and connection failures
+    public void onFailure(String host, boolean timedOut) {
+        if (!enabled || host == null) return;
+        HostState state = state(host);
+        synchronized (state) {
+            // A timeout is a latency sample too, the host was at least this slow
+            if (timedOut) state.addSample(timeoutMillis(host));
+            backOff(host, state);
+            if (timedOut && state.latencyMs > suspendLatencyMillis) {
+                suspend(host, state, 0, "timeouts");
+            }
+        }
+    }
+
+    public long getBackoffCount() {
+        return backoffs.get();
+    }
+
+    public long getSuspensionCount() {
+        return suspensions.get();
+    }
+
+    // Hosts nothing is scheduled for right now
+    public long getSuspendedHostCount() {
+        long now = System.currentTimeMillis();
+        return states.asMap().values().stream().filter(state -> state.suspendedUntil > now).count();
+    }
+
+    private void increase(String host, HostState state) {
+        state.healthy = 0;
+        state.suspensions = 0;
+        if (state.maxInFlight < maxInFlight) {
+            state.maxInFlight++;
+            frontier.setMaxInFlight(host, state.maxInFlight);
+        }
+        if (state.delayMs > state.minDelayMs) {
+            // One more request per second
+            double rate = 1000.0 / state.delayMs + 1;
+            state.delayMs = Math.max(state.minDelayMs, (long) (1000 / rate));
+            frontier.setCrawlDelay(host, state.delayMs);
+        }
+    }
+
+    private void backOff(String host, HostState state) {
+        backoffs.incrementAndGet();
+        state.healthy = 0;
+        state.maxInFlight = Math.max(1, state.maxInFlight / 2);
+        state.delayMs = Math.min(Crawler.MAX_CRAWL_DELAY_MS, Math.max(state.delayMs * 2, state.minDelayMs));
+        frontier.setMaxInFlight(host, state.maxInFlight);
+        frontier.setCrawlDelay(host, state.delayMs);
+    }
+
+    private void suspend(String host, HostState state, long pauseMillis, String reason) {
+        long now = System.currentTimeMillis();
+        if (state.suspendedUntil > now && pauseMillis == 0) return;
+        if (pauseMillis == 0) {
+            pauseMillis = Math.min(MAX_SUSPEND_MILLIS, suspendMillis << Math.min(state.suspensions, 10));
+        }
+        pauseMillis = Math.min(MAX_SUSPEND_MILLIS, pauseMillis);
+        state.suspensions++;
+        state.suspendedUntil = Math.max(state.suspendedUntil, now + pauseMillis);
+        // Start measuring afresh when the host comes back, one fetch at a time
+        state.samples = 0;
+        state.maxInFlight = 1;
+        frontier.setMaxInFlight(host, 1);
+        frontier.pauseHost(host, state.suspendedUntil);
+        suspensions.incrementAndGet();
+        logger.info("Suspending {} for {} ms: {}", host, pauseMillis, reason);
+    }
+
+    /**
+     * Retry-After as a number of seconds or an HTTP date.
+     *
+     * @return milliseconds to wait, 0 if the header is missing or unreadable
+     */
+    static long retryAfterMillis(String retryAfter, long now) {
+        if (retryAfter == null || retryAfter.isBlank()) return 0;
+        String value = retryAfter.trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException e) {
+            // Not a number of seconds, try a date
+        }
+        try {
+            long at = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return Math.max(0, at - now);
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+
+    private HostState state(String host) {
+        try {
+            return states.get(host, HostState::new);
+        } catch (ExecutionException e) {
+            // HostState::new does not throw
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class HostState {
+        long minDelayMs = Frontier.DEFAULT_CRAWL_DELAY_MS;
+        long delayMs = Frontier.DEFAULT_CRAWL_DELAY_MS;
+        int maxInFlight = Frontier.DEFAULT_MAX_IN_FLIGHT;
+        // Healthy responses since the last change
+        int healthy;
+        // Smoothed latency and its mean deviation
+        double latencyMs;
+        double deviationMs;
+        int samples;
+        int suspensions;
+        long suspendedUntil;
+
+        void addSample(long millis) {
+            if (samples++ == 0) {
+                latencyMs = millis;
+                deviationMs = millis / 2.0;
+            } else {
+                deviationMs += DEVIATION_GAIN * (Math.abs(millis - latencyMs) - deviationMs);
+                latencyMs += LATENCY_GAIN * (millis - latencyMs);
+            }
+        }
+    }
+}
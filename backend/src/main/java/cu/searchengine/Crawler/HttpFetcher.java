@@ -0,0 +1,213 @@
+package cu.searchengine.Crawler;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Non-blocking page fetcher built on java.net.http.HttpClient.
+ * <p>
+ * Requests go through the client of a shared {@link CrawlerNetwork}, so connections are kept alive and
+ * reused per host, also across robots.txt loads, and HTTP/2 is negotiated where the server supports it.
+ * The number of requests in flight is capped by a global semaphore: {@link #fetch(String)} blocks the
+ * caller until a slot is free, which is what gives the crawler's dispatcher its backpressure. No thread is
+ * held while the request is on the network.
+ * <p>
+ * Bodies are streamed through a {@link PageBodySubscriber}: only successful HTML responses are kept, decoded
+ * from gzip or deflate on the fly and capped at maxBodyBytes. Other responses are dropped or cut off as soon
+ * as their headers are in, see {@link FetchResult#getSkipReason()}.
+ */
+public class HttpFetcher {
+    private final CrawlerNetwork network;
+    private final Semaphore permits;
+    private final int maxConcurrentFetches;
+    private final String userAgent;
+    private final Duration requestTimeout;
+    private final HttpResponse.BodyHandler<PageBodySubscriber.Body> bodyHandler;
+
+    // Why a successful response has no body to parse
+    public enum SkipReason {
+        NOT_HTML,
+        TOO_LARGE,
+        BAD_ENCODING
+    }
+
+    public HttpFetcher(CrawlerNetwork network, String userAgent, int maxConcurrentFetches, int timeoutMillis, int maxBodyBytes) {
+        this.network = network;
+        this.bodyHandler = PageBodySubscriber.handler(maxBodyBytes);
+        this.userAgent = userAgent;
+        this.maxConcurrentFetches = maxConcurrentFetches;
+        this.permits = new Semaphore(maxConcurrentFetches);
+        this.requestTimeout = Duration.ofMillis(timeoutMillis);
+    }
+
+    /**
+     * Starts a GET request. Blocks only while {@code maxConcurrentFetches} requests are already running.
+     */
+    public CompletableFuture<FetchResult> fetch(String url) throws InterruptedException {
+        return fetch(url, null, null);
+    }
+
+    // Same with a timeout for this request only, e.g. a shorter one for a host known to answer fast
+    public CompletableFuture<FetchResult> fetch(String url, long timeoutMillis) throws InterruptedException {
+        return fetch(url, null, null, Duration.ofMillis(timeoutMillis));
+    }
+
+    /**
+     * Conditional GET: with the validators of the stored copy the server can answer 304 Not Modified
+     * without sending the page again. Either validator may be null.
+     */
+    public CompletableFuture<FetchResult> fetch(String url, String etag, String lastModified) throws InterruptedException {
+        return fetch(url, etag, lastModified, requestTimeout);
+    }
+
+    private CompletableFuture<FetchResult> fetch(String url, String etag, String lastModified, Duration timeout) throws InterruptedException {
+        HttpRequest request;
+        try {
+            request = request(url, etag, lastModified, timeout);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        permits.acquire();
+        try {
+            return network.client().sendAsync(request, bodyHandler)
+                    .thenApply(response -> {
+                        network.recordResponse(response);
+                        return new FetchResult(url, response);
+                    })
+                    .whenComplete((result, error) -> permits.release());
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Blocking GET on the calling thread, for the thread-per-fetch crawl mode. Not counted against
+     * maxConcurrentFetches, the crawler's thread count bounds it.
+     */
+    public FetchResult get(String url) throws IOException, InterruptedException {
+        return get(url, requestTimeout.toMillis());
+    }
+
+    public FetchResult get(String url, long timeoutMillis) throws IOException, InterruptedException {
+        HttpRequest request;
+        try {
+            request = request(url, null, null, Duration.ofMillis(timeoutMillis));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid URL " + url, e);
+        }
+        HttpResponse<PageBodySubscriber.Body> response = network.client().send(request, bodyHandler);
+        network.recordResponse(response);
+        return new FetchResult(url, response);
+    }
+
+    private HttpRequest request(String url, String etag, String lastModified, Duration timeout) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .timeout(timeout)
+                .header("User-Agent", userAgent)
+                .header("Accept", "text/html,application/xhtml+xml;q=0.9,*/*;q=0.5")
+                // No br, the JDK has no Brotli decoder
+                .header("Accept-Encoding", "gzip, deflate")
+                .GET();
+        if (etag != null && !etag.isEmpty()) builder.header("If-None-Match", etag);
+        if (lastModified != null && !lastModified.isEmpty()) builder.header("If-Modified-Since", lastModified);
+        return builder.build();
+    }
+
+    public CrawlerNetwork getNetwork() {
+        return network;
+    }
+
+    public int inFlight() {
+        return maxConcurrentFetches - permits.availablePermits();
+    }
+
+    // HTML or XHTML, or no Content-Type at all and left to the parser to make sense of
+    static boolean isHtml(String contentType) {
+        if (contentType == null || contentType.isBlank()) return true;
+        String type = contentType.trim().toLowerCase(Locale.ROOT);
+        return type.startsWith("text/html") || type.startsWith("application/xhtml+xml");
+    }
+
+    // Charset parameter of a Content-Type header value, null if there is none
+    static String charsetOf(String contentType) {
+        if (contentType == null) return null;
+        int idx = contentType.toLowerCase().indexOf("charset=");
+        if (idx < 0) return null;
+        String charset = contentType.substring(idx + "charset=".length()).trim();
+        int end = charset.indexOf(';');
+        if (end >= 0) charset = charset.substring(0, end);
+        charset = charset.replace("\"", "").trim();
+        return charset.isEmpty() ? null : charset;
+    }
+
+    public static class FetchResult {
+        private final String url;
+        private final HttpResponse<PageBodySubscriber.Body> response;
+
+        FetchResult(String url, HttpResponse<PageBodySubscriber.Body> response) {
+            this.url = url;
+            this.response = response;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        // URL after redirects, used as the base URI of the parsed document
+        public String getFinalUrl() {
+            return response.uri().toString();
+        }
+
+        public int getStatusCode() {
+            return response.statusCode();
+        }
+
+        public boolean isSuccess() {
+            return response.statusCode() >= 200 && response.statusCode() < 300;
+        }
+
+        public boolean isNotModified() {
+            return response.statusCode() == 304;
+        }
+
+        // A successful HTML response whose body was downloaded in full
+        public boolean isParseable() {
+            return isSuccess() && getBody() != null;
+        }
+
+        // Decoded page, null unless the response was a 2xx HTML page within the size limit
+        public byte[] getBody() {
+            return response.body().bytes();
+        }
+
+        // Why a successful response was not kept, null if it was (or if it was not successful)
+        public SkipReason getSkipReason() {
+            return response.body().skipped();
+        }
+
+        public String getHeader(String name) {
+            return response.headers().firstValue(name).orElse(null);
+        }
+
+        // Charset from the Content-Type header, or null to let Jsoup detect it from the page
+        public String getCharset() {
+            return charsetOf(getHeader("Content-Type"));
+        }
+
+        public Document parse() throws IOException {
+            return Jsoup.parse(new ByteArrayInputStream(getBody()), getCharset(), getFinalUrl());
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package cu.searchengine.Crawler;
+
+import cu.searchengine.model.LinkBatch;
+import cu.searchengine.service.LinkExchangeService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A shard's side of the link exchange: outgoing links are buffered per destination shard and sent in
+ * batches, incoming batches are polled and only acknowledged once a checkpoint has made them durable.
+ */
+class LinkExchange {
+    private static final Logger logger = LoggerFactory.getLogger(LinkExchange.class);
+    private static final int MAX_BATCHES_PER_POLL = 20;
+
+    private final ShardRouter router;
+    private final LinkExchangeService service;
+    private final int batchSize;
+    private final List<List<String>> outboxes;
+
+    // Batches added to the frontier but not acknowledged yet, they are skipped by later polls
+    private final Set<String> received = new LinkedHashSet<>();
+    private volatile long lastReceivedAt = System.currentTimeMillis();
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong receivedLinks = new AtomicLong();
+
+    LinkExchange(ShardRouter router, LinkExchangeService service, int batchSize) {
+        this.router = router;
+        this.service = service;
+        this.batchSize = Math.max(1, batchSize);
+        this.outboxes = new ArrayList<>(router.getShardCount());
+        for (int i = 0; i < router.getShardCount(); i++) {
+            outboxes.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Queues a normalized URL for the shard that owns its host.
+     *
+     * @return false if the URL belongs to this shard and was not queued
+     */
+    boolean routeIfRemote(String url) {
+        String host = Frontier.hostOf(url);
+        if (host == null) return false;
+        int shard = router.shardOf(host);
+        if (shard == router.getShardIndex()) return false;
+
+        List<String> full = null;
+        List<String> outbox = outboxes.get(shard);
+        synchronized (outbox) {
+            outbox.add(url);
+            if (outbox.size() >= batchSize) {
+                full = new ArrayList<>(outbox);
+                outbox.clear();
+            }
+        }
+        if (full != null) send(shard, full);
+        return true;
+    }
+
+    // Sends every partly filled outbox
+    void flush() {
+        for (int shard = 0; shard < outboxes.size(); shard++) {
+            List<String> outbox = outboxes.get(shard);
+            List<String> urls;
+            synchronized (outbox) {
+                if (outbox.isEmpty()) continue;
+                urls = new ArrayList<>(outbox);
+                outbox.clear();
+            }
+            send(shard, urls);
+        }
+    }
+
+    private void send(int shard, List<String> urls) {
+        try {
+            service.send(new LinkBatch(shard, router.getShardIndex(), urls));
+            sent.addAndGet(urls.size());
+        } catch (Exception e) {
+            // Keep the links for the next flush rather than losing them
+            logger.warn("Failed to send {} links to shard {}: {}", urls.size(), shard, e.getMessage());
+            List<String> outbox = outboxes.get(shard);
+            synchronized (outbox) {
+                outbox.addAll(urls);
+            }
+        }
+    }
+
+    // Links sent to this shard since the last poll
+    synchronized List<String> poll() {
+        List<String> urls = new ArrayList<>();
+        try {
+            for (LinkBatch batch : service.receive(router.getShardIndex(), received, MAX_BATCHES_PER_POLL)) {
+                received.add(batch.getId());
+                urls.addAll(batch.getUrls());
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to receive links for shard {}: {}", router.getShardIndex(), e.getMessage());
+        }
+        if (!urls.isEmpty()) {
+            lastReceivedAt = System.currentTimeMillis();
+            receivedLinks.addAndGet(urls.size());
+        }
+        return urls;
+    }
+
+    // Called once the links of the polled batches are in a synced checkpoint
+    synchronized void acknowledge() {
+        if (received.isEmpty()) return;
+        try {
+            service.acknowledge(new ArrayList<>(received));
+            received.clear();
+        } catch (Exception e) {
+            logger.warn("Failed to acknowledge {} link batches: {}", received.size(), e.getMessage());
+        }
+    }
+
+    long millisSinceLastReceived() {
+        return System.currentTimeMillis() - lastReceivedAt;
+    }
+
+    long getSentCount() {
+        return sent.get();
+    }
+
+    long getReceivedCount() {
+        return receivedLinks.get();
+    }
+}
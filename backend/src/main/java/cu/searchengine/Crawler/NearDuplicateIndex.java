@@ -0,0 +1,130 @@
+package cu.searchengine.Crawler;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory index of page SimHashes answering "is there a page within k bits of this one?".
+ * <p>
+ * The 64 bits are split into 4 blocks of 16 bits. Two fingerprints at distance k <= 3 must agree on at
+ * least one whole block, so each fingerprint is stored in 4 tables, table t being keyed by block t (the
+ * permuted-table scheme of Manku et al. with the key block rotated to the front). A lookup only compares
+ * against the fingerprints that share one of its blocks, about 4n/65536 of them, instead of all n.
+ */
+public class NearDuplicateIndex {
+    private static final int BLOCKS = 4;
+    private static final int BLOCK_BITS = 16;
+    private static final int BUCKETS = 1 << BLOCK_BITS;
+    public static final int MAX_DISTANCE = BLOCKS - 1;
+
+    private final int maxDistance;
+    // tables[t][block] -> fingerprints sharing block t, with the matching document ids
+    private final long[][][] fingerprints = new long[BLOCKS][BUCKETS][];
+    private final int[][][] documentIds = new int[BLOCKS][BUCKETS][];
+    private final int[][] bucketSizes = new int[BLOCKS][BUCKETS];
+    private int size;
+
+    private final AtomicLong checked = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+
+    public NearDuplicateIndex(int maxDistance) {
+        if (maxDistance < 0 || maxDistance > MAX_DISTANCE) {
+            throw new IllegalArgumentException("maxDistance must be between 0 and " + MAX_DISTANCE);
+        }
+        this.maxDistance = maxDistance;
+    }
+
+    /**
+     * Looks up a near duplicate without recording anything, for checking a page before it has an id.
+     *
+     * @return id of the document this one nearly duplicates, or null if there is none yet
+     */
+    public synchronized Integer find(long simHash) {
+        Integer original = nearest(simHash);
+        if (original != null) {
+            checked.incrementAndGet();
+            duplicates.incrementAndGet();
+        }
+        return original;
+    }
+
+    /**
+     * Looks up a near duplicate and, if there is none, records the fingerprint under the given document id.
+     * Atomic, so of two mirrors processed at the same time exactly one is kept.
+     *
+     * @return id of the document this one nearly duplicates, or null if it is new
+     */
+    public synchronized Integer findOrAdd(long simHash, int documentId) {
+        checked.incrementAndGet();
+        Integer original = nearest(simHash);
+        if (original != null) {
+            duplicates.incrementAndGet();
+            return original;
+        }
+
+        for (int t = 0; t < BLOCKS; t++) {
+            int bucket = block(simHash, t);
+            int count = bucketSizes[t][bucket];
+            if (fingerprints[t][bucket] == null) {
+                fingerprints[t][bucket] = new long[4];
+                documentIds[t][bucket] = new int[4];
+            } else if (count == fingerprints[t][bucket].length) {
+                fingerprints[t][bucket] = Arrays.copyOf(fingerprints[t][bucket], count * 2);
+                documentIds[t][bucket] = Arrays.copyOf(documentIds[t][bucket], count * 2);
+            }
+            fingerprints[t][bucket][count] = simHash;
+            documentIds[t][bucket][count] = documentId;
+            bucketSizes[t][bucket] = count + 1;
+        }
+        size++;
+        return null;
+    }
+
+    // Id of the first fingerprint within maxDistance bits, null if there is none
+    private Integer nearest(long simHash) {
+        for (int t = 0; t < BLOCKS; t++) {
+            int bucket = block(simHash, t);
+            long[] candidates = fingerprints[t][bucket];
+            int count = bucketSizes[t][bucket];
+            for (int i = 0; i < count; i++) {
+                if (SimHash.distance(candidates[i], simHash) <= maxDistance) {
+                    return documentIds[t][bucket][i];
+                }
+            }
+        }
+        return null;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public long getCheckedCount() {
+        return checked.get();
+    }
+
+    public long getDuplicateCount() {
+        return duplicates.get();
+    }
+
+    // Share of checked pages that were near duplicates of an earlier one
+    public double getDuplicateRate() {
+        long total = checked.get();
+        return total == 0 ? 0 : (double) duplicates.get() / total;
+    }
+
+    public synchronized void clear() {
+        for (int t = 0; t < BLOCKS; t++) {
+            Arrays.fill(fingerprints[t], null);
+            Arrays.fill(documentIds[t], null);
+            Arrays.fill(bucketSizes[t], 0);
+        }
+        size = 0;
+        checked.set(0);
+        duplicates.set(0);
+    }
+
+    private static int block(long simHash, int t) {
+        return (int) (simHash >>> (t * BLOCK_BITS)) & (BUCKETS - 1);
+    }
+}
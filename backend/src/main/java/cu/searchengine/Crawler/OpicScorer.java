@@ -0,0 +1,157 @@
+package cu.searchengine.Crawler;
+
+/**
+ * Online page importance estimate for ordering the frontier, after OPIC (Abiteboul et al., "Adaptive
+ * On-Line Page Importance Computation", WWW 2003).
+ * <p>
+ * Every seed starts with one unit of cash. When a page is fetched its cash is spent: it is split evenly over
+ * the page's links and credited to them, fetched or not yet discovered. A URL's cash is what the pages
+ * crawled so far have passed to it, which approximates its PageRank without ever walking the graph, so
+ * fetching the URL with the most cash first spends a page budget on the important pages. Cash of pages
+ * without links is dropped; in OPIC it goes to a virtual page linked from everywhere, which raises every
+ * URL by the same amount and doesn't change the order.
+ * <p>
+ * Cash is kept per URL fingerprint in striped open-addressing tables of primitives, 16 bytes a slot with
+ * at most 60% of the slots used. Fetched URLs keep a marker so links back to them don't credit them again.
+ */
+public class OpicScorer {
+    public static final double SEED_CASH = 1.0;
+
+    private static final int STRIPES = 64;
+    private static final double FETCHED = -1;
+    private static final double LOAD_FACTOR = 0.6;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public OpicScorer() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    // Tops the URL up to a seed's cash, for seeds and for the queued URLs a resumed crawl starts from
+    public double seed(String url) {
+        long key = UrlFingerprint.of(url);
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            double cash = stripe.get(key);
+            if (cash == FETCHED) return 0;
+            cash = Math.max(cash, SEED_CASH);
+            stripe.put(key, cash);
+            return cash;
+        }
+    }
+
+    /**
+     * Adds to the URL's cash.
+     *
+     * @return its cash after the credit, 0 if it has been fetched already
+     */
+    public double credit(String url, double amount) {
+        long key = UrlFingerprint.of(url);
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            double cash = stripe.get(key);
+            if (cash == FETCHED) return 0;
+            cash += amount;
+            stripe.put(key, cash);
+            return cash;
+        }
+    }
+
+    /**
+     * Spends the cash of a fetched page, it is never credited again.
+     *
+     * @return the share of its cash each of its links gets
+     */
+    public double spend(String url, int linkCount) {
+        long key = UrlFingerprint.of(url);
+        Stripe stripe = stripe(key);
+        double cash;
+        synchronized (stripe) {
+            cash = Math.max(0, stripe.get(key));
+            stripe.put(key, FETCHED);
+        }
+        return linkCount > 0 ? cash / linkCount : 0;
+    }
+
+    // Current cash of a URL, 0 if it has none or has been fetched
+    public double cashOf(String url) {
+        long key = UrlFingerprint.of(url);
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            return Math.max(0, stripe.get(key));
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    // Bytes held by the tables
+    public long memoryBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                bytes += (long) stripe.keys.length * (Long.BYTES + Double.BYTES);
+            }
+        }
+        return bytes;
+    }
+
+    private Stripe stripe(long key) {
+        // The top bits pick the stripe, the table index comes from the mixed low bits
+        return stripes[(int) (key >>> 58)];
+    }
+
+    // Linear probing over parallel key and value arrays, 0 marks an empty slot (fingerprints are never 0)
+    private static class Stripe {
+        long[] keys = new long[64];
+        double[] values = new double[64];
+        int size;
+
+        double get(long key) {
+            int mask = keys.length - 1;
+            for (int index = (int) UrlFingerprint.mix(key) & mask; ; index = (index + 1) & mask) {
+                if (keys[index] == key) return values[index];
+                if (keys[index] == 0) return 0;
+            }
+        }
+
+        void put(long key, double value) {
+            int mask = keys.length - 1;
+            int index = (int) UrlFingerprint.mix(key) & mask;
+            while (keys[index] != 0 && keys[index] != key) {
+                index = (index + 1) & mask;
+            }
+            values[index] = value;
+            if (keys[index] == 0) {
+                keys[index] = key;
+                if (++size > keys.length * LOAD_FACTOR) grow();
+            }
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            double[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new double[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == 0) continue;
+                int index = (int) UrlFingerprint.mix(oldKeys[i]) & mask;
+                while (keys[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+}
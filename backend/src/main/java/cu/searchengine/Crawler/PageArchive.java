@@ -0,0 +1,202 @@
+package cu.searchengine.Crawler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Append-only archive of the raw pages the crawler fetched, so pages can be parsed again without a refetch.
+ * <p>
+ * Records are WARC 1.1 response records, each compressed as its own gzip member, so a segment is a valid
+ * .warc.gz file for standard WARC tools and any record can be decompressed on its own from its offset.
+ * Segments roll over once they pass segmentBytes. Next to each segment an .idx file lists every record
+ * as {@code offset <TAB> length <TAB> fetchedAt <TAB> url}, written after the record itself: after a crash a
+ * segment may end with records missing from its index, and readers ignore them.
+ * <p>
+ * A new archive never appends to an existing segment, it starts with the next segment number.
+ */
+public class PageArchive implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(PageArchive.class);
+
+    static final String SEGMENT_PREFIX = "pages-";
+    static final String SEGMENT_SUFFIX = ".warc.gz";
+    static final String INDEX_SUFFIX = ".idx";
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final Path dir;
+    private final long segmentBytes;
+    private int segmentNumber;
+    private FileOutputStream segmentFile;
+    private OutputStream segment;
+    private BufferedWriter index;
+    private long segmentSize;
+
+    private long recordCount;
+    private long bytesWritten;
+
+    public PageArchive(Path dir, long segmentBytes) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.segmentNumber = lastSegmentNumber(dir);
+    }
+
+    /**
+     * Archives one fetched page. Compression runs on the calling thread, only the write is serialized.
+     * Errors are logged, archiving never fails a crawl.
+     */
+    public void append(String url, int status, String contentType, String etag, String lastModified, long fetchedAt, byte[] body) {
+        byte[] record;
+        try {
+            record = compress(url, status, contentType, etag, lastModified, fetchedAt, body);
+        } catch (IOException e) {
+            logger.error("Failed to encode archive record of {}: {}", url, e.getMessage());
+            return;
+        }
+        write(url, fetchedAt, record);
+    }
+
+    public void append(HttpFetcher.FetchResult result) {
+        append(result.getFinalUrl(), result.getStatusCode(), result.getHeader("Content-Type"), result.getHeader("ETag"),
+                result.getHeader("Last-Modified"), System.currentTimeMillis(), result.getBody());
+    }
+
+    private synchronized void write(String url, long fetchedAt, byte[] record) {
+        try {
+            if (segment == null || segmentSize >= segmentBytes) openNextSegment();
+            segment.write(record);
+            index.write(segmentSize + "\t" + record.length + "\t" + fetchedAt + "\t" + url);
+            index.newLine();
+            segmentSize += record.length;
+            bytesWritten += record.length;
+            recordCount++;
+        } catch (IOException e) {
+            logger.error("Failed to archive {}: {}", url, e.getMessage());
+        }
+    }
+
+    // Makes every record appended so far durable, the crawler calls this at each checkpoint
+    public synchronized void flush() {
+        if (segment == null) return;
+        try {
+            segment.flush();
+            segmentFile.getFD().sync();
+            index.flush();
+        } catch (IOException e) {
+            logger.error("Failed to flush page archive: {}", e.getMessage());
+        }
+    }
+
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    // Compressed bytes written by this archive
+    public synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public synchronized void close() {
+        flush();
+        try {
+            closeSegment();
+        } catch (IOException e) {
+            logger.error("Failed to close page archive: {}", e.getMessage());
+        }
+    }
+
+    private void openNextSegment() throws IOException {
+        closeSegment();
+        Files.createDirectories(dir);
+        Path path;
+        do {
+            path = segmentPath(dir, ++segmentNumber);
+        } while (Files.exists(path));
+        segmentFile = new FileOutputStream(path.toFile());
+        segment = new BufferedOutputStream(segmentFile, 1 << 16);
+        index = Files.newBufferedWriter(indexPath(path), StandardCharsets.UTF_8);
+        segmentSize = 0;
+        logger.info("Archiving pages to {}", path);
+    }
+
+    private void closeSegment() throws IOException {
+        if (segment == null) return;
+        segment.close();
+        index.close();
+        segment = null;
+        index = null;
+        segmentFile = null;
+    }
+
+    // WARC response record: WARC headers, then the HTTP status line, headers and body, as one gzip member
+    private static byte[] compress(String url, int status, String contentType, String etag, String lastModified,
+                                   long fetchedAt, byte[] body) throws IOException {
+        StringBuilder http = new StringBuilder(256).append("HTTP/1.1 ").append(status).append("\r\n");
+        if (contentType != null) http.append("Content-Type: ").append(contentType).append("\r\n");
+        if (etag != null) http.append("ETag: ").append(etag).append("\r\n");
+        if (lastModified != null) http.append("Last-Modified: ").append(lastModified).append("\r\n");
+        http.append("Content-Length: ").append(body.length).append("\r\n\r\n");
+        byte[] httpHeader = http.toString().getBytes(StandardCharsets.ISO_8859_1);
+
+        String warcHeader = "WARC/1.1\r\n"
+                + "WARC-Type: response\r\n"
+                + "WARC-Record-ID: <urn:uuid:" + UUID.randomUUID() + ">\r\n"
+                + "WARC-Date: " + Instant.ofEpochMilli(fetchedAt).truncatedTo(ChronoUnit.SECONDS) + "\r\n"
+                + "WARC-Target-URI: " + url + "\r\n"
+                + "Content-Type: application/http;msgtype=response\r\n"
+                + "Content-Length: " + (httpHeader.length + body.length) + "\r\n\r\n";
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 3 + 512);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes, 8192)) {
+            gzip.write(warcHeader.getBytes(StandardCharsets.UTF_8));
+            gzip.write(httpHeader);
+            gzip.write(body);
+            gzip.write(CRLF);
+            gzip.write(CRLF);
+        }
+        return bytes.toByteArray();
+    }
+
+    static Path segmentPath(Path dir, int number) {
+        return dir.resolve(String.format("%s%05d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    static Path indexPath(Path segment) {
+        return segment.resolveSibling(segment.getFileName() + INDEX_SUFFIX);
+    }
+
+    // Number of a segment file, -1 for other files
+    static int segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) return -1;
+        try {
+            return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int lastSegmentNumber(Path dir) {
+        if (!Files.isDirectory(dir)) return 0;
+        try (var files = Files.list(dir)) {
+            return files.mapToInt(PageArchive::segmentNumber).max().orElse(0);
+        } catch (IOException e) {
+            logger.error("Failed to list page archive {}: {}", dir, e.getMessage());
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package cu.searchengine.Crawler;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the segments written by {@link PageArchive}.
+ * <p>
+ * Records are located through the segment's .idx file: {@link #scan} reads a segment front to back in one
+ * sequential pass and hands out each record still compressed, so decompressing and parsing can run on other
+ * threads; {@link #read} fetches a single record by offset. Bytes past the last indexed record (a write cut
+ * short by a crash) are never read.
+ */
+public class PageArchiveReader {
+    private static final int MAX_HEADER_BYTES = 64 * 1024;
+
+    private final Path dir;
+
+    public PageArchiveReader(Path dir) {
+        this.dir = dir;
+    }
+
+    // Where a record sits in its segment, as listed in the segment's index
+    public record Entry(Path segment, long offset, int length, long fetchedAt, String url) {
+    }
+
+    public interface RecordConsumer {
+        void accept(Entry entry, byte[] compressed) throws IOException;
+    }
+
+    // Segment files in the order they were written
+    public List<Path> segments() throws IOException {
+        if (!Files.isDirectory(dir)) return List.of();
+        try (var files = Files.list(dir)) {
+            return files.filter(file -> PageArchive.segmentNumber(file) >= 0)
+                    .sorted(Comparator.comparingInt(PageArchive::segmentNumber))
+                    .toList();
+        }
+    }
+
+    public List<Entry> index(Path segment) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(PageArchive.indexPath(segment), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 4);
+                // A torn last line has fewer fields, its record is not complete either
+                if (fields.length < 4) break;
+                entries.add(new Entry(segment, Long.parseLong(fields[0]), Integer.parseInt(fields[1]), Long.parseLong(fields[2]), fields[3]));
+            }
+        } catch (NoSuchFileException e) {
+            return List.of();
+        }
+        return entries;
+    }
+
+    /**
+     * The most recent record of every archived URL, over all segments. Pages that were refetched are
+     * archived once per fetch, a rebuild only wants the last copy.
+     */
+    public Map<String, Entry> latest() throws IOException {
+        Map<String, Entry> latest = new HashMap<>();
+        for (Path segment : segments()) {
+            for (Entry entry : index(segment)) {
+                latest.put(entry.url(), entry);
+            }
+        }
+        return latest;
+    }
+
+    // Reads the indexed records of a segment in file order, in a single sequential pass
+    public void scan(Path segment, RecordConsumer consumer) throws IOException {
+        List<Entry> entries = index(segment);
+        if (entries.isEmpty()) return;
+        try (InputStream in = Files.newInputStream(segment)) {
+            long position = 0;
+            for (Entry entry : entries) {
+                if (entry.offset() < position) throw new StreamCorruptedException("Unordered index of " + segment);
+                in.skipNBytes(entry.offset() - position);
+                byte[] compressed = in.readNBytes(entry.length());
+                if (compressed.length < entry.length()) throw new EOFException("Truncated record of " + entry.url() + " in " + segment);
+                position = entry.offset() + entry.length();
+                consumer.accept(entry, compressed);
+            }
+        }
+    }
+
+    public ArchivedPage read(Entry entry) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(entry.length());
+        try (FileChannel channel = FileChannel.open(entry.segment(), StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, entry.offset() + buffer.position()) < 0) {
+                    throw new EOFException("Truncated record of " + entry.url() + " in " + entry.segment());
+                }
+            }
+        }
+        return decode(buffer.array());
+    }
+
+    /**
+     * Decompresses one record and splits it into the WARC headers, HTTP headers and body.
+     */
+    public static ArchivedPage decode(byte[] compressed) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed), 8192)) {
+            Map<String, String> warc = readHeaders(in);
+            String url = warc.get("warc-target-uri");
+            long contentLength = Long.parseLong(warc.getOrDefault("content-length", "-1"));
+            if (url == null || contentLength < 0) throw new StreamCorruptedException("Not a WARC response record");
+
+            String statusLine = readLine(in);
+            String[] status = statusLine.split(" ", 3);
+            if (status.length < 2 || !status[0].startsWith("HTTP/")) throw new StreamCorruptedException("Bad status line " + statusLine);
+            Map<String, String> http = readHeaders(in);
+            int bodyLength = Integer.parseInt(http.getOrDefault("content-length", "-1"));
+            byte[] body = bodyLength < 0 ? in.readAllBytes() : in.readNBytes(bodyLength);
+            return new ArchivedPage(url, warc.get("warc-date"), Integer.parseInt(status[1]), http.get("content-type"),
+                    http.get("etag"), http.get("last-modified"), body);
+        } catch (NumberFormatException e) {
+            throw new StreamCorruptedException("Bad archive record: " + e.getMessage());
+        }
+    }
+
+    // Header block up to the blank line, names lower-cased
+    private static Map<String, String> readHeaders(InputStream in) throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon > 0) headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+        }
+        return headers;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder(64);
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c < 0) throw new EOFException("Archive record ends inside its headers");
+            if (line.length() > MAX_HEADER_BYTES) throw new StreamCorruptedException("Header line too long");
+            if (c != '\r') line.append((char) c);
+        }
+        return new String(line.toString().getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8);
+    }
+
+    public static class ArchivedPage {
+        private final String url;
+        private final String date;
+        private final int statusCode;
+        private final String contentType;
+        private final String etag;
+        private final String lastModified;
+        private final byte[] body;
+
+        ArchivedPage(String url, String date, int statusCode, String contentType, String etag, String lastModified, byte[] body) {
+            this.url = url;
+            this.date = date;
+            this.statusCode = statusCode;
+            this.contentType = contentType;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.body = body;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        // WARC-Date, ISO 8601 in UTC
+        public String getDate() {
+            return date;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        // Parsed exactly like the live response was
+        public Document parse() throws IOException {
+            return Jsoup.parse(new ByteArrayInputStream(body), HttpFetcher.charsetOf(contentType), url);
+        }
+    }
+}
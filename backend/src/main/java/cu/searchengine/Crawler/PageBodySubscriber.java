@@ -0,0 +1,249 @@
+package cu.searchengine.Crawler;
+
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Response body handling of the {@link HttpFetcher}.
+ * <p>
+ * The decision is made from the status line and headers, before any of the body has arrived. A successful
+ * HTML response is kept: gzip and deflate are decoded chunk by chunk as they come off the network, and the
+ * download is cut off as soon as the decoded page passes maxBytes (which also stops compression bombs).
+ * Anything else, an error page, a PDF, an image, a Content-Length over the limit, an encoding we can't
+ * decode, is not kept. Such a body is read and dropped if it is short, so the connection can be reused,
+ * otherwise the subscription is cancelled, which closes the stream without downloading the rest.
+ */
+class PageBodySubscriber implements HttpResponse.BodySubscriber<PageBodySubscriber.Body> {
+    // Unwanted bodies up to this size are drained rather than cancelled, a new TLS connection costs more
+    static final int DRAIN_LIMIT = 64 * 1024;
+    private static final int INITIAL_CAPACITY = 16 * 1024;
+
+    private final CompletableFuture<Body> result = new CompletableFuture<>();
+    private final boolean keep;
+    private final int maxBytes;
+    private final String encoding;
+    private HttpFetcher.SkipReason skipReason;
+    private Flow.Subscription subscription;
+    private boolean done;
+
+    // Decoded body, or the count of dropped bytes when it is not kept
+    private byte[] buffer;
+    private int size;
+    private long dropped;
+
+    // gzip and deflate: the inflater, and the first bytes while the stream header is still incomplete
+    private Inflater inflater;
+    private byte[] header = new byte[0];
+
+    // The page, or null with the reason it was not kept
+    record Body(byte[] bytes, HttpFetcher.SkipReason skipped) {
+    }
+
+    static HttpResponse.BodyHandler<Body> handler(int maxBytes) {
+        return info -> new PageBodySubscriber(info.statusCode(), info.headers(), maxBytes);
+    }
+
+    PageBodySubscriber(int statusCode, HttpHeaders headers, int maxBytes) {
+        this.maxBytes = maxBytes;
+        long length = headers.firstValueAsLong("Content-Length").orElse(-1);
+        this.encoding = headers.firstValue("Content-Encoding").orElse("identity").trim().toLowerCase(Locale.ROOT);
+        boolean success = statusCode >= 200 && statusCode < 300;
+
+        if (success && !HttpFetcher.isHtml(headers.firstValue("Content-Type").orElse(null))) {
+            skipReason = HttpFetcher.SkipReason.NOT_HTML;
+        } else if (success && length > maxBytes) {
+            skipReason = HttpFetcher.SkipReason.TOO_LARGE;
+        } else if (success && !isSupportedEncoding(encoding)) {
+            skipReason = HttpFetcher.SkipReason.BAD_ENCODING;
+        }
+        this.keep = success && skipReason == null;
+        if (keep) {
+            // With an exact length and no encoding the buffer is the final array, no copy at the end
+            int capacity = length >= 0 && encoding.equals("identity") ? (int) length : INITIAL_CAPACITY;
+            buffer = new byte[Math.min(capacity, maxBytes + 1)];
+        } else if (length > DRAIN_LIMIT) {
+            // Cancelled as soon as the subscription arrives
+            dropped = length;
+        }
+    }
+
+    @Override
+    public CompletionStage<Body> getBody() {
+        return result;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        if (!keep && dropped > DRAIN_LIMIT) {
+            abort();
+        } else {
+            subscription.request(1);
+        }
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> chunks) {
+        if (done) return;
+        try {
+            for (ByteBuffer chunk : chunks) {
+                if (!keep) {
+                    dropped += chunk.remaining();
+                    if (dropped > DRAIN_LIMIT) {
+                        abort();
+                        return;
+                    }
+                } else if (encoding.equals("identity")) {
+                    append(chunk);
+                } else {
+                    inflate(chunk);
+                }
+                if (size > maxBytes) {
+                    skipReason = HttpFetcher.SkipReason.TOO_LARGE;
+                    abort();
+                    return;
+                }
+            }
+            subscription.request(1);
+        } catch (DataFormatException | ZipException e) {
+            skipReason = HttpFetcher.SkipReason.BAD_ENCODING;
+            abort();
+        }
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        if (done) return;
+        done = true;
+        end();
+        result.completeExceptionally(error);
+    }
+
+    @Override
+    public void onComplete() {
+        if (done) return;
+        done = true;
+        end();
+        if (!keep) {
+            result.complete(new Body(null, skipReason));
+        } else {
+            // A compressed stream cut short is kept as far as it goes, like a browser would show it
+            result.complete(new Body(size == buffer.length ? buffer : Arrays.copyOf(buffer, size), null));
+        }
+    }
+
+    // Stops the download, the page counts as skipped
+    private void abort() {
+        done = true;
+        subscription.cancel();
+        end();
+        buffer = null;
+        result.complete(new Body(null, skipReason));
+    }
+
+    private void end() {
+        if (inflater != null) {
+            // Native memory, not left to the finalizer
+            inflater.end();
+            inflater = null;
+        }
+    }
+
+    private void append(ByteBuffer chunk) {
+        int length = chunk.remaining();
+        ensureCapacity(length);
+        // Past the limit only the first bytes are copied, enough to know the page is too large
+        int copied = Math.min(length, buffer.length - size);
+        chunk.get(buffer, size, copied);
+        size += copied;
+        if (copied < length) size = maxBytes + 1;
+    }
+
+    private void inflate(ByteBuffer chunk) throws DataFormatException, ZipException {
+        if (inflater == null) {
+            chunk = readHeader(chunk);
+            if (inflater == null) return;
+        }
+        if (inflater.finished()) return;
+        inflater.setInput(chunk);
+        while (!inflater.finished() && !inflater.needsInput()) {
+            ensureCapacity(1);
+            if (size >= buffer.length) {
+                size = maxBytes + 1;
+                return;
+            }
+            int n = inflater.inflate(buffer, size, buffer.length - size);
+            size += n;
+            if (n == 0 && inflater.needsDictionary()) throw new DataFormatException("Preset dictionary not supported");
+        }
+    }
+
+    /**
+     * Collects the stream header, which may span chunks, and creates the inflater once it is complete.
+     *
+     * @return what is left of the chunk after the header
+     */
+    private ByteBuffer readHeader(ByteBuffer chunk) throws ZipException {
+        int start = header.length;
+        header = Arrays.copyOf(header, start + chunk.remaining());
+        chunk.get(header, start, header.length - start);
+
+        int headerLength;
+        if (encoding.equals("deflate")) {
+            // Meant to be zlib-wrapped, some servers send raw deflate instead
+            if (header.length < 2) return ByteBuffer.allocate(0);
+            boolean zlib = (header[0] & 0x0f) == 8 && (((header[0] & 0xff) << 8) | (header[1] & 0xff)) % 31 == 0;
+            inflater = new Inflater(!zlib);
+            headerLength = 0;
+        } else {
+            headerLength = gzipHeaderLength(header);
+            if (headerLength < 0) return ByteBuffer.allocate(0);
+            inflater = new Inflater(true);
+        }
+        ByteBuffer rest = ByteBuffer.wrap(header, headerLength, header.length - headerLength);
+        header = null;
+        return rest;
+    }
+
+    // Length of the gzip member header (RFC 1952), -1 if more bytes are needed
+    static int gzipHeaderLength(byte[] bytes) throws ZipException {
+        if (bytes.length < 10) return -1;
+        if ((bytes[0] & 0xff) != 0x1f || (bytes[1] & 0xff) != 0x8b || bytes[2] != 8) throw new ZipException("Not in gzip format");
+        int flags = bytes[3] & 0xff;
+        int position = 10;
+        if ((flags & 4) != 0) {
+            if (bytes.length < position + 2) return -1;
+            position += 2 + ((bytes[position] & 0xff) | (bytes[position + 1] & 0xff) << 8);
+        }
+        // File name and comment, both zero-terminated
+        for (int flag : new int[]{8, 16}) {
+            if ((flags & flag) == 0) continue;
+            while (position < bytes.length && bytes[position] != 0) position++;
+            if (position >= bytes.length) return -1;
+            position++;
+        }
+        if ((flags & 2) != 0) position += 2;
+        return position <= bytes.length ? position : -1;
+    }
+
+    private void ensureCapacity(int more) {
+        int needed = size + more;
+        if (needed <= buffer.length || buffer.length > maxBytes) return;
+        int capacity = (int) Math.min((long) maxBytes + 1, Math.max(needed, buffer.length * 2L));
+        buffer = Arrays.copyOf(buffer, capacity);
+    }
+
+    private static boolean isSupportedEncoding(String encoding) {
+        return encoding.equals("identity") || encoding.equals("gzip") || encoding.equals("x-gzip") || encoding.equals("deflate");
+    }
+}
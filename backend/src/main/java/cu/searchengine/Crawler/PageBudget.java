@@ -0,0 +1,70 @@
+package cu.searchengine.Crawler;
+
+import cu.searchengine.service.CounterService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Page budget shared by all crawler shards through a Mongo counter.
+ * <p>
+ * A shard reserves pages in blocks, so the counter is touched once per block instead of once per page.
+ * Unused pages of the current block are given back when the crawl ends; if the process dies they are
+ * lost, so the crawl can stop up to one block per shard short of the limit but never goes past it.
+ */
+class PageBudget {
+    private static final Logger logger = LoggerFactory.getLogger(PageBudget.class);
+
+    private final CounterService counters;
+    private final String counterName;
+    private final long limit;
+    private final int blockSize;
+    private long remaining;
+    private volatile boolean exhausted;
+
+    PageBudget(CounterService counters, String counterName, long limit, int blockSize) {
+        this.counters = counters;
+        this.counterName = counterName;
+        this.limit = limit;
+        this.blockSize = Math.max(1, blockSize);
+    }
+
+    // Takes one page from the budget, false once the global limit is reached
+    synchronized boolean tryAcquire() {
+        if (remaining == 0) {
+            if (exhausted) return false;
+            try {
+                remaining = counters.reserve(counterName, blockSize, limit);
+            } catch (Exception e) {
+                logger.warn("Failed to reserve pages from {}: {}", counterName, e.getMessage());
+                return false;
+            }
+            if (remaining == 0) {
+                exhausted = true;
+                logger.info("Global page budget of {} reached", limit);
+                return false;
+            }
+        }
+        remaining--;
+        return true;
+    }
+
+    boolean isExhausted() {
+        return exhausted;
+    }
+
+    // Gives the rest of the current block back to the other shards
+    synchronized void releaseUnused() {
+        if (remaining == 0) return;
+        try {
+            counters.release(counterName, remaining);
+            remaining = 0;
+        } catch (Exception e) {
+            logger.warn("Failed to release {} pages to {}: {}", remaining, counterName, e.getMessage());
+        }
+    }
+
+    // Pages taken by all shards so far
+    long getGlobalCount() {
+        return counters.get(counterName);
+    }
+}
@@ -0,0 +1,237 @@
+package cu.searchengine.Crawler;
+
+import com.google.common.hash.Hashing;
+import cu.searchengine.config.CrawlerProperties;
+import cu.searchengine.model.Documents;
+import cu.searchengine.service.DocumentService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps stored pages fresh without re-fetching the whole corpus.
+ * <p>
+ * Every stored page carries its ETag/Last-Modified validators, a hash of its extracted text and a revisit
+ * interval. Due pages are fetched with conditional GETs; a 304 or an unchanged hash costs no parsing or
+ * indexing, only a changed page is updated and handed back to the indexer. The interval adapts to how
+ * often the page was seen to change: it grows by half each time the page is unchanged and halves each
+ * time it changed, within [1 hour, 30 days].
+ */
+@Component
+public class RecrawlScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(RecrawlScheduler.class);
+
+    static final long INITIAL_REVISIT_INTERVAL_MS = TimeUnit.DAYS.toMillis(1);
+    static final long MIN_REVISIT_INTERVAL_MS = TimeUnit.HOURS.toMillis(1);
+    static final long MAX_REVISIT_INTERVAL_MS = TimeUnit.DAYS.toMillis(30);
+    private static final double UNCHANGED_FACTOR = 1.5;
+    private static final double CHANGED_FACTOR = 0.5;
+
+    private final Crawler crawler;
+    private final DocumentService documentService;
+    private final CrawlerProperties properties;
+
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong unchanged = new AtomicLong();
+    private final AtomicLong changed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public RecrawlScheduler(Crawler crawler, DocumentService documentService, CrawlerProperties properties, CrawlerMetrics metrics) {
+        this.crawler = crawler;
+        this.documentService = documentService;
+        this.properties = properties;
+        metrics.bindRecrawler(this);
+    }
+
+    // Hash of the fields the indexer uses, markup-only changes don't count as a change
+    public static long contentHash(Documents document) {
+        return Hashing.murmur3_128().newHasher()
+                .putUnencodedChars(document.getTitle() == null ? "" : document.getTitle())
+                .putChar('\0')
+                .putUnencodedChars(document.getContent() == null ? "" : document.getContent())
+                .hash().asLong();
+    }
+
+    // First fetch of a page by the crawler
+    public static void recordFetch(Documents document, long contentHash, long now) {
+        document.setContentHash(contentHash);
+        document.setRevisitInterval(INITIAL_REVISIT_INTERVAL_MS);
+        document.setLastFetched(now);
+        document.setNextFetchAt(now + INITIAL_REVISIT_INTERVAL_MS);
+    }
+
+    static void reschedule(Documents document, boolean contentChanged, long now) {
+        long interval = document.getRevisitInterval() > 0 ? document.getRevisitInterval() : INITIAL_REVISIT_INTERVAL_MS;
+        interval = (long) (interval * (contentChanged ? CHANGED_FACTOR : UNCHANGED_FACTOR));
+        interval = Math.max(MIN_REVISIT_INTERVAL_MS, Math.min(MAX_REVISIT_INTERVAL_MS, interval));
+        document.setRevisitInterval(interval);
+        document.setLastFetched(now);
+        document.setNextFetchAt(now + interval);
+    }
+
+    /**
+     * Refetches one batch of due pages, politely per host, and saves their new state.
+     *
+     * @return number of pages revisited
+     */
+    public int recrawlDue() {
+        if (!properties.isRecrawlEnabled()) return 0;
+
+        long start = System.currentTimeMillis();
+        List<Documents> due = documentService.getDocumentsDueForRecrawl(start, properties.getRecrawlBatchSize());
+        if (due.isEmpty()) return 0;
+
+        Map<String, Documents> byUrl = new HashMap<>();
+        Frontier frontier = new Frontier();
+        for (Documents document : due) {
+            // In a sharded crawl each shard revisits the hosts it owns
+            if (!crawler.ownsHost(Frontier.hostOf(document.getUrl()))) continue;
+            byUrl.put(document.getUrl(), document);
+            frontier.add(document.getUrl());
+        }
+
+        String userAgent = crawler.getUserAgent();
+        RobotsTxtParser robotsParser = crawler.getRobotsParser();
+        HttpFetcher fetcher = crawler.getFetcher();
+        Set<CompletableFuture<Void>> pending = ConcurrentHashMap.newKeySet();
+        List<Documents> revisited = new ArrayList<>();
+
+        try {
+            while (true) {
+                String url = frontier.take(1, TimeUnit.SECONDS);
+                if (url == null) {
+                    if (frontier.isExhausted()) break;
+                    continue;
+                }
+                Documents document = byUrl.get(url);
+
+                if (!robotsParser.isLoaded(url)) {
+                    robotsParser.loadRobotsTxt(url);
+                    long delay = robotsParser.getCrawlDelay(url, userAgent);
+                    if (delay > 0) frontier.setCrawlDelay(Frontier.hostOf(url), Math.min(delay, Crawler.MAX_CRAWL_DELAY_MS));
+                }
+                if (!robotsParser.isAllowed(url, userAgent)) {
+                    reschedule(document, false, System.currentTimeMillis());
+                    addRevisited(revisited, document);
+                    frontier.release(url);
+                    continue;
+                }
+
+                CompletableFuture<Void> task;
+                try {
+                    task = fetcher.fetch(url, document.getEtag(), document.getLastModified())
+                            .thenAccept(result -> handleFetchResult(document, result));
+                } catch (RuntimeException e) {
+                    task = CompletableFuture.failedFuture(e);
+                }
+                CompletableFuture<Void> tracked = task.whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        logger.debug("Error while recrawling {}: {}", url, error.getMessage());
+                        failed.incrementAndGet();
+                        reschedule(document, false, System.currentTimeMillis());
+                    }
+                    addRevisited(revisited, document);
+                    frontier.release(url);
+                });
+                pending.add(tracked);
+                tracked.whenComplete((ignored, error) -> pending.remove(tracked));
+            }
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).exceptionally(error -> null).join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (revisited) {
+            documentService.addAll(new ArrayList<>(revisited));
+        }
+        logger.info("Recrawled {} pages in {} ms: {} changed, {} unchanged, {} not modified, {} failed (totals)",
+                revisited.size(), System.currentTimeMillis() - start, changed.get(), unchanged.get(), notModified.get(), failed.get());
+        return revisited.size();
+    }
+
+    private void handleFetchResult(Documents document, HttpFetcher.FetchResult result) {
+        long now = System.currentTimeMillis();
+        if (result.isNotModified()) {
+            notModified.incrementAndGet();
+            reschedule(document, false, now);
+            return;
+        }
+        if (!result.isSuccess()) {
+            logger.debug("Recrawl of {} returned status {}", document.getUrl(), result.getStatusCode());
+            failed.incrementAndGet();
+            reschedule(document, false, now);
+            return;
+        }
+
+        if (!result.isParseable()) {
+            // The page turned into something else, a PDF or a page past the size limit
+            logger.debug("Recrawl of {} skipped: {}", document.getUrl(), result.getSkipReason());
+            failed.incrementAndGet();
+            reschedule(document, false, now);
+            return;
+        }
+
+        Documents fresh;
+        try {
+            fresh = crawler.extractDocument(result.parse());
+        } catch (IOException e) {
+            logger.debug("Parse error at {}: {}", document.getUrl(), e.getMessage());
+            failed.incrementAndGet();
+            reschedule(document, false, now);
+            return;
+        }
+        document.setEtag(result.getHeader("ETag"));
+        document.setLastModified(result.getHeader("Last-Modified"));
+
+        long hash = contentHash(fresh);
+        if (hash == document.getContentHash()) {
+            unchanged.incrementAndGet();
+            reschedule(document, false, now);
+            return;
+        }
+
+        changed.incrementAndGet();
+        crawler.archive(result);
+        // Keep id and url, a redirect must not turn this into a different document
+        document.setTitle(fresh.getTitle());
+        document.setMainHeading(fresh.getMainHeading());
+        document.setSubHeadings(fresh.getSubHeadings());
+        document.setContent(fresh.getContent());
+        document.setLinks(fresh.getLinks());
+        document.setWebGraph(fresh.getWebGraph());
+        if (document.getSimHash() != 0) document.setSimHash(SimHash.of(fresh.getContent()));
+        document.setContentHash(hash);
+        if (document.isInvertedIndexProcessed()) document.setReindex(true);
+        document.setInvertedIndexProcessed(false);
+        reschedule(document, true, now);
+    }
+
+    private static void addRevisited(List<Documents> revisited, Documents document) {
+        synchronized (revisited) {
+            revisited.add(document);
+        }
+    }
+
+    public long getChangedCount() {
+        return changed.get();
+    }
+
+    public long getUnchangedCount() {
+        return unchanged.get() + notModified.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+}
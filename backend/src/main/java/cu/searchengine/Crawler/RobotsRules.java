@@ -0,0 +1,292 @@
+package cu.searchengine.Crawler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compiled robots.txt rules of one host.
+ * <p>
+ * Every user-agent group is compiled into a {@link Matcher}: plain path prefixes go into a character
+ * trie, so the longest matching prefix is found in one walk over the path, while the few rules with
+ * '*' or '$' wildcards are matched directly against the path. As in RFC 9309 the most specific (longest)
+ * matching rule decides and Allow wins a tie with Disallow.
+ * <p>
+ * Instances are immutable once built, so any number of crawler threads can query them without locking.
+ */
+public class RobotsRules {
+    private static final RobotsRules ALLOW_ALL = new RobotsRules(new LinkedHashMap<>(), false);
+    private static final RobotsRules UNREACHABLE = new RobotsRules(new LinkedHashMap<>(), true);
+
+    // Lower-cased agent names and their compiled groups, in file order, without "*"
+    private final String[] agents;
+    private final Matcher[] matchers;
+    // Group for every other agent, null if there is none
+    private final Matcher defaultMatcher;
+    private final boolean unreachable;
+
+    private RobotsRules(Map<String, Matcher> groups, boolean unreachable) {
+        Map<String, Matcher> named = new LinkedHashMap<>(groups);
+        this.defaultMatcher = named.remove("*");
+        this.agents = named.keySet().toArray(new String[0]);
+        this.matchers = named.values().toArray(new Matcher[0]);
+        this.unreachable = unreachable;
+    }
+
+    // No robots.txt on the host (4xx), everything may be crawled
+    public static RobotsRules allowAll() {
+        return ALLOW_ALL;
+    }
+
+    // robots.txt could not be fetched, treated as allow-all like before but counted separately
+    public static RobotsRules unreachable() {
+        return UNREACHABLE;
+    }
+
+    public boolean isUnreachable() {
+        return unreachable;
+    }
+
+    /**
+     * Checks the path and query of an absolute URL, starting at {@code pathStart} and ending before
+     * {@code pathEnd}, against the group that applies to the given agent. Nothing is allocated.
+     */
+    public boolean isAllowed(String userAgent, CharSequence url, int pathStart, int pathEnd) {
+        Matcher matcher = matcherFor(userAgent);
+        return matcher == null || matcher.isAllowed(url, pathStart, pathEnd);
+    }
+
+    // Crawl-delay in milliseconds for the given agent, or -1 if the host does not set one
+    public long getCrawlDelayMillis(String userAgent) {
+        Matcher matcher = matcherFor(userAgent);
+        return matcher == null ? -1 : matcher.crawlDelayMillis;
+    }
+
+    public int getDisallowRuleCount() {
+        int count = defaultMatcher == null ? 0 : defaultMatcher.disallowCount;
+        for (Matcher matcher : matchers) {
+            count += matcher.disallowCount;
+        }
+        return count;
+    }
+
+    // Group of the agent, compared ignoring case in place
+    private Matcher matcherFor(String userAgent) {
+        if (userAgent != null && agents.length > 0) {
+            // The product token, e.g. "mozilla" for "Mozilla/5.0 (...)", is the fallback
+            int productEnd = 0;
+            while (productEnd < userAgent.length() && userAgent.charAt(productEnd) != '/' && userAgent.charAt(productEnd) != ' ') productEnd++;
+            Matcher product = null;
+            for (int i = 0; i < agents.length; i++) {
+                String agent = agents[i];
+                if (!userAgent.regionMatches(true, 0, agent, 0, agent.length())) continue;
+                if (agent.length() == userAgent.length()) return matchers[i];
+                if (agent.length() == productEnd && product == null) product = matchers[i];
+            }
+            if (product != null) return product;
+        }
+        return defaultMatcher;
+    }
+
+    /**
+     * Parses robots.txt. Consecutive user-agent lines share the rules that follow them, groups naming the
+     * same agent are merged, and lines that are not user-agent, allow, disallow or crawl-delay are ignored.
+     */
+    public static RobotsRules parse(BufferedReader reader) throws IOException {
+        Map<String, Builder> builders = new LinkedHashMap<>();
+        List<Builder> currentGroup = new ArrayList<>();
+        boolean groupHasRules = false;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int comment = line.indexOf('#');
+            if (comment >= 0) line = line.substring(0, comment);
+            line = line.trim();
+
+            int colon = line.indexOf(':');
+            if (colon <= 0) continue;
+            String key = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+
+            switch (key) {
+                case "user-agent":
+                    if (groupHasRules) {
+                        // A user-agent line after rules starts a new group
+                        currentGroup = new ArrayList<>();
+                        groupHasRules = false;
+                    }
+                    currentGroup.add(builders.computeIfAbsent(value.toLowerCase(Locale.ROOT), k -> new Builder()));
+                    break;
+                case "allow":
+                case "disallow":
+                    groupHasRules = true;
+                    // An empty Disallow allows everything, it adds no rule
+                    if (value.isEmpty()) break;
+                    for (Builder builder : currentGroup) {
+                        builder.add(value, key.equals("allow"));
+                    }
+                    break;
+                case "crawl-delay":
+                    groupHasRules = true;
+                    try {
+                        long millis = (long) (Double.parseDouble(value) * 1000);
+                        for (Builder builder : currentGroup) {
+                            builder.crawlDelayMillis = millis;
+                        }
+                    } catch (NumberFormatException ignored) {
+                        // Malformed crawl-delay, keep the default politeness
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        Map<String, Matcher> groups = new LinkedHashMap<>();
+        for (Map.Entry<String, Builder> entry : builders.entrySet()) {
+            groups.put(entry.getKey(), entry.getValue().build());
+        }
+        return new RobotsRules(groups, false);
+    }
+
+    private static class Builder {
+        final TrieNode root = new TrieNode();
+        final List<WildcardRule> wildcardRules = new ArrayList<>();
+        long crawlDelayMillis = -1;
+        int disallowCount;
+
+        void add(String pattern, boolean allow) {
+            if (!allow) disallowCount++;
+            if (pattern.indexOf('*') >= 0 || pattern.endsWith("$")) {
+                wildcardRules.add(new WildcardRule(pattern, allow));
+                return;
+            }
+            TrieNode node = root;
+            for (int i = 0; i < pattern.length(); i++) {
+                node = node.childOrCreate(pattern.charAt(i));
+            }
+            // Same pattern as both Allow and Disallow: Allow wins
+            node.rule = node.rule == TrieNode.ALLOW || allow ? TrieNode.ALLOW : TrieNode.DISALLOW;
+        }
+
+        Matcher build() {
+            // Longest first so the first wildcard match is the most specific one
+            wildcardRules.sort((a, b) -> {
+                int byLength = Integer.compare(b.pattern.length(), a.pattern.length());
+                return byLength != 0 ? byLength : Boolean.compare(b.allow, a.allow);
+            });
+            return new Matcher(root, wildcardRules.toArray(new WildcardRule[0]), crawlDelayMillis, disallowCount);
+        }
+    }
+
+    static class Matcher {
+        private final TrieNode root;
+        private final WildcardRule[] wildcardRules;
+        private final long crawlDelayMillis;
+        private final int disallowCount;
+
+        Matcher(TrieNode root, WildcardRule[] wildcardRules, long crawlDelayMillis, int disallowCount) {
+            this.root = root;
+            this.wildcardRules = wildcardRules;
+            this.crawlDelayMillis = crawlDelayMillis;
+            this.disallowCount = disallowCount;
+        }
+
+        boolean isAllowed(CharSequence url, int start, int end) {
+            // Longest literal prefix rule
+            int bestLength = -1;
+            boolean bestAllow = true;
+            TrieNode node = root;
+            for (int i = start; i < end && node != null; i++) {
+                node = node.child(url.charAt(i));
+                if (node != null && node.rule != TrieNode.NONE) {
+                    bestLength = i - start + 1;
+                    bestAllow = node.rule == TrieNode.ALLOW;
+                }
+            }
+
+            // A wildcard rule only wins if it is more specific
+            for (WildcardRule rule : wildcardRules) {
+                int length = rule.pattern.length();
+                if (length < bestLength || (length == bestLength && bestAllow)) break;
+                if (rule.matches(url, start, end)) {
+                    return rule.allow;
+                }
+            }
+            return bestLength < 0 || bestAllow;
+        }
+    }
+
+    private static class TrieNode {
+        static final byte NONE = 0;
+        static final byte ALLOW = 1;
+        static final byte DISALLOW = 2;
+
+        private char[] keys = new char[0];
+        private TrieNode[] children = new TrieNode[0];
+        byte rule = NONE;
+
+        TrieNode child(char c) {
+            char[] k = keys;
+            for (int i = 0; i < k.length; i++) {
+                if (k[i] == c) return children[i];
+            }
+            return null;
+        }
+
+        TrieNode childOrCreate(char c) {
+            TrieNode child = child(c);
+            if (child != null) return child;
+            int n = keys.length;
+            keys = Arrays.copyOf(keys, n + 1);
+            children = Arrays.copyOf(children, n + 1);
+            keys[n] = c;
+            children[n] = new TrieNode();
+            return children[n];
+        }
+    }
+
+    private static class WildcardRule {
+        final String pattern;
+        final boolean allow;
+        private final boolean anchored;
+        private final int patternEnd;
+
+        WildcardRule(String pattern, boolean allow) {
+            this.pattern = pattern;
+            this.allow = allow;
+            this.anchored = pattern.endsWith("$");
+            this.patternEnd = anchored ? pattern.length() - 1 : pattern.length();
+        }
+
+        // Glob match where '*' is any run of characters and a trailing '$' anchors the end of the path
+        boolean matches(CharSequence url, int start, int end) {
+            int p = 0;
+            int s = start;
+            int starP = -1;
+            int starS = -1;
+            while (true) {
+                if (p == patternEnd) {
+                    if (!anchored || s == end) return true;
+                } else if (pattern.charAt(p) == '*') {
+                    starP = p++;
+                    starS = s;
+                    continue;
+                } else if (s < end && pattern.charAt(p) == url.charAt(s)) {
+                    p++;
+                    s++;
+                    continue;
+                }
+                // Mismatch: let the last '*' swallow one more character
+                if (starP < 0 || starS >= end) return false;
+                p = starP + 1;
+                s = ++starS;
+            }
+        }
+    }
+}
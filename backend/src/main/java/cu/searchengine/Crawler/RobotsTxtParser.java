@@ -1,319 +1,262 @@
 package cu.searchengine.Crawler;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.net.ssl.HttpsURLConnection;
 import java.io.BufferedReader;
+import java.io.FilterReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
+import java.io.Reader;
 import java.net.URI;
-import java.net.URL;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared robots.txt cache for all crawler threads.
+ * <p>
+ * Rules are cached per host (authority, including a non-default port) and compiled once into
+ * {@link RobotsRules}. The cache is bounded and entries expire after a TTL so long crawls pick up changes.
+ * Loading is single-flight: when several threads hit a new host at once, one downloads robots.txt and
+ * the others wait for its result instead of downloading it again.
+ * <p>
+ * Downloads go through the crawler's {@link CrawlerNetwork}, so the connection opened for robots.txt is
+ * reused for the host's pages, and hosts that don't resolve are marked unreachable without connecting.
+ */
 public class RobotsTxtParser {
     private static final Logger logger = LoggerFactory.getLogger(RobotsTxtParser.class);
 
-    // Each user agent with a list of its prohibited paths Domain ->(userAgent, disallowedPaths)
-    private final HashMap<String, HashMap<String, List<String>>> disallowedPolicyMap;
-    private final HashMap<String, HashMap<String, List<String>>> allowedPolicyMap;
-    private final HashMap<String, Boolean> robotsTxtLoaded;
-    private final HashMap<String, Integer> robotsTxtFailCount;
-    private static final int MAX_RETRY_ATTEMPTS = 3;
+    public static final long DEFAULT_MAX_HOSTS = 100_000;
+    public static final long DEFAULT_TTL_HOURS = 24;
+    private static final int TIMEOUT_MILLIS = 5000;
+    // robots.txt files are small, ignore anything past this (RFC 9309 requires at least 500 KiB)
+    private static final int MAX_ROBOTS_CHARS = 512 * 1024;
+
+    private final CrawlerNetwork network;
+    private final LoadingCache<String, RobotsRules> rulesByHost;
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
 
     public RobotsTxtParser() {
-        disallowedPolicyMap = new HashMap<>();
-        allowedPolicyMap = new HashMap<>();
-        robotsTxtLoaded = new HashMap<>();
-        robotsTxtFailCount = new HashMap<>();
+        this(new CrawlerNetwork());
     }
 
-    // Checks if a path can be crawled
-    public boolean isAllowed(String fullURL, String userAgent) {
-        boolean isAllowedCrawling = true;
-
-        try {
-            URL url = new URL(fullURL);
-            String domain = url.getHost();
-            String path = url.getPath();
-            if (path.isEmpty()) {
-                path = "/";
-            }
-            String currentUserAgent = userAgent;
-
-            // If we haven't tried to load robots.txt for this domain, do it now
-            if (!robotsTxtLoaded.containsKey(domain)) {
-                loadRobotsTxt(domain);
-            }
-
-            // If no rules exist for this domain, allow crawling
-            if (disallowedPolicyMap.get(domain) == null) {
-                return true;
-            }
-
-            List<String> disallowedCurrentAgent = disallowedPolicyMap.get(domain).get(userAgent);
-
-            if (disallowedCurrentAgent == null) {
-                disallowedCurrentAgent = disallowedPolicyMap.get(domain).get("*");   // get disallowed paths for all agents
-                currentUserAgent = "*";
-            }
-
-            if (disallowedCurrentAgent == null) {
-                return true; // no rules for this agent nor all agents, crawling allowed
-            }
+    public RobotsTxtParser(CrawlerNetwork network) {
+        this(network, DEFAULT_MAX_HOSTS, DEFAULT_TTL_HOURS, TimeUnit.HOURS);
+    }
 
-            // Check if the path is prohibited for all agents
-            List<String> disallowedAllAgents = disallowedPolicyMap.get(domain).get("*");
-            if (disallowedAllAgents != null) {
-                for (String directive : disallowedAllAgents) {
-                    // Proper path matching - check if path starts with directive or matches exactly
-                    if (pathMatches(path, directive)) {
-                        logger.debug("Blocked by all agents '{}' for path '{}'", directive, path);
-                        isAllowedCrawling = false;
-                        break;
+    public RobotsTxtParser(CrawlerNetwork network, long maxHosts, long ttl, TimeUnit ttlUnit) {
+        this.network = network;
+        this.rulesByHost = CacheBuilder.newBuilder()
+                .maximumSize(maxHosts)
+                .expireAfterWrite(ttl, ttlUnit)
+                .build(new CacheLoader<>() {
+                    @Override
+                    public RobotsRules load(String host) {
+                        return fetchRules(host);
                     }
-                }
-            }
+                });
+    }
 
-            if (!currentUserAgent.equals("*")) {
-                // Check if the path is prohibited for this certain user agent and wasn't blocked for all agents
-                if (isAllowedCrawling) {
-                    for (String directive : disallowedCurrentAgent) {
-                        if (pathMatches(path, directive)) {
-                            logger.debug("Blocked by robots.txt: '{}' for path '{}'", directive, path);
-                            isAllowedCrawling = false;
-                            break;
-                        }
-                    }
-                } else {
-                    // Check if the path is prohibited for all agents but accessible for this certain user agent
-                    HashMap<String, List<String>> policy = allowedPolicyMap.get(domain);
-                    if (policy == null) return isAllowedCrawling;
-
-                    List<String> allowedCurrentAgent = policy.get(userAgent);
-                    if (allowedCurrentAgent == null) return isAllowedCrawling;
-
-                    for (String directive : allowedCurrentAgent) {
-                        // More specific Allow directives take precedence over Disallow
-                        if (pathMatches(path, directive)) {
-                            isAllowedCrawling = true;
-                            logger.debug("Allowed by specific rule: '{}' for path '{}'", directive, path);
-                            break;
-                        }
-                    }
-                }
-            }
-        } catch (MalformedURLException e) {
+    // Checks if a URL can be crawled, loading the host's robots.txt first if it is not cached
+    public boolean isAllowed(String fullURL, String userAgent) {
+        int hostStart = fullURL.indexOf("://");
+        if (hostStart < 0) {
             logger.error("Malformed URL: {}", fullURL);
             return false;
         }
-        return isAllowedCrawling;
-    }
-
-    private boolean pathMatches(String path, String directive) {
-        if (directive.isEmpty()) {
+        hostStart += 3;
+        int pathStart = hostStart;
+        while (pathStart < fullURL.length()) {
+            char c = fullURL.charAt(pathStart);
+            if (c == '/' || c == '?' || c == '#') break;
+            pathStart++;
+        }
+        if (pathStart == hostStart) {
+            logger.error("Malformed URL: {}", fullURL);
             return false;
         }
-
-        if (directive.equals("/") && path.equals("/")) {
-            return true;
+        int pathEnd = fullURL.indexOf('#', pathStart);
+        if (pathEnd < 0) pathEnd = fullURL.length();
+
+        RobotsRules rules = rulesFor(fullURL.substring(hostStart, pathStart));
+        if (pathStart == pathEnd || fullURL.charAt(pathStart) != '/') {
+            // No path means the root, a query without a path is matched as "/?query"
+            String path = "/" + fullURL.substring(pathStart, pathEnd);
+            return rules.isAllowed(userAgent, path, 0, path.length());
         }
-
-        return path.startsWith(directive);
+        return rules.isAllowed(userAgent, fullURL, pathStart, pathEnd);
     }
 
     public boolean isLoaded(String url) {
-        try {
-            URI uri = URI.create(url);
-            String domain = uri.getHost();
-            return robotsTxtLoaded.getOrDefault(domain, false);
-        } catch (Exception e) {
-            logger.error("Error checking if robots.txt is loaded for URL: {}, error: {}", url, e.getMessage());
-            return false;
-        }
+        String host = hostKey(url);
+        return host != null && rulesByHost.getIfPresent(host) != null;
     }
 
-    // Adds a rule to a certain domain of a certain agent
-    public void addPolicy(String domain, String userAgent, String rule, String policy) {
-        if (policy.equalsIgnoreCase("disallow")) {
-            disallowedPolicyMap.putIfAbsent(domain, new HashMap<>());
-            disallowedPolicyMap.get(domain).putIfAbsent(userAgent, new ArrayList<>());
-            disallowedPolicyMap.get(domain).get(userAgent).add(rule);
-            logger.debug("Added Disallow rule for domain: {}, agent: {}, path: {}", domain, userAgent, rule);
-        }
-        if (policy.equalsIgnoreCase("allow")) {
-            allowedPolicyMap.putIfAbsent(domain, new HashMap<>());
-            allowedPolicyMap.get(domain).putIfAbsent(userAgent, new ArrayList<>());
-            allowedPolicyMap.get(domain).get(userAgent).add(rule);
-            logger.debug("Added Allow rule for domain: {}, agent: {}, path: {}", domain, userAgent, rule);
-        }
+    // Loads robots.txt for a domain or any URL on it, blocks while another thread loads the same host
+    public void loadRobotsTxt(String domain) {
+        String host = hostKey(domain);
+        if (host != null) rulesFor(host);
     }
 
-    // Loads robots.txt for a given domain
-    public void loadRobotsTxt(String domain) {
-        // If we've already tried and failed multiple times, don't keep trying
-        int failCount = robotsTxtFailCount.getOrDefault(domain, 0);
-        if (failCount >= MAX_RETRY_ATTEMPTS) {
-            logger.debug("Skipping robots.txt load for {} after {} failed attempts", domain, failCount);
-            robotsTxtLoaded.put(domain, true); // Mark as "loaded" to prevent further attempts
-            return;
-        }
+    /**
+     * Crawl-delay the host asks of the given agent, in milliseconds.
+     *
+     * @return -1 if robots.txt sets no delay or is not loaded yet
+     */
+    public long getCrawlDelay(String url, String userAgent) {
+        String host = hostKey(url);
+        if (host == null) return -1;
+        RobotsRules rules = rulesByHost.getIfPresent(host);
+        return rules == null ? -1 : rules.getCrawlDelayMillis(userAgent);
+    }
 
-        try {
-            // Extract domain if full URL is given
-            if (domain.startsWith("http")) {
-                domain = new URL(domain).getHost();
-            }
+    // Get statistics about how many URLs are blocked
+    public int getDisallowedRulesCount(String domain) {
+        String host = hostKey(domain);
+        RobotsRules rules = host == null ? null : rulesByHost.getIfPresent(host);
+        return rules == null ? 0 : rules.getDisallowRuleCount();
+    }
 
-            // Try HTTPS first
-            boolean success = tryLoadRobotsTxt("https://" + domain + "/robots.txt", domain);
+    // Get statistics about robots.txt loading
+    public int getFailedDomainsCount() {
+        return (int) rulesByHost.asMap().values().stream().filter(RobotsRules::isUnreachable).count();
+    }
 
-            // If HTTPS fails, try HTTP
-            if (!success) {
-                success = tryLoadRobotsTxt("http://" + domain + "/robots.txt", domain);
-            }
+    public long getCachedHostsCount() {
+        return rulesByHost.size();
+    }
 
-            // If we couldn't load robots.txt, increment the fail count
-            if (!success) {
-                robotsTxtFailCount.put(domain, failCount + 1);
-                // If robots.txt doesn't exist or can't be accessed, assume everything is allowed
-                if (failCount + 1 >= MAX_RETRY_ATTEMPTS) {
-                    robotsTxtLoaded.put(domain, true);
-                    logger.debug("Assuming all crawling allowed for {} after {} failed attempts", domain, failCount + 1);
-                }
-            }
-        } catch (Exception e) {
-            robotsTxtFailCount.put(domain, failCount + 1);
-            logger.debug("Error loading robots.txt file for {}: {}", domain, e.getMessage());
-        }
+    // Rule lookups answered from the cache
+    public long getCacheHitCount() {
+        return cacheHits.get();
     }
 
-    private boolean tryLoadRobotsTxt(String urlString, String domain) {
-        HttpURLConnection connection = null;
-        BufferedReader reader = null;
+    // Rule lookups that loaded robots.txt or waited for another thread loading it
+    public long getCacheMissCount() {
+        return cacheMisses.get();
+    }
 
+    private RobotsRules rulesFor(String host) {
+        String key = host.toLowerCase(Locale.ROOT);
+        RobotsRules cached = rulesByHost.getIfPresent(key);
+        if (cached != null) {
+            cacheHits.incrementAndGet();
+            return cached;
+        }
+        cacheMisses.incrementAndGet();
         try {
-            URL url = new URL(urlString);
+            return rulesByHost.getUnchecked(key);
+        } catch (UncheckedExecutionException e) {
+            logger.debug("Error loading robots.txt for {}: {}", host, e.getMessage());
+            return RobotsRules.unreachable();
+        }
+    }
 
-            if (urlString.startsWith("https://")) {
-                connection = (HttpsURLConnection) url.openConnection();
-            } else {
-                connection = (HttpURLConnection) url.openConnection();
-            }
+    // Accepts a bare domain as well as a full URL
+    private static String hostKey(String domainOrUrl) {
+        if (domainOrUrl == null || domainOrUrl.isEmpty()) return null;
+        String host = domainOrUrl.contains("://") ? Frontier.hostOf(domainOrUrl) : domainOrUrl;
+        return host == null ? null : host.toLowerCase(Locale.ROOT);
+    }
 
-            connection.setRequestMethod("GET");
-            connection.setConnectTimeout(5000);  // 5 seconds timeout
-            connection.setReadTimeout(5000);     // 5 seconds timeout
-            connection.connect();
+    private RobotsRules fetchRules(String host) {
+        if (!network.isResolvable(host)) {
+            logger.debug("Assuming all crawling allowed for {}, host does not resolve", host);
+            return RobotsRules.unreachable();
+        }
+        // Try HTTPS first, then HTTP
+        RobotsRules rules = tryLoadRobotsTxt("https://" + host + "/robots.txt");
+        if (rules == null) {
+            rules = tryLoadRobotsTxt("http://" + host + "/robots.txt");
+        }
+        if (rules == null) {
+            // If robots.txt can't be accessed, assume everything is allowed until the entry expires
+            logger.debug("Assuming all crawling allowed for {}, robots.txt is unreachable", host);
+            return RobotsRules.unreachable();
+        }
+        return rules;
+    }
+
+    private RobotsRules tryLoadRobotsTxt(String urlString) {
+        HttpResponse<InputStream> response = null;
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(urlString))
+                    .timeout(Duration.ofMillis(TIMEOUT_MILLIS))
+                    .GET()
+                    .build();
+            response = network.client().send(request, HttpResponse.BodyHandlers.ofInputStream());
+            network.recordResponse(response);
 
-            int responseCode = connection.getResponseCode();
+            int responseCode = response.statusCode();
 
             // 2xx status codes indicate success
             if (responseCode >= 200 && responseCode < 300) {
-                reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-                parseRobotsTxt(reader, domain);
-                robotsTxtLoaded.put(domain, true);
-                logger.debug("Successfully loaded robots.txt from {}", urlString);
-                return true;
-            } else if (responseCode == 404) {
+                try (BufferedReader reader = new BufferedReader(new LimitedReader(
+                        new InputStreamReader(response.body(), StandardCharsets.UTF_8), MAX_ROBOTS_CHARS))) {
+                    RobotsRules rules = RobotsRules.parse(reader);
+                    logger.debug("Successfully loaded robots.txt from {}", urlString);
+                    return rules;
+                }
+            } else if (responseCode >= 400 && responseCode < 500) {
                 // If robots.txt doesn't exist, assume everything is allowed
-                robotsTxtLoaded.put(domain, true);
                 logger.debug("No robots.txt found at {}, assuming all crawling allowed", urlString);
-                return true;
+                return RobotsRules.allowAll();
             } else {
                 logger.debug("Failed to load robots.txt from {}, HTTP status: {}", urlString, responseCode);
-                return false;
+                return null;
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
         } catch (Exception e) {
             logger.debug("Error accessing robots.txt at {}: {}", urlString, e.getMessage());
-            return false;
+            return null;
         } finally {
-            if (reader != null) {
+            // Hands the connection back to the pool, the body of an error page is not needed
+            if (response != null) {
                 try {
-                    reader.close();
-                } catch (IOException e) {
-                    logger.error("Error closing reader: {}", e.getMessage());
+                    response.body().close();
+                } catch (IOException ignored) {
                 }
             }
-            if (connection != null) {
-                connection.disconnect();
-            }
         }
     }
 
-    private void parseRobotsTxt(BufferedReader reader, String domain) throws IOException {
-        List<String> currentUserAgents = new ArrayList<>();
-        String line;
-        boolean inUserAgentSection = false;
-
-        while ((line = reader.readLine()) != null) {
-            // Skip comments and empty lines
-            line = line.trim();
-            if (line.isEmpty() || line.startsWith("#")) {
-                if (line.isEmpty() && inUserAgentSection) {
-                    // Empty line signals the end of a user agent section
-                    inUserAgentSection = false;
-                    currentUserAgents.clear();
-                }
-                continue;
-            }
-
-            // Check if line defines a user agent
-            if (line.toLowerCase().startsWith("user-agent:")) {
-                String[] parts = line.split(":", 2);
-                if (parts.length > 1) {
-                    String userAgent = parts[1].trim();
-
-                    // If we were already in a user agent section and encounter another one,
-                    // it's part of the same group unless separated by an empty line
-                    if (!inUserAgentSection) {
-                        currentUserAgents.clear();
-                        inUserAgentSection = true;
-                    }
-
-                    currentUserAgents.add(userAgent);
-                }
-            }
-            // Check for disallow and allow directives
-            else if (line.toLowerCase().startsWith("disallow:") || line.toLowerCase().startsWith("allow:")) {
-                if (currentUserAgents.isEmpty()) {
-                    continue; // Skip rules not associated with a user agent
-                }
-
-                String[] parts = line.split(":", 2);
-                if (parts.length > 1) {
-                    String directive = parts[0].trim();
-                    String path = parts[1].trim();
+    // Stops reading after a fixed number of chars so a huge or endless robots.txt can't stall a crawler thread
+    private static class LimitedReader extends FilterReader {
+        private int remaining;
 
-                    // Apply this rule to all current user agents
-                    for (String userAgent : currentUserAgents) {
-                        addPolicy(domain, userAgent, path, directive);
-                    }
-                }
-            }
+        LimitedReader(Reader in, int limit) {
+            super(in);
+            this.remaining = limit;
         }
-    }
 
-    // Get statistics about how many URLs are blocked
-    public int getDisallowedRulesCount(String domain) {
-        if (!disallowedPolicyMap.containsKey(domain)) {
-            return 0;
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int c = super.read();
+            if (c >= 0) remaining--;
+            return c;
         }
 
-        int count = 0;
-        for (List<String> rules : disallowedPolicyMap.get(domain).values()) {
-            count += rules.size();
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) return -1;
+            int n = super.read(buffer, offset, Math.min(length, remaining));
+            if (n > 0) remaining -= n;
+            return n;
         }
-        return count;
-    }
-
-    // Get statistics about robots.txt loading
-    public int getFailedDomainsCount() {
-        return (int) robotsTxtFailCount.values().stream().filter(count -> count >= MAX_RETRY_ATTEMPTS).count();
     }
 
     public static void main(String[] args) {
@@ -326,7 +269,8 @@ public class RobotsTxtParser {
 
         boolean allowed = parser.isAllowed(testUrl, userAgent);
         logger.info("URL: {} is {} for user agent: {}", testUrl, allowed ? "Allowed" : "Not Allowed", userAgent);
+        logger.info("Crawl-delay for {}: {} ms", domain, parser.getCrawlDelay(testUrl, userAgent));
 
         logger.info("Domain {} has {} disallowed rules", domain, parser.getDisallowedRulesCount(domain));
     }
-}
\ No newline at end of file
+}
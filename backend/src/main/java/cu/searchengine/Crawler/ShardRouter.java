@@ -0,0 +1,66 @@
+package cu.searchengine.Crawler;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Assigns hosts to crawler shards by consistent hashing.
+ * <p>
+ * Each shard owns {@code virtualNodes} points on a 64-bit ring and a host belongs to the shard owning the
+ * first point at or after the host's hash. All of a host's URLs land on one shard, so politeness and
+ * robots.txt stay local to it, and changing the shard count only moves about 1/N of the hosts.
+ */
+public class ShardRouter {
+    public static final int DEFAULT_VIRTUAL_NODES = 512;
+
+    private final int shardIndex;
+    private final int shardCount;
+    // Ring points sorted ascending, owners[i] is the shard of points[i]
+    private final long[] points;
+    private final int[] owners;
+
+    public ShardRouter(int shardIndex, int shardCount, int virtualNodes) {
+        if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+            throw new IllegalArgumentException("Shard index " + shardIndex + " is not in [0, " + shardCount + ")");
+        }
+        this.shardIndex = shardIndex;
+        this.shardCount = shardCount;
+
+        int nodes = Math.max(1, virtualNodes);
+        long[][] ring = new long[shardCount * nodes][];
+        for (int shard = 0; shard < shardCount; shard++) {
+            for (int node = 0; node < nodes; node++) {
+                ring[shard * nodes + node] = new long[]{UrlFingerprint.of("shard-" + shard + "#" + node), shard};
+            }
+        }
+        Arrays.sort(ring, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+
+        this.points = new long[ring.length];
+        this.owners = new int[ring.length];
+        for (int i = 0; i < ring.length; i++) {
+            points[i] = ring[i][0];
+            owners[i] = (int) ring[i][1];
+        }
+    }
+
+    // Shard owning a host (as returned by Frontier.hostOf), case-insensitive
+    public int shardOf(String host) {
+        if (shardCount == 1) return 0;
+        long hash = UrlFingerprint.of(host.toLowerCase(Locale.ROOT));
+        int i = Arrays.binarySearch(points, hash);
+        if (i < 0) i = -i - 1;
+        return owners[i == points.length ? 0 : i];
+    }
+
+    public boolean isLocal(String host) {
+        return shardOf(host) == shardIndex;
+    }
+
+    public int getShardIndex() {
+        return shardIndex;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+}
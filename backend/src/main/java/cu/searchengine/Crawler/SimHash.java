@@ -0,0 +1,65 @@
+package cu.searchengine.Crawler;
+
+/**
+ * 64-bit SimHash of page text.
+ * <p>
+ * Features are overlapping 3-word shingles of the lower-cased words, so pages that share most of their
+ * text get fingerprints that differ in only a few bits, while unrelated pages differ in about 32.
+ * Words are hashed in place while scanning, no substrings or token lists are built.
+ */
+public final class SimHash {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // Below this many words the fingerprint says too little, such pages are not compared
+    public static final int MIN_WORDS = 10;
+
+    private SimHash() {
+    }
+
+    /**
+     * @return the fingerprint, or 0 if the text has fewer than {@link #MIN_WORDS} words
+     */
+    public static long of(CharSequence text) {
+        if (text == null) return 0;
+        int[] weights = new int[64];
+        long previous2 = 0;
+        long previous1 = 0;
+        int words = 0;
+
+        int i = 0;
+        int length = text.length();
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(text.charAt(i))) i++;
+            if (i == length) break;
+
+            long word = FNV_OFFSET;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+                word ^= Character.toLowerCase(text.charAt(i));
+                word *= FNV_PRIME;
+                i++;
+            }
+            words++;
+
+            if (words >= 3) {
+                long shingle = UrlFingerprint.mix(previous2 ^ Long.rotateLeft(previous1, 21) ^ Long.rotateLeft(word, 42));
+                for (int bit = 0; bit < 64; bit++) {
+                    weights[bit] += ((shingle >>> bit) & 1) != 0 ? 1 : -1;
+                }
+            }
+            previous2 = previous1;
+            previous1 = word;
+        }
+
+        if (words < MIN_WORDS) return 0;
+        long fingerprint = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) fingerprint |= 1L << bit;
+        }
+        return fingerprint;
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+}
@@ -5,11 +5,25 @@ import org.slf4j.LoggerFactory;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.regex.Pattern;
 
+/**
+ * Canonical form of crawled URLs: https, lower case, no "www.", no default port, no trailing slash,
+ * sorted non-empty query parameters, fragments and non-web schemes rejected ("").
+ * <p>
+ * Typical links (http/https, ASCII, a plain host name) are normalized in one pass over the string
+ * without regexes or {@link URI} objects. Anything unusual - non-ASCII, IP or bracketed hosts, user
+ * info, characters URI would reject - goes through the original URI-based implementation, so the output
+ * is the same for every input.
+ */
 public class URLNormalizer {
     private static final Logger logger = LoggerFactory.getLogger(URLNormalizer.class);
 
@@ -21,10 +35,252 @@ public class URLNormalizer {
 
     // Known problematic URL patterns
     private static final Set<String> PROBLEMATIC_PATTERNS = new HashSet<>(Arrays.asList("mailto:", "javascript:", "tel:", "ftp:", "file:", "#", "data:", "about:"));
+    // The same patterns as seen from the ':' that ends them
+    private static final String[] PROBLEMATIC_SCHEMES = {"mailto", "javascript", "tel", "ftp", "file", "data", "about"};
+
+    // Results of the fast path
+    private static final int ACCEPTED = 0;
+    private static final int REJECTED = 1;
+    private static final int NEEDS_URI = 2;
+
+    // Lookup tables of what java.net.URI accepts in a path and a query (lower-case ASCII)
+    private static final boolean[] PATH_CHARS = new boolean[128];
+    private static final boolean[] QUERY_CHARS = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) PATH_CHARS[c] = true;
+        for (char c = '0'; c <= '9'; c++) PATH_CHARS[c] = true;
+        for (char c : "-_.!~*'();:@&=+$,/%".toCharArray()) PATH_CHARS[c] = true;
+        System.arraycopy(PATH_CHARS, 0, QUERY_CHARS, 0, 128);
+        QUERY_CHARS['?'] = true;
+    }
+
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(256));
 
     public String normalize(String rawURL) {
         if (rawURL == null || rawURL.isEmpty()) return "";
 
+        StringBuilder out = BUILDER.get();
+        out.setLength(0);
+        switch (normalizeFast(rawURL, out)) {
+            case ACCEPTED:
+                return out.toString();
+            case REJECTED:
+                logger.debug("Skipping URL with problematic pattern: {}", rawURL);
+                return "";
+            default:
+                return normalizeWithUri(rawURL);
+        }
+    }
+
+    /**
+     * 64-bit fingerprint of the normalized URL, the same as {@code UrlFingerprint.of(normalize(rawURL))}
+     * but without creating the normalized string on the fast path.
+     *
+     * @return 0 if the URL is rejected
+     */
+    public long fingerprint(String rawURL) {
+        if (rawURL == null || rawURL.isEmpty()) return 0;
+
+        StringBuilder out = BUILDER.get();
+        out.setLength(0);
+        switch (normalizeFast(rawURL, out)) {
+            case ACCEPTED:
+                return UrlFingerprint.of(out);
+            case REJECTED:
+                return 0;
+            default:
+                String normalized = normalizeWithUri(rawURL);
+                return normalized.isEmpty() ? 0 : UrlFingerprint.of(normalized);
+        }
+    }
+
+    // Single pass over the URL, gives up with NEEDS_URI on anything it does not handle exactly like URI
+    private static int normalizeFast(String raw, StringBuilder out) {
+        int n = raw.length();
+        boolean nonAscii = false;
+        for (int i = 0; i < n; i++) {
+            char c = raw.charAt(i);
+            if (c > 0x7F) {
+                nonAscii = true;
+            } else if (c == '#') {
+                return REJECTED;
+            } else if (c == ':' && endsWithProblematicScheme(raw, i)) {
+                return REJECTED;
+            }
+        }
+        if (nonAscii) return NEEDS_URI;
+
+        // trim()
+        int start = 0;
+        int end = n;
+        while (start < end && raw.charAt(start) <= ' ') start++;
+        while (end > start && raw.charAt(end - 1) <= ' ') end--;
+
+        // Without a scheme the URL is read as if it started with https://
+        int p;
+        if (raw.startsWith("https://", start)) p = start + 8;
+        else if (raw.startsWith("http://", start)) p = start + 7;
+        else p = start;
+
+        int authorityEnd = p;
+        while (authorityEnd < end && raw.charAt(authorityEnd) != '/' && raw.charAt(authorityEnd) != '?') authorityEnd++;
+        int hostEnd = raw.indexOf(':', p);
+        if (hostEnd < 0 || hostEnd > authorityEnd) hostEnd = authorityEnd;
+
+        out.append("https://");
+        int hostStart = p;
+        if (hostEnd - hostStart > 4 && raw.regionMatches(true, hostStart, "www.", 0, 4)) hostStart += 4;
+        if (!appendHostName(raw, hostStart, hostEnd, out)) return NEEDS_URI;
+
+        if (hostEnd < authorityEnd) {
+            int digits = authorityEnd - hostEnd - 1;
+            if (digits < 1 || digits > 5) return NEEDS_URI;
+            int port = 0;
+            for (int i = hostEnd + 1; i < authorityEnd; i++) {
+                char c = raw.charAt(i);
+                if (c < '0' || c > '9') return NEEDS_URI;
+                port = port * 10 + (c - '0');
+            }
+            if (port != 80 && port != 443) out.append(':').append(port);
+        }
+
+        int queryStart = raw.indexOf('?', authorityEnd);
+        if (queryStart < 0 || queryStart > end) queryStart = end;
+
+        // Path, decoded like URI.getPath(), without one trailing slash
+        int pathStart = out.length();
+        if (!appendDecoded(raw, authorityEnd, queryStart, PATH_CHARS, out)) return NEEDS_URI;
+        if (out.length() == pathStart) {
+            out.append('/');
+        } else if (out.length() - pathStart > 1 && out.charAt(out.length() - 1) == '/') {
+            out.setLength(out.length() - 1);
+        }
+
+        if (queryStart + 1 < end) {
+            int queryOffset = out.length();
+            if (!appendDecoded(raw, queryStart + 1, end, QUERY_CHARS, out)) return NEEDS_URI;
+            String query = out.substring(queryOffset);
+            out.setLength(queryOffset);
+            appendSortedQuery(query, out);
+        }
+        return ACCEPTED;
+    }
+
+    private static boolean endsWithProblematicScheme(String raw, int colon) {
+        for (String scheme : PROBLEMATIC_SCHEMES) {
+            int from = colon - scheme.length();
+            if (from >= 0 && raw.startsWith(scheme, from)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Lower-cases and appends a host name that URI parses as a server-based host: dot-separated labels of
+     * letters, digits and inner hyphens, starting with a letter, last label starting with a letter.
+     */
+    private static boolean appendHostName(String raw, int start, int end, StringBuilder out) {
+        if (start >= end) return false;
+        int labelStart = start;
+        for (int i = start; i <= end; i++) {
+            char c = i < end ? toLowerAscii(raw.charAt(i)) : '.';
+            if (c == '.') {
+                if (i == labelStart || raw.charAt(i - 1) == '-') return false;
+                char first = toLowerAscii(raw.charAt(labelStart));
+                if (first < 'a' || first > 'z') {
+                    // Digit-led labels are fine in URI except first (IPv4) and last, leave both to URI
+                    if (labelStart == start || i == end || first < '0' || first > '9') return false;
+                }
+                labelStart = i + 1;
+                if (i < end) out.append('.');
+            } else if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-') {
+                out.append(c);
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lower-cases and appends a path or query, decoding %XX escapes like URI does (UTF-8, malformed
+     * sequences replaced). Returns false on a character URI would reject or an incomplete escape.
+     */
+    private static boolean appendDecoded(String raw, int start, int end, boolean[] allowed, StringBuilder out) {
+        for (int i = start; i < end; i++) {
+            char c = toLowerAscii(raw.charAt(i));
+            if (c >= 128 || !allowed[c]) return false;
+            if (c != '%') {
+                out.append(c);
+                continue;
+            }
+
+            // A run of consecutive escapes is decoded together, it may be one multi-byte character
+            int runEnd = i;
+            while (runEnd < end && raw.charAt(runEnd) == '%') {
+                if (runEnd + 2 >= end) return false;
+                if (hexValue(raw.charAt(runEnd + 1)) < 0 || hexValue(raw.charAt(runEnd + 2)) < 0) return false;
+                runEnd += 3;
+            }
+            byte[] bytes = new byte[(runEnd - i) / 3];
+            for (int b = 0; b < bytes.length; b++) {
+                int at = i + b * 3;
+                bytes[b] = (byte) (hexValue(raw.charAt(at + 1)) << 4 | hexValue(raw.charAt(at + 2)));
+            }
+            if (!appendUtf8(bytes, out)) return false;
+            i = runEnd - 1;
+        }
+        return true;
+    }
+
+    private static boolean appendUtf8(byte[] bytes, StringBuilder out) {
+        boolean ascii = true;
+        for (byte b : bytes) {
+            if (b < 0) {
+                ascii = false;
+                break;
+            }
+        }
+        if (ascii) {
+            for (byte b : bytes) out.append((char) b);
+            return true;
+        }
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chars = CharBuffer.allocate(bytes.length);
+        decoder.decode(ByteBuffer.wrap(bytes), chars, true);
+        decoder.flush(chars);
+        out.append(chars.flip());
+        return true;
+    }
+
+    // Same splitting, sorting and filtering as the URI-based implementation
+    private static void appendSortedQuery(String query, StringBuilder out) {
+        String[] params = query.split("&");
+        if (params.length > 1) Arrays.sort(params);
+        boolean first = true;
+        for (String param : params) {
+            if (!param.isEmpty() && !param.equals("=")) {
+                out.append(first ? '?' : '&').append(param);
+                first = false;
+            }
+        }
+    }
+
+    private static char toLowerAscii(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+        if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+        return -1;
+    }
+
+    // Original implementation built on java.net.URI, used for everything the fast path does not cover
+    String normalizeWithUri(String rawURL) {
         // Quick check for problematic URL patterns
         for (String pattern : PROBLEMATIC_PATTERNS) {
             if (rawURL.contains(pattern)) {
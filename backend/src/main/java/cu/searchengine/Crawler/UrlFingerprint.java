@@ -0,0 +1,43 @@
+package cu.searchengine.Crawler;
+
+/**
+ * 64-bit fingerprints of normalized URLs.
+ * <p>
+ * FNV-1a over the UTF-16 chars followed by the MurmurHash3 finalizer, so nearby strings spread over the
+ * whole 64 bits. Collisions are expected around 2^32 distinct URLs, far beyond what a crawl discovers.
+ * 0 is never returned so it can be used as the empty marker in primitive hash tables.
+ */
+public final class UrlFingerprint {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private UrlFingerprint() {
+    }
+
+    public static long of(CharSequence url) {
+        return of(url, 0, url.length());
+    }
+
+    public static long of(CharSequence url, int start, int end) {
+        long hash = FNV_OFFSET;
+        for (int i = start; i < end; i++) {
+            char c = url.charAt(i);
+            hash ^= c & 0xff;
+            hash *= FNV_PRIME;
+            hash ^= c >>> 8;
+            hash *= FNV_PRIME;
+        }
+        hash = mix(hash);
+        return hash == 0 ? 1 : hash;
+    }
+
+    // MurmurHash3 fmix64
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,60 @@
+package cu.searchengine.Crawler;
+
+/**
+ * Set of every URL the crawler has discovered, stored as 64-bit fingerprints instead of strings.
+ * <p>
+ * Each entry costs 8 bytes divided by the table's fill ratio (roughly 13-27 bytes) instead of a String,
+ * its char array and a map node.
+ */
+public class VisitedUrlSet {
+    private final FingerprintSet fingerprints;
+
+    public VisitedUrlSet(int expectedEntries) {
+        this.fingerprints = new FingerprintSet(expectedEntries);
+    }
+
+    /**
+     * Same contract as {@code ConcurrentHashMap.putIfAbsent(url, true) == null}.
+     *
+     * @return true if the URL was not seen before and is now recorded
+     */
+    public boolean add(String normalizedUrl) {
+        return addFingerprint(UrlFingerprint.of(normalizedUrl));
+    }
+
+    public boolean addFingerprint(long fingerprint) {
+        return fingerprints.add(fingerprint);
+    }
+
+    public boolean contains(String normalizedUrl) {
+        return fingerprints.contains(UrlFingerprint.of(normalizedUrl));
+    }
+
+    public int size() {
+        return fingerprints.size();
+    }
+
+    public long memoryBytes() {
+        return fingerprints.memoryBytes();
+    }
+
+    public double bytesPerEntry() {
+        int size = size();
+        return size == 0 ? 0 : (double) memoryBytes() / size;
+    }
+
+    // Fingerprints only, this is what gets checkpointed
+    public long[] toArray() {
+        return fingerprints.toArray();
+    }
+
+    public void addAll(long[] values) {
+        for (long value : values) {
+            addFingerprint(value);
+        }
+    }
+
+    public void clear() {
+        fingerprints.clear();
+    }
+}
@@ -9,6 +9,9 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class BuildInvertedIndex {
+    // Positions skipped between fields, so phrases and proximity windows don't run from one field into the next
+    static final int FIELD_GAP = 100;
+
     private final Map<String, PostingData> invertedIndex = new HashMap<>();
     private final ConcurrentHashMap<String,Integer> wordfreq=new ConcurrentHashMap<>();
     Tokenizer tokenizer;
@@ -28,11 +31,12 @@ public class BuildInvertedIndex {
 //            System.out.println("Popularity: "+popularity);
             Map<String, Posting> tokenizedWords = new HashMap<>();
 
-            // Tokenize each section with its priority position
-            processText(doc.getTitle(), docId, 4,tokenizedWords,tokenizer,title,url,popularity,wordfreq);      // Title (4)
-            processText(String.join(" ",doc.getMainHeading()), docId, 3,tokenizedWords,tokenizer,title,url,popularity,wordfreq); // Main Heading (3)
-            processText(String.join(" ", doc.getSubHeadings()), docId, 2,tokenizedWords,tokenizer,title,url,popularity,wordfreq); // Subheading (2)
-            processText(doc.getContent(), docId, 1,tokenizedWords,tokenizer,title,url,popularity,wordfreq);    // Content (1)
+            // Tokenize each section with its priority, positions run on from one section to the next
+            int position = 0;
+            position = processText(doc.getTitle(), docId, 4, position, tokenizedWords,tokenizer,title,url,popularity,wordfreq);      // Title (4)
+            position = processText(String.join(" ",doc.getMainHeading()), docId, 3, position, tokenizedWords,tokenizer,title,url,popularity,wordfreq); // Main Heading (3)
+            position = processText(String.join(" ", doc.getSubHeadings()), docId, 2, position, tokenizedWords,tokenizer,title,url,popularity,wordfreq); // Subheading (2)
+            processText(doc.getContent(), docId, 1, position, tokenizedWords,tokenizer,title,url,popularity,wordfreq);    // Content (1)
 
             for (Map.Entry<String, Posting> entry : tokenizedWords.entrySet()) {
                 String word = entry.getKey();
@@ -54,11 +58,12 @@ public class BuildInvertedIndex {
         }
     }
 
-    private void processText(String text, int docId, int priority, Map<String, Posting> tokenizedWords,Tokenizer tokenizer,String title,String url,double popularity,ConcurrentHashMap<String,Integer> wordfreq) {
-        if (text == null || text.isEmpty()) return;
+    // Returns the first position of the next field
+    private int processText(String text, int docId, int priority, int position, Map<String, Posting> tokenizedWords,Tokenizer tokenizer,String title,String url,double popularity,ConcurrentHashMap<String,Integer> wordfreq) {
+        if (text == null || text.isEmpty()) return position;
 
         // Tokenize and track priority-based positions
-       tokenizer.tokenizeWithPriority(text, priority,tokenizedWords,title,url,popularity,wordfreq);
+        return tokenizer.tokenizeWithPriority(text, priority, position, tokenizedWords,title,url,popularity,wordfreq) + FIELD_GAP;
     }
 
     public Map<Integer, Posting> getPostings(String word) {
@@ -0,0 +1,245 @@
+package cu.searchengine.Indexer;
+
+import cu.searchengine.config.CrawlerProperties;
+import cu.searchengine.model.Documents;
+import cu.searchengine.service.DocumentService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process crawl-to-index pipeline, used when crawler.pipeline-enabled=true.
+ * <p>
+ * The crawler hands each parsed page to {@link #submit}, which blocks while the queue is full, so a slow
+ * indexer slows the crawl down instead of letting pages pile up in memory. A single indexing thread takes
+ * pages off the queue in batches of up to pipelineBatchSize, or whatever arrived within
+ * pipelineMaxBatchDelayMillis. It saves each batch on a separate persistence thread while it builds and
+ * upserts the batch's postings, and marks the batch indexed with a single update once both are done.
+ * <p>
+ * Pages are never read back from Mongo or rewritten to be marked as indexed. A batch that fails to index
+ * stays invertedIndexProcessed=false and the periodic indexer picks it up.
+ */
+@Component
+public class IndexingPipeline {
+    private static final Logger logger = LoggerFactory.getLogger(IndexingPipeline.class);
+
+    private final InvertedIndex invertedIndex;
+    private final DocumentService documentService;
+    private final CrawlerProperties properties;
+    private final BlockingQueue<Documents> queue;
+    private final ExecutorService persister;
+    private Thread indexer;
+    private volatile boolean running;
+
+    // Progress, flush() waits for completed to catch up with submitted
+    private final Object progress = new Object();
+    private long submitted;
+    private long completed;
+
+    private final AtomicLong indexedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    // Sum of fetch-to-searchable times of indexed pages
+    private final AtomicLong totalLatencyMillis = new AtomicLong();
+
+    public IndexingPipeline(InvertedIndex invertedIndex, DocumentService documentService, CrawlerProperties properties) {
+        this.invertedIndex = invertedIndex;
+        this.documentService = documentService;
+        this.properties = properties;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, properties.getPipelineQueueCapacity()));
+        this.persister = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pipeline-persister");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isPipelineEnabled()) return;
+        running = true;
+        indexer = new Thread(this::runIndexer, "pipeline-indexer");
+        indexer.setDaemon(true);
+        indexer.start();
+        logger.info("Indexing pipeline started: queue capacity {}, batch size {}", properties.getPipelineQueueCapacity(), properties.getPipelineBatchSize());
+    }
+
+    public boolean isEnabled() {
+        return properties.isPipelineEnabled();
+    }
+
+    /**
+     * Queues a crawled page for indexing and persistence, blocking while the queue is full.
+     *
+     * @return false if the pipeline is not running or the caller was interrupted, the page was not queued
+     */
+    public boolean submit(Documents document) {
+        if (!running) return false;
+        synchronized (progress) {
+            submitted++;
+        }
+        try {
+            queue.put(document);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            complete(1);
+            return false;
+        }
+    }
+
+    /**
+     * Waits until every page submitted so far has been indexed and persisted, or failed.
+     *
+     * @return false if the timeout elapsed first
+     */
+    public boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (progress) {
+            long target = submitted;
+            while (completed < target) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) return false;
+                progress.wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!running) return;
+        running = false;
+        try {
+            // The indexing thread drains what is left in the queue before it exits
+            indexer.join(TimeUnit.MINUTES.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        persister.shutdown();
+        logger.info("Indexing pipeline stopped: {} pages indexed in {} batches, {} failed, {} left in queue",
+                indexedCount.get(), batchCount.get(), failedCount.get(), queue.size());
+    }
+
+    private void runIndexer() {
+        int batchSize = Math.max(1, properties.getPipelineBatchSize());
+        long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, properties.getPipelineMaxBatchDelayMillis()));
+        List<Documents> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                Documents first = queue.poll(maxDelayNanos, TimeUnit.NANOSECONDS);
+                if (first == null) continue;
+                batch.add(first);
+
+                // Fill the batch with whatever arrives before the delay runs out
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) break;
+                    Documents next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Only stop() ends the loop, index what was taken so far
+                Thread.currentThread().interrupt();
+            }
+
+            if (!batch.isEmpty()) {
+                processBatch(new ArrayList<>(batch));
+                batch.clear();
+            }
+            if (Thread.interrupted() && !running) break;
+        }
+    }
+
+    private void processBatch(List<Documents> batch) {
+        long start = System.currentTimeMillis();
+        CompletableFuture<Boolean> persisted = CompletableFuture.supplyAsync(() -> persist(batch), persister);
+
+        boolean indexed;
+        try {
+            invertedIndex.indexDocuments(batch);
+            indexed = true;
+        } catch (Exception e) {
+            logger.error("Failed to index batch of {} pages, leaving them to the periodic indexer: {}", batch.size(), e.getMessage());
+            indexed = false;
+        }
+
+        if (persisted.join() && indexed) {
+            List<Integer> ids = new ArrayList<>(batch.size());
+            for (Documents document : batch) {
+                ids.add(document.getId());
+            }
+            try {
+                documentService.markIndexed(ids);
+                long now = System.currentTimeMillis();
+                for (Documents document : batch) {
+                    if (document.getLastFetched() > 0) totalLatencyMillis.addAndGet(now - document.getLastFetched());
+                }
+                indexedCount.addAndGet(batch.size());
+            } catch (Exception e) {
+                // The pages are searchable, the periodic indexer will redo them and skip postings it already has
+                logger.warn("Failed to mark {} pages as indexed: {}", batch.size(), e.getMessage());
+                failedCount.addAndGet(batch.size());
+            }
+        } else {
+            failedCount.addAndGet(batch.size());
+        }
+
+        batchCount.incrementAndGet();
+        logger.debug("Pipeline batch of {} pages done in {} ms, {} queued", batch.size(), System.currentTimeMillis() - start, queue.size());
+        complete(batch.size());
+    }
+
+    private boolean persist(List<Documents> batch) {
+        try {
+            documentService.addAll(batch);
+            return true;
+        } catch (Exception e) {
+            // Same as the crawler's buffer flush, a duplicate URL is already stored
+            if (e.getMessage() != null && e.getMessage().contains("duplicate key")) return true;
+            logger.error("Bulk insert error in pipeline, {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void complete(int count) {
+        synchronized (progress) {
+            completed += count;
+            progress.notifyAll();
+        }
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getIndexedCount() {
+        return indexedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    // Mean time from fetch to searchable of indexed pages
+    public double getAverageLatencyMillis() {
+        long indexed = indexedCount.get();
+        return indexed == 0 ? 0 : (double) totalLatencyMillis.get() / indexed;
+    }
+}
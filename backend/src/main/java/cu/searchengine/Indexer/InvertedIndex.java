@@ -11,19 +11,20 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 @Component
 public class InvertedIndex {
     private static final Logger logger = LoggerFactory.getLogger(InvertedIndex.class);
     private final DocumentService documentService;
     private final InvertedIndexService invertedIndexService;
-    private static final ConcurrentHashMap<String, PostingData> globalIndex = new ConcurrentHashMap<>();
     private static final ConcurrentHashMap<String, Integer> wordfreq = new ConcurrentHashMap<>();
 
     // Only keep the constructor that takes DocumentService and InvertedIndexService
@@ -40,47 +41,60 @@ public class InvertedIndex {
             return;
         }
 
-
-        int numThreads = 50;
-        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
-        int batchSize = (int) Math.ceil((double) currentDocs.size() / numThreads);
-
-        logger.info("Starting indexing with {} threads, batch size: {}", numThreads, batchSize);
+        PartitionedIndexBuilder builder = new PartitionedIndexBuilder();
+        logger.info("Indexing {} documents", currentDocs.size());
         long startTime = System.currentTimeMillis();
 
-        for (int i = 0; i < currentDocs.size(); i += batchSize) {
-            int end = Math.min(i + batchSize, currentDocs.size());
-            List<Documents> batch = currentDocs.subList(i, end);
-            logger.debug("Submitting batch [{}-{}) to thread pool", i, end);
-            executor.execute(new DocumentProcessorTask(batch, globalIndex, i, end));
-        }
+        // Only the new documents' terms, the upsert merges them into the stored entries
+        List<Map<String, PostingData>> shards = builder.build(currentDocs);
+        Set<Integer> reindexedIds = reindexedIds(currentDocs);
 
-        executor.shutdown();
-        try {
-            if (!executor.awaitTermination(5, TimeUnit.MINUTES)) {
-                logger.error("Thread pool did not terminate within timeout. Forcing shutdown...");
-                executor.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            logger.error("Thread pool interrupted during awaitTermination", e);
-            executor.shutdownNow();
-        }
-        
         // Mark as indexed before processing to avoid race conditions
         documentService.markDocumentsAsIndexed(currentDocs);
 
-        logger.info("All threads have finished execution!");
-        logger.info("Indexing Complete! Final Index Size: {}", globalIndex.size());
+        logger.info("Indexing Complete! Terms: {}", shards.stream().mapToInt(Map::size).sum());
         logger.info("Indexing took {} ms", System.currentTimeMillis() - startTime);
 
-        List<InvertedIndexEntry> indexEntries = convertGlobalIndexToList();
-        upsertInvertedIndexEntries(indexEntries);
+        if (invertedIndexService.isSegmented()) {
+            // A new segment holds the new versions of the documents, no stored postings are read or rewritten
+            invertedIndexService.addSegment(shards, currentDocs);
+            return;
+        }
+
+        List<InvertedIndexEntry> indexEntries = new ArrayList<>();
+        for (Map<String, PostingData> shard : shards) {
+            indexEntries.addAll(toIndexEntries(shard));
+        }
+        upsertInvertedIndexEntries(indexEntries, reindexedIds);
     }
 
-    private List<InvertedIndexEntry> convertGlobalIndexToList() {
+    /**
+     * Indexes one batch of documents on the calling thread and upserts only the words they contain.
+     * Used by the {@link IndexingPipeline}, the documents don't have to be stored yet.
+     */
+    public void indexDocuments(List<Documents> documents) {
+        if (documents.isEmpty()) return;
+        BuildInvertedIndex batchIndex = new BuildInvertedIndex(documents, new Tokenizer(), wordfreq);
+        if (invertedIndexService.isSegmented()) {
+            invertedIndexService.addSegment(List.of(batchIndex.getInvertedIndex()), documents);
+            return;
+        }
+
+        upsertInvertedIndexEntries(toIndexEntries(batchIndex.getInvertedIndex()), reindexedIds(documents));
+    }
+
+    // Recrawled documents come back with new content and stored postings to replace, new ones have none
+    private static Set<Integer> reindexedIds(List<Documents> documents) {
+        Set<Integer> ids = new HashSet<>();
+        for (Documents doc : documents) {
+            if (doc.isReindex()) ids.add(doc.getId());
+        }
+        return ids;
+    }
+
+    private List<InvertedIndexEntry> toIndexEntries(Map<String, PostingData> index) {
         List<InvertedIndexEntry> indexEntries = new ArrayList<>();
-        for (Map.Entry<String, PostingData> entry : globalIndex.entrySet()) {
+        for (Map.Entry<String, PostingData> entry : index.entrySet()) {
             String word = entry.getKey();
             PostingData data = entry.getValue();
 
@@ -92,7 +106,8 @@ public class InvertedIndex {
                         posting.getUrl(),
                         posting.getTitle(),
                         posting.getTf(),
-                        posting.getPopularity()));
+                        posting.getPopularity(),
+                        PositionCodec.encode(posting.getPositions())));
             }
 
             indexEntries.add(new InvertedIndexEntry(word, data.getDf(), postingEntries));
@@ -105,6 +120,21 @@ public class InvertedIndex {
      * inserts if not.
      */
     public void upsertInvertedIndexEntries(List<InvertedIndexEntry> indexEntries) {
+        upsertInvertedIndexEntries(indexEntries, Set.of());
+    }
+
+    /**
+     * Same as {@link #upsertInvertedIndexEntries(List)}, but the documents in {@code replacedDocIds} are
+     * reindexed: their existing postings are overwritten, and removed from the words they no longer contain.
+     * Stored entries whose postings don't change are not written.
+     * <p>
+     * Synchronized because stored entries are read, modified and written back: the pipeline and the
+     * periodic run must not interleave on the same words.
+     */
+    public synchronized void upsertInvertedIndexEntries(List<InvertedIndexEntry> indexEntries, Set<Integer> replacedDocIds) {
+        if (!replacedDocIds.isEmpty()) {
+            removeStalePostings(indexEntries == null ? List.of() : indexEntries, replacedDocIds);
+        }
         if (indexEntries == null || indexEntries.isEmpty()) {
             logger.warn("⚠️ No index entries to upsert.");
             return;
@@ -142,19 +172,26 @@ public class InvertedIndex {
                         List<IndexDocument> existingPostings = existing.getPostings();
                         List<IndexDocument> newPostings = entry.getPostings();
 
-                        var existingDocIds = existingPostings.stream()
-                                .map(IndexDocument::getDocId)
-                                .collect(java.util.stream.Collectors.toSet());
+                        Map<Integer, Integer> existingPositions = new java.util.HashMap<>();
+                        for (int k = 0; k < existingPostings.size(); k++) {
+                            existingPositions.put(existingPostings.get(k).getDocId(), k);
+                        }
 
                         int added = 0;
+                        int replaced = 0;
                         for (IndexDocument newPost : newPostings) {
-                            if (!existingDocIds.contains(newPost.getDocId())) {
+                            Integer position = existingPositions.get(newPost.getDocId());
+                            if (position == null) {
                                 existingPostings.add(newPost);
                                 added++;
+                            } else if (replacedDocIds.contains(newPost.getDocId())
+                                    && !samePosting(existingPostings.get(position), newPost)) {
+                                existingPostings.set(position, newPost);
+                                replaced++;
                             }
                         }
 
-                        if (added > 0) {
+                        if (added > 0 || replaced > 0) {
                             existing.setDf(existing.getDf() + added);
                             existing.setPostings(existingPostings);
                             toUpdate.add(existing);
@@ -179,42 +216,48 @@ public class InvertedIndex {
         logger.info("✅ Finished upserting inverted index. Took {} ms", System.currentTimeMillis() - upsertStart);
     }
 
-    // Task for processing each batch of documents
-    private static class DocumentProcessorTask implements Runnable {
-        private final List<Documents> documents;
-        private final Map<String, PostingData> globalIndex;
-        private final int batchStart;
-        private final int batchEnd;
-
-        public DocumentProcessorTask(List<Documents> documents, Map<String, PostingData> globalIndex, int batchStart,
-
-                                     int batchEnd) {
-            this.documents = documents;
-            this.globalIndex = globalIndex;
-            this.batchStart = batchStart;
-            this.batchEnd = batchEnd;
-        }
-
-        @Override
-        public void run() {
-            String threadName = Thread.currentThread().getName();
-            long start = System.currentTimeMillis();
-            Logger logger = LoggerFactory.getLogger(DocumentProcessorTask.class);
-
-            logger.debug("[{}] Processing documents batch [{}-{})", threadName, batchStart, batchEnd);
-
-            BuildInvertedIndex localIndex = new BuildInvertedIndex(documents, new Tokenizer(), wordfreq);
-
-            synchronized (globalIndex) {
-                for (Map.Entry<String, PostingData> entry : localIndex.getInvertedIndex().entrySet()) {
-                    globalIndex.putIfAbsent(entry.getKey(), new PostingData());
-                    globalIndex.get(entry.getKey()).merge(entry.getValue());
+    // Drops the stored postings of reindexed documents from the words that are not in their new postings
+    private void removeStalePostings(List<InvertedIndexEntry> indexEntries, Set<Integer> replacedDocIds) {
+        Map<Integer, Set<String>> wordsByDoc = new HashMap<>();
+        for (InvertedIndexEntry entry : indexEntries) {
+            for (IndexDocument posting : entry.getPostings()) {
+                if (replacedDocIds.contains(posting.getDocId())) {
+                    wordsByDoc.computeIfAbsent(posting.getDocId(), k -> new HashSet<>()).add(entry.getWord());
                 }
             }
+        }
 
-
-            logger.debug("[{}] Finished batch [{}-{}) in {} ms", threadName, batchStart, batchEnd,
-                    System.currentTimeMillis() - start);
+        List<InvertedIndexEntry> toUpdate = new ArrayList<>();
+        int deleted = 0;
+        for (InvertedIndexEntry stored : invertedIndexService.getByPostingDocIds(replacedDocIds)) {
+            List<IndexDocument> postings = stored.getPostings();
+            int before = postings.size();
+            postings.removeIf(posting -> replacedDocIds.contains(posting.getDocId())
+                    && !wordsByDoc.getOrDefault(posting.getDocId(), Set.of()).contains(stored.getWord()));
+            int removed = before - postings.size();
+            if (removed == 0) continue;
+
+            if (postings.isEmpty()) {
+                invertedIndexService.deleteByWord(stored.getWord());
+                deleted++;
+            } else {
+                stored.setDf(Math.max(0, stored.getDf() - removed));
+                toUpdate.add(stored);
+            }
+        }
+        if (!toUpdate.isEmpty()) {
+            invertedIndexService.saveAll(toUpdate);
+        }
+        if (deleted > 0 || !toUpdate.isEmpty()) {
+            logger.info("Removed stale postings of reindexed documents: {} entries updated, {} deleted", toUpdate.size(), deleted);
         }
     }
+
+    private static boolean samePosting(IndexDocument stored, IndexDocument posting) {
+        return Objects.equals(stored.getTf(), posting.getTf())
+                && Objects.equals(stored.getUrl(), posting.getUrl())
+                && Objects.equals(stored.getDocTitle(), posting.getDocTitle())
+                && stored.getPopularityScore() == posting.getPopularityScore()
+                && Arrays.equals(stored.getPositions(), posting.getPositions());
+    }
 }
@@ -0,0 +1,131 @@
+package cu.searchengine.Indexer;
+
+import cu.searchengine.model.Documents;
+import cu.searchengine.utils.Tokenizer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds the postings of many documents on several threads without a lock shared between them.
+ * <p>
+ * Terms are partitioned by hash into shards. In the map phase every batch of documents is indexed into its
+ * own {@link BuildInvertedIndex} and split into one run per shard, kept in the batch's own slot. In the
+ * reduce phase each shard merges its runs from all batches on one thread, so no term map is ever touched by
+ * two threads and the shards are reduced in parallel. The threads only meet at the barrier between the
+ * phases. A term ends up in exactly one shard.
+ */
+public class PartitionedIndexBuilder {
+    private static final int BATCH_SIZE = 128;
+
+    private final int threads;
+    private final int shards;
+
+    public PartitionedIndexBuilder() {
+        this(Runtime.getRuntime().availableProcessors(), 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    // More shards than threads, so a few large shards don't leave the other threads idle at the end
+    public PartitionedIndexBuilder(int threads, int shards) {
+        this.threads = Math.max(1, threads);
+        this.shards = Math.max(1, shards);
+    }
+
+    /**
+     * @return the term shards, each mapping its terms to their postings
+     */
+    public List<Map<String, PostingData>> build(List<Documents> documents) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "index-build-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            int batches = (documents.size() + BATCH_SIZE - 1) / BATCH_SIZE;
+            List<Callable<List<Map<String, PostingData>>>> mapTasks = new ArrayList<>(batches);
+            for (int start = 0; start < documents.size(); start += BATCH_SIZE) {
+                List<Documents> batch = documents.subList(start, Math.min(start + BATCH_SIZE, documents.size()));
+                mapTasks.add(() -> split(new BuildInvertedIndex(batch, new Tokenizer(), new ConcurrentHashMap<>()).getInvertedIndex()));
+            }
+            List<List<Map<String, PostingData>>> runs = invokeAll(pool, mapTasks);
+
+            List<Callable<Map<String, PostingData>>> reduceTasks = new ArrayList<>(shards);
+            for (int shard = 0; shard < shards; shard++) {
+                int current = shard;
+                reduceTasks.add(() -> reduce(runs, current));
+            }
+            return invokeAll(pool, reduceTasks);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    public int shardOf(String term) {
+        int hash = term.hashCode();
+        hash ^= hash >>> 16;
+        return (hash & 0x7fffffff) % shards;
+    }
+
+    // One run per shard, null where the batch has no terms of that shard
+    private List<Map<String, PostingData>> split(Map<String, PostingData> index) {
+        List<Map<String, PostingData>> runs = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            runs.add(null);
+        }
+        for (Map.Entry<String, PostingData> entry : index.entrySet()) {
+            int shard = shardOf(entry.getKey());
+            Map<String, PostingData> run = runs.get(shard);
+            if (run == null) {
+                run = new HashMap<>(2 * index.size() / shards + 1);
+                runs.set(shard, run);
+            }
+            run.put(entry.getKey(), entry.getValue());
+        }
+        return runs;
+    }
+
+    // Merges the shard's runs into the largest of them, the runs are not used anywhere else
+    private static Map<String, PostingData> reduce(List<List<Map<String, PostingData>>> runs, int shard) {
+        Map<String, PostingData> merged = null;
+        for (List<Map<String, PostingData>> batchRuns : runs) {
+            Map<String, PostingData> run = batchRuns.get(shard);
+            if (run != null && (merged == null || run.size() > merged.size())) merged = run;
+        }
+        if (merged == null) return new HashMap<>();
+
+        for (List<Map<String, PostingData>> batchRuns : runs) {
+            Map<String, PostingData> run = batchRuns.get(shard);
+            if (run == null || run == merged) continue;
+            for (Map.Entry<String, PostingData> entry : run.entrySet()) {
+                PostingData existing = merged.putIfAbsent(entry.getKey(), entry.getValue());
+                if (existing != null) existing.merge(entry.getValue());
+            }
+        }
+        return merged;
+    }
+
+    private static <T> List<T> invokeAll(ExecutorService pool, List<Callable<T>> tasks) {
+        try {
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Index build interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Index build failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package cu.searchengine.Indexer;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Compact form of the ascending word positions of a term in a document: the first position, then the gap
+ * to each next one, every number as a {@link VByte}. Gaps are small, so most positions take one byte
+ * instead of four.
+ */
+public final class PositionCodec {
+
+    private PositionCodec() {
+    }
+
+    public static byte[] encode(int[] positions) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(positions.length + 4);
+        int previous = 0;
+        for (int position : positions) {
+            if (position < previous) throw new IllegalArgumentException("Positions must be ascending: " + position + " after " + previous);
+            VByte.write(out, position - previous);
+            previous = position;
+        }
+        return out.toByteArray();
+    }
+
+    public static int[] decode(byte[] encoded) {
+        return decode(ByteBuffer.wrap(encoded), encoded.length);
+    }
+
+    // Decodes the next length bytes of the buffer
+    public static int[] decode(ByteBuffer in, int length) {
+        int end = in.position() + length;
+        int count = 0;
+        for (int i = in.position(); i < end; i++) {
+            if (in.get(i) >= 0) count++; // The last byte of every number has the high bit clear
+        }
+        int[] positions = new int[count];
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            previous += VByte.read(in);
+            positions[i] = previous;
+        }
+        return positions;
+    }
+}
@@ -1,22 +1,23 @@
 package cu.searchengine.Indexer;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 public class Posting {
     private int tf; // Term Frequency (TF)
-    private Integer [] positions; // Word positions in the document
+    private Integer [] fieldCounts; // Occurrences per field: content, subheadings, main heading, title
+    private int[] positions; // Word positions in the document, ascending, the first tf are used
     String title;
     String url;
     double popularity;
 
     public Posting() {
         this.tf = 0;
-        this.positions = new Integer[4];
+        this.fieldCounts = new Integer[4];
         for(int i=0;i<4;i++)
         {
-            positions[i]=0;
+            fieldCounts[i]=0;
         }
+        this.positions = new int[4];
         this.title="";
         this.url="";
         this.popularity=0;
@@ -31,25 +32,29 @@ public class Posting {
     }
 
     public int getTf() { return tf; }
-    public Integer[] getPositions() { return positions; }
+    public Integer[] getFieldCounts() { return fieldCounts; }
+    public int[] getPositions() { return Arrays.copyOf(positions, tf); }
     public String getTitle() { return title; }
     public String getUrl() { return url; }
 
-    public void addPosition(int pirority) {
+    // Positions must be added in increasing order
+    public void addPosition(int pirority, int position) {
         if(pirority==4)
         {
-            positions[3]++;
+            fieldCounts[3]++;
         }
         else if(pirority==3)
         {
-            positions[2]++;
+            fieldCounts[2]++;
         }
         else if(pirority==2)
         {
-            positions[1]++;
+            fieldCounts[1]++;
         }
         else
-            positions[0]++;
+            fieldCounts[0]++;
+        if (tf == positions.length) positions = Arrays.copyOf(positions, tf * 2);
+        positions[tf] = position;
         this.tf++; // Increase TF count
     }
 
@@ -25,7 +25,7 @@ public class PostingData {
 
     public void merge(PostingData other) {
         for (Map.Entry<Integer, Posting> entry : other.getPostings().entrySet()) {
-            postings.putIfAbsent(entry.getKey(), entry.getValue()); // Merge postings
+            postings.put(entry.getKey(), entry.getValue()); // Merge postings, a re-indexed document replaces its old posting
         }
         updateDf(); // Update document frequency after merging
     }
@@ -0,0 +1,122 @@
+package cu.searchengine.Indexer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Iterator over the postings of one term in a segment, in increasing docId order.
+ * <p>
+ * Only the skip table is read up front. A block's docIds, tfs and position lengths are decoded when the
+ * iterator enters the block, {@link #advance} jumps over whole blocks through the skip table, and the
+ * positions of a posting are decoded only by {@link #positions}.
+ */
+public class SegmentPostings {
+    public static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    private final ByteBuffer data;
+    private final int df;
+    private final int blockCount;
+
+    private final int[] docs = new int[SegmentWriter.BLOCK_SIZE];
+    private final int[] tfs = new int[SegmentWriter.BLOCK_SIZE];
+    private final int[] positionStarts = new int[SegmentWriter.BLOCK_SIZE];
+    private final int[] positionLengths = new int[SegmentWriter.BLOCK_SIZE];
+    private int block = -1;
+    private int blockSize;
+    private int index = -1;
+    private int doc = -1;
+
+    // data holds the term's skip table and blocks, starting at index 0
+    SegmentPostings(ByteBuffer data, int df) {
+        this.data = data;
+        this.df = df;
+        this.blockCount = (df + SegmentWriter.BLOCK_SIZE - 1) / SegmentWriter.BLOCK_SIZE;
+    }
+
+    // Number of documents with the term
+    public int df() {
+        return df;
+    }
+
+    // Encoded size of the term's postings
+    public int sizeBytes() {
+        return data.limit();
+    }
+
+    // Current docId, -1 before the first call to nextDoc or advance, NO_MORE_DOCS after the last one
+    public int docId() {
+        return doc;
+    }
+
+    public int nextDoc() {
+        if (doc == NO_MORE_DOCS) return doc;
+        if (++index == blockSize) {
+            if (block + 1 == blockCount) return doc = NO_MORE_DOCS;
+            decodeBlock(block + 1);
+        }
+        return doc = docs[index];
+    }
+
+    /**
+     * Moves to the first document at or after target.
+     *
+     * @return its docId, NO_MORE_DOCS if there is none
+     */
+    public int advance(int target) {
+        if (doc == NO_MORE_DOCS || (doc >= target && index >= 0)) return doc;
+        if (block < 0 || lastDoc(block) < target) {
+            int next = Math.max(block + 1, 0);
+            while (next < blockCount && lastDoc(next) < target) next++;
+            if (next == blockCount) return doc = NO_MORE_DOCS;
+            decodeBlock(next);
+        }
+        while (docs[index] < target) index++;
+        return doc = docs[index];
+    }
+
+    public int tf() {
+        return tfs[index];
+    }
+
+    // Word positions of the term in the current document
+    public int[] positions() {
+        return PositionCodec.decode(data.duplicate().position(positionStarts[index]), positionLengths[index]);
+    }
+
+    // The current document's positions as stored, see PositionCodec
+    public byte[] positionBytes() {
+        byte[] bytes = new byte[positionLengths[index]];
+        data.get(positionStarts[index], bytes);
+        return bytes;
+    }
+
+    private int lastDoc(int block) {
+        return data.getInt(block * 2 * Integer.BYTES);
+    }
+
+    private int blockStart(int block) {
+        return block == 0 ? blockCount * 2 * Integer.BYTES : data.getInt((block - 1) * 2 * Integer.BYTES + Integer.BYTES);
+    }
+
+    private void decodeBlock(int block) {
+        ByteBuffer in = data.duplicate().position(blockStart(block));
+        blockSize = Math.min(SegmentWriter.BLOCK_SIZE, df - block * SegmentWriter.BLOCK_SIZE);
+        int previous = block == 0 ? 0 : lastDoc(block - 1);
+        for (int i = 0; i < blockSize; i++) {
+            previous += VByte.read(in);
+            docs[i] = previous;
+        }
+        for (int i = 0; i < blockSize; i++) {
+            tfs[i] = VByte.read(in);
+        }
+        for (int i = 0; i < blockSize; i++) {
+            positionLengths[i] = VByte.read(in);
+        }
+        int start = in.position();
+        for (int i = 0; i < blockSize; i++) {
+            positionStarts[i] = start;
+            start += positionLengths[i];
+        }
+        this.block = block;
+        this.index = 0;
+    }
+}
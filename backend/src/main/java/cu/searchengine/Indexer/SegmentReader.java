@@ -0,0 +1,252 @@
+package cu.searchengine.Indexer;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a segment written by {@link SegmentWriter}.
+ * <p>
+ * Opening a segment reads its dictionary and document metadata, the postings stay on disk: {@link #postings}
+ * reads one term's postings and returns an iterator that decodes a block only when it gets to it, and
+ * positions only when asked for. Safe for use by several threads, iterators are not.
+ * <p>
+ * A segment opened memory-mapped is read in place instead: the dictionary, term bytes, doc table, doc
+ * metadata and every term's postings are views of one read-only mapping of the file, nothing is copied to
+ * the heap and a term read often is served from the page cache. The mapping stays valid after the reader is
+ * closed (it is unmapped when it is garbage collected), so a query still holding postings never faults even
+ * if the file is deleted. Segments of 2 GB or more can't be mapped as one buffer and are read as above.
+ */
+public class SegmentReader implements Closeable {
+    private final Path path;
+    private final FileChannel channel;
+    private final long size;
+    // The whole file when opened memory-mapped, otherwise null
+    private final MappedByteBuffer mapping;
+
+    private final int termCount;
+    private final int docCount;
+    private final long postingsCount;
+    private final long dictionaryOffset;
+
+    private final ByteBuffer dictionary;
+    private final ByteBuffer termBytes;
+    private final ByteBuffer docTable;
+    private final ByteBuffer docMeta;
+
+    public record DocInfo(int docId, String url, String title, double popularityScore) {
+    }
+
+    private SegmentReader(Path path, boolean mapped) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            this.size = channel.size();
+            if (size < SegmentWriter.HEADER_BYTES + SegmentWriter.FOOTER_BYTES) throw new StreamCorruptedException("Segment too short: " + path);
+            this.mapping = mapped && size <= Integer.MAX_VALUE ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size) : null;
+            ByteBuffer header = read(0, SegmentWriter.HEADER_BYTES);
+            if (header.getInt() != SegmentWriter.MAGIC) throw new StreamCorruptedException("Not an index segment: " + path);
+            int version = header.getInt();
+            if (version != SegmentWriter.VERSION) throw new StreamCorruptedException("Unsupported segment version " + version + ": " + path);
+
+            long footerOffset = size - SegmentWriter.FOOTER_BYTES;
+            ByteBuffer footer = read(footerOffset, SegmentWriter.FOOTER_BYTES);
+            dictionaryOffset = footer.getLong();
+            long termBytesOffset = footer.getLong();
+            long docTableOffset = footer.getLong();
+            long docMetaOffset = footer.getLong();
+            postingsCount = footer.getLong();
+            termCount = footer.getInt();
+            docCount = footer.getInt();
+            // A segment cut short by a crash has no valid footer
+            if (footer.getInt() != SegmentWriter.MAGIC) throw new StreamCorruptedException("Incomplete segment: " + path);
+
+            dictionary = read(dictionaryOffset, (int) (termBytesOffset - dictionaryOffset));
+            termBytes = read(termBytesOffset, (int) (docTableOffset - termBytesOffset));
+            docTable = read(docTableOffset, (int) (docMetaOffset - docTableOffset));
+            // Queries look up the metadata of every document they return
+            docMeta = read(docMetaOffset, (int) (footerOffset - docMetaOffset));
+            // The mapping doesn't need the file open
+            if (mapping != null) channel.close();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public static SegmentReader open(Path path) throws IOException {
+        return new SegmentReader(path, false);
+    }
+
+    /**
+     * @param mapped whether to map the file into memory, see the class comment
+     */
+    public static SegmentReader open(Path path, boolean mapped) throws IOException {
+        return new SegmentReader(path, mapped);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long sizeBytes() {
+        return size;
+    }
+
+    // Whether the segment is read from a memory mapping, false if it was opened without or is too big for one
+    public boolean isMapped() {
+        return mapping != null;
+    }
+
+    public int termCount() {
+        return termCount;
+    }
+
+    public int docCount() {
+        return docCount;
+    }
+
+    public long postingsCount() {
+        return postingsCount;
+    }
+
+    /**
+     * @return the term's postings, null if the segment doesn't have the term
+     */
+    public SegmentPostings postings(String term) throws IOException {
+        int index = termIndex(term.getBytes(StandardCharsets.UTF_8));
+        return index < 0 ? null : postings(index);
+    }
+
+    // Postings of the term at a dictionary index, 0 to termCount - 1
+    public SegmentPostings postings(int termIndex) throws IOException {
+        int entry = termIndex * SegmentWriter.DICTIONARY_ENTRY_BYTES;
+        int df = dictionary.getInt(entry + 4);
+        long start = dictionary.getLong(entry + 8);
+        long end = termIndex + 1 < termCount ? dictionary.getLong(entry + SegmentWriter.DICTIONARY_ENTRY_BYTES + 8) : dictionaryOffset;
+        return new SegmentPostings(read(start, (int) (end - start)), df);
+    }
+
+    public String term(int termIndex) {
+        return new String(termBytes(termIndex), StandardCharsets.UTF_8);
+    }
+
+    public int docFrequency(int termIndex) {
+        return dictionary.getInt(termIndex * SegmentWriter.DICTIONARY_ENTRY_BYTES + 4);
+    }
+
+    /**
+     * @return dictionary index of the term, or (-(insertion point) - 1) if the segment doesn't have it
+     */
+    public int termIndex(byte[] term) {
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareTerm(mid, term);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    public boolean containsDoc(int docId) {
+        return docIndex(docId) >= 0;
+    }
+
+    // docId of the document at an index of the doc table, 0 to docCount - 1, in increasing order
+    public int docId(int docIndex) {
+        return docTable.getInt(docIndex * SegmentWriter.DOC_ENTRY_BYTES);
+    }
+
+    /**
+     * @return the document's metadata, null if the document is not in this segment
+     */
+    public DocInfo document(int docId) {
+        int index = docIndex(docId);
+        if (index < 0) return null;
+        ByteBuffer meta = docMeta.duplicate().position((int) docTable.getLong(index * SegmentWriter.DOC_ENTRY_BYTES + 4));
+        double popularity = Double.longBitsToDouble(meta.getLong());
+        String url = readString(meta);
+        String title = readString(meta);
+        return new DocInfo(docId, url, title, popularity);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int docIndex(int docId) {
+        int low = 0;
+        int high = docCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midId = docId(mid);
+            if (midId < docId) {
+                low = mid + 1;
+            } else if (midId > docId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    // Compares the term at a dictionary index with the given one, by unsigned bytes like the writer sorted them
+    private int compareTerm(int termIndex, byte[] term) {
+        int start = termStart(termIndex);
+        int length = termEnd(termIndex) - start;
+        int common = Math.min(length, term.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Integer.compare(termBytes.get(start + i) & 0xff, term[i] & 0xff);
+            if (cmp != 0) return cmp;
+        }
+        return Integer.compare(length, term.length);
+    }
+
+    // UTF-8 bytes of the term at a dictionary index
+    byte[] termBytes(int termIndex) {
+        int start = termStart(termIndex);
+        byte[] bytes = new byte[termEnd(termIndex) - start];
+        termBytes.get(start, bytes);
+        return bytes;
+    }
+
+    private int termStart(int termIndex) {
+        return dictionary.getInt(termIndex * SegmentWriter.DICTIONARY_ENTRY_BYTES);
+    }
+
+    private int termEnd(int termIndex) {
+        return termIndex + 1 < termCount ? termStart(termIndex + 1) : termBytes.limit();
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[VByte.read(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // A section of the file: a view of the mapping, or read into a heap buffer
+    private ByteBuffer read(long offset, int length) throws IOException {
+        if (mapping != null) return mapping.slice((int) offset, length);
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) throw new EOFException("Truncated segment " + path);
+        }
+        return buffer.flip();
+    }
+}
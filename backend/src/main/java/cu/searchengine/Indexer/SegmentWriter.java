@@ -0,0 +1,248 @@
+package cu.searchengine.Indexer;
+
+import cu.searchengine.model.Documents;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes an immutable index segment, read back by {@link SegmentReader}.
+ * <p>
+ * Layout, all numbers big-endian:
+ * <pre>
+ * header      int magic, int version
+ * postings    per term, in dictionary order:
+ *               skip table: per block, int last docId and int end offset (from the start of the term)
+ *               blocks of {@value #BLOCK_SIZE} postings, the last one shorter: every docId gap, then every
+ *               tf, then the byte length of every position list, all as {@link VByte}s, then the position
+ *               lists ({@link PositionCodec})
+ * dictionary  per term, sorted by UTF-8 bytes: int term bytes offset, int df, long postings offset
+ * term bytes  the UTF-8 terms back to back
+ * doc table   per document, sorted by docId: int docId, long metadata offset
+ * doc meta    per document: double popularity, url and title as VByte length and UTF-8 bytes
+ * footer      long dictionary, term bytes, doc table and doc meta offsets, long postings count,
+ *             int term count, int doc count, int magic
+ * </pre>
+ * The first docId gap of a block is from the last docId of the block before, 0 for the first block. The
+ * fixed-width dictionary and doc table are binary searched in place, and a block is found from the skip
+ * table without decoding the blocks before it.
+ * <p>
+ * Terms must be added in increasing UTF-8 byte order and each term's postings in increasing docId order.
+ */
+public class SegmentWriter implements Closeable {
+    static final int MAGIC = 0x43555347; // "CUSG"
+    static final int VERSION = 1;
+    static final int BLOCK_SIZE = 128;
+    static final int HEADER_BYTES = 8;
+    static final int FOOTER_BYTES = 5 * Long.BYTES + 3 * Integer.BYTES;
+    static final int DICTIONARY_ENTRY_BYTES = 16;
+    static final int DOC_ENTRY_BYTES = 12;
+
+    private final FileOutputStream file;
+    private final DataOutputStream out;
+    private long offset;
+
+    private final ByteArrayOutputStream termBytes = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream dictionary = new ByteArrayOutputStream();
+    private int termCount;
+    private byte[] lastTerm;
+    private long postingsCount;
+
+    // Postings of the current term, written out as blocks when the term is finished
+    private final List<int[]> skips = new ArrayList<>();
+    private final ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+    private final int[] blockDocs = new int[BLOCK_SIZE];
+    private final int[] blockTfs = new int[BLOCK_SIZE];
+    private final byte[][] blockPositions = new byte[BLOCK_SIZE][];
+    private int blockCount;
+    private int df;
+    private int lastDoc;
+
+    private final TreeMap<Integer, SegmentReader.DocInfo> documents = new TreeMap<>();
+
+    public SegmentWriter(Path path) throws IOException {
+        this.file = new FileOutputStream(path.toFile());
+        this.out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        offset = HEADER_BYTES;
+    }
+
+    /**
+     * Writes the postings of one index build as a segment.
+     *
+     * @param shards    term maps, as built by {@link PartitionedIndexBuilder}; a term is in one of them only
+     * @param documents the documents indexed, all of them go in the doc table even if they have no terms
+     */
+    public static void write(Path path, List<Map<String, PostingData>> shards, List<Documents> documents) throws IOException {
+        List<Map.Entry<byte[], PostingData>> terms = new ArrayList<>();
+        for (Map<String, PostingData> shard : shards) {
+            for (Map.Entry<String, PostingData> entry : shard.entrySet()) {
+                terms.add(Map.entry(entry.getKey().getBytes(StandardCharsets.UTF_8), entry.getValue()));
+            }
+        }
+        terms.sort((a, b) -> Arrays.compareUnsigned(a.getKey(), b.getKey()));
+
+        try (SegmentWriter writer = new SegmentWriter(path)) {
+            for (Documents document : documents) {
+                writer.addDocument(document.getId(), document.getUrl(), document.getTitle(),
+                        document.getPopularityScore() == null ? 0 : document.getPopularityScore());
+            }
+            for (Map.Entry<byte[], PostingData> term : terms) {
+                writer.startTerm(term.getKey());
+                for (Map.Entry<Integer, Posting> posting : new TreeMap<>(term.getValue().getPostings()).entrySet()) {
+                    Posting p = posting.getValue();
+                    writer.addPosting(posting.getKey(), p.getTf(), PositionCodec.encode(p.getPositions()));
+                }
+            }
+        }
+    }
+
+    public void startTerm(byte[] term) throws IOException {
+        finishTerm();
+        if (lastTerm != null && Arrays.compareUnsigned(lastTerm, term) >= 0) {
+            throw new IllegalArgumentException("Terms out of order: " + new String(term, StandardCharsets.UTF_8));
+        }
+        lastTerm = term;
+        df = 0;
+    }
+
+    public void addPosting(int docId, int tf, byte[] positions) {
+        if (lastTerm == null || df < 0) throw new IllegalStateException("No term started");
+        if (docId < 0 || (df > 0 && docId <= lastDoc)) throw new IllegalArgumentException("DocIds out of order: " + docId + " after " + lastDoc);
+        blockDocs[blockCount] = docId;
+        blockTfs[blockCount] = tf;
+        blockPositions[blockCount] = positions;
+        lastDoc = docId;
+        df++;
+        postingsCount++;
+        if (++blockCount == BLOCK_SIZE) flushBlock();
+    }
+
+    // A document's metadata, the first values added for a docId are kept
+    public void addDocument(int docId, String url, String title, double popularity) {
+        if (!documents.containsKey(docId)) documents.put(docId, new SegmentReader.DocInfo(docId, url, title, popularity));
+    }
+
+    public long getPostingsCount() {
+        return postingsCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finishTerm();
+            long dictionaryOffset = offset;
+            write(dictionary.toByteArray());
+            long termBytesOffset = offset;
+            write(termBytes.toByteArray());
+
+            long docTableOffset = offset;
+            ByteArrayOutputStream meta = new ByteArrayOutputStream();
+            ByteArrayOutputStream table = new ByteArrayOutputStream(documents.size() * DOC_ENTRY_BYTES);
+            for (SegmentReader.DocInfo document : documents.values()) {
+                writeInt(table, document.docId());
+                writeLong(table, meta.size());
+                writeLong(meta, Double.doubleToLongBits(document.popularityScore()));
+                writeString(meta, document.url());
+                writeString(meta, document.title());
+            }
+            write(table.toByteArray());
+            long docMetaOffset = offset;
+            // Metadata offsets in the table are from the start of the section
+            write(meta.toByteArray());
+
+            out.writeLong(dictionaryOffset);
+            out.writeLong(termBytesOffset);
+            out.writeLong(docTableOffset);
+            out.writeLong(docMetaOffset);
+            out.writeLong(postingsCount);
+            out.writeInt(termCount);
+            out.writeInt(documents.size());
+            out.writeInt(MAGIC);
+            out.flush();
+            file.getFD().sync();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void finishTerm() throws IOException {
+        // A term that got no postings is left out
+        if (lastTerm == null || df <= 0) return;
+        if (blockCount > 0) flushBlock();
+
+        long skipBytes = (long) skips.size() * 2 * Integer.BYTES;
+        if (skipBytes + blocks.size() > Integer.MAX_VALUE) throw new IOException("Postings of a term over 2 GB");
+        ByteArrayOutputStream skipTable = new ByteArrayOutputStream((int) skipBytes);
+        for (int[] skip : skips) {
+            writeInt(skipTable, skip[0]);
+            writeInt(skipTable, (int) (skipBytes + skip[1]));
+        }
+        writeInt(dictionary, termBytes.size());
+        termBytes.writeBytes(lastTerm);
+        writeInt(dictionary, df);
+        writeLong(dictionary, offset);
+        write(skipTable.toByteArray());
+        write(blocks.toByteArray());
+        termCount++;
+
+        skips.clear();
+        blocks.reset();
+        df = -1;
+    }
+
+    private void flushBlock() {
+        int base = skips.isEmpty() ? 0 : skips.get(skips.size() - 1)[0];
+        for (int i = 0; i < blockCount; i++) {
+            VByte.write(blocks, blockDocs[i] - base);
+            base = blockDocs[i];
+        }
+        for (int i = 0; i < blockCount; i++) {
+            VByte.write(blocks, blockTfs[i]);
+        }
+        for (int i = 0; i < blockCount; i++) {
+            VByte.write(blocks, blockPositions[i].length);
+        }
+        for (int i = 0; i < blockCount; i++) {
+            blocks.writeBytes(blockPositions[i]);
+            blockPositions[i] = null;
+        }
+        skips.add(new int[]{blockDocs[blockCount - 1], blocks.size()});
+        blockCount = 0;
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        out.write(bytes);
+        offset += bytes.length;
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        VByte.write(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static void writeLong(ByteArrayOutputStream out, long value) {
+        writeInt(out, (int) (value >>> 32));
+        writeInt(out, (int) value);
+    }
+}
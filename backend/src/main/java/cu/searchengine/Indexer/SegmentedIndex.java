@@ -0,0 +1,480 @@
+package cu.searchengine.Indexer;
+
+import cu.searchengine.model.Documents;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Inverted index kept as a list of immutable segments, log-structured: every indexing run writes the
+ * postings of its documents as a new segment and never rewrites the existing ones, so indexing costs the
+ * same however many postings a term already has.
+ * <p>
+ * The live segments are listed, oldest first, in a manifest that is replaced atomically; segment files not
+ * in it are leftovers of a run or merge that didn't finish and are deleted on open. A document indexed
+ * again (a recrawl) is in a newer segment than its old version, and every segment's doc table lists all the
+ * documents it indexed, so the newest segment that lists a document holds its postings and older ones are
+ * ignored. For each segment the documents a newer segment has are kept in a bit set, a posting is live if
+ * its docId isn't set.
+ * <p>
+ * A background thread merges segments with a tiered policy: segments are in the same tier when their sizes
+ * are within a factor of mergeFactor, and mergeFactor adjacent segments of a tier are merged into one,
+ * dropping postings that are not live. Only adjacent segments are merged, so the merged segment takes
+ * their place in the order. A merge whose segment would be over maxSegmentBytes is not done, so that
+ * segments stay small enough to be memory-mapped. Queries read a {@link Snapshot}, whose segments stay open
+ * until it is closed even if a merge replaces them.
+ */
+public class SegmentedIndex implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentedIndex.class);
+
+    static final String MANIFEST = "segments.manifest";
+    static final String SEGMENT_PREFIX = "segment-";
+    static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path dir;
+    private final int mergeFactor;
+    private final long mergeFloorBytes;
+    private final long maxSegmentBytes;
+    private final boolean mapped;
+    private final ExecutorService merger;
+    private final AtomicBoolean mergeScheduled = new AtomicBoolean();
+    private final Object mergeLock = new Object();
+
+    // Guarded by this
+    private State state;
+    private int lastSegmentNumber;
+    private boolean closed;
+
+    /**
+     * @param mergeFactor     segments of a tier that are merged together, at least 2
+     * @param mergeFloorBytes segments smaller than this are all in the lowest tier
+     */
+    public SegmentedIndex(Path dir, int mergeFactor, long mergeFloorBytes) throws IOException {
+        this(dir, mergeFactor, mergeFloorBytes, Long.MAX_VALUE, false);
+    }
+
+    /**
+     * @param maxSegmentBytes segments are not merged into one bigger than this
+     * @param mapped          whether segments are opened memory-mapped, see {@link SegmentReader}
+     */
+    public SegmentedIndex(Path dir, int mergeFactor, long mergeFloorBytes, long maxSegmentBytes, boolean mapped) throws IOException {
+        this.dir = dir;
+        this.mergeFactor = Math.max(2, mergeFactor);
+        this.mergeFloorBytes = Math.max(1, mergeFloorBytes);
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.mapped = mapped;
+        Files.createDirectories(dir);
+
+        Path manifest = dir.resolve(MANIFEST);
+        List<String> names = Files.exists(manifest) ? Files.readAllLines(manifest, StandardCharsets.UTF_8) : List.of();
+        List<Segment> segments = new ArrayList<>();
+        Set<String> live = new HashSet<>();
+        try {
+            for (String name : names) {
+                if (name.isBlank()) continue;
+                segments.add(new Segment(openSegment(dir.resolve(name))));
+                live.add(name);
+            }
+        } catch (IOException e) {
+            segments.forEach(Segment::release);
+            throw e;
+        }
+        try (var files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                int number = segmentNumber(file);
+                if (number < 0) continue;
+                lastSegmentNumber = Math.max(lastSegmentNumber, number);
+                if (!live.contains(file.getFileName().toString())) {
+                    logger.info("Deleting unfinished index segment {}", file);
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        this.state = new State(segments);
+        this.merger = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "index-merge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.info("Opened index with {} segments in {}", segments.size(), dir);
+        scheduleMerge();
+    }
+
+    /**
+     * Writes the postings of newly indexed documents as a new segment. Documents that are already in the
+     * index are replaced by their new version.
+     *
+     * @param shards    term maps, as built by {@link PartitionedIndexBuilder}
+     * @param documents the documents the postings were built from
+     */
+    public void add(List<Map<String, PostingData>> shards, List<Documents> documents) throws IOException {
+        Path path = nextSegmentPath();
+        SegmentWriter.write(path, shards, documents);
+        Segment segment = new Segment(openSegment(path));
+        synchronized (this) {
+            if (closed) {
+                segment.retire();
+                throw new IllegalStateException("Index is closed");
+            }
+            List<Segment> segments = new ArrayList<>(state.segments);
+            segments.add(segment);
+            try {
+                commit(segments);
+            } catch (IOException e) {
+                segment.retire();
+                throw e;
+            }
+        }
+        logger.info("Added index segment {}: {} documents, {} terms, {} postings", path.getFileName(),
+                segment.reader.docCount(), segment.reader.termCount(), segment.reader.postingsCount());
+        scheduleMerge();
+    }
+
+    // The live segments, open until the snapshot is closed
+    public synchronized Snapshot acquire() {
+        for (Segment segment : state.segments) {
+            segment.acquire();
+        }
+        return new Snapshot(state);
+    }
+
+    // Drops every segment, queries running on a snapshot still see them
+    public synchronized void deleteAll() throws IOException {
+        List<Segment> old = state.segments;
+        commit(List.of());
+        old.forEach(Segment::retire);
+    }
+
+    /**
+     * Merges segments on the calling thread until the merge policy finds none to merge. Merges are also
+     * run in the background after every {@link #add}.
+     */
+    public void mergeNow() throws IOException {
+        synchronized (mergeLock) {
+            List<Segment> window;
+            while ((window = pickMerge()) != null) {
+                try {
+                    merge(window);
+                } finally {
+                    window.forEach(Segment::release);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+        merger.shutdown();
+        try {
+            // A merge in progress finishes its segment, the merged segment is dropped since the index is closed
+            merger.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            state.segments.forEach(Segment::release);
+        }
+    }
+
+    /**
+     * The live segments at one point in time. Every document has its postings in one segment at most,
+     * a posting of a segment counts only if {@link #isLive} says so.
+     */
+    public static final class Snapshot implements Closeable {
+        private final State state;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Snapshot(State state) {
+            this.state = state;
+        }
+
+        public int segmentCount() {
+            return state.segments.size();
+        }
+
+        // Segments oldest first
+        public SegmentReader segment(int index) {
+            return state.segments.get(index).reader;
+        }
+
+        // Whether the segment holds the current version of the document
+        public boolean isLive(int segment, int docId) {
+            return !state.superseded[segment].get(docId);
+        }
+
+        /**
+         * Number of live postings of a term over all segments. Only the segments where a newer segment
+         * replaced some documents have their postings read, for the others it is the dictionary's df.
+         */
+        public int docFrequency(String term) throws IOException {
+            int df = 0;
+            for (int i = 0; i < state.segments.size(); i++) {
+                SegmentPostings postings = segment(i).postings(term);
+                if (postings == null) continue;
+                if (state.superseded[i].isEmpty()) {
+                    df += postings.df();
+                    continue;
+                }
+                while (postings.nextDoc() != SegmentPostings.NO_MORE_DOCS) {
+                    if (isLive(i, postings.docId())) df++;
+                }
+            }
+            return df;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) state.segments.forEach(Segment::release);
+        }
+    }
+
+    private void scheduleMerge() {
+        if (!mergeScheduled.compareAndSet(false, true)) return;
+        try {
+            merger.execute(() -> {
+                mergeScheduled.set(false);
+                try {
+                    mergeNow();
+                } catch (IOException | RuntimeException e) {
+                    logger.error("Index merge failed: {}", e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Closed
+            mergeScheduled.set(false);
+        }
+    }
+
+    // The first run of mergeFactor adjacent segments in the same tier, at most maxSegmentBytes together,
+    // acquired for the merge, or null
+    private synchronized List<Segment> pickMerge() {
+        if (closed) return null;
+        List<Segment> segments = state.segments;
+        int runStart = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            if (tier(segments.get(i)) != tier(segments.get(runStart))) runStart = i;
+            if (i - runStart + 1 == mergeFactor) {
+                List<Segment> window = new ArrayList<>(segments.subList(runStart, i + 1));
+                if (window.stream().mapToLong(segment -> segment.reader.sizeBytes()).sum() > maxSegmentBytes) {
+                    runStart++;
+                    continue;
+                }
+                window.forEach(Segment::acquire);
+                return window;
+            }
+        }
+        return null;
+    }
+
+    private int tier(Segment segment) {
+        double ratio = (double) Math.max(segment.reader.sizeBytes(), mergeFloorBytes) / mergeFloorBytes;
+        return (int) (Math.log(ratio) / Math.log(mergeFactor));
+    }
+
+    private void merge(List<Segment> window) throws IOException {
+        long start = System.currentTimeMillis();
+        List<SegmentReader> readers = window.stream().map(segment -> segment.reader).toList();
+        Path path = nextSegmentPath();
+        try (SegmentWriter writer = new SegmentWriter(path)) {
+            writeMerged(readers, writer);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        Segment merged = new Segment(openSegment(path));
+
+        synchronized (this) {
+            int first = state.segments.indexOf(window.get(0));
+            boolean present = !closed && first >= 0 && first + window.size() <= state.segments.size()
+                    && state.segments.subList(first, first + window.size()).equals(window);
+            if (!present) {
+                // Dropped by deleteAll while merging
+                merged.retire();
+                return;
+            }
+            List<Segment> segments = new ArrayList<>(state.segments);
+            segments.subList(first, first + window.size()).clear();
+            segments.add(first, merged);
+            try {
+                commit(segments);
+            } catch (IOException e) {
+                merged.retire();
+                throw e;
+            }
+            window.forEach(Segment::retire);
+        }
+        logger.info("Merged {} index segments into {}: {} documents, {} postings in {} ms", window.size(), path.getFileName(),
+                merged.reader.docCount(), merged.reader.postingsCount(), System.currentTimeMillis() - start);
+    }
+
+    // Writes the live postings of the segments, oldest first, as one segment
+    private static void writeMerged(List<SegmentReader> readers, SegmentWriter writer) throws IOException {
+        BitSet[] superseded = superseded(readers);
+        for (int i = 0; i < readers.size(); i++) {
+            SegmentReader reader = readers.get(i);
+            for (int d = 0; d < reader.docCount(); d++) {
+                int docId = reader.docId(d);
+                if (superseded[i].get(docId)) continue;
+                SegmentReader.DocInfo document = reader.document(docId);
+                writer.addDocument(docId, document.url(), document.title(), document.popularityScore());
+            }
+        }
+
+        // Terms of all segments in byte order, each reader's current term cached
+        int[] next = new int[readers.size()];
+        byte[][] terms = new byte[readers.size()][];
+        for (int i = 0; i < readers.size(); i++) {
+            terms[i] = readers.get(i).termCount() > 0 ? readers.get(i).termBytes(0) : null;
+        }
+        SegmentPostings[] postings = new SegmentPostings[readers.size()];
+        while (true) {
+            byte[] term = null;
+            for (byte[] candidate : terms) {
+                if (candidate != null && (term == null || Arrays.compareUnsigned(candidate, term) < 0)) term = candidate;
+            }
+            if (term == null) break;
+
+            writer.startTerm(term);
+            for (int i = 0; i < readers.size(); i++) {
+                postings[i] = null;
+                if (terms[i] == null || !Arrays.equals(terms[i], term)) continue;
+                postings[i] = readers.get(i).postings(next[i]);
+                nextLive(postings[i], superseded[i]);
+                next[i]++;
+                terms[i] = next[i] < readers.get(i).termCount() ? readers.get(i).termBytes(next[i]) : null;
+            }
+            // Live docIds are unique over the segments, the postings are merged in docId order
+            while (true) {
+                int lowest = -1;
+                for (int i = 0; i < postings.length; i++) {
+                    if (postings[i] == null || postings[i].docId() == SegmentPostings.NO_MORE_DOCS) continue;
+                    if (lowest < 0 || postings[i].docId() < postings[lowest].docId()) lowest = i;
+                }
+                if (lowest < 0) break;
+                SegmentPostings current = postings[lowest];
+                writer.addPosting(current.docId(), current.tf(), current.positionBytes());
+                nextLive(current, superseded[lowest]);
+            }
+        }
+    }
+
+    private static void nextLive(SegmentPostings postings, BitSet superseded) {
+        int doc;
+        do {
+            doc = postings.nextDoc();
+        } while (doc != SegmentPostings.NO_MORE_DOCS && superseded.get(doc));
+    }
+
+    // For each segment, oldest first, the documents a newer segment of the list has
+    private static BitSet[] superseded(List<SegmentReader> readers) {
+        BitSet[] superseded = new BitSet[readers.size()];
+        BitSet newer = new BitSet();
+        for (int i = readers.size() - 1; i >= 0; i--) {
+            superseded[i] = (BitSet) newer.clone();
+            SegmentReader reader = readers.get(i);
+            for (int d = 0; d < reader.docCount(); d++) {
+                newer.set(reader.docId(d));
+            }
+        }
+        return superseded;
+    }
+
+    // Caller holds the lock
+    private void commit(List<Segment> segments) throws IOException {
+        StringBuilder manifest = new StringBuilder();
+        for (Segment segment : segments) {
+            manifest.append(segment.reader.getPath().getFileName()).append('\n');
+        }
+        Path tmp = dir.resolve(MANIFEST + ".tmp");
+        Files.writeString(tmp, manifest, StandardCharsets.UTF_8);
+        Files.move(tmp, dir.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        state = new State(segments);
+    }
+
+    private SegmentReader openSegment(Path path) throws IOException {
+        SegmentReader reader = SegmentReader.open(path, mapped);
+        if (mapped && !reader.isMapped()) logger.warn("Index segment {} is too big to map, reading it from the file", path);
+        return reader;
+    }
+
+    private synchronized Path nextSegmentPath() {
+        return dir.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, ++lastSegmentNumber, SEGMENT_SUFFIX));
+    }
+
+    // Number of a segment file, -1 for other files
+    static int segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) return -1;
+        try {
+            return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Live segments oldest first, with the documents of each that a newer one has
+    private static final class State {
+        final List<Segment> segments;
+        final BitSet[] superseded;
+
+        State(List<Segment> segments) {
+            this.segments = List.copyOf(segments);
+            this.superseded = SegmentedIndex.superseded(segments.stream().map(segment -> segment.reader).toList());
+        }
+    }
+
+    // A segment's reader, closed when the index and every snapshot and merge using it have released it
+    private static final class Segment {
+        final SegmentReader reader;
+        // The index holds one reference while the segment is live
+        private final AtomicInteger references = new AtomicInteger(1);
+        private volatile boolean retired;
+
+        Segment(SegmentReader reader) {
+            this.reader = reader;
+        }
+
+        void acquire() {
+            references.incrementAndGet();
+        }
+
+        void release() {
+            if (references.decrementAndGet() > 0) return;
+            try {
+                reader.close();
+                if (retired) Files.deleteIfExists(reader.getPath());
+            } catch (IOException e) {
+                logger.error("Failed to close index segment {}: {}", reader.getPath(), e.getMessage());
+            }
+        }
+
+        // Takes the segment out of the index, its file is deleted once nothing uses it
+        void retire() {
+            retired = true;
+            release();
+        }
+    }
+}
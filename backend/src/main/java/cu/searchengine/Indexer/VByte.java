@@ -0,0 +1,33 @@
+package cu.searchengine.Indexer;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Variable-byte integers: 7 bits a byte, least significant first, the high bit set on every byte but the
+ * last. Values below 128 take one byte.
+ */
+final class VByte {
+
+    private VByte() {
+    }
+
+    static void write(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    // Reads at the buffer's position and moves it past the value
+    static int read(ByteBuffer in) {
+        int b = in.get();
+        int value = b & 0x7f;
+        for (int shift = 7; b < 0; shift += 7) {
+            b = in.get();
+            value |= (b & 0x7f) << shift;
+        }
+        return value;
+    }
+}
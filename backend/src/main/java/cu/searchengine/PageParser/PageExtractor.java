@@ -0,0 +1,130 @@
+package cu.searchengine.PageParser;
+
+import org.jsoup.internal.StringUtil;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Extracts everything the crawler stores from a parsed page in a single walk over the DOM.
+ * <p>
+ * Each text node is appended once, so text nested in several divs is no longer repeated, and headings
+ * and absolute links are collected on the same walk instead of with one select() per field. Whitespace
+ * is normalised the way Element.text() does it. Runs on the calling thread.
+ */
+public class PageExtractor {
+
+    public static ExtractedPage extract(Document doc) {
+        Element root = doc.body() != null ? doc.body() : doc;
+        Visitor visitor = new Visitor();
+        NodeTraversor.traverse(visitor, root);
+        return new ExtractedPage(doc.title(), visitor.mainHeadings, visitor.subHeadings,
+                visitor.content.toString().trim(), visitor.links);
+    }
+
+    private static class Visitor implements NodeVisitor {
+        final StringBuilder content = new StringBuilder(4096);
+        final List<String> mainHeadings = new ArrayList<>();
+        final List<String> subHeadings = new ArrayList<>();
+        final List<String> links = new ArrayList<>();
+
+        // Heading being collected, headings don't nest in practice so one is enough
+        Element heading;
+        final StringBuilder headingText = new StringBuilder();
+
+        @Override
+        public void head(Node node, int depth) {
+            if (node instanceof TextNode textNode) {
+                appendText(content, textNode.getWholeText());
+                if (heading != null) appendText(headingText, textNode.getWholeText());
+                return;
+            }
+            if (!(node instanceof Element element)) return;
+
+            if (element.isBlock() || element.normalName().equals("br")) {
+                separate(content);
+                if (heading != null) separate(headingText);
+            }
+            switch (element.normalName()) {
+                case "a" -> {
+                    String link = element.absUrl("href");
+                    if (!link.isEmpty()) links.add(link);
+                }
+                case "h1", "h2", "h3", "h4", "h5", "h6" -> {
+                    if (heading == null) {
+                        heading = element;
+                        headingText.setLength(0);
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        @Override
+        public void tail(Node node, int depth) {
+            if (node != heading) return;
+            String text = headingText.toString().trim();
+            if (!text.isEmpty()) {
+                (heading.normalName().equals("h1") ? mainHeadings : subHeadings).add(text);
+            }
+            heading = null;
+        }
+
+        private static void appendText(StringBuilder builder, String text) {
+            StringUtil.appendNormalisedWhitespace(builder, text, endsWithSpace(builder));
+        }
+
+        private static void separate(StringBuilder builder) {
+            if (!endsWithSpace(builder)) builder.append(' ');
+        }
+
+        private static boolean endsWithSpace(StringBuilder builder) {
+            return builder.length() == 0 || builder.charAt(builder.length() - 1) == ' ';
+        }
+    }
+
+    public static class ExtractedPage {
+        private final String title;
+        private final List<String> mainHeadings;
+        private final List<String> subHeadings;
+        private final String content;
+        private final List<String> links;
+
+        ExtractedPage(String title, List<String> mainHeadings, List<String> subHeadings, String content, List<String> links) {
+            this.title = title;
+            this.mainHeadings = mainHeadings;
+            this.subHeadings = subHeadings;
+            this.content = content;
+            this.links = links;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public List<String> getMainHeadings() {
+            return mainHeadings;
+        }
+
+        public List<String> getSubHeadings() {
+            return subHeadings;
+        }
+
+        // Body text, each text node once
+        public String getContent() {
+            return content;
+        }
+
+        // Absolute URLs of every <a href>, in document order
+        public List<String> getLinks() {
+            return links;
+        }
+    }
+}
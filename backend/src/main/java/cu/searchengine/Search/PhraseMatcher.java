@@ -0,0 +1,130 @@
+package cu.searchengine.Search;
+
+import cu.searchengine.Indexer.PositionCodec;
+import cu.searchengine.model.Documents;
+import cu.searchengine.service.InvertedIndexService;
+import cu.searchengine.utils.Tokenizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matches a quoted phrase against the positional postings of the index, without loading the documents.
+ * <p>
+ * The phrase is tokenized like the indexed text, so it becomes terms with their word offsets in the phrase
+ * (stop words are not terms but keep their offset). A document contains the phrase when, for some start
+ * position p, every term occurs at p plus its offset.
+ * <p>
+ * A single term or a phrase of stop words only has nothing to intersect, it is looked for in the text of
+ * the title and content as before, so "run" still matches "running" and NOT "to be" still excludes. Postings
+ * indexed before positions were stored have none, for those documents longer phrases are matched on the
+ * text as well.
+ */
+public class PhraseMatcher {
+    private final String text;
+    private final String[] terms;
+    private final int[] offsets;
+
+    public PhraseMatcher(String phrase, Tokenizer tokenizer) {
+        this.text = phrase.toLowerCase();
+        List<String> phraseTerms = new ArrayList<>();
+        List<Integer> phraseOffsets = new ArrayList<>();
+        tokenizer.tokenize(phrase, 0, (term, position) -> {
+            phraseTerms.add(term);
+            phraseOffsets.add(position);
+        });
+        this.terms = phraseTerms.toArray(new String[0]);
+        this.offsets = phraseOffsets.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public List<String> getTerms() {
+        return Arrays.asList(terms);
+    }
+
+    // Only phrases of two terms or more are matched on positions, the others on the text
+    public boolean needsPositions() {
+        return terms.length > 1;
+    }
+
+    /**
+     * @param termPositions the stored positions of the phrase's terms, by term and then by document id as
+     *                      {@link InvertedIndexService#getPositions} returns them, only read when the phrase
+     *                      needs positions
+     * @param documents     the documents matched on their text, by id
+     */
+    public boolean matches(int docId, Map<String, Map<Integer, byte[]>> termPositions, Map<Integer, Documents> documents) {
+        if (!needsPositions()) return containedIn(documents.get(docId));
+        int[][] positions = new int[terms.length][];
+        for (int i = 0; i < terms.length; i++) {
+            Map<Integer, byte[]> postings = termPositions.getOrDefault(terms[i], Map.of());
+            if (!postings.containsKey(docId)) return false;
+            byte[] encoded = postings.get(docId);
+            // Indexed before positions were stored, until the document is reindexed
+            if (encoded == null) return containedIn(documents.get(docId));
+            positions[i] = PositionCodec.decode(encoded);
+        }
+        return containsPhrase(positions, offsets);
+    }
+
+    // Whether the phrase appears as is in the title or content
+    private boolean containedIn(Documents document) {
+        if (document == null) return false;
+        return contains(document.getContent()) || contains(document.getTitle());
+    }
+
+    private boolean contains(String field) {
+        return field != null && field.toLowerCase().contains(text);
+    }
+
+    /**
+     * Intersects the position lists, moving each one forward only.
+     *
+     * @param positions ascending positions of each term
+     * @return whether there is a p with every term i at p + offsets[i]
+     */
+    public static boolean containsPhrase(int[][] positions, int[] offsets) {
+        int[] next = new int[positions.length];
+        if (positions.length == 0 || positions[0].length == 0) return false;
+        int start = positions[0][0] - offsets[0];
+        int matched = 0;
+        for (int i = 0; matched < positions.length; i = (i + 1) % positions.length) {
+            int target = start + offsets[i];
+            int[] list = positions[i];
+            while (next[i] < list.length && list[next[i]] < target) next[i]++;
+            if (next[i] == list.length) return false;
+            if (list[next[i]] == target) {
+                matched++;
+            } else {
+                // This term is first seen further on, the phrase can't start before that
+                start = list[next[i]] - offsets[i];
+                matched = 1;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param positions ascending positions of each term
+     * @return whether every term occurs within a window of distance + 1 consecutive positions, in any order
+     */
+    public static boolean withinDistance(int[][] positions, int distance) {
+        int[] next = new int[positions.length];
+        for (int[] list : positions) {
+            if (list.length == 0) return false;
+        }
+        while (true) {
+            // The window spanned by the current position of every term, move the term at its left end on
+            int lowest = 0;
+            int max = Integer.MIN_VALUE;
+            for (int i = 0; i < positions.length; i++) {
+                int position = positions[i][next[i]];
+                if (position < positions[lowest][next[lowest]]) lowest = i;
+                max = Math.max(max, position);
+            }
+            if (max - positions[lowest][next[lowest]] <= distance) return true;
+            if (++next[lowest] == positions[lowest].length) return false;
+        }
+    }
+}
@@ -153,68 +153,88 @@ public class SearchController {
         return StringEscapeUtils.escapeHtml4(content.substring(0, Math.min(snippetLen, content.length())));
     }
 
-    private List<RankedDocument> filterByLogicalOperations(List<RankedDocument> rankedDocs, List<QueryProcessor.LogicalOperation> operations) {
+    List<RankedDocument> filterByLogicalOperations(List<RankedDocument> rankedDocs, List<QueryProcessor.LogicalOperation> operations) {
+        // Tokenize the phrases once, the tokenizer is not thread safe
+        List<List<PhraseMatcher>> phrasesByOperation = new ArrayList<>();
+        Set<String> positionalTerms = new HashSet<>();
+        boolean matchesOnText = false;
+        for (QueryProcessor.LogicalOperation operation : operations) {
+            List<PhraseMatcher> phrases = new ArrayList<>();
+            for (String[] phrase : operation.getTerms()) {
+                PhraseMatcher matcher = new PhraseMatcher(String.join(" ", phrase), tokenizer);
+                phrases.add(matcher);
+                if (matcher.needsPositions()) {
+                    positionalTerms.addAll(matcher.getTerms());
+                } else {
+                    matchesOnText = true;
+                }
+            }
+            phrasesByOperation.add(phrases);
+        }
+
+        // The positions of the phrase terms in the candidate documents only
+        Set<Integer> candidates = rankedDocs.stream().map(RankedDocument::getDocId).collect(Collectors.toSet());
+        Map<String, Map<Integer, byte[]>> positions = positionalTerms.isEmpty() ? Map.of()
+                : invertedIndexService.getPositions(positionalTerms, candidates);
+
+        // Documents matched on their text, all candidates for a single word or stop words only, otherwise
+        // those indexed before positions were stored, loaded in one query
+        Set<Integer> textMatched = new HashSet<>();
+        if (matchesOnText) {
+            textMatched.addAll(candidates);
+        } else {
+            for (Map<Integer, byte[]> termPositions : positions.values()) {
+                termPositions.forEach((docId, encoded) -> {
+                    if (encoded == null) textMatched.add(docId);
+                });
+            }
+        }
+        Map<Integer, Documents> documents = new HashMap<>();
+        if (!textMatched.isEmpty()) {
+            for (Documents document : documentService.getDocumentsByIds(textMatched)) {
+                documents.put(document.getId(), document);
+            }
+        }
+
         return rankedDocs.parallelStream()
                 .filter(doc -> {
-                    try {
-                        Documents fullDoc = documentService.getDocumentById(doc.getDocId());
-                        if (fullDoc == null) return false;
-
-                        String content = fullDoc.getContent();
-                        String title = fullDoc.getTitle();
-
-                        if (content == null || title == null) return false;
-
-                        // Convert to lowercase once for case-insensitive comparison
-                        String contentLower = content.toLowerCase();
-                        String titleLower = title.toLowerCase();
-
-                        // Check all logical operations
-                        boolean matches = true;
-                        for (QueryProcessor.LogicalOperation operation : operations) {
-                            boolean operationMatch = false;
-
-                            switch (operation.getType()) {
-                                case MUST_CONTAIN:
-                                    // Document must contain ALL of these terms (AND)
-                                    operationMatch = operation.getTerms().stream().allMatch(phrase -> {
-                                        String phraseStr = String.join(" ", phrase).toLowerCase();
-                                        return contentLower.contains(phraseStr) || titleLower.contains(phraseStr);
-                                    });
-                                    if (!operationMatch) matches = false;
-                                    break;
-
-                                case SHOULD_CONTAIN:
-                                    // Document should contain ANY of these terms (OR)
-                                    operationMatch = operation.getTerms().stream().anyMatch(phrase -> {
-                                        String phraseStr = String.join(" ", phrase).toLowerCase();
-                                        return contentLower.contains(phraseStr) || titleLower.contains(phraseStr);
-                                    });
-                                    // For OR, we only need at least one match across all OR operations
-                                    if (operationMatch) matches = true;
-                                    break;
-
-                                case MUST_NOT_CONTAIN:
-                                    // Document must NOT contain these terms
-                                    operationMatch = operation.getTerms().stream().noneMatch(phrase -> {
-                                        String phraseStr = String.join(" ", phrase).toLowerCase();
-                                        return contentLower.contains(phraseStr) || titleLower.contains(phraseStr);
-                                    });
-                                    if (!operationMatch) matches = false;
-                                    break;
-                            }
-
-                            // Short-circuit if no match possible
-                            if (!matches && operation.getType() != QueryProcessor.OperationType.SHOULD_CONTAIN) {
-                                return false;
-                            }
+                    int docId = doc.getDocId();
+
+                    // Check all logical operations
+                    boolean matches = true;
+                    for (int i = 0; i < operations.size(); i++) {
+                        QueryProcessor.LogicalOperation operation = operations.get(i);
+                        List<PhraseMatcher> phrases = phrasesByOperation.get(i);
+                        boolean operationMatch = false;
+
+                        switch (operation.getType()) {
+                            case MUST_CONTAIN:
+                                // Document must contain ALL of these terms (AND)
+                                operationMatch = phrases.stream().allMatch(phrase -> phrase.matches(docId, positions, documents));
+                                if (!operationMatch) matches = false;
+                                break;
+
+                            case SHOULD_CONTAIN:
+                                // Document should contain ANY of these terms (OR)
+                                operationMatch = phrases.stream().anyMatch(phrase -> phrase.matches(docId, positions, documents));
+                                // For OR, we only need at least one match across all OR operations
+                                if (operationMatch) matches = true;
+                                break;
+
+                            case MUST_NOT_CONTAIN:
+                                // Document must NOT contain these terms
+                                operationMatch = phrases.stream().noneMatch(phrase -> phrase.matches(docId, positions, documents));
+                                if (!operationMatch) matches = false;
+                                break;
                         }
 
-                        return matches;
-                    } catch (Exception e) {
-                        System.err.println("Error in logical operation matching for doc " + doc.getDocId() + ": " + e.getMessage());
-                        return false;
+                        // Short-circuit if no match possible
+                        if (!matches && operation.getType() != QueryProcessor.OperationType.SHOULD_CONTAIN) {
+                            return false;
+                        }
                     }
+
+                    return matches;
                 })
                 .collect(Collectors.toList());
     }
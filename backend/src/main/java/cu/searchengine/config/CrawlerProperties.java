@@ -0,0 +1,160 @@
+package cu.searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Crawler settings bound from the "crawler.*" keys in application.properties.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "crawler")
+public class CrawlerProperties {
+
+    public enum FetchMode {
+        BLOCKING, // Jsoup fetches on the fixed crawler thread pool
+        ASYNC     // java.net.http.HttpClient fetches, bounded only by maxConcurrentFetches
+    }
+
+    public enum FrontierOrder {
+        FIFO, // URLs of a host in the order they were found
+        OPIC  // URLs with the most OPIC cash first, an online estimate of their importance
+    }
+
+    public enum NearDuplicateMode {
+        OFF,  // store every page
+        FLAG, // store near duplicates with nearDuplicateOf set
+        DROP  // don't store near duplicates, their links are still followed
+    }
+
+    // Seed URLs, one per line, from any Spring resource location (classpath:, file:)
+    private String seeds = "classpath:static/seeds.txt";
+
+    // Directory of the checkpoint snapshot and journal, empty for the working directory
+    private String stateDir = "";
+
+    // URLs the frontier holds in memory, the rest is spilled to segment files next to the journal. 0 keeps all in memory.
+    private int frontierMemoryUrls = 1_000_000;
+    private long frontierSpillSegmentBytes = 64L << 20;
+
+    // Which queued URL a host's next fetch takes, and which host goes first
+    private FrontierOrder frontierOrder = FrontierOrder.OPIC;
+
+    private FetchMode fetchMode = FetchMode.BLOCKING;
+
+    // Global cap on requests in flight in ASYNC mode
+    private int maxConcurrentFetches = 1000;
+
+    // Decoded size above which a page is not downloaded further and skipped
+    private int fetchMaxBodyBytes = 2 << 20;
+
+    // Threads that parse fetched pages in ASYNC mode
+    private int parseThreads = Runtime.getRuntime().availableProcessors();
+
+    // Adapt each host's parallelism and rate to its latency and errors (AIMD), off keeps the fixed defaults
+    private boolean adaptiveThrottling = true;
+
+    // Upper bound on parallel fetches to a single host
+    private int hostMaxInFlight = 8;
+
+    // Responses slower than this make the host back off
+    private long hostLatencyTargetMillis = 2_000;
+
+    // Hosts whose smoothed latency passes this are paused, hostSuspendMillis at first and doubling after that
+    private long hostSuspendLatencyMillis = 5_000;
+    private long hostSuspendMillis = 30_000;
+
+    // Lower bound on the per-host request timeout derived from observed latency
+    private long minFetchTimeoutMillis = 2_000;
+
+    // Times a URL is put back after a 429, a 503 or a timeout before it is given up on
+    private int maxFetchRetries = 2;
+
+    // Initial sizing of the visited URL fingerprint table, it grows past this if needed
+    private int visitedExpectedUrls = 1_000_000;
+
+    // Write a compacted state snapshot once the checkpoint journal grows past this size
+    private long journalCompactBytes = 64L * 1024 * 1024;
+
+    // What to do with a page whose SimHash is within nearDuplicateDistance bits of an already crawled one
+    private NearDuplicateMode nearDuplicateMode = NearDuplicateMode.DROP;
+
+    // Max Hamming distance between SimHashes of near duplicates (0-3)
+    private int nearDuplicateDistance = 3;
+
+    // Periodically refetch stored pages whose revisit time has passed
+    private boolean recrawlEnabled = false;
+
+    // Pages refetched per recrawl run
+    private int recrawlBatchSize = 500;
+
+    // Stream crawled pages straight into the indexer instead of storing them and polling for unindexed ones
+    private boolean pipelineEnabled = false;
+
+    // Pages waiting to be indexed before crawler threads block
+    private int pipelineQueueCapacity = 2000;
+
+    // Pages indexed and stored per batch
+    private int pipelineBatchSize = 200;
+
+    // How long a batch waits to fill up before it is indexed anyway
+    private long pipelineMaxBatchDelayMillis = 2000;
+
+    // Resolved host names kept by the crawler's DNS cache
+    private long dnsCacheMaxHosts = 100_000;
+
+    private long dnsCacheTtlSeconds = 300;
+
+    // How long a host that failed to resolve is skipped
+    private long dnsNegativeTtlSeconds = 60;
+
+    // Run a crawl when the application starts
+    private boolean crawlOnStartup = false;
+
+    // Distributed crawling: this process crawls the hosts that hash to shardIndex out of shardCount
+    private int shardIndex = 0;
+
+    private int shardCount = 1;
+
+    // Points per shard on the consistent hash ring, more points spread hosts more evenly
+    private int shardVirtualNodes = 512;
+
+    // Names the shared page counter, shards with the same crawl id share one page budget
+    private String crawlId = "default";
+
+    // Pages a shard reserves from the shared page budget at a time
+    private int pageBudgetBlockSize = 50;
+
+    // Links sent to another shard per batch
+    private int linkExchangeBatchSize = 500;
+
+    // How often partly filled batches are sent and incoming links are polled
+    private long linkExchangePollMillis = 1000;
+
+    // A shard with an empty frontier stops after receiving no links for this long
+    private long shardIdleExitMillis = 60_000;
+
+    // Keep the raw HTML of every fetched page in compressed WARC segments, so pages can be reparsed without a refetch
+    private boolean archiveEnabled = false;
+
+    // Archive directory, shards archive to shard-<index> under it
+    private String archiveDir = "archive";
+
+    // Size at which an archive segment is closed and a new one started
+    private long archiveSegmentBytes = 1L << 30;
+
+    // Rebuild the stored documents from the archive when the application starts
+    private boolean reparseOnStartup = false;
+
+    // Threads that decompress, parse and extract archived pages
+    private int reparseThreads = Runtime.getRuntime().availableProcessors();
+
+    // Rebuilt documents stored per bulk write
+    private int reparseBatchSize = 500;
+
+    // Hosts that get their own crawler.fetch latency series, later hosts are tagged host=other
+    private int metricsMaxHosts = 200;
+}
@@ -0,0 +1,38 @@
+package cu.searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Indexer settings bound from the "indexer.*" keys in application.properties.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "indexer")
+public class IndexerProperties {
+
+    public enum Storage {
+        MONGO,   // one invertedIndex document per term, upserted on every indexing run
+        SEGMENTS // immutable segment files in segmentDir, one per indexing run, merged in the background
+    }
+
+    private Storage storage = Storage.MONGO;
+
+    // Directory of the segment files and their manifest
+    private String segmentDir = "index";
+
+    // Number of segments of similar size that are merged into one
+    private int mergeFactor = 10;
+
+    // Segments below this size are all merged as if they had this size
+    private long mergeFloorBytes = 1L << 20;
+
+    // Merges stop at this size, segments under 2 GB can be memory-mapped
+    private long maxSegmentBytes = 1L << 30;
+
+    // Serve queries from segments mapped into memory instead of reading them into the heap
+    private boolean memoryMapped = true;
+}
@@ -0,0 +1,32 @@
+package cu.searchengine.config;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.config.MeterFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Configuration
+public class MetricsConfig {
+
+    // A crawl touches far more hosts than a metrics backend should hold series for: the first
+    // crawler.metrics-max-hosts hosts keep their own fetch timers, the rest are recorded as host=other
+    @Bean
+    public MeterFilter crawlerHostTagLimit(CrawlerProperties properties) {
+        Set<String> hosts = ConcurrentHashMap.newKeySet();
+        int maxHosts = properties.getMetricsMaxHosts();
+        return new MeterFilter() {
+            @Override
+            public Meter.Id map(Meter.Id id) {
+                if (!id.getName().startsWith("crawler.fetch")) return id;
+                String host = id.getTag("host");
+                if (host == null || hosts.contains(host)) return id;
+                if (hosts.size() < maxHosts && hosts.add(host)) return id;
+                return id.replaceTags(Tags.of(id.getTagsAsIterable()).and("host", "other"));
+            }
+        };
+    }
+}
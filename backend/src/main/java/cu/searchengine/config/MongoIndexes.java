@@ -0,0 +1,55 @@
+package cu.searchengine.config;
+
+import cu.searchengine.model.Documents;
+import cu.searchengine.model.InvertedIndexEntry;
+import cu.searchengine.model.LinkBatch;
+import cu.searchengine.model.UrlDictionaryEntry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Creates the indexes declared with @Indexed and @CompoundIndex on the stored classes.
+ * <p>
+ * Spring Data only creates them itself with spring.data.mongodb.auto-index-creation=true, which is off by
+ * default. They are ensured here once at startup, before the crawler and the scheduled jobs run the queries
+ * that rely on them. An index that can't be built, e.g. a unique one over a collection that already holds
+ * duplicates, is logged and the application starts without it.
+ */
+@Component
+public class MongoIndexes {
+    private static final Logger logger = LoggerFactory.getLogger(MongoIndexes.class);
+
+    // Classes whose queries rely on their declared indexes
+    static final List<Class<?>> INDEXED_TYPES = List.of(Documents.class, InvertedIndexEntry.class, LinkBatch.class,
+            UrlDictionaryEntry.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    public MongoIndexes(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @PostConstruct
+    public void ensureIndexes() {
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+        for (Class<?> type : INDEXED_TYPES) {
+            IndexOperations indexOps = mongoTemplate.indexOps(type);
+            for (IndexDefinition index : resolver.resolveIndexFor(type)) {
+                try {
+                    indexOps.ensureIndex(index);
+                } catch (RuntimeException e) {
+                    logger.error("Failed to create index {} on {}: {}", index.getIndexKeys().toJson(), type.getSimpleName(), e.getMessage());
+                }
+            }
+        }
+    }
+}
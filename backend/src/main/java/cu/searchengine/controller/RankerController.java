@@ -1,5 +1,6 @@
 package cu.searchengine.controller;
 
+import cu.searchengine.Indexer.SegmentedIndex;
 import cu.searchengine.model.InvertedIndexEntry;
 import cu.searchengine.model.RankedDocument;
 import cu.searchengine.ranker.PopularityScorer;
@@ -9,6 +10,7 @@ import cu.searchengine.service.InvertedIndexService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
@@ -35,16 +37,25 @@ public class RankerController {
     }
 
     public List<RankedDocument> rankDocuments(String[] wordsArray) {
-        // Fetch word entries (cached by InvertedIndexService)
-        Map<String, InvertedIndexEntry> wordToEntryMap = invertedIndexService.getEntriesForWords(wordsArray);
-        if (wordToEntryMap.isEmpty()) {
-            return List.of(); // Return empty list immediately
-        }
-
-        // Step 1: Calculate relevance scores (already parallelized internally)
-        Map<Integer, RankedDocument> docScoresMap = relevanceScorer.calculateRelevanceScores(wordsArray, wordToEntryMap);
-
+        Map<Integer, RankedDocument> docScoresMap;
+        if (invertedIndexService.isSegmented()) {
+            // Step 1: Score straight from the index segments, no postings lists are built
+            try (SegmentedIndex.Snapshot snapshot = invertedIndexService.acquireSegments()) {
+                docScoresMap = relevanceScorer.calculateRelevanceScores(wordsArray, snapshot);
+            } catch (IOException e) {
+                logger.error("Error reading index segments: {}", e.getMessage());
+                return List.of();
+            }
+        } else {
+            // Fetch word entries (cached by InvertedIndexService)
+            Map<String, InvertedIndexEntry> wordToEntryMap = invertedIndexService.getEntriesForWords(wordsArray);
+            if (wordToEntryMap.isEmpty()) {
+                return List.of(); // Return empty list immediately
+            }
 
+            // Step 1: Calculate relevance scores (already parallelized internally)
+            docScoresMap = relevanceScorer.calculateRelevanceScores(wordsArray, wordToEntryMap);
+        }
 
         // Step 3: Calculate final scores and sort
         docScoresMap.forEach((docId, doc) -> {
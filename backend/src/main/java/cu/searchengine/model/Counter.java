@@ -0,0 +1,18 @@
+package cu.searchengine.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Named counter shared by crawler processes, only changed with atomic $inc updates.
+ */
+@Document(collection = "counters")
+@Data
+@NoArgsConstructor
+public class Counter {
+    @Id
+    private String name;
+    private long value;
+}
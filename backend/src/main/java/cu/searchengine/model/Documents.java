@@ -16,7 +16,7 @@ import java.util.Set;
 @Document(collection = "documents")
 public class Documents implements Comparable<Documents> {
     @Id
-    private Integer id; // Unique identifier for the document
+    private Integer id; // Dense id from the DocIdDictionary
 
     @Indexed(unique = true)
     private String url;
@@ -27,10 +27,27 @@ public class Documents implements Comparable<Documents> {
     private List<String> links;
     private Double popularityScore;
 
+    // SimHash of the content, 0 if the page is too short to fingerprint
+    private long simHash;
+    // Id of the earlier page this one nearly duplicates, null if it is original
+    private Integer nearDuplicateOf;
+
+    // Recrawl state: validators for conditional GETs, hash of the extracted text and the revisit schedule
+    private String etag;
+    private String lastModified;
+    private long contentHash;
+    private long lastFetched; // epoch millis
+    @Indexed
+    private long nextFetchAt; // epoch millis
+    private long revisitInterval; // millis
+
     @Getter
     @Setter
     private boolean invertedIndexProcessed = false;
-    private Set<Integer> webGraph;
+    // Set when an indexed page comes back for indexing with new content, its stored postings are replaced
+    private boolean reindex;
+    // UrlFingerprints of the distinct outgoing links, crawled or not
+    private Set<Long> webGraph;
 
     @Getter
     private Set<Integer> incomingLinks;
@@ -38,7 +55,7 @@ public class Documents implements Comparable<Documents> {
     public Documents() {
     }
 
-    public Documents(int id, String url, String title, List<String> mainHeading, List<String> subHeading, String content, List<String> Links, Set<Integer> webGraph) {
+    public Documents(int id, String url, String title, List<String> mainHeading, List<String> subHeading, String content, List<String> Links, Set<Long> webGraph) {
         this.id = id;
         this.url = url;
         this.title = title;
@@ -50,9 +67,8 @@ public class Documents implements Comparable<Documents> {
         this.popularityScore = 0.0;
     }
 
-    // Alternative constructor for auto-generating IDs
+    // Without an id yet, it is assigned when the page is stored
     public Documents(String url, String title, List<String> mainHeading, List<String> subHeading, String content, List<String> Links) {
-        this.id = url.hashCode(); // Generate ID based on URL (ensures consistency)
         this.url = url;
         this.title = title;
         this.mainHeading = mainHeading;
@@ -13,6 +13,8 @@ public class IndexDocument {
     private String docTitle;
     private Integer tf;
     private double popularityScore;
+    private byte[] positions; // Word positions of the term in the document, see PositionCodec
+
 
     public IndexDocument() {
     }
@@ -25,6 +27,11 @@ public class IndexDocument {
         this.popularityScore = popularityScore;
     }
 
+    public IndexDocument(Integer docId, String url, String docTitle, Integer tf, double popularityScore, byte[] positions) {
+        this(docId, url, docTitle, tf, popularityScore);
+        this.positions = positions;
+    }
+
     public IndexDocument(String url, String docTitle) {
         this.url = url;
         this.docTitle = docTitle;
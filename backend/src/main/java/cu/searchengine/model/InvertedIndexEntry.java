@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.ArrayList;
@@ -14,6 +15,8 @@ import java.util.List;
  * and a list of postings (document IDs, term frequencies, and positions).
  */
 @Document(collection = "invertedIndex")
+// Finds the entries a reindexed document has postings in, IndexDocument.docId is stored as _id
+@CompoundIndex(name = "postings_docId", def = "{ 'RankedPostings._id': 1 }")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -0,0 +1,35 @@
+package cu.searchengine.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.List;
+
+/**
+ * Links one crawler shard discovered for hosts owned by another shard, delivered through Mongo.
+ */
+@Document(collection = "crawl_link_batches")
+// A shard polls its own batches oldest first
+@CompoundIndex(name = "shard_createdAt", def = "{ 'shard': 1, 'createdAt': 1 }")
+@Data
+@NoArgsConstructor
+public class LinkBatch {
+    @Id
+    private String id;
+
+    // Shard the links belong to
+    private int shard;
+    private int fromShard;
+    private long createdAt; // epoch millis
+    private List<String> urls;
+
+    public LinkBatch(int shard, int fromShard, List<String> urls) {
+        this.shard = shard;
+        this.fromShard = fromShard;
+        this.urls = urls;
+        this.createdAt = System.currentTimeMillis();
+    }
+}
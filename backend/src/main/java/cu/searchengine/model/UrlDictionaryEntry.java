@@ -0,0 +1,30 @@
+package cu.searchengine.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * One URL of the document id dictionary, see {@link cu.searchengine.service.DocIdDictionary}.
+ */
+@Document(collection = "url_dictionary")
+@Data
+@NoArgsConstructor
+public class UrlDictionaryEntry {
+    // 64-bit fingerprint of the URL, or the next free value after it when two URLs share a fingerprint
+    @Id
+    private Long key;
+
+    // Unique, so a block handed out twice fails on insert instead of giving two URLs the same id
+    @Indexed(unique = true)
+    private int docId;
+    private String url;
+
+    public UrlDictionaryEntry(long key, int docId, String url) {
+        this.key = key;
+        this.docId = docId;
+        this.url = url;
+    }
+}
@@ -1,163 +1,102 @@
 package cu.searchengine.ranker;
 
-import cu.searchengine.model.Documents;
-import cu.searchengine.model.RankedDocument;
 import cu.searchengine.service.DocumentService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
-import java.util.*;
-import java.util.concurrent.*;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
 @Component
 public class PopularityScorer {
+    private static final Logger logger = LoggerFactory.getLogger(PopularityScorer.class);
+
     private static final double DAMPING = 0.85;
     private static final double EPSILON = 0.0001;
     private static final int MAX_ITERATIONS = 100;
     private final DocumentService documentService;
-    private final Map<Integer, Set<Integer>> webGraph;
-    private final Set<Integer> allPages;
-    private final Map<Integer, List<Integer>> incomingLinks;
-    private final Set<Integer> danglingNodes;
-    private final int numThreads;
 
     public PopularityScorer(DocumentService documentService) {
         this.documentService = documentService;
-        this.webGraph = documentService.getWebGraph();
-        this.numThreads = 128;
-
-        // Initialize allPages
-        this.allPages = new HashSet<>();
-        for (Integer page : webGraph.keySet()) {
-            allPages.add(page);
-            allPages.addAll(webGraph.get(page));
-        }
-
-        // Initialize danglingNodes
-        this.danglingNodes = new HashSet<>();
-        for (Integer page : allPages) {
-            if (!webGraph.containsKey(page) || webGraph.get(page).isEmpty()) {
-                danglingNodes.add(page);
-            }
-        }
-
-        // Initialize incomingLinks
-        this.incomingLinks = new HashMap<>();
-        for (Integer page : allPages) {
-            incomingLinks.put(page, new ArrayList<>());
-        }
-        for (Map.Entry<Integer, Set<Integer>> entry : webGraph.entrySet()) {
-            Integer source = entry.getKey();
-            for (Integer target : entry.getValue()) {
-                incomingLinks.get(target).add(source);
-            }
-        }
     }
 
     public void calculatePopularityScores() {
-        Map<Integer, Double> pageRankScores = calculatePageRank();
-        int size = documentService.getNumberOfDocuments();
-        System.out.println("Number of documents: " + size);
-        for (Map.Entry<Integer, Double> entry : pageRankScores.entrySet()) {
-            Integer docId = entry.getKey();
-            Double pageRankScore = entry.getValue();
-                documentService.updatePopularityScore(docId , pageRankScore);
+        // Loaded here rather than on construction, the graph is the whole document collection
+        WebGraph webGraph;
+        try {
+            webGraph = documentService.getWebGraph();
+        } catch (IllegalStateException e) {
+            // Documents stored before the id dictionary, PageRank waits for the archive reparse
+            logger.warn("Skipping PageRank: {}", e.getMessage());
+            return;
+        }
+        double[] pageRankScores = calculatePageRank(webGraph);
+        logger.info("Number of documents: {}, links between them: {}", webGraph.pageCount(), webGraph.linkCount());
+        for (int docId = 0; docId < pageRankScores.length; docId++) {
+            if (webGraph.isPage(docId)) documentService.updatePopularityScore(docId, pageRankScores[docId]);
         }
-
     }
 
-    private Map<Integer, Double> calculatePageRank() {
-        int n = allPages.size();
-        Map<Integer, Double> currPageRank = new ConcurrentHashMap<>();
-        Map<Integer, Double> nextPageRank = new ConcurrentHashMap<>();
+    /**
+     * PageRank of every page, indexed by document id, 0 for ids that are not pages.
+     */
+    public static double[] calculatePageRank(WebGraph graph) {
+        int size = graph.size();
+        int n = graph.pageCount();
+        double[] currPageRank = new double[size];
+        double[] nextPageRank = new double[size];
+        // Rank each page passes along every one of its links
+        double[] share = new double[size];
+        if (n == 0) return currPageRank;
 
         // Initialize with equal probability
-        double initialRank = 1.0 / n;
-        for (Integer page : allPages) {
-            currPageRank.put(page, initialRank);
+        for (int page = 0; page < size; page++) {
+            if (graph.isPage(page)) currPageRank[page] = 1.0 / n;
         }
 
-        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
-        boolean converged = false;
-        int iterations = 0;
-
-        try {
-            while (!converged && iterations < MAX_ITERATIONS) {
-                // Calculate dangling node contribution
-                double danglingWeight = 0;
-                for (Integer page : danglingNodes) {
-                    danglingWeight += currPageRank.get(page);
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            // Dangling pages spread their rank over every page
+            double danglingWeight = 0;
+            for (int page = 0; page < size; page++) {
+                int outDegree = graph.outDegree(page);
+                if (outDegree == 0) {
+                    danglingWeight += currPageRank[page];
+                    share[page] = 0;
+                } else {
+                    share[page] = currPageRank[page] / outDegree;
                 }
-                danglingWeight = DAMPING * danglingWeight / n;
-
-                double randomJumpProbability = (1 - DAMPING) / n;
-
-                // Divide pages into chunks for parallel processing
-                List<Integer> pageList = new ArrayList<>(allPages);
-                int chunkSize = Math.max(1, pageList.size() / numThreads);
-                List<List<Integer>> pageChunks = new ArrayList<>();
-                for (int i = 0; i < pageList.size(); i += chunkSize) {
-                    pageChunks.add(pageList.subList(i, Math.min(i + chunkSize, pageList.size())));
-                }
-
-                // Create tasks for each chunk
-                double finalDanglingWeight = danglingWeight;
-                List<Callable<Void>> tasks = pageChunks.stream().map(chunk -> (Callable<Void>) () -> {
-                    for (Integer page : chunk) {
-                        double sum = 0;
-                        for (Integer sourceNode : incomingLinks.get(page)) {
-                            int outDegree = webGraph.get(sourceNode).size();
-                            sum += currPageRank.get(sourceNode) / outDegree;
-                        }
-                        nextPageRank.put(page, randomJumpProbability + DAMPING * sum + finalDanglingWeight);
-                    }
-                    return null;
-                }).collect(Collectors.toList());
-
-                // Execute tasks and wait for completion
-                executor.invokeAll(tasks);
-
-                // Check for convergence
-                double diff = 0;
-                for (Integer page : allPages) {
-                    diff += Math.abs(nextPageRank.get(page) - currPageRank.get(page));
-                }
-
-                if (diff < EPSILON) {
-                    converged = true;
-                }
-
-                // Update PageRank values for next iteration
-                for (Integer page : allPages) {
-                    currPageRank.put(page, nextPageRank.get(page));
-                }
-
-                iterations++;
             }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("PageRank calculation interrupted", e);
-        } finally {
-            executor.shutdown();
-            try {
-                if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
-                    executor.shutdownNow();
+            double base = (1 - DAMPING) / n + DAMPING * danglingWeight / n;
+
+            // Each page only writes its own slot, so the pages can be split between threads freely
+            double[] current = currPageRank;
+            double[] next = nextPageRank;
+            IntStream.range(0, size).parallel().forEach(page -> {
+                if (!graph.isPage(page)) return;
+                double sum = 0;
+                for (int i = graph.inOffsets[page], end = graph.inOffsets[page + 1]; i < end; i++) {
+                    sum += share[graph.inSources[i]];
                 }
-            } catch (InterruptedException e) {
-                executor.shutdownNow();
-                Thread.currentThread().interrupt();
+                next[page] = base + DAMPING * sum;
+            });
+
+            double diff = 0;
+            for (int page = 0; page < size; page++) {
+                diff += Math.abs(next[page] - current[page]);
             }
+            currPageRank = next;
+            nextPageRank = current;
+            if (diff < EPSILON) break;
         }
 
         // Normalize PageRank values
         double sum = 0;
-        for (double rank : currPageRank.values()) {
+        for (double rank : currPageRank) {
             sum += rank;
         }
-
-        for (Integer page : currPageRank.keySet()) {
-            currPageRank.put(page, currPageRank.get(page) / sum);
+        for (int page = 0; page < size; page++) {
+            currPageRank[page] /= sum;
         }
-
         return currPageRank;
     }
-}
\ No newline at end of file
+}
@@ -1,9 +1,13 @@
 package cu.searchengine.ranker;
 
+import cu.searchengine.Indexer.SegmentPostings;
+import cu.searchengine.Indexer.SegmentReader;
+import cu.searchengine.Indexer.SegmentedIndex;
 import cu.searchengine.model.IndexDocument;
 import cu.searchengine.model.InvertedIndexEntry;
 import cu.searchengine.model.RankedDocument;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.DoubleAdder;
@@ -87,6 +91,54 @@ public class RelevanceScorer {
         return docScoresMap;
     }
 
+    /**
+     * Same scores as {@link #calculateRelevanceScores(String[], Map)}, read straight from the index segments:
+     * postings are iterated where they are stored, without an object per posting, and a document's url,
+     * title and popularity are read once when it first matches.
+     */
+    public Map<Integer, RankedDocument> calculateRelevanceScores(String[] wordsArray,
+                                                                 SegmentedIndex.Snapshot snapshot) throws IOException {
+        // A word repeated in the query counts once per occurrence
+        Map<String, Integer> occurrences = new LinkedHashMap<>();
+        for (String word : wordsArray) {
+            occurrences.merge(word, 1, Integer::sum);
+        }
+
+        // Step 1: Sum TF-IDF contributions of the live postings by docId
+        Map<Integer, RankedDocument> docScoresMap = new HashMap<>();
+        for (Map.Entry<String, Integer> word : occurrences.entrySet()) {
+            int df = snapshot.docFrequency(word.getKey());
+            if (df == 0) continue;
+            double idf = computeIDF(df) * word.getValue();
+
+            for (int i = 0; i < snapshot.segmentCount(); i++) {
+                SegmentReader segment = snapshot.segment(i);
+                SegmentPostings postings = segment.postings(word.getKey());
+                if (postings == null) continue;
+                while (postings.nextDoc() != SegmentPostings.NO_MORE_DOCS) {
+                    int docId = postings.docId();
+                    if (!snapshot.isLive(i, docId)) continue;
+                    double score = computeTF(postings.tf()) * idf;
+                    RankedDocument doc = docScoresMap.get(docId);
+                    if (doc == null) {
+                        SegmentReader.DocInfo info = segment.document(docId);
+                        docScoresMap.put(docId, new RankedDocument(docId, info.url(), info.title(), score, info.popularityScore(), 0, postings.tf()));
+                    } else {
+                        doc.setRelevanceScore(doc.getRelevanceScore() + score);
+                    }
+                }
+            }
+        }
+
+        // Step 2: Normalize scores if sum is non-zero
+        double totalScore = docScoresMap.values().stream().mapToDouble(RankedDocument::getRelevanceScore).sum();
+        if (totalScore > 0) {
+            docScoresMap.forEach((docId, rankedDoc) -> rankedDoc.setRelevanceScore(rankedDoc.getRelevanceScore() / totalScore));
+        }
+
+        return docScoresMap;
+    }
+
     // Helper class to store posting information
     private static class PostingInfo {
         final int tf;
@@ -0,0 +1,107 @@
+package cu.searchengine.ranker;
+
+import cu.searchengine.Crawler.UrlFingerprint;
+import cu.searchengine.model.Documents;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Link graph between stored documents in compressed sparse row form, indexed by the dense document id.
+ * <p>
+ * The incoming links of page p are inSources[inOffsets[p]] to inSources[inOffsets[p + 1] - 1], so a
+ * PageRank iteration reads a few int arrays front to back instead of chasing boxed map entries. Links to
+ * pages that are not stored are dropped. Ids without a document (the gaps the dictionary leaves) are
+ * in the arrays but are not pages.
+ */
+public class WebGraph {
+    // How far the largest id may run past the document count before the ids are not considered dense
+    private static final long MAX_GAP_FACTOR = 4;
+    private static final long MAX_GAP = 1 << 20;
+
+    private final boolean[] pages;
+    private final int pageCount;
+    private final int[] outDegree;
+    final int[] inOffsets;
+    final int[] inSources;
+
+    WebGraph(boolean[] pages, int[] outDegree, int[] inOffsets, int[] inSources) {
+        this.pages = pages;
+        this.outDegree = outDegree;
+        this.inOffsets = inOffsets;
+        this.inSources = inSources;
+        int count = 0;
+        for (boolean page : pages) {
+            if (page) count++;
+        }
+        this.pageCount = count;
+    }
+
+    public static WebGraph of(Collection<Documents> documents) {
+        int size = 0;
+        Map<Long, Integer> idsByFingerprint = new HashMap<>(documents.size() * 2);
+        for (Documents document : documents) {
+            if (document.getId() == null || document.getId() < 0) continue;
+            size = Math.max(size, document.getId() + 1);
+            idsByFingerprint.put(UrlFingerprint.of(document.getUrl()), document.getId());
+        }
+        if (size > MAX_GAP_FACTOR * (long) documents.size() + MAX_GAP) {
+            // Hash-based ids from before the dictionary, the arrays would be as large as the id range
+            throw new IllegalStateException("Document ids are not dense, reparse the page archive to reassign them");
+        }
+
+        boolean[] pages = new boolean[size];
+        int[] outDegree = new int[size];
+        int[] inOffsets = new int[size + 1];
+        for (Documents document : documents) {
+            if (document.getId() == null || document.getId() < 0) continue;
+            pages[document.getId()] = true;
+            forEachLink(document, idsByFingerprint, target -> {
+                outDegree[document.getId()]++;
+                inOffsets[target + 1]++;
+            });
+        }
+        for (int i = 0; i < size; i++) inOffsets[i + 1] += inOffsets[i];
+
+        int[] inSources = new int[inOffsets[size]];
+        int[] next = Arrays.copyOf(inOffsets, size);
+        for (Documents document : documents) {
+            if (document.getId() == null || document.getId() < 0) continue;
+            forEachLink(document, idsByFingerprint, target -> inSources[next[target]++] = document.getId());
+        }
+        return new WebGraph(pages, outDegree, inOffsets, inSources);
+    }
+
+    // Links of the document to stored pages, as document ids
+    private static void forEachLink(Documents document, Map<Long, Integer> idsByFingerprint, IntConsumer action) {
+        if (document.getWebGraph() == null) return;
+        for (long fingerprint : document.getWebGraph()) {
+            Integer target = idsByFingerprint.get(fingerprint);
+            if (target != null) action.accept(target);
+        }
+    }
+
+    // Largest document id + 1, the length of arrays indexed by document id
+    public int size() {
+        return pages.length;
+    }
+
+    public int pageCount() {
+        return pageCount;
+    }
+
+    public boolean isPage(int docId) {
+        return pages[docId];
+    }
+
+    public int outDegree(int docId) {
+        return outDegree[docId];
+    }
+
+    public int linkCount() {
+        return inSources.length;
+    }
+}
@@ -1,10 +1,12 @@
 package cu.searchengine.repository;
 
 import cu.searchengine.model.Documents;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Update;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.mongodb.repository.Query;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
@@ -12,6 +14,9 @@ import java.util.Optional;
 @Repository
 // Add here any custom methods
 public interface DocumentsRepository extends MongoRepository<Documents, Integer> {
+    // Pages whose revisit time has passed, including ones stored before recrawl state existed
+    String DUE_FOR_RECRAWL = "{ '$or': [ { 'nextFetchAt': { '$lte': ?0 } }, { 'nextFetchAt': { '$exists': false } } ] }";
+
     Optional<Documents> findByUrl(String url);
     
     // Find all documents that have not been indexed yet
@@ -21,4 +26,14 @@ public interface DocumentsRepository extends MongoRepository<Documents, Integer>
     void updatePopularityScore(Integer id, Double score);
     boolean existsById(Integer id);
 
+    @Query(DUE_FOR_RECRAWL)
+    List<Documents> findDueForRecrawl(long now, Pageable pageable);
+
+    @Query("{ 'id': { '$in': ?0 } }")
+    @Update("{ '$set': { 'invertedIndexProcessed': true, 'reindex': false } }")
+    long markIndexed(Collection<Integer> ids);
+
+    // Copies of these URLs stored under other ids
+    long deleteByUrlInAndIdNotIn(Collection<String> urls, Collection<Integer> ids);
+
 }
@@ -2,6 +2,7 @@ package cu.searchengine.repository;
 
 import cu.searchengine.model.InvertedIndexEntry;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.Collection;
@@ -9,7 +10,13 @@ import java.util.List;
 
 @Repository
 public interface InvertedIndexRepository extends MongoRepository<InvertedIndexEntry, String> {
+    // Entries with a posting of any of the documents
+    String POSTING_DOC_ID_IN = "{ 'RankedPostings._id': { '$in': ?0 } }";
+
     InvertedIndexEntry findByWord(String word);
     List<InvertedIndexEntry> findByWordIn(Collection<String> words);
+
+    @Query(POSTING_DOC_ID_IN)
+    List<InvertedIndexEntry> findByPostingDocIdIn(Collection<Integer> docIds);
     // You can add custom queries here if needed
 }
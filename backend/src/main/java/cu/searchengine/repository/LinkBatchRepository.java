@@ -0,0 +1,17 @@
+package cu.searchengine.repository;
+
+import cu.searchengine.model.LinkBatch;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface LinkBatchRepository extends MongoRepository<LinkBatch, String> {
+    // Oldest first, skipping batches this shard already holds in its frontier
+    List<LinkBatch> findByShardAndIdNotInOrderByCreatedAt(int shard, Collection<String> excludedIds, Pageable pageable);
+
+    long countByShard(int shard);
+}
@@ -0,0 +1,9 @@
+package cu.searchengine.repository;
+
+import cu.searchengine.model.UrlDictionaryEntry;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UrlDictionaryRepository extends MongoRepository<UrlDictionaryEntry, Long> {
+}
@@ -0,0 +1,66 @@
+package cu.searchengine.service;
+
+import cu.searchengine.model.Counter;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Counters shared between processes, updated with findAndModify so concurrent reservations never overlap.
+ */
+@Service
+public class CounterService {
+    private final MongoTemplate mongoTemplate;
+
+    public CounterService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Reserves up to {@code block} units of a counter that must not pass {@code limit}.
+     *
+     * @return units granted, 0 once the counter has reached the limit
+     */
+    public long reserve(String name, long block, long limit) {
+        // Create the counter on first use, $setOnInsert leaves an existing value alone
+        mongoTemplate.upsert(query(where("_id").is(name)), new Update().setOnInsert("value", 0L), Counter.class);
+
+        Counter before = mongoTemplate.findAndModify(query(where("_id").is(name).and("value").lt(limit)),
+                new Update().inc("value", block), FindAndModifyOptions.options().returnNew(false), Counter.class);
+        if (before == null) return 0;
+
+        long granted = Math.min(block, limit - before.getValue());
+        if (granted < block) {
+            // The last block ran past the limit, give the excess back so the stored value stays exact
+            release(name, block - granted);
+        }
+        return granted;
+    }
+
+    /**
+     * Takes the next {@code block} values of a counter without a limit, e.g. a range of ids.
+     *
+     * @return the first value of the block
+     */
+    public long allocate(String name, long block) {
+        mongoTemplate.upsert(query(where("_id").is(name)), new Update().setOnInsert("value", 0L), Counter.class);
+        Counter before = mongoTemplate.findAndModify(query(where("_id").is(name)),
+                new Update().inc("value", block), FindAndModifyOptions.options().returnNew(false), Counter.class);
+        return before.getValue();
+    }
+
+    // Returns reserved units that were not used
+    public void release(String name, long amount) {
+        if (amount <= 0) return;
+        mongoTemplate.updateFirst(query(where("_id").is(name)), new Update().inc("value", -amount), Counter.class);
+    }
+
+    public long get(String name) {
+        Counter counter = mongoTemplate.findOne(query(where("_id").is(name)), Counter.class);
+        return counter == null ? 0 : counter.getValue();
+    }
+}
@@ -0,0 +1,114 @@
+package cu.searchengine.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import cu.searchengine.Crawler.UrlFingerprint;
+import cu.searchengine.model.UrlDictionaryEntry;
+import cu.searchengine.repository.UrlDictionaryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+/**
+ * Maps URLs to dense document ids: 0, 1, 2... in the order pages are first stored, so anything keyed by
+ * document id can be a plain array instead of a hash map.
+ * <p>
+ * The dictionary lives in Mongo, keyed by the URL's 64-bit {@link UrlFingerprint}. The stored URL is checked
+ * on every lookup, so two URLs with the same fingerprint never share an id: the second one goes to the next
+ * free key after it. Ids are taken from a shared counter in blocks, which keeps them unique across crawler
+ * processes; a process that stops leaves the rest of its block unused, so there are small gaps.
+ * Recently used URLs are cached with a hash of the URL to tell fingerprint collisions apart.
+ */
+@Service
+public class DocIdDictionary {
+    private static final Logger logger = LoggerFactory.getLogger(DocIdDictionary.class);
+
+    static final String COUNTER = "docids";
+    private static final int BLOCK_SIZE = 1024;
+    private static final int MAX_PROBES = 16;
+    private static final long MAX_CACHED_URLS = 1_000_000;
+
+    private final UrlDictionaryRepository repository;
+    private final CounterService counters;
+    // Key -> URL hash in the high half, document id in the low half
+    private final Cache<Long, Long> cache = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_URLS).build();
+
+    // Guarded by this: the reserved block ids are handed out from
+    private long nextId;
+    private long blockEnd;
+
+    public DocIdDictionary(UrlDictionaryRepository repository, CounterService counters) {
+        this.repository = repository;
+        this.counters = counters;
+    }
+
+    /**
+     * The id of a normalized URL, assigned on first use. The same URL always gets the same id.
+     */
+    public int idOf(String url) {
+        long key = UrlFingerprint.of(url);
+        for (int probe = 0; probe < MAX_PROBES; ) {
+            Long cached = cache.getIfPresent(key);
+            if (cached != null) {
+                if ((int) (cached >>> 32) == url.hashCode()) return (int) cached.longValue();
+                key++;
+                probe++;
+                continue;
+            }
+
+            Optional<UrlDictionaryEntry> stored = load(key);
+            if (stored.isPresent()) {
+                UrlDictionaryEntry entry = stored.get();
+                cache.put(key, pack(entry.getUrl(), entry.getDocId()));
+                if (entry.getUrl().equals(url)) return entry.getDocId();
+                logger.warn("URL fingerprint collision between {} and {}", entry.getUrl(), url);
+                key++;
+                probe++;
+                continue;
+            }
+
+            int id = nextId();
+            if (insert(new UrlDictionaryEntry(key, id, url))) {
+                cache.put(key, pack(url, id));
+                return id;
+            }
+            // Another thread or process stored this key first, read it again; the id is left unused
+        }
+        throw new IllegalStateException("No free dictionary key for " + url);
+    }
+
+    protected Optional<UrlDictionaryEntry> load(long key) {
+        return repository.findById(key);
+    }
+
+    // false if the key is already taken
+    protected boolean insert(UrlDictionaryEntry entry) {
+        try {
+            repository.insert(entry);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    // First id of a block no other process will hand out
+    protected long reserveBlock(int size) {
+        return counters.allocate(COUNTER, size);
+    }
+
+    private synchronized int nextId() {
+        if (nextId == blockEnd) {
+            nextId = reserveBlock(BLOCK_SIZE);
+            blockEnd = nextId + BLOCK_SIZE;
+        }
+        if (nextId > Integer.MAX_VALUE) throw new IllegalStateException("Document ids exhausted");
+        return (int) nextId++;
+    }
+
+    private static long pack(String url, int id) {
+        return (long) url.hashCode() << 32 | (id & 0xffffffffL);
+    }
+}
@@ -1,7 +1,10 @@
 package cu.searchengine.service;
 
 import cu.searchengine.model.Documents;
+import cu.searchengine.ranker.WebGraph;
 import cu.searchengine.repository.DocumentsRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -44,17 +47,11 @@ public class DocumentService {
         return (int) documentsRepository.count();
     }
 
-    public Map<Integer, Set<Integer>> getWebGraph() {
-        List<Documents> documents = documentsRepository.findAll();
-
-        // Build URL to ID map for fast lookups
-        Map<Integer, Set<Integer>> webGraph = new HashMap<>();
-        for (Documents doc : documents) {
-            webGraph.put(doc.getUrl().hashCode(), doc.getWebGraph());
-        }
-
-        return webGraph;
+    // Link graph of the stored documents, indexed by document id
+    public WebGraph getWebGraph() {
+        return WebGraph.of(documentsRepository.findAll());
     }
+
     public boolean documentExists(Integer id) {
         return documentsRepository.existsById(id);
     }
@@ -69,7 +66,7 @@ public class DocumentService {
         // Build URL to ID map for fast lookups
         Map<Integer, Set<Integer>> incomingLinks = new HashMap<>();
         for (Documents doc : documents) {
-            incomingLinks.put(doc.getUrl().hashCode(), doc.getIncomingLinks());
+            incomingLinks.put(doc.getId(), doc.getIncomingLinks());
         }
 
         return incomingLinks;
@@ -85,19 +82,42 @@ public class DocumentService {
         documentsRepository.saveAll(buffer);
     }
 
+    // Stores rebuilt documents, dropping copies of the same URLs stored under a different id
+    public void replaceAll(List<Documents> documents) {
+        List<String> urls = new ArrayList<>(documents.size());
+        List<Integer> ids = new ArrayList<>(documents.size());
+        for (Documents document : documents) {
+            urls.add(document.getUrl());
+            ids.add(document.getId());
+        }
+        documentsRepository.deleteByUrlInAndIdNotIn(urls, ids);
+        documentsRepository.saveAll(documents);
+    }
+
 
     public List<Documents> getDocumentsToIndex() {
 
         return documentsRepository.findByInvertedIndexProcessedFalse();
     }
 
+    // Most overdue first
+    public List<Documents> getDocumentsDueForRecrawl(long now, int limit) {
+        return documentsRepository.findDueForRecrawl(now, PageRequest.of(0, limit, Sort.by("nextFetchAt")));
+    }
+
     public void markDocumentsAsIndexed(List<Documents> docs) {
         for (Documents doc : docs) {
             doc.setInvertedIndexProcessed(true);
+            doc.setReindex(false);
         }
         documentsRepository.saveAll(docs);
     }
 
+    // Flags documents as indexed without loading or rewriting them
+    public void markIndexed(Collection<Integer> ids) {
+        documentsRepository.markIndexed(ids);
+    }
+
     public List<Documents> getDocumentsByIds(Set<Integer> docIds) {
         return documentsRepository.findAllById(docIds);
     }
@@ -1,26 +1,84 @@
 package cu.searchengine.service;
 
+import cu.searchengine.Indexer.PostingData;
+import cu.searchengine.Indexer.SegmentPostings;
+import cu.searchengine.Indexer.SegmentReader;
+import cu.searchengine.Indexer.SegmentedIndex;
+import cu.searchengine.config.IndexerProperties;
+import cu.searchengine.model.Documents;
+import cu.searchengine.model.IndexDocument;
 import cu.searchengine.model.InvertedIndexEntry;
 import cu.searchengine.repository.InvertedIndexRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Storage of the inverted index: the invertedIndex collection, or with indexer.storage=SEGMENTS a
+ * {@link SegmentedIndex} on local disk. Term lookups read from whichever is configured.
+ */
 @Service
 
 public class InvertedIndexService {
     private static final Logger logger = LoggerFactory.getLogger(InvertedIndexService.class);
     private final InvertedIndexRepository repository;
+    private final IndexerProperties properties;
+    private SegmentedIndex segments;
 
     @Autowired
-    public InvertedIndexService(InvertedIndexRepository repository) {
+    public InvertedIndexService(InvertedIndexRepository repository, IndexerProperties properties) {
         this.repository = repository;
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void openSegments() {
+        if (properties.getStorage() != IndexerProperties.Storage.SEGMENTS) return;
+        try {
+            segments = new SegmentedIndex(Path.of(properties.getSegmentDir()), properties.getMergeFactor(), properties.getMergeFloorBytes(),
+                    properties.getMaxSegmentBytes(), properties.isMemoryMapped());
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to open the index segments in " + properties.getSegmentDir(), e);
+        }
+    }
+
+    @PreDestroy
+    public void closeSegments() {
+        if (segments != null) segments.close();
+    }
+
+    public boolean isSegmented() {
+        return segments != null;
+    }
+
+    /**
+     * Adds the postings of newly indexed documents as a new segment, replacing older versions of the
+     * documents. Only with indexer.storage=SEGMENTS.
+     */
+    public void addSegment(List<Map<String, PostingData>> shards, List<Documents> documents) {
+        try {
+            segments.add(shards, documents);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write index segment", e);
+        }
+    }
+
+    // The live segments for a query, close it when done. Only with indexer.storage=SEGMENTS.
+    public SegmentedIndex.Snapshot acquireSegments() {
+        return segments.acquire();
     }
 
     public void insertAll(List<InvertedIndexEntry> entries) {
@@ -34,6 +92,16 @@ public class InvertedIndexService {
     }
 
     public int getCount() {
+        if (segments != null) {
+            // Terms in several segments are counted once per segment
+            try (SegmentedIndex.Snapshot snapshot = segments.acquire()) {
+                long terms = 0;
+                for (int i = 0; i < snapshot.segmentCount(); i++) {
+                    terms += snapshot.segment(i).termCount();
+                }
+                return (int) Math.min(terms, Integer.MAX_VALUE);
+            }
+        }
         return (int) repository.count();
     }
 
@@ -50,8 +118,14 @@ public class InvertedIndexService {
         return repository.findAllById(words);
     }
 
+    public List<InvertedIndexEntry> getByPostingDocIds(Collection<Integer> docIds) {
+        return repository.findByPostingDocIdIn(docIds);
+    }
+
 
     public Map<String, InvertedIndexEntry> getEntriesForWords(String[] words) {
+        if (segments != null) return getSegmentEntries(words);
+
         // Get all entries in a single query
         List<InvertedIndexEntry> entries = repository.findByWordIn(Arrays.asList(words));
 
@@ -65,12 +139,88 @@ public class InvertedIndexService {
     }
 
 
+    // The live postings of the words over all segments
+    private Map<String, InvertedIndexEntry> getSegmentEntries(String[] words) {
+        Map<String, InvertedIndexEntry> result = new HashMap<>();
+        try (SegmentedIndex.Snapshot snapshot = segments.acquire()) {
+            for (String word : words) {
+                if (result.containsKey(word)) continue;
+                List<IndexDocument> postings = new ArrayList<>();
+                for (int i = 0; i < snapshot.segmentCount(); i++) {
+                    SegmentReader segment = snapshot.segment(i);
+                    SegmentPostings termPostings = segment.postings(word);
+                    if (termPostings == null) continue;
+                    while (termPostings.nextDoc() != SegmentPostings.NO_MORE_DOCS) {
+                        int docId = termPostings.docId();
+                        if (!snapshot.isLive(i, docId)) continue;
+                        SegmentReader.DocInfo document = segment.document(docId);
+                        postings.add(new IndexDocument(docId, document.url(), document.title(), termPostings.tf(),
+                                document.popularityScore(), termPostings.positionBytes()));
+                    }
+                }
+                if (!postings.isEmpty()) result.put(word, new InvertedIndexEntry(word, postings.size(), postings));
+            }
+        } catch (IOException e) {
+            logger.error("Error reading index segments: {}", e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Stored positions of the words in the given documents, by word and then by document id, see
+     * PositionCodec. Postings indexed before positions were stored map to null, documents without the word
+     * are left out.
+     * <p>
+     * With segments, the postings of each word are advanced to the given documents through the skip tables,
+     * blocks without any of them are skipped and no IndexDocument is built.
+     */
+    public Map<String, Map<Integer, byte[]>> getPositions(Collection<String> words, Collection<Integer> docIds) {
+        Map<String, Map<Integer, byte[]>> result = new HashMap<>();
+        if (segments == null) {
+            getEntriesForWords(words.toArray(new String[0])).forEach((word, entry) -> {
+                Map<Integer, byte[]> positions = new HashMap<>();
+                for (IndexDocument posting : entry.getPostings()) {
+                    if (docIds.contains(posting.getDocId())) positions.put(posting.getDocId(), posting.getPositions());
+                }
+                result.put(word, positions);
+            });
+            return result;
+        }
+
+        int[] sortedIds = docIds.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+        try (SegmentedIndex.Snapshot snapshot = segments.acquire()) {
+            for (String word : words) {
+                Map<Integer, byte[]> positions = new HashMap<>();
+                for (int i = 0; i < snapshot.segmentCount(); i++) {
+                    SegmentPostings postings = snapshot.segment(i).postings(word);
+                    if (postings == null) continue;
+                    for (int docId : sortedIds) {
+                        int doc = postings.advance(docId);
+                        if (doc == SegmentPostings.NO_MORE_DOCS) break;
+                        if (doc == docId && snapshot.isLive(i, docId)) positions.put(docId, postings.positionBytes());
+                    }
+                }
+                result.put(word, positions);
+            }
+        } catch (IOException e) {
+            logger.error("Error reading index segments: {}", e.getMessage());
+        }
+        return result;
+    }
+
     public void deleteByWord(String word) {
         repository.deleteById(word);
     }
 
     public void deleteAll() {
         repository.deleteAll();
+        if (segments != null) {
+            try {
+                segments.deleteAll();
+            } catch (IOException e) {
+                logger.error("Error deleting index segments: {}", e.getMessage());
+            }
+        }
     }
 
     public void save(InvertedIndexEntry entry) {
@@ -0,0 +1,40 @@
+package cu.searchengine.service;
+
+import cu.searchengine.model.LinkBatch;
+import cu.searchengine.repository.LinkBatchRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Mongo-backed mailbox for links crawler shards hand to each other.
+ * <p>
+ * A batch stays in the collection until the receiving shard has checkpointed the links it added to its
+ * frontier, so a shard that dies in between gets the same batch again after a restart.
+ */
+@Service
+public class LinkExchangeService {
+    private final LinkBatchRepository linkBatchRepository;
+
+    public LinkExchangeService(LinkBatchRepository linkBatchRepository) {
+        this.linkBatchRepository = linkBatchRepository;
+    }
+
+    public void send(LinkBatch batch) {
+        linkBatchRepository.insert(batch);
+    }
+
+    public List<LinkBatch> receive(int shard, Collection<String> alreadyReceived, int maxBatches) {
+        return linkBatchRepository.findByShardAndIdNotInOrderByCreatedAt(shard, alreadyReceived, PageRequest.of(0, maxBatches));
+    }
+
+    public void acknowledge(Collection<String> batchIds) {
+        linkBatchRepository.deleteAllById(batchIds);
+    }
+
+    public long pending(int shard) {
+        return linkBatchRepository.countByShard(shard);
+    }
+}
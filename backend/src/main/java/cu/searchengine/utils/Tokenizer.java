@@ -7,6 +7,7 @@ import java.util.ArrayList;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ObjIntConsumer;
 
 
 public class Tokenizer {
@@ -15,34 +16,53 @@ public class Tokenizer {
     private final PorterStemmer stemmer = new PorterStemmer();
 
     public ArrayList<String> tokenize(String text) {
+        ArrayList<String> tokens = new ArrayList<>();
+        tokenize(text, 0, (token, position) -> tokens.add(token));
+        return tokens;
+    }
+
+    /**
+     * Passes every token of the text to the consumer with its word position, counted from firstPosition.
+     * Stop words and numbers are dropped but still take a position, so two tokens are adjacent only when
+     * their words are.
+     *
+     * @return the position after the last word of the text
+     */
+    public int tokenize(String text, int firstPosition, ObjIntConsumer<String> consumer) {
         text = text.toLowerCase().replaceAll("[^a-zA-Z0-9'\\-]", " ").trim();
-        text = text.replaceAll("\\b\\d+\\b", " "); // Remove numbers
+        text = text.replaceAll("\\b\\d+\\b", " 0 "); // Remove numbers, the single character keeps the position
         String[] words = text.split("\\s+");
-        ArrayList<String> tokens = new ArrayList<>();
+        int position = firstPosition;
         for (String word : words) {
-            if (word.isEmpty() || STOP_WORDS.contains(word) || word.length() <= 1) continue;
+            if (word.isEmpty()) continue;
+            int current = position++;
+            if (STOP_WORDS.contains(word) || word.length() <= 1) continue;
 
             // Stem the word
             stemmer.setCurrent(word);
             stemmer.stem();
-            tokens.add(stemmer.getCurrent());
+            consumer.accept(stemmer.getCurrent(), current);
         }
-        return tokens;
+        return position;
     }
 
-    public void tokenizeWithPriority(String text, int priority, Map<String, Posting> tokenMap, String title, String url,double popularity ,ConcurrentHashMap<String, Integer> wordfreq) {
-        ArrayList<String> tokenizedWords = tokenize(text);
-        for (String word : tokenizedWords) {
-            if (word.isEmpty() || STOP_WORDS.contains(word) || word.length() == 1) continue;
+    /**
+     * Adds the tokens of one field of a document to its postings.
+     *
+     * @return the position after the last word of the field
+     */
+    public int tokenizeWithPriority(String text, int priority, int firstPosition, Map<String, Posting> tokenMap, String title, String url, double popularity, ConcurrentHashMap<String, Integer> wordfreq) {
+        return tokenize(text, firstPosition, (word, position) -> {
+            if (word.isEmpty() || STOP_WORDS.contains(word) || word.length() == 1) return;
 
             wordfreq.putIfAbsent(word, 1);
 
             // Update tokenMap without reinitializing it
-            tokenMap.putIfAbsent(word, new Posting());
-            tokenMap.get(word).addPosition(priority); // Adds position & increments TF
-            tokenMap.get(word).setTitle(title);
-            tokenMap.get(word).setUrl(url);
-            tokenMap.get(word).setPopularity(popularity);
-        }
+            Posting posting = tokenMap.computeIfAbsent(word, w -> new Posting());
+            posting.addPosition(priority, position); // Adds position & increments TF
+            posting.setTitle(title);
+            posting.setUrl(url);
+            posting.setPopularity(popularity);
+        });
     }
 }
@@ -0,0 +1,109 @@
+package cu.searchengine.Crawler;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CrawlJournalTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void tornLastRecordIsDroppedAndLaterRecordsReplay() throws IOException {
+        Path file = dir.resolve("crawl.journal");
+        try (CrawlJournal journal = new CrawlJournal(file)) {
+            journal.enqueued("https://a.example.com/");
+            journal.visited(42);
+            journal.pages(7);
+            journal.enqueued("https://b.example.com/page");
+        }
+        // Crash in the middle of the last record
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 5);
+        }
+
+        try (CrawlJournal journal = new CrawlJournal(file)) {
+            Events events = new Events();
+            assertEquals(3, journal.replay(events));
+            assertEquals(List.of("enqueued https://a.example.com/", "visited 42", "pages 7"), events.list);
+
+            // The restarted crawler appends to the same journal
+            journal.dequeued("https://a.example.com/");
+            journal.sync();
+        }
+        try (CrawlJournal journal = new CrawlJournal(file)) {
+            Events events = new Events();
+            assertEquals(4, journal.replay(events));
+            assertEquals("dequeued https://a.example.com/", events.list.get(3));
+        }
+    }
+
+    @Test
+    void replayAfterCompaction() throws IOException {
+        Path file = dir.resolve("crawl.journal");
+        try (CrawlJournal journal = new CrawlJournal(file)) {
+            journal.enqueued("https://a.example.com/");
+            journal.rotate();
+            journal.enqueued("https://b.example.com/");
+            journal.sync();
+
+            // Crash before the snapshot was written: both journals replay, oldest first
+            Events events = new Events();
+            assertEquals(2, journal.replay(events));
+            assertEquals(List.of("enqueued https://a.example.com/", "enqueued https://b.example.com/"), events.list);
+
+            // A second compaction that didn't finish either keeps the order
+            journal.rotate();
+            journal.enqueued("https://c.example.com/");
+            events = new Events();
+            assertEquals(3, journal.replay(events));
+            assertEquals("enqueued https://c.example.com/", events.list.get(2));
+
+            // The snapshot is on disk, only what came after it replays
+            journal.dropRotated();
+            events = new Events();
+            assertEquals(1, journal.replay(events));
+            assertEquals(List.of("enqueued https://c.example.com/"), events.list);
+            assertTrue(journal.exists());
+
+            journal.delete();
+            assertFalse(journal.exists());
+            assertEquals(0, journal.replay(new Events()));
+        }
+    }
+
+    private static class Events implements CrawlJournal.Replay {
+        final List<String> list = new ArrayList<>();
+
+        @Override
+        public void enqueued(String url) {
+            list.add("enqueued " + url);
+        }
+
+        @Override
+        public void dequeued(String url) {
+            list.add("dequeued " + url);
+        }
+
+        @Override
+        public void visited(long fingerprint) {
+            list.add("visited " + fingerprint);
+        }
+
+        @Override
+        public void pages(int count) {
+            list.add("pages " + count);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package cu.searchengine.Crawler;
+
+import cu.searchengine.Indexer.IndexingPipeline;
+import cu.searchengine.config.CrawlerProperties;
+import cu.searchengine.model.Documents;
+import cu.searchengine.service.DocumentService;
+import cu.searchengine.service.MemoryDocIdDictionary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Offline crawl benchmark: runs the real {@link Crawler} against a {@link ReplayServer} on the loopback
+ * interface and reports throughput, CPU and memory per run.
+ * <p>
+ * Pages are stored in memory (only their URLs are kept), so results don't depend on MongoDB and stay
+ * comparable between runs on the same machine. The server runs in the same JVM: its request handler CPU is
+ * measured separately and subtracted from the process CPU to estimate the crawler's share.
+ * <p>
+ * Run with {@code ./gradlew crawlReplay -Preplay.args="--hosts=50 --pages-per-host=200 --mode=ASYNC"},
+ * or {@code --site=<file>} to replay a recorded graph (see {@link ReplaySite#load}). Each run appends one
+ * JSON line to the --report file.
+ */
+public final class CrawlReplay {
+    static final String USER_AGENT = "ReplayBot/1.0";
+
+    record Report(String mode, int hosts, int sitePages, int pagesStored, long pageRequests, long disallowedRequests,
+                  double seconds, double pagesPerSecond, double cpuMillisPerPage, double crawlerCpuMillisPerPage,
+                  long heapGrowthBytes, double fetchMeanMillis, double connectionReuse) {
+
+        String toJson() {
+            return String.format(Locale.ROOT, "{\"mode\":\"%s\",\"hosts\":%d,\"sitePages\":%d,\"pagesStored\":%d,"
+                            + "\"pageRequests\":%d,\"disallowedRequests\":%d,\"seconds\":%.3f,\"pagesPerSecond\":%.1f,"
+                            + "\"cpuMillisPerPage\":%.3f,\"crawlerCpuMillisPerPage\":%.3f,\"heapGrowthBytes\":%d,"
+                            + "\"fetchMeanMillis\":%.2f,\"connectionReuse\":%.3f}",
+                    mode, hosts, sitePages, pagesStored, pageRequests, disallowedRequests, seconds, pagesPerSecond,
+                    cpuMillisPerPage, crawlerCpuMillisPerPage, heapGrowthBytes, fetchMeanMillis, connectionReuse);
+        }
+    }
+
+    // Result of one replay, with the stored URLs and the number of document ids handed out
+    record Run(Report report, Set<String> storedUrls, int assignedIds) {
+    }
+
+    private CrawlReplay() {
+    }
+
+    /**
+     * Crawls the site served by {@code server} once.
+     *
+     * @param workDir directory for the seed list and crawler state, must not hold state of an earlier run
+     */
+    static Run run(ReplayServer server, ReplaySite site, CrawlerProperties.FetchMode mode, int maxPages, int threads,
+                   Path workDir) throws IOException {
+        return run(server, site, mode, maxPages, threads, workDir, properties -> {
+        });
+    }
+
+    /**
+     * Same as above, with settings changed by {@code configure} before the crawler is built.
+     */
+    static Run run(ReplayServer server, ReplaySite site, CrawlerProperties.FetchMode mode, int maxPages, int threads,
+                   Path workDir, Consumer<CrawlerProperties> configure) throws IOException {
+        Files.createDirectories(workDir);
+        Path seeds = workDir.resolve("seeds.txt");
+        Files.write(seeds, server.seedUrls(), StandardCharsets.UTF_8);
+
+        CrawlerProperties properties = new CrawlerProperties();
+        properties.setSeeds(seeds.toUri().toString());
+        properties.setStateDir(workDir.toString());
+        properties.setFetchMode(mode);
+        properties.setParseThreads(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        properties.setVisitedExpectedUrls(Math.max(1024, site.pageCount() * 2));
+        // SimHashes are computed as in a real crawl, but every page is stored so results are exact
+        properties.setNearDuplicateMode(CrawlerProperties.NearDuplicateMode.FLAG);
+        configure.accept(properties);
+
+        // The crawler's HttpClient picks the default context up when it is built
+        SSLContext.setDefault(server.sslContext());
+
+        RecordingDocumentService store = new RecordingDocumentService();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        IndexingPipeline pipeline = new IndexingPipeline(null, store, properties);
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        com.sun.management.OperatingSystemMXBean os =
+                (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        System.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+        long cpuBefore = os.getProcessCpuTime();
+        long serverCpuBefore = server.getHandlerCpuNanos();
+        long requestsBefore = server.getPageRequests();
+        long disallowedBefore = server.getDisallowedRequests();
+        long start = System.nanoTime();
+
+        MemoryDocIdDictionary docIds = new MemoryDocIdDictionary();
+        Crawler crawler = new Crawler(USER_AGENT, maxPages, threads, threads * 100, store, properties, pipeline,
+                null, null, docIds, new CrawlerMetrics(registry));
+        crawler.crawl();
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long cpu = os.getProcessCpuTime() - cpuBefore;
+        long serverCpu = server.getHandlerCpuNanos() - serverCpuBefore;
+        System.gc();
+        // The crawler is still reachable here, so this is what its structures hold after the crawl
+        long heapGrowth = memory.getHeapMemoryUsage().getUsed() - heapBefore;
+
+        int pages = store.stored.size();
+        double fetchMillis = 0;
+        long fetches = 0;
+        for (Timer timer : registry.find(CrawlerMetrics.FETCH).timers()) {
+            fetchMillis += timer.totalTime(TimeUnit.MILLISECONDS);
+            fetches += timer.count();
+        }
+        Report report = new Report(mode.name(), site.hostCount(), site.pageCount(), pages,
+                server.getPageRequests() - requestsBefore, server.getDisallowedRequests() - disallowedBefore,
+                seconds, pages / seconds,
+                pages == 0 ? 0 : cpu / 1e6 / pages,
+                pages == 0 ? 0 : Math.max(0, cpu - serverCpu) / 1e6 / pages,
+                heapGrowth,
+                fetches == 0 ? 0 : fetchMillis / fetches,
+                crawler.getFetcher().getNetwork().getReuseRate());
+        return new Run(report, store.stored, docIds.size());
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) continue;
+            int eq = arg.indexOf('=');
+            options.put(eq < 0 ? arg.substring(2) : arg.substring(2, eq), eq < 0 ? "true" : arg.substring(eq + 1));
+        }
+
+        ReplaySite site = options.containsKey("site")
+                ? ReplaySite.load(Path.of(options.get("site")))
+                : ReplaySite.synthetic(intOption(options, "hosts", 50), intOption(options, "pages-per-host", 100),
+                intOption(options, "links", 10), doubleOption(options, "cross-host", 0.2),
+                doubleOption(options, "private", 0.05), intOption(options, "seed", 42));
+        ReplayServer.Settings settings = new ReplayServer.Settings(intOption(options, "latency", 20),
+                intOption(options, "jitter", 20), doubleOption(options, "error-rate", 0.01),
+                intOption(options, "crawl-delay", 0));
+        int maxPages = intOption(options, "max-pages", site.pageCount());
+        int threads = intOption(options, "threads", 64);
+        String mode = options.getOrDefault("mode", "both").toUpperCase(Locale.ROOT);
+        Path workDir = Files.createTempDirectory("crawl-replay");
+        Path reportFile = Path.of(options.getOrDefault("report", "build/reports/crawl-replay.jsonl"));
+
+        try (ReplayServer server = new ReplayServer(site, settings, workDir)) {
+            for (CrawlerProperties.FetchMode fetchMode : CrawlerProperties.FetchMode.values()) {
+                if (!mode.equals("BOTH") && !mode.equals(fetchMode.name())) continue;
+                Run run = run(server, site, fetchMode, maxPages, threads, workDir.resolve(fetchMode.name().toLowerCase(Locale.ROOT)));
+                System.out.println(run.report().toJson());
+                appendReport(reportFile, run.report());
+            }
+        }
+    }
+
+    // Adds the report as one JSON line to the file, creating it and its directory if needed
+    static void appendReport(Path reportFile, Report report) throws IOException {
+        if (reportFile.getParent() != null) Files.createDirectories(reportFile.getParent());
+        Files.writeString(reportFile, report.toJson() + System.lineSeparator(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static int intOption(Map<String, String> options, String name, int defaultValue) {
+        return options.containsKey(name) ? Integer.parseInt(options.get(name)) : defaultValue;
+    }
+
+    private static double doubleOption(Map<String, String> options, String name, double defaultValue) {
+        return options.containsKey(name) ? Double.parseDouble(options.get(name)) : defaultValue;
+    }
+
+    // Stands in for MongoDB, remembers what was stored without holding on to the pages
+    static class RecordingDocumentService extends DocumentService {
+        final Set<String> stored = ConcurrentHashMap.newKeySet();
+
+        RecordingDocumentService() {
+            super(null);
+        }
+
+        @Override
+        public void addAll(BlockingQueue<Documents> buffer) {
+            for (Documents document : buffer) stored.add(document.getUrl());
+        }
+
+        @Override
+        public void addAll(List<Documents> buffer) {
+            for (Documents document : buffer) stored.add(document.getUrl());
+        }
+
+        @Override
+        public List<Documents> getAllDocuments() {
+            return List.of();
+        }
+    }
+}
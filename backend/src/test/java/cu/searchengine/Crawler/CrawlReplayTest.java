@@ -0,0 +1,109 @@
+package cu.searchengine.Crawler;
+
+import cu.searchengine.config.CrawlerProperties;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Crawls a small synthetic site end to end in both fetch modes, checking what was stored against the site
+ * graph and what the server was asked for. The reports are appended to build/reports/crawl-replay-test.jsonl
+ * so CI keeps a throughput history; larger runs go through {@link CrawlReplay#main}.
+ */
+class CrawlReplayTest {
+    private static final ReplaySite SITE = ReplaySite.synthetic(12, 15, 6, 0.3, 0.1, 7);
+    private static final int THREADS = 16;
+    private static final Path REPORT_FILE = Path.of("build/reports/crawl-replay-test.jsonl");
+
+    @TempDir
+    static Path workDir;
+
+    private static ReplayServer server;
+    private static ReplayServer flakyServer;
+
+    @BeforeAll
+    static void startServers() throws Exception {
+        server = new ReplayServer(SITE, new ReplayServer.Settings(5, 5, 0, 0), workDir);
+        flakyServer = new ReplayServer(SITE, new ReplayServer.Settings(5, 5, 0.1, 0), workDir);
+    }
+
+    @AfterAll
+    static void stopServers() {
+        server.close();
+        flakyServer.close();
+    }
+
+    @Test
+    void blockingCrawlStoresEveryCrawlablePage() throws Exception {
+        CrawlReplay.Run run = CrawlReplay.run(server, SITE, CrawlerProperties.FetchMode.BLOCKING, 10_000, THREADS, workDir.resolve("blocking"));
+        CrawlReplay.appendReport(REPORT_FILE, run.report());
+
+        assertEquals(SITE.crawlable(), linksOf(server, run.storedUrls()));
+        assertReportOf(run, "BLOCKING");
+        // Every stored page was fetched once, a healthy server is never asked twice
+        assertEquals(run.storedUrls().size(), run.report().pageRequests());
+    }
+
+    @Test
+    void asyncCrawlRetriesFailedPagesAndSkipsDisallowedPaths() throws Exception {
+        CrawlReplay.Run run = CrawlReplay.run(flakyServer, SITE, CrawlerProperties.FetchMode.ASYNC, 10_000, THREADS, workDir.resolve("async"));
+        CrawlReplay.appendReport(REPORT_FILE, run.report());
+
+        assertReportOf(run, "ASYNC");
+        assertTrue(run.report().pageRequests() >= run.storedUrls().size());
+        Set<ReplaySite.Link> stored = linksOf(flakyServer, run.storedUrls());
+        assertFalse(stored.isEmpty());
+        assertTrue(SITE.crawlable().containsAll(stored), "stored a page outside the crawlable graph");
+        // Only a successful response is stored, a 503 puts the page back in the frontier for another try
+        assertTrue(flakyServer.getServed().containsAll(stored), "stored a page that was never served");
+        if (!flakyServer.getFailed().isEmpty()) {
+            assertTrue(flakyServer.getFailed().stream().anyMatch(stored::contains), "a page that failed once was never retried");
+        }
+    }
+
+    @Test
+    void crawlWithASpillingFrontierStoresEveryCrawlablePage() throws Exception {
+        CrawlReplay.Run run = CrawlReplay.run(server, SITE, CrawlerProperties.FetchMode.ASYNC, 10_000, THREADS, workDir.resolve("spill"),
+                properties -> {
+                    properties.setFrontierMemoryUrls(16);
+                    properties.setFrontierSpillSegmentBytes(512);
+                });
+
+        assertEquals(SITE.crawlable(), linksOf(server, run.storedUrls()));
+    }
+
+    @Test
+    void limitsStoredPagesToTheBudget() throws Exception {
+        CrawlReplay.Run run = CrawlReplay.run(server, SITE, CrawlerProperties.FetchMode.ASYNC, 40, THREADS, workDir.resolve("budget"));
+
+        assertEquals(40, run.storedUrls().size());
+        // Pages past the budget get no id, so the ids stay dense
+        assertEquals(40, run.assignedIds());
+    }
+
+    private static void assertReportOf(CrawlReplay.Run run, String mode) {
+        CrawlReplay.Report report = run.report();
+        assertEquals(mode, report.mode());
+        assertEquals(SITE.hostCount(), report.hosts());
+        assertEquals(SITE.pageCount(), report.sitePages());
+        assertEquals(run.storedUrls().size(), report.pagesStored());
+        assertEquals(0, report.disallowedRequests(), "robots.txt was not honoured");
+        assertTrue(report.seconds() > 0 && report.pagesPerSecond() > 0, report.toJson());
+        assertTrue(report.fetchMeanMillis() > 0, report.toJson());
+    }
+
+    private static Set<ReplaySite.Link> linksOf(ReplayServer server, Set<String> urls) {
+        Set<ReplaySite.Link> links = new HashSet<>();
+        for (String url : urls) links.add(server.linkOf(url));
+        return links;
+    }
+}
@@ -0,0 +1,121 @@
+package cu.searchengine.Crawler;
+
+import com.google.common.base.Ticker;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DnsCacheTest {
+    private final ManualTicker ticker = new ManualTicker();
+    private final Map<String, AtomicInteger> lookups = new ConcurrentHashMap<>();
+
+    @Test
+    void addressesAreCachedForTheTtl() throws UnknownHostException {
+        DnsCache cache = new DnsCache(100, 300, 60, TimeUnit.SECONDS, this::resolve, ticker);
+        InetAddress[] first = cache.resolve("a.example.com");
+        assertArrayEquals(first, cache.resolve("a.example.com"));
+        ticker.advance(299, TimeUnit.SECONDS);
+        cache.resolve("a.example.com");
+        assertEquals(1, lookups.get("a.example.com").get());
+
+        ticker.advance(2, TimeUnit.SECONDS);
+        cache.resolve("a.example.com");
+        assertEquals(2, lookups.get("a.example.com").get());
+        assertEquals(2, cache.getLookupCount());
+        assertEquals(0.5, cache.getHitRate(), 1e-9);
+    }
+
+    @Test
+    void failedLookupsAreCachedForTheNegativeTtl() throws UnknownHostException {
+        DnsCache cache = new DnsCache(100, 300, 60, TimeUnit.SECONDS, this::resolve, ticker);
+        assertThrows(UnknownHostException.class, () -> cache.resolve("dead.example.com"));
+        assertTrue(cache.isKnownUnresolvable("dead.example.com"));
+        assertFalse(cache.isResolvable("dead.example.com"));
+        assertThrows(UnknownHostException.class, () -> cache.resolve("dead.example.com"));
+        assertEquals(1, lookups.get("dead.example.com").get());
+        assertEquals(1, cache.getNegativeSize());
+
+        // Tried again once the negative TTL is over, much sooner than the positive one
+        ticker.advance(61, TimeUnit.SECONDS);
+        assertFalse(cache.isKnownUnresolvable("dead.example.com"));
+        assertThrows(UnknownHostException.class, () -> cache.resolve("dead.example.com"));
+        assertEquals(2, lookups.get("dead.example.com").get());
+
+        // A host that resolves is not affected
+        assertTrue(cache.isResolvable("a.example.com"));
+        assertFalse(cache.isKnownUnresolvable("a.example.com"));
+    }
+
+    @Test
+    void concurrentLookupsOfOneHostResolveOnce() throws InterruptedException {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        DnsCache cache = new DnsCache(100, 300, 60, TimeUnit.SECONDS, host -> {
+            calls.incrementAndGet();
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return resolve(host);
+        }, ticker);
+
+        AtomicInteger resolved = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            Thread thread = new Thread(() -> {
+                if (cache.isResolvable("slow.example.com")) resolved.incrementAndGet();
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        // Give the other threads time to queue up behind the lookup in progress
+        Thread.sleep(200);
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, calls.get());
+        assertEquals(16, resolved.get());
+        assertEquals(1, cache.getLookupCount());
+    }
+
+    // Hosts starting with "dead" don't resolve, every other host is 10.0.0.1
+    private InetAddress[] resolve(String host) throws UnknownHostException {
+        lookups.computeIfAbsent(host, k -> new AtomicInteger()).incrementAndGet();
+        if (host.startsWith("dead")) throw new UnknownHostException(host);
+        return new InetAddress[]{InetAddress.getByAddress(host, new byte[]{10, 0, 0, 1})};
+    }
+
+    private static class ManualTicker extends Ticker {
+        private final AtomicLong nanos = new AtomicLong();
+
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+
+        void advance(long time, TimeUnit unit) {
+            nanos.addAndGet(unit.toNanos(time));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package cu.searchengine.Crawler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FingerprintSetTest {
+    @Test
+    void addIsPutIfAbsent() {
+        FingerprintSet set = new FingerprintSet(4);
+        assertTrue(set.add(42));
+        assertFalse(set.add(42));
+        assertTrue(set.contains(42));
+        assertFalse(set.contains(43));
+        // The reserved markers are still stored
+        assertTrue(set.add(Long.MIN_VALUE));
+        assertTrue(set.contains(Long.MIN_VALUE));
+        assertEquals(2, set.size());
+
+        for (long value = 1_000; value < 2_000; value++) {
+            assertTrue(set.add(UrlFingerprint.mix(value)));
+        }
+        assertEquals(1_002, set.size());
+        assertTrue(set.capacity() >= 1_002 / 0.6);
+        assertEquals(1_002, set.toArray().length);
+        for (long value = 1_000; value < 2_000; value++) {
+            assertTrue(set.contains(UrlFingerprint.mix(value)));
+        }
+    }
+
+    @Test
+    void concurrentAddsThroughResizesAddEveryValueOnce() throws InterruptedException {
+        int threads = 8;
+        int values = 50_000;
+        // Starts tiny so the table is resized many times while the threads race
+        FingerprintSet set = new FingerprintSet(16);
+        AtomicInteger added = new AtomicInteger();
+        AtomicInteger missing = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                // Every thread adds every value, each from a different starting point
+                for (int i = 0; i < values; i++) {
+                    long value = UrlFingerprint.mix((i + offset * (values / threads)) % values + 1);
+                    if (set.add(value)) added.incrementAndGet();
+                    if (!set.contains(value)) missing.incrementAndGet();
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(values, added.get());
+        assertEquals(0, missing.get());
+        assertEquals(values, set.size());
+        assertEquals(values, set.toArray().length);
+        for (int i = 1; i <= values; i++) {
+            assertTrue(set.contains(UrlFingerprint.mix(i)));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package cu.searchengine.Crawler;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrontierSpillTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsBackInOrderAcrossSegments() throws IOException {
+        try (FrontierSpill spill = new FrontierSpill(dir, 256)) {
+            for (int i = 0; i < 100; i++) {
+                assertTrue(spill.append(url(i), i));
+            }
+            assertEquals(100, spill.size());
+
+            List<String> urls = new ArrayList<>();
+            FrontierSpill.Batch batch;
+            while (!(batch = spill.read(7)).urls().isEmpty()) {
+                for (int i = 0; i < batch.urls().size(); i++) {
+                    assertEquals(urls.size() + i, (int) batch.priorities()[i]);
+                }
+                urls.addAll(batch.urls());
+            }
+            assertEquals(100, urls.size());
+            assertEquals(url(0), urls.get(0));
+            assertEquals(url(99), urls.get(99));
+            assertTrue(spill.isEmpty());
+        }
+    }
+
+    @Test
+    void resumesFromTheCheckpointedCursor() throws IOException {
+        try (FrontierSpill spill = new FrontierSpill(dir, 256)) {
+            for (int i = 0; i < 50; i++) spill.append(url(i), 0);
+            FrontierSpill.Batch first = spill.read(20);
+            spill.commit(first.end());
+            spill.checkpoint(spill.committed());
+            // Read but never committed, so read again after a restart
+            spill.read(10);
+        }
+
+        try (FrontierSpill spill = new FrontierSpill(dir, 256)) {
+            assertEquals(30, spill.size());
+            spill.append(url(50), 0);
+            List<String> urls = spill.read(100).urls();
+            assertEquals(31, urls.size());
+            assertEquals(url(20), urls.get(0));
+            assertEquals(url(50), urls.get(30));
+        }
+    }
+
+    @Test
+    void tornRecordEndsItsSegment() throws IOException {
+        try (FrontierSpill spill = new FrontierSpill(dir, 1 << 20)) {
+            spill.append(url(1), 0);
+            spill.append(url(2), 0);
+            spill.checkpoint(spill.committed());
+        }
+        Path segment;
+        try (var files = Files.list(dir)) {
+            segment = files.filter(file -> file.getFileName().toString().endsWith(".spill")).findFirst().orElseThrow();
+        }
+        Files.write(segment, new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 40, 'h'}, StandardOpenOption.APPEND);
+
+        try (FrontierSpill spill = new FrontierSpill(dir, 1 << 20)) {
+            assertEquals(2, spill.size());
+            assertEquals(List.of(url(1), url(2)), spill.read(10).urls());
+        }
+    }
+
+    @Test
+    void frontierKeepsTheTailOnDiskAndRefills() throws Exception {
+        try (FrontierSpill spill = new FrontierSpill(dir, 1024)) {
+            Frontier frontier = new Frontier(0, 100, spill, 10);
+            int inMemory = 0;
+            for (int i = 0; i < 100; i++) {
+                if (frontier.add(url(i))) inMemory++;
+            }
+            assertEquals(10, inMemory);
+            assertEquals(90, frontier.spilledCount());
+            assertEquals(100, frontier.size());
+
+            List<String> taken = new ArrayList<>();
+            String url;
+            while ((url = frontier.take(2, TimeUnit.SECONDS)) != null) {
+                taken.add(url);
+                frontier.release(url);
+            }
+            assertEquals(100, taken.size());
+            assertTrue(frontier.isExhausted());
+            assertNull(frontier.poll());
+        }
+    }
+
+    private static String url(int i) {
+        return "https://example.com/page/" + i;
+    }
+}
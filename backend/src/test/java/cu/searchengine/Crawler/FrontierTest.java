@@ -0,0 +1,52 @@
+package cu.searchengine.Crawler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrontierTest {
+    @Test
+    void raisedUrlIsHandedOutFirstAndOnlyOnce() {
+        Frontier frontier = new Frontier(0, 10);
+        frontier.add("https://a.example.com/1", 1);
+        frontier.add("https://a.example.com/2", 1);
+        frontier.add("https://b.example.com/3", 2);
+
+        assertTrue(frontier.raisePriority("https://a.example.com/2", 4));
+        // Too small to be worth it, and not queued at all
+        assertFalse(frontier.raisePriority("https://a.example.com/1", 1.1));
+        assertFalse(frontier.raisePriority("https://a.example.com/9", 8));
+        assertEquals(3, frontier.size());
+        assertEquals(3, frontier.snapshot().size());
+
+        assertEquals(List.of("https://a.example.com/2", "https://b.example.com/3", "https://a.example.com/1"), drain(frontier));
+        assertTrue(frontier.isExhausted());
+    }
+
+    @Test
+    void addingAQueuedUrlAgainKeepsOneEntry() {
+        Frontier frontier = new Frontier(0, 10);
+        frontier.add("https://a.example.com/1", 1);
+        frontier.add("https://a.example.com/2", 2);
+        frontier.add("https://a.example.com/1", 3);
+        frontier.add("https://a.example.com/2", 0);
+
+        assertEquals(2, frontier.size());
+        assertEquals(List.of("https://a.example.com/1", "https://a.example.com/2"), drain(frontier));
+    }
+
+    private static List<String> drain(Frontier frontier) {
+        List<String> urls = new ArrayList<>();
+        String url;
+        while ((url = frontier.poll()) != null) {
+            urls.add(url);
+            frontier.release(url);
+        }
+        return urls;
+    }
+}
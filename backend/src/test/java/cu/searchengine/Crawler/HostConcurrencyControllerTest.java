@@ -0,0 +1,152 @@
+package cu.searchengine.Crawler;
+
+import cu.searchengine.config.CrawlerProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HostConcurrencyControllerTest {
+    private static final String HOST = "www.example.com";
+
+    @Test
+    void eachRoundOfHealthyResponsesAddsAFetchAndARequestPerSecond() {
+        RecordingFrontier frontier = new RecordingFrontier();
+        HostConcurrencyController controller = controller(frontier);
+
+        // The host starts at 2 in flight and 250 ms, backing off leaves it at 1 and 500 ms
+        controller.onResponse(HOST, 100);
+        assertEquals(0, frontier.maxInFlight.size());
+        controller.onFailure(HOST, false);
+        assertEquals(1, (int) frontier.maxInFlight.get(HOST));
+        assertEquals(500L, (long) frontier.delay.get(HOST));
+
+        // Each round takes as many healthy responses as the host may have in flight
+        controller.onResponse(HOST, 100);
+        assertEquals(2, (int) frontier.maxInFlight.get(HOST));
+        assertEquals(333L, (long) frontier.delay.get(HOST));
+        controller.onResponse(HOST, 100);
+        assertEquals(2, (int) frontier.maxInFlight.get(HOST));
+        controller.onResponse(HOST, 100);
+        assertEquals(3, (int) frontier.maxInFlight.get(HOST));
+        assertEquals(250L, (long) frontier.delay.get(HOST));
+
+        // Up to hostMaxInFlight, with the delay never under the frontier's default
+        for (int i = 0; i < 100; i++) {
+            controller.onResponse(HOST, 100);
+        }
+        assertEquals(8, (int) frontier.maxInFlight.get(HOST));
+        assertEquals(250L, (long) frontier.delay.get(HOST));
+
+        // nor under the robots.txt Crawl-delay
+        controller.setMinDelay(HOST, 1_000);
+        for (int i = 0; i < 100; i++) {
+            controller.onResponse(HOST, 100);
+        }
+        assertEquals(1_000L, (long) frontier.delay.get(HOST));
+    }
+
+    @Test
+    void throttlingHalvesTheParallelismAndDoublesTheDelay() {
+        RecordingFrontier frontier = new RecordingFrontier();
+        HostConcurrencyController controller = controller(frontier);
+        for (int i = 0; i < 2 + 3 + 4; i++) {
+            controller.onResponse(HOST, 100);
+        }
+        assertEquals(5, (int) frontier.maxInFlight.get(HOST));
+
+        controller.onThrottled(HOST, null);
+        assertEquals(2, (int) frontier.maxInFlight.get(HOST));
+        long delay = frontier.delay.get(HOST);
+        controller.onThrottled(HOST, "");
+        assertEquals(1, (int) frontier.maxInFlight.get(HOST));
+        assertEquals(delay * 2, (long) frontier.delay.get(HOST));
+
+        // Never under one fetch at a time, nor over the longest crawl delay
+        for (int i = 0; i < 20; i++) {
+            controller.onFailure(HOST, false);
+        }
+        assertEquals(1, (int) frontier.maxInFlight.get(HOST));
+        assertEquals(Crawler.MAX_CRAWL_DELAY_MS, (long) frontier.delay.get(HOST));
+        assertEquals(22, controller.getBackoffCount());
+        // Without Retry-After or slow responses the host is never paused
+        assertEquals(0, controller.getSuspensionCount());
+
+        // A response over the latency target backs off as well
+        controller.onResponse("slow.example.com", 3_000);
+        assertEquals(1, (int) frontier.maxInFlight.get("slow.example.com"));
+        assertEquals(500L, (long) frontier.delay.get("slow.example.com"));
+    }
+
+    @Test
+    void retryAfterPausesTheHost() {
+        RecordingFrontier frontier = new RecordingFrontier();
+        HostConcurrencyController controller = controller(frontier);
+        long before = System.currentTimeMillis();
+        controller.onThrottled(HOST, "120");
+
+        long pausedUntil = frontier.pausedUntil.get(HOST);
+        assertTrue(pausedUntil >= before + 120_000 && pausedUntil <= System.currentTimeMillis() + 120_000,
+                "paused until " + pausedUntil);
+        assertEquals(1, (int) frontier.maxInFlight.get(HOST));
+        assertEquals(1, controller.getSuspensionCount());
+        assertEquals(1, controller.getSuspendedHostCount());
+    }
+
+    @Test
+    void retryAfterIsReadAsSecondsOrAnHttpDate() {
+        long now = ZonedDateTime.parse("Wed, 21 Oct 2015 07:26:30 GMT", DateTimeFormatter.RFC_1123_DATE_TIME)
+                .toInstant().toEpochMilli();
+
+        assertEquals(120_000, HostConcurrencyController.retryAfterMillis("120", now));
+        assertEquals(5_000, HostConcurrencyController.retryAfterMillis(" 5 ", now));
+        assertEquals(0, HostConcurrencyController.retryAfterMillis("0", now));
+        assertEquals(0, HostConcurrencyController.retryAfterMillis("-30", now));
+
+        assertEquals(90_000, HostConcurrencyController.retryAfterMillis("Wed, 21 Oct 2015 07:28:00 GMT", now));
+        // A date already past means retry now
+        assertEquals(0, HostConcurrencyController.retryAfterMillis("Wed, 21 Oct 2015 07:00:00 GMT", now));
+
+        assertEquals(0, HostConcurrencyController.retryAfterMillis(null, now));
+        assertEquals(0, HostConcurrencyController.retryAfterMillis("  ", now));
+        assertEquals(0, HostConcurrencyController.retryAfterMillis("soon", now));
+        assertEquals(0, HostConcurrencyController.retryAfterMillis("1.5", now));
+        assertEquals(0, HostConcurrencyController.retryAfterMillis("2015-10-21T07:28:00Z", now));
+    }
+
+    private static HostConcurrencyController controller(Frontier frontier) {
+        CrawlerProperties properties = new CrawlerProperties();
+        properties.setAdaptiveThrottling(true);
+        properties.setHostMaxInFlight(8);
+        properties.setHostLatencyTargetMillis(2_000);
+        properties.setHostSuspendLatencyMillis(5_000);
+        return new HostConcurrencyController(frontier, properties, 10_000);
+    }
+
+    // Remembers the last settings the controller pushed for each host
+    private static class RecordingFrontier extends Frontier {
+        final Map<String, Integer> maxInFlight = new HashMap<>();
+        final Map<String, Long> delay = new HashMap<>();
+        final Map<String, Long> pausedUntil = new HashMap<>();
+
+        @Override
+        public void setCrawlDelay(String host, long delayMs) {
+            delay.put(host, delayMs);
+        }
+
+        @Override
+        public void setMaxInFlight(String host, int maxInFlight) {
+            this.maxInFlight.put(host, maxInFlight);
+        }
+
+        @Override
+        public void pauseHost(String host, long untilMillis) {
+            pausedUntil.put(host, untilMillis);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package cu.searchengine.Crawler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NearDuplicateIndexTest {
+    @Test
+    void nearIdenticalPagesHaveCloseFingerprints() {
+        String page = text(new Random(1), 400);
+        // A changed word and different spacing and case
+        String edited = page.replaceFirst("\\S+", "changed").replace(" ", "  ").toUpperCase();
+        String other = text(new Random(2), 400);
+
+        long simHash = SimHash.of(page);
+        assertTrue(SimHash.distance(simHash, SimHash.of(edited)) <= NearDuplicateIndex.MAX_DISTANCE);
+        assertTrue(SimHash.distance(simHash, SimHash.of(other)) > 16);
+        assertEquals(0, SimHash.of("too few words to say anything"));
+
+        NearDuplicateIndex index = new NearDuplicateIndex(3);
+        assertNull(index.findOrAdd(simHash, 1));
+        assertEquals(1, (int) index.findOrAdd(SimHash.of(edited), 2));
+        assertNull(index.findOrAdd(SimHash.of(other), 3));
+        assertEquals(2, index.size());
+        assertEquals(3, index.getCheckedCount());
+        assertEquals(1, index.getDuplicateCount());
+    }
+
+    @Test
+    void distanceThresholdIsExact() {
+        long base = 0x0123_4567_89ab_cdefL;
+        NearDuplicateIndex index = new NearDuplicateIndex(3);
+        assertNull(index.findOrAdd(base, 1));
+
+        // 3 bits apart, one in each of blocks 0 to 2: only block 3 is shared and that is enough
+        assertEquals(1, (int) index.findOrAdd(base ^ bits(0, 16, 32), 2));
+        // 3 bits apart within one block: blocks 1 to 3 are shared
+        assertEquals(1, (int) index.findOrAdd(base ^ bits(1, 2, 3), 3));
+        // 4 bits apart, one in every block: no block in common, and too far anyway
+        assertNull(index.findOrAdd(base ^ bits(0, 16, 32, 48), 4));
+        // 4 bits apart in one block: shares blocks but is past the threshold
+        assertNull(index.findOrAdd(base ^ bits(60, 61, 62, 63), 5));
+        assertEquals(3, index.size());
+
+        NearDuplicateIndex strict = new NearDuplicateIndex(1);
+        assertNull(strict.findOrAdd(base, 1));
+        assertEquals(1, (int) strict.findOrAdd(base ^ bits(40), 2));
+        assertNull(strict.findOrAdd(base ^ bits(40, 41), 3));
+
+        assertThrows(IllegalArgumentException.class, () -> new NearDuplicateIndex(NearDuplicateIndex.MAX_DISTANCE + 1));
+    }
+
+    @Test
+    void findDoesNotRecordThePage() {
+        long base = 0x0123_4567_89ab_cdefL;
+        NearDuplicateIndex index = new NearDuplicateIndex(3);
+        assertNull(index.find(base));
+        assertEquals(0, index.size());
+
+        assertNull(index.findOrAdd(base, 7));
+        assertEquals(7, (int) index.find(base ^ bits(5)));
+        assertEquals(1, index.size());
+        // A miss is counted by the findOrAdd that follows it, a hit right away
+        assertEquals(2, index.getCheckedCount());
+        assertEquals(1, index.getDuplicateCount());
+    }
+
+    @Test
+    void unrelatedPagesDoNotCollide() {
+        Random random = new Random(3);
+        NearDuplicateIndex index = new NearDuplicateIndex(3);
+        for (int page = 0; page < 2_000; page++) {
+            assertNull(index.findOrAdd(SimHash.of(text(random, 200)), page));
+        }
+        assertEquals(2_000, index.size());
+        assertEquals(0, index.getDuplicateCount());
+
+        index.clear();
+        assertEquals(0, index.size());
+        assertEquals(0.0, index.getDuplicateRate(), 0);
+    }
+
+    private static long bits(int... positions) {
+        long mask = 0;
+        for (int position : positions) {
+            mask |= 1L << position;
+        }
+        return mask;
+    }
+
+    // Words drawn from a 5,000 word vocabulary
+    private static String text(Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            text.append("w").append(random.nextInt(5_000)).append(i % 12 == 11 ? ". " : " ");
+        }
+        return text.toString();
+    }
+}
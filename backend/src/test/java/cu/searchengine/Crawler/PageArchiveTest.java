@@ -0,0 +1,103 @@
+package cu.searchengine.Crawler;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PageArchiveTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsBackEveryRecordAcrossSegments() throws IOException {
+        try (PageArchive archive = new PageArchive(dir, 4096)) {
+            for (int i = 0; i < 50; i++) {
+                archive.append("https://example.com/" + i, 200, "text/html; charset=utf-8", "\"e" + i + "\"", null, 1_000L * i, page(i));
+            }
+        }
+        PageArchiveReader reader = new PageArchiveReader(dir);
+        assertTrue(reader.segments().size() > 1, "segments should roll over");
+
+        List<String> scanned = new ArrayList<>();
+        for (Path segment : reader.segments()) {
+            reader.scan(segment, (entry, compressed) -> {
+                PageArchiveReader.ArchivedPage page = PageArchiveReader.decode(compressed);
+                assertEquals(entry.url(), page.getUrl());
+                scanned.add(page.getUrl());
+            });
+        }
+        assertEquals(50, scanned.size());
+        assertEquals("https://example.com/0", scanned.get(0));
+
+        PageArchiveReader.ArchivedPage page = reader.read(reader.latest().get("https://example.com/17"));
+        assertEquals(200, page.getStatusCode());
+        assertEquals("\"e17\"", page.getEtag());
+        assertArrayEquals(page(17), page.getBody());
+        assertEquals("Page 17", page.parse().title());
+    }
+
+    @Test
+    void latestCopyWinsAndNewArchivesStartANewSegment() throws IOException {
+        try (PageArchive archive = new PageArchive(dir, 1 << 20)) {
+            archive.append("https://example.com/a", 200, "text/html", null, null, 1, page(1));
+        }
+        try (PageArchive archive = new PageArchive(dir, 1 << 20)) {
+            archive.append("https://example.com/a", 200, "text/html", null, null, 2, page(2));
+        }
+        PageArchiveReader reader = new PageArchiveReader(dir);
+        assertEquals(2, reader.segments().size());
+
+        Map<String, PageArchiveReader.Entry> latest = reader.latest();
+        assertEquals(2, latest.get("https://example.com/a").fetchedAt());
+        assertArrayEquals(page(2), reader.read(latest.get("https://example.com/a")).getBody());
+    }
+
+    @Test
+    void ignoresRecordsMissingFromTheIndex() throws IOException {
+        try (PageArchive archive = new PageArchive(dir, 1 << 20)) {
+            archive.append("https://example.com/a", 200, "text/html", null, null, 1, page(1));
+        }
+        Path segment = new PageArchiveReader(dir).segments().get(0);
+        // A record cut short by a crash, and an index line torn mid-write
+        Files.write(segment, new byte[]{0x1f, (byte) 0x8b, 8, 0}, StandardOpenOption.APPEND);
+        Files.write(PageArchive.indexPath(segment), "123\t4".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        List<String> scanned = new ArrayList<>();
+        new PageArchiveReader(dir).scan(segment, (entry, compressed) -> scanned.add(PageArchiveReader.decode(compressed).getUrl()));
+        assertEquals(List.of("https://example.com/a"), scanned);
+    }
+
+    @Test
+    void segmentIsAPlainWarcGzip() throws IOException {
+        try (PageArchive archive = new PageArchive(dir, 1 << 20)) {
+            archive.append("https://example.com/a", 200, "text/html", null, null, 1, page(1));
+            archive.append("https://example.com/b", 404, "text/html", null, null, 2, page(2));
+        }
+        String warc;
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(new PageArchiveReader(dir).segments().get(0)))) {
+            warc = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        assertTrue(warc.startsWith("WARC/1.1\r\nWARC-Type: response\r\n"));
+        assertTrue(warc.contains("WARC-Target-URI: https://example.com/b\r\n"));
+        assertTrue(warc.contains("HTTP/1.1 404\r\n"));
+    }
+
+    private static byte[] page(int i) {
+        return ("<html><head><title>Page " + i + "</title></head><body><p>Body of page " + i + " é</p></body></html>")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+}
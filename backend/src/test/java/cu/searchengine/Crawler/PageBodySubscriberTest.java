@@ -0,0 +1,140 @@
+package cu.searchengine.Crawler;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Flow;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PageBodySubscriberTest {
+    private static final byte[] PAGE = ("<html><head><title>Page</title></head><body>" + "<p>Some text é</p>".repeat(500) + "</body></html>")
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void decodesGzipSplitIntoTinyChunks() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(PAGE);
+        }
+        Run run = run(200, headers("text/html; charset=utf-8", "gzip", -1), compressed.toByteArray(), 3, 1 << 20);
+
+        assertArrayEquals(PAGE, run.body.bytes());
+        assertNull(run.body.skipped());
+        assertFalse(run.cancelled);
+    }
+
+    @Test
+    void decodesZlibAndRawDeflate() throws IOException {
+        for (boolean raw : new boolean[]{false, true}) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (DeflaterOutputStream deflate = new DeflaterOutputStream(compressed, new Deflater(Deflater.DEFAULT_COMPRESSION, raw))) {
+                deflate.write(PAGE);
+            }
+            Run run = run(200, headers("text/html", "deflate", -1), compressed.toByteArray(), 1, 1 << 20);
+            assertArrayEquals(PAGE, run.body.bytes());
+        }
+    }
+
+    @Test
+    void cutsOffAPageOverTheLimit() throws IOException {
+        Run chunked = run(200, headers("text/html", null, -1), PAGE, 1024, 4096);
+        assertNull(chunked.body.bytes());
+        assertEquals(HttpFetcher.SkipReason.TOO_LARGE, chunked.body.skipped());
+        assertTrue(chunked.cancelled);
+        assertTrue(chunked.delivered <= 5 * 1024, "kept downloading past the limit");
+
+        // A compressed page is limited by its decoded size
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(new byte[1 << 20]);
+        }
+        Run bomb = run(200, headers("text/html", "gzip", -1), compressed.toByteArray(), 256, 64 * 1024);
+        assertEquals(HttpFetcher.SkipReason.TOO_LARGE, bomb.body.skipped());
+        assertTrue(bomb.cancelled);
+    }
+
+    @Test
+    void decidesFromHeadersBeforeTheBody() throws IOException {
+        Run large = run(200, headers("text/html", null, 10_000_000), PAGE, 1024, 1 << 20);
+        assertEquals(HttpFetcher.SkipReason.TOO_LARGE, large.body.skipped());
+        assertEquals(0, large.delivered);
+
+        Run pdf = run(200, headers("application/pdf", null, 1_000_000), PAGE, 1024, 1 << 20);
+        assertEquals(HttpFetcher.SkipReason.NOT_HTML, pdf.body.skipped());
+        assertEquals(0, pdf.delivered);
+
+        // Short enough to drain, the connection stays usable
+        Run image = run(200, headers("image/png", null, PAGE.length), PAGE, 1024, 1 << 20);
+        assertEquals(HttpFetcher.SkipReason.NOT_HTML, image.body.skipped());
+        assertFalse(image.cancelled);
+
+        Run brotli = run(200, headers("text/html", "br", -1), PAGE, 1024, 1 << 20);
+        assertEquals(HttpFetcher.SkipReason.BAD_ENCODING, brotli.body.skipped());
+
+        Run notFound = run(404, headers("text/html", null, PAGE.length), PAGE, 1024, 1 << 20);
+        assertNull(notFound.body.bytes());
+        assertNull(notFound.body.skipped());
+    }
+
+    private static HttpHeaders headers(String contentType, String encoding, long length) {
+        Map<String, List<String>> headers = new HashMap<>();
+        if (contentType != null) headers.put("Content-Type", List.of(contentType));
+        if (encoding != null) headers.put("Content-Encoding", List.of(encoding));
+        if (length >= 0) headers.put("Content-Length", List.of(Long.toString(length)));
+        return HttpHeaders.of(headers, (name, value) -> true);
+    }
+
+    private static class Run {
+        PageBodySubscriber.Body body;
+        boolean cancelled;
+        int delivered;
+    }
+
+    // Publishes the bytes in chunks of chunkSize, one chunk per request, like the HttpClient does
+    private static Run run(int status, HttpHeaders headers, byte[] bytes, int chunkSize, int maxBytes) {
+        Run run = new Run();
+        PageBodySubscriber subscriber = new PageBodySubscriber(status, headers, maxBytes);
+        List<ByteBuffer> chunks = new ArrayList<>();
+        for (int i = 0; i < bytes.length; i += chunkSize) {
+            chunks.add(ByteBuffer.wrap(bytes, i, Math.min(chunkSize, bytes.length - i)).slice());
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            int next;
+
+            @Override
+            public void request(long n) {
+                if (run.cancelled) return;
+                if (next == chunks.size()) {
+                    subscriber.onComplete();
+                    return;
+                }
+                ByteBuffer chunk = chunks.get(next++);
+                run.delivered += chunk.remaining();
+                subscriber.onNext(List.of(chunk));
+            }
+
+            @Override
+            public void cancel() {
+                run.cancelled = true;
+            }
+        });
+        run.body = subscriber.getBody().toCompletableFuture().join();
+        return run;
+    }
+}
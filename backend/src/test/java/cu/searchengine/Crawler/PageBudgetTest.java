@@ -0,0 +1,76 @@
+package cu.searchengine.Crawler;
+
+import cu.searchengine.service.MemoryCounterService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PageBudgetTest {
+    @Test
+    void neverHandsOutMoreThanTheLimit() throws InterruptedException {
+        MemoryCounterService counters = new MemoryCounterService();
+        int limit = 10_007;
+        AtomicInteger acquired = new AtomicInteger();
+        List<PageBudget> budgets = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        // 4 shards with 2 crawler threads each, sharing the counter
+        for (int shard = 0; shard < 4; shard++) {
+            PageBudget budget = new PageBudget(counters, "pages", limit, 64);
+            budgets.add(budget);
+            for (int t = 0; t < 2; t++) {
+                Thread thread = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    while (budget.tryAcquire()) {
+                        acquired.incrementAndGet();
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(acquired.get() <= limit, "acquired " + acquired.get());
+        assertTrue(budgets.stream().allMatch(PageBudget::isExhausted));
+        budgets.forEach(PageBudget::releaseUnused);
+        assertEquals(acquired.get(), budgets.get(0).getGlobalCount());
+    }
+
+    @Test
+    void unusedPagesGoBackToTheOtherShards() {
+        MemoryCounterService counters = new MemoryCounterService();
+        PageBudget first = new PageBudget(counters, "pages", 100, 64);
+        PageBudget second = new PageBudget(counters, "pages", 100, 64);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(first.tryAcquire());
+        }
+        // The first shard holds a block of 64, only 36 are left for the second
+        int taken = 0;
+        while (second.tryAcquire()) taken++;
+        assertEquals(36, taken);
+
+        first.releaseUnused();
+        assertEquals(46, first.getGlobalCount());
+        PageBudget third = new PageBudget(counters, "pages", 100, 64);
+        taken = 0;
+        while (third.tryAcquire()) taken++;
+        assertEquals(54, taken);
+        assertEquals(100, third.getGlobalCount());
+        assertFalse(first.isExhausted());
+    }
+}
@@ -0,0 +1,257 @@
+package cu.searchengine.Crawler;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves a {@link ReplaySite} over HTTPS on the loopback interface, one server port per site host.
+ * <p>
+ * The crawler normalizes every URL to https, so the servers use a throwaway self-signed certificate for
+ * 127.0.0.1 and {@link #sslContext()} both serves it and trusts it. Install that context as the JVM default
+ * before the crawler builds its HttpClient. Each response can be delayed and a share of page requests fail
+ * with 503, and every host's robots.txt disallows /private/. Requests are counted, including fetches of
+ * disallowed pages, which a polite crawler never makes.
+ */
+class ReplayServer implements AutoCloseable {
+    private static final String STORE_PASSWORD = "replay";
+
+    record Settings(long latencyMillis, long jitterMillis, double errorRate, int crawlDelaySeconds) {
+    }
+
+    private final ReplaySite site;
+    private final Settings settings;
+    private final SSLContext sslContext;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "replay-server");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final List<HttpsServer> servers = new ArrayList<>();
+    private final int[] ports;
+    private final Map<Integer, Integer> hostByPort = new HashMap<>();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private final AtomicLong pageRequests = new AtomicLong();
+    private final AtomicLong robotsRequests = new AtomicLong();
+    private final AtomicLong notFound = new AtomicLong();
+    private final AtomicLong disallowedRequests = new AtomicLong();
+    private final AtomicLong bytesServed = new AtomicLong();
+    // CPU spent in request handlers, so it can be told apart from the crawler's in the same process
+    private final AtomicLong handlerCpuNanos = new AtomicLong();
+    private final Set<ReplaySite.Link> served = ConcurrentHashMap.newKeySet();
+    private final Set<ReplaySite.Link> failed = ConcurrentHashMap.newKeySet();
+
+    ReplayServer(ReplaySite site, Settings settings, Path workDir) throws IOException, GeneralSecurityException {
+        this.site = site;
+        this.settings = settings;
+        this.sslContext = selfSignedContext(workDir);
+        this.ports = new int[site.hostCount()];
+        HttpsConfigurator configurator = new HttpsConfigurator(sslContext);
+        for (int host = 0; host < site.hostCount(); host++) {
+            HttpsServer server = HttpsServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            server.setHttpsConfigurator(configurator);
+            int hostId = host;
+            server.createContext("/", exchange -> handle(hostId, exchange));
+            server.setExecutor(executor);
+            server.start();
+            servers.add(server);
+            ports[host] = server.getAddress().getPort();
+            hostByPort.put(ports[host], host);
+        }
+    }
+
+    SSLContext sslContext() {
+        return sslContext;
+    }
+
+    String origin(int host) {
+        return "https://127.0.0.1:" + ports[host];
+    }
+
+    List<String> seedUrls() {
+        List<String> seeds = new ArrayList<>();
+        for (ReplaySite.Link seed : site.seeds()) seeds.add(origin(seed.host()) + seed.path());
+        return seeds;
+    }
+
+    // The site page a crawled URL stands for, null for URLs of other servers
+    ReplaySite.Link linkOf(String url) {
+        URI uri = URI.create(url);
+        Integer host = hostByPort.get(uri.getPort());
+        if (host == null) return null;
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        return new ReplaySite.Link(host, uri.getRawQuery() == null ? path : path + "?" + uri.getRawQuery());
+    }
+
+    private void handle(int host, HttpExchange exchange) throws IOException {
+        long cpuStart = threads.getCurrentThreadCpuTime();
+        try (exchange) {
+            URI uri = exchange.getRequestURI();
+            String path = uri.getRawQuery() == null ? uri.getRawPath() : uri.getRawPath() + "?" + uri.getRawQuery();
+            if (path.equals("/robots.txt")) {
+                robotsRequests.incrementAndGet();
+                String robots = "User-agent: *\nDisallow: " + ReplaySite.PRIVATE_PREFIX + "\n"
+                        + (settings.crawlDelaySeconds() > 0 ? "Crawl-delay: " + settings.crawlDelaySeconds() + "\n" : "");
+                respond(exchange, 200, "text/plain", robots);
+                return;
+            }
+
+            pageRequests.incrementAndGet();
+            if (ReplaySite.isPrivate(path)) disallowedRequests.incrementAndGet();
+            simulateLatency();
+
+            ReplaySite.Link link = new ReplaySite.Link(host, path);
+            ReplaySite.Page page = site.page(host, path);
+            if (page == null) {
+                notFound.incrementAndGet();
+                respond(exchange, 404, "text/html", "<html><body>Not found</body></html>");
+            } else if (settings.errorRate() > 0 && ThreadLocalRandom.current().nextDouble() < settings.errorRate()) {
+                failed.add(link);
+                respond(exchange, 503, "text/html", "<html><body>Unavailable</body></html>");
+            } else {
+                served.add(link);
+                respond(exchange, 200, "text/html; charset=utf-8", ReplaySite.render(page, this::origin));
+            }
+        } finally {
+            handlerCpuNanos.addAndGet(threads.getCurrentThreadCpuTime() - cpuStart);
+        }
+    }
+
+    private void simulateLatency() {
+        long delay = settings.latencyMillis();
+        if (settings.jitterMillis() > 0) delay += ThreadLocalRandom.current().nextLong(settings.jitterMillis() + 1);
+        if (delay <= 0) return;
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        // Compressed like most real servers do, so the crawl goes through the fetcher's decoding
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 3 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(bytes);
+            }
+            bytes = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+        bytesServed.addAndGet(bytes.length);
+    }
+
+    long getPageRequests() {
+        return pageRequests.get();
+    }
+
+    long getRobotsRequests() {
+        return robotsRequests.get();
+    }
+
+    long getNotFoundCount() {
+        return notFound.get();
+    }
+
+    // Fetches of pages robots.txt disallows, anything but 0 is a politeness bug
+    long getDisallowedRequests() {
+        return disallowedRequests.get();
+    }
+
+    long getBytesServed() {
+        return bytesServed.get();
+    }
+
+    long getHandlerCpuNanos() {
+        return handlerCpuNanos.get();
+    }
+
+    Set<ReplaySite.Link> getServed() {
+        return served;
+    }
+
+    // Pages answered with an injected 503 at least once
+    Set<ReplaySite.Link> getFailed() {
+        return failed;
+    }
+
+    @Override
+    public void close() {
+        for (HttpsServer server : servers) server.stop(0);
+        executor.shutdownNow();
+    }
+
+    // keytool ships with every JDK, generating the certificate with it avoids a dependency on an X.509 library
+    private static SSLContext selfSignedContext(Path workDir) throws IOException, GeneralSecurityException {
+        Path keyStoreFile = workDir.resolve("replay.p12");
+        if (!Files.exists(keyStoreFile)) {
+            Path keytool = Path.of(System.getProperty("java.home"), "bin", "keytool");
+            Process process = new ProcessBuilder(keytool.toString(), "-genkeypair", "-alias", "replay",
+                    "-keyalg", "EC", "-groupname", "secp256r1", "-dname", "CN=127.0.0.1",
+                    "-ext", "SAN=ip:127.0.0.1,dns:localhost", "-validity", "7", "-storetype", "PKCS12",
+                    "-keystore", keyStoreFile.toString(), "-storepass", STORE_PASSWORD, "-keypass", STORE_PASSWORD)
+                    .redirectErrorStream(true)
+                    .start();
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            try {
+                if (!process.waitFor(1, TimeUnit.MINUTES) || process.exitValue() != 0) {
+                    throw new IOException("keytool failed: " + output);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while generating the replay certificate", e);
+            }
+        }
+
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(keyStoreFile)) {
+            keyStore.load(in, STORE_PASSWORD.toCharArray());
+        }
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, STORE_PASSWORD.toCharArray());
+        // The certificate of the key entry is the only trusted one
+        TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagers.init(keyStore);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keyManagers.getKeyManagers(), trustManagers.getTrustManagers(), null);
+        return context;
+    }
+}
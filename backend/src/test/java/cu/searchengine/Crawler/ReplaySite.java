@@ -0,0 +1,199 @@
+package cu.searchengine.Crawler;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * A site graph served by {@link ReplayServer}: hosts, their pages and the links between them.
+ * <p>
+ * Hosts are numbered and only get a real address once the server binds a port for each, so the same graph
+ * can be replayed any number of times. Pages under /private/ are disallowed by every host's robots.txt.
+ * A graph is either generated from a seed or loaded from a recorded crawl.
+ */
+class ReplaySite {
+    static final String PRIVATE_PREFIX = "/private/";
+    private static final int WORDS_PER_PAGE = 300;
+    private static final int VOCABULARY = 5000;
+
+    record Link(int host, String path) {
+    }
+
+    static final class Page {
+        final int host;
+        final String path;
+        final List<Link> links = new ArrayList<>();
+
+        Page(int host, String path) {
+            this.host = host;
+            this.path = path;
+        }
+    }
+
+    private final int hostCount;
+    // Per host, path -> page
+    private final List<Map<String, Page>> pages = new ArrayList<>();
+    private final List<Link> seeds = new ArrayList<>();
+
+    private ReplaySite(int hostCount) {
+        this.hostCount = hostCount;
+        for (int i = 0; i < hostCount; i++) pages.add(new LinkedHashMap<>());
+    }
+
+    /**
+     * Random graph: each host has a home page linked from the seeds and {@code pagesPerHost - 1} more pages.
+     * Every page links to {@code linksPerPage} others, a {@code crossHostRatio} share of them on another
+     * host, and about {@code privateRatio} of the pages live under /private/.
+     */
+    static ReplaySite synthetic(int hosts, int pagesPerHost, int linksPerPage, double crossHostRatio, double privateRatio, long seed) {
+        ReplaySite site = new ReplaySite(hosts);
+        Random random = new Random(seed);
+        for (int host = 0; host < hosts; host++) {
+            site.add(host, "/");
+            for (int i = 1; i < pagesPerHost; i++) {
+                site.add(host, (random.nextDouble() < privateRatio ? PRIVATE_PREFIX : "/p/") + i);
+            }
+            site.seeds.add(new Link(host, "/"));
+        }
+        List<List<Page>> pagesByHost = new ArrayList<>();
+        for (Map<String, Page> hostPages : site.pages) pagesByHost.add(new ArrayList<>(hostPages.values()));
+        for (int host = 0; host < hosts; host++) {
+            List<Page> hostPages = pagesByHost.get(host);
+            for (int i = 0; i < hostPages.size(); i++) {
+                Page page = hostPages.get(i);
+                // The next page on the host is always linked, so every page is reachable from the home page
+                Page next = hostPages.get((i + 1) % hostPages.size());
+                page.links.add(new Link(host, next.path));
+                for (int l = 1; l < linksPerPage; l++) {
+                    int target = hosts > 1 && random.nextDouble() < crossHostRatio ? random.nextInt(hosts) : host;
+                    List<Page> targetPages = pagesByHost.get(target);
+                    page.links.add(new Link(target, targetPages.get(random.nextInt(targetPages.size())).path));
+                }
+            }
+        }
+        return site;
+    }
+
+    /**
+     * Graph recorded from a real crawl: one page per line, its URL followed by its outgoing links, separated
+     * by tabs. The first line is the seed. Links to hosts that were not recorded are dropped, links to
+     * unrecorded pages of a recorded host are kept and answered with 404.
+     */
+    static ReplaySite load(Path file) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        Map<String, Integer> hostIds = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.isBlank() || line.startsWith("#")) continue;
+            String[] urls = line.trim().split("\t");
+            URI uri = URI.create(urls[0]);
+            if (uri.getAuthority() == null) continue;
+            hostIds.putIfAbsent(uri.getAuthority().toLowerCase(), hostIds.size());
+            rows.add(urls);
+        }
+        ReplaySite site = new ReplaySite(hostIds.size());
+        for (String[] urls : rows) {
+            Link from = toLink(urls[0], hostIds);
+            Page page = site.add(from.host(), from.path());
+            for (int i = 1; i < urls.length; i++) {
+                Link to = toLink(urls[i], hostIds);
+                if (to != null) page.links.add(to);
+            }
+            if (site.seeds.isEmpty()) site.seeds.add(from);
+        }
+        return site;
+    }
+
+    private static Link toLink(String url, Map<String, Integer> hostIds) {
+        try {
+            URI uri = URI.create(url.trim());
+            Integer host = uri.getAuthority() == null ? null : hostIds.get(uri.getAuthority().toLowerCase());
+            if (host == null) return null;
+            String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+            return new Link(host, uri.getRawQuery() == null ? path : path + "?" + uri.getRawQuery());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private Page add(int host, String path) {
+        return pages.get(host).computeIfAbsent(path, p -> new Page(host, p));
+    }
+
+    int hostCount() {
+        return hostCount;
+    }
+
+    int pageCount() {
+        return pages.stream().mapToInt(Map::size).sum();
+    }
+
+    List<Link> seeds() {
+        return seeds;
+    }
+
+    Page page(int host, String path) {
+        return pages.get(host).get(path);
+    }
+
+    static boolean isPrivate(String path) {
+        return path.startsWith(PRIVATE_PREFIX);
+    }
+
+    // Pages a polite crawler can store: found from the seeds without going through a disallowed page
+    Set<Link> crawlable() {
+        Set<Link> seen = new HashSet<>(seeds);
+        ArrayDeque<Link> queue = new ArrayDeque<>(seeds);
+        Set<Link> crawlable = new HashSet<>();
+        while (!queue.isEmpty()) {
+            Link link = queue.poll();
+            Page page = page(link.host(), link.path());
+            if (page == null || isPrivate(link.path())) continue;
+            crawlable.add(link);
+            for (Link next : page.links) {
+                if (seen.add(next)) queue.add(next);
+            }
+        }
+        return crawlable;
+    }
+
+    // Page body, the words are drawn from the page's own seed so every replay serves the same bytes
+    static String render(Page page, IntFunction<String> origins) {
+        Random random = new Random(31L * page.host + page.path.hashCode());
+        StringBuilder html = new StringBuilder(4096);
+        html.append("<!DOCTYPE html><html><head><title>Host ").append(page.host).append(" page ").append(page.path)
+                .append("</title></head><body><h1>").append(word(random)).append(' ').append(word(random))
+                .append("</h1><h2>").append(word(random)).append("</h2><p>");
+        for (int i = 0; i < WORDS_PER_PAGE; i++) {
+            html.append(word(random)).append(i % 20 == 19 ? "</p><p>" : " ");
+        }
+        html.append("</p><ul>");
+        for (Link link : page.links) {
+            html.append("<li><a href=\"");
+            // Links on the same host are relative, so the crawler resolves them against the page
+            if (link.host() != page.host) html.append(origins.apply(link.host()));
+            html.append(link.path()).append("\">").append(word(random)).append("</a></li>");
+        }
+        return html.append("</ul></body></html>").toString();
+    }
+
+    private static String word(Random random) {
+        int n = random.nextInt(VOCABULARY);
+        StringBuilder word = new StringBuilder();
+        do {
+            word.append((char) ('a' + n % 26));
+            n /= 26;
+        } while (n > 0);
+        return word.append("en").toString();
+    }
+}
@@ -0,0 +1,122 @@
+package cu.searchengine.Crawler;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RobotsRulesTest {
+    private static final String HOST = "https://example.com";
+
+    @Test
+    void longestMatchWinsAndAllowWinsTies() throws IOException {
+        RobotsRules rules = parse("""
+                User-agent: *
+                Disallow: /private
+                Allow: /private/public
+                Disallow: /private/public/secret
+                Allow: /tie
+                Disallow: /tie
+                Disallow: /search?
+                """);
+
+        assertTrue(allowed(rules, "*", "/"));
+        assertFalse(allowed(rules, "*", "/private"));
+        assertFalse(allowed(rules, "*", "/private/x"));
+        assertTrue(allowed(rules, "*", "/private/public/page"));
+        assertFalse(allowed(rules, "*", "/private/public/secret/page"));
+        assertTrue(allowed(rules, "*", "/tie/page"));
+        // The query is part of what is matched
+        assertTrue(allowed(rules, "*", "/search"));
+        assertFalse(allowed(rules, "*", "/search?q=robots"));
+        assertEquals(4, rules.getDisallowRuleCount());
+    }
+
+    @Test
+    void wildcardsAndEndAnchors() throws IOException {
+        RobotsRules rules = parse("""
+                User-agent: *
+                Disallow: /*.pdf$
+                Disallow: /tmp/*/cache
+                Allow: /tmp/keep/cache
+                Disallow: /docs
+                Allow: /docs/*.html$
+                """);
+
+        assertFalse(allowed(rules, "*", "/files/report.pdf"));
+        assertTrue(allowed(rules, "*", "/files/report.pdf?download=1"));
+        assertTrue(allowed(rules, "*", "/files/report.pdfx"));
+        assertFalse(allowed(rules, "*", "/tmp/a/b/cache/x"));
+        assertTrue(allowed(rules, "*", "/tmp/cache"));
+        // The literal Allow is longer than the wildcard Disallow
+        assertTrue(allowed(rules, "*", "/tmp/keep/cache"));
+        assertTrue(allowed(rules, "*", "/docs/guide/intro.html"));
+        assertFalse(allowed(rules, "*", "/docs/guide/intro.html?v=2"));
+        assertFalse(allowed(rules, "*", "/docs/guide"));
+    }
+
+    @Test
+    void groupIsPickedByUserAgent() throws IOException {
+        RobotsRules rules = parse("""
+                User-agent: CUSearchBot
+                User-agent: OtherBot
+                Disallow: /bots
+                Crawl-delay: 2.5
+
+                User-agent: mozilla
+                Disallow: /browsers
+
+                User-agent: *
+                Disallow: /
+                Allow: /public
+
+                # Same agent again, merged with the first group
+                User-agent: cusearchbot
+                Disallow: /more
+                """);
+
+        // Exact name ignoring case, the two agents of the first group share its rules
+        assertFalse(allowed(rules, "cusearchbot", "/bots"));
+        assertFalse(allowed(rules, "CUSearchBot", "/more"));
+        assertTrue(allowed(rules, "CUSearchBot", "/browsers"));
+        assertFalse(allowed(rules, "OtherBot", "/bots"));
+        assertTrue(allowed(rules, "OtherBot", "/more"));
+        assertEquals(2500, rules.getCrawlDelayMillis("OtherBot"));
+
+        // The product token of a full user agent string
+        assertFalse(allowed(rules, "Mozilla/5.0 (X11; Linux x86_64)", "/browsers"));
+        assertTrue(allowed(rules, "Mozilla/5.0 (X11; Linux x86_64)", "/bots"));
+
+        // Everyone else gets the * group
+        assertFalse(allowed(rules, "UnknownBot/1.0", "/bots"));
+        assertTrue(allowed(rules, "UnknownBot/1.0", "/public/page"));
+        assertFalse(allowed(rules, null, "/bots"));
+        assertEquals(-1, rules.getCrawlDelayMillis("UnknownBot/1.0"));
+    }
+
+    @Test
+    void noMatchingGroupAllowsEverything() throws IOException {
+        RobotsRules rules = parse("""
+                User-agent: OnlyBot
+                Disallow: /
+                """);
+        assertFalse(allowed(rules, "OnlyBot", "/page"));
+        assertTrue(allowed(rules, "OtherBot", "/page"));
+        assertTrue(allowed(RobotsRules.allowAll(), "OtherBot", "/page"));
+    }
+
+    private static RobotsRules parse(String robotsTxt) throws IOException {
+        return RobotsRules.parse(new BufferedReader(new StringReader(robotsTxt)));
+    }
+
+    private static boolean allowed(RobotsRules rules, String userAgent, String pathAndQuery) {
+        String url = HOST + pathAndQuery;
+        int end = url.indexOf('#');
+        return rules.isAllowed(userAgent, url, HOST.length(), end < 0 ? url.length() : end);
+    }
+}
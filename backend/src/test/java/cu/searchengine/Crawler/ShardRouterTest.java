@@ -0,0 +1,52 @@
+package cu.searchengine.Crawler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardRouterTest {
+    private static final int HOSTS = 100_000;
+
+    @Test
+    void hostsAreSpreadEvenlyOverTheShards() {
+        ShardRouter router = new ShardRouter(0, 4, ShardRouter.DEFAULT_VIRTUAL_NODES);
+        int[] counts = new int[4];
+        for (int i = 0; i < HOSTS; i++) {
+            counts[router.shardOf(host(i))]++;
+        }
+        for (int count : counts) {
+            // Within 5% of an even split
+            assertTrue(Math.abs(count - HOSTS / 4) < HOSTS / 4 * 0.05, "shard has " + count + " hosts");
+        }
+
+        assertEquals(router.shardOf("www.example.com"), router.shardOf("WWW.Example.COM"));
+        assertEquals(router.isLocal("www.example.com"), router.shardOf("www.example.com") == 0);
+        assertEquals(0, new ShardRouter(0, 1, 8).shardOf("www.example.com"));
+        assertThrows(IllegalArgumentException.class, () -> new ShardRouter(4, 4, 8));
+    }
+
+    @Test
+    void addingAShardMovesAboutItsShareOfHostsToIt() {
+        ShardRouter four = new ShardRouter(0, 4, ShardRouter.DEFAULT_VIRTUAL_NODES);
+        ShardRouter five = new ShardRouter(0, 5, ShardRouter.DEFAULT_VIRTUAL_NODES);
+        int moved = 0;
+        for (int i = 0; i < HOSTS; i++) {
+            int before = four.shardOf(host(i));
+            int after = five.shardOf(host(i));
+            if (before != after) {
+                moved++;
+                // Hosts only move to the new shard, never between the old ones
+                assertEquals(4, after);
+            }
+        }
+        double share = (double) moved / HOSTS;
+        // Ideally 1/5 of the hosts
+        assertTrue(share > 0.17 && share < 0.23, "moved " + share);
+    }
+
+    private static String host(int i) {
+        return "host" + i + ".example" + (i % 97) + ".com";
+    }
+}
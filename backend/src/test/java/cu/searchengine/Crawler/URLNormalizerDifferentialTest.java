@@ -0,0 +1,96 @@
+package cu.searchengine.Crawler;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the single-pass URLNormalizer against the URI-based implementation it replaced.
+ * <p>
+ * The corpus is a list of real-world links plus edge cases (crawler/links.txt), and random mutations of
+ * each link that insert, replace or re-case characters, so the fast path's bail-out rules are exercised
+ * on inputs close to the ones it accepts.
+ */
+class URLNormalizerDifferentialTest {
+    private static final int MUTATIONS_PER_LINK = 40;
+    private static final String MUTATION_CHARS = "/?&=%#:@.-_~ \t|{}[]^\\\"'<>+;,$!*()AZaz09éü東";
+
+    private final URLNormalizer normalizer = new URLNormalizer();
+    private final LegacyURLNormalizer legacy = new LegacyURLNormalizer();
+
+    @Test
+    void sameOutputAsLegacyOnCorpus() throws IOException {
+        List<String> mismatches = new ArrayList<>();
+        for (String url : corpus()) {
+            compare(url, mismatches);
+        }
+        assertTrue(mismatches.isEmpty(), "Normalizer differs from legacy on:\n" + String.join("\n", mismatches));
+    }
+
+    @Test
+    void sameOutputAsLegacyOnMutatedCorpus() throws IOException {
+        Random random = new Random(20240501L);
+        List<String> mismatches = new ArrayList<>();
+        for (String url : corpus()) {
+            for (int i = 0; i < MUTATIONS_PER_LINK; i++) {
+                compare(mutate(url, random), mismatches);
+            }
+        }
+        assertTrue(mismatches.isEmpty(), "Normalizer differs from legacy on:\n" + String.join("\n", mismatches));
+    }
+
+    @Test
+    void fingerprintMatchesNormalizedString() throws IOException {
+        for (String url : corpus()) {
+            String normalized = legacy.normalize(url);
+            long expected = normalized.isEmpty() ? 0 : UrlFingerprint.of(normalized);
+            assertEquals(expected, normalizer.fingerprint(url), url);
+        }
+    }
+
+    private void compare(String url, List<String> mismatches) {
+        String expected = legacy.normalize(url);
+        String actual = normalizer.normalize(url);
+        if (!expected.equals(actual)) {
+            mismatches.add("'" + url + "': expected '" + expected + "' but was '" + actual + "'");
+        }
+    }
+
+    private static String mutate(String url, Random random) {
+        StringBuilder mutated = new StringBuilder(url);
+        int edits = 1 + random.nextInt(3);
+        for (int e = 0; e < edits; e++) {
+            int at = mutated.length() == 0 ? 0 : random.nextInt(mutated.length());
+            char c = MUTATION_CHARS.charAt(random.nextInt(MUTATION_CHARS.length()));
+            switch (random.nextInt(4)) {
+                case 0 -> mutated.insert(at, c);
+                case 1 -> {
+                    if (mutated.length() > 0) mutated.setCharAt(at, c);
+                }
+                case 2 -> {
+                    if (mutated.length() > 0) mutated.deleteCharAt(at);
+                }
+                default -> {
+                    if (mutated.length() > 0) mutated.setCharAt(at, Character.toUpperCase(mutated.charAt(at)));
+                }
+            }
+        }
+        return mutated.toString();
+    }
+
+    private static List<String> corpus() throws IOException {
+        try (InputStream in = URLNormalizerDifferentialTest.class.getResourceAsStream("/crawler/links.txt")) {
+            assertTrue(in != null, "crawler/links.txt is missing from test resources");
+            String text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            return List.of(text.split("\n"));
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package cu.searchengine.Indexer;
+
+import cu.searchengine.config.IndexerProperties;
+import cu.searchengine.model.Documents;
+import cu.searchengine.model.IndexDocument;
+import cu.searchengine.model.InvertedIndexEntry;
+import cu.searchengine.service.DocumentService;
+import cu.searchengine.service.InvertedIndexService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class InvertedIndexUpsertTest {
+    @Test
+    void reindexedDocumentLosesTheWordsItNoLongerHas() {
+        MemoryInvertedIndexService store = new MemoryInvertedIndexService();
+        PendingDocumentService documents = new PendingDocumentService();
+        InvertedIndex index = new InvertedIndex(documents, store);
+        documents.index(index, document(1, "apple banana"), document(2, "apple cherry"));
+        assertEquals("[1, 2]", docIds(store, "apple"));
+        assertEquals("[1]", docIds(store, "banana"));
+        // Nothing was indexed before, so there are no stored postings to look up
+        assertEquals(0, store.postingLookups);
+
+        // Document 1 recrawled: banana is gone, apple stays, durian is new
+        documents.index(index, recrawled(1, "apple durian"));
+        assertEquals("[1, 2]", docIds(store, "apple"));
+        assertNull(store.entries.get("banana"));
+        assertEquals("[2]", docIds(store, "cherry"));
+        assertEquals("[1]", docIds(store, "durian"));
+        assertEquals(2, (int) store.entries.get("apple").getDf());
+
+        // Document 2 recrawled with no words at all
+        documents.index(index, recrawled(2, ""));
+        assertEquals("[1]", docIds(store, "apple"));
+        assertEquals(1, (int) store.entries.get("apple").getDf());
+        assertNull(store.entries.get("cherry"));
+        assertEquals(2, store.postingLookups);
+    }
+
+    @Test
+    void unchangedPostingsAreNotRewritten() {
+        MemoryInvertedIndexService store = new MemoryInvertedIndexService();
+        PendingDocumentService documents = new PendingDocumentService();
+        InvertedIndex index = new InvertedIndex(documents, store);
+        documents.index(index, document(1, "apple banana"), document(2, "apple cherry"));
+        store.saved.clear();
+
+        documents.index(index, recrawled(1, "apple banana"));
+        assertEquals(List.of(), store.saved);
+
+        documents.index(index, recrawled(1, "apple apple banana"));
+        assertEquals(List.of("apple", "banana"), store.saved.stream().sorted().toList());
+    }
+
+    private static String docIds(MemoryInvertedIndexService store, String word) {
+        return store.entries.get(word).getPostings().stream().map(IndexDocument::getDocId).sorted().toList().toString();
+    }
+
+    private static Documents document(int id, String content) {
+        Documents document = new Documents("https://example.com/" + id, "", List.of(), List.of(), content, List.of());
+        document.setId(id);
+        document.setPopularityScore(0.0);
+        return document;
+    }
+
+    private static Documents recrawled(int id, String content) {
+        Documents document = document(id, content);
+        document.setReindex(true);
+        return document;
+    }
+
+    // Hands the indexer the documents of one run, as if they were stored with invertedIndexProcessed=false
+    private static class PendingDocumentService extends DocumentService {
+        private List<Documents> pending = List.of();
+
+        PendingDocumentService() {
+            super(null);
+        }
+
+        void index(InvertedIndex index, Documents... documents) {
+            pending = List.of(documents);
+            index.implementThreading();
+        }
+
+        @Override
+        public List<Documents> getDocumentsToIndex() {
+            return pending;
+        }
+
+        @Override
+        public void markDocumentsAsIndexed(List<Documents> docs) {
+            for (Documents doc : docs) {
+                doc.setInvertedIndexProcessed(true);
+                doc.setReindex(false);
+            }
+        }
+    }
+
+    // The invertedIndex collection as a map, entries are copied in and out like documents of a database
+    private static class MemoryInvertedIndexService extends InvertedIndexService {
+        final Map<String, InvertedIndexEntry> entries = new TreeMap<>();
+        final List<String> saved = new ArrayList<>();
+        int postingLookups;
+
+        MemoryInvertedIndexService() {
+            super(null, new IndexerProperties());
+        }
+
+        @Override
+        public List<InvertedIndexEntry> getByWords(List<String> words) {
+            return words.stream().filter(entries::containsKey).map(word -> copy(entries.get(word))).toList();
+        }
+
+        @Override
+        public List<InvertedIndexEntry> getByPostingDocIds(Collection<Integer> docIds) {
+            postingLookups++;
+            return entries.values().stream()
+                    .filter(entry -> entry.getPostings().stream().anyMatch(posting -> docIds.contains(posting.getDocId())))
+                    .map(MemoryInvertedIndexService::copy)
+                    .collect(Collectors.toList());
+        }
+
+        @Override
+        public void insertAll(List<InvertedIndexEntry> inserted) {
+            inserted.forEach(entry -> entries.put(entry.getWord(), copy(entry)));
+        }
+
+        @Override
+        public void saveAll(List<InvertedIndexEntry> updated) {
+            updated.forEach(entry -> {
+                entries.put(entry.getWord(), copy(entry));
+                saved.add(entry.getWord());
+            });
+        }
+
+        @Override
+        public void deleteByWord(String word) {
+            entries.remove(word);
+        }
+
+        private static InvertedIndexEntry copy(InvertedIndexEntry entry) {
+            return new InvertedIndexEntry(entry.getWord(), entry.getDf(), new ArrayList<>(entry.getPostings()));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package cu.searchengine.Indexer;
+
+import cu.searchengine.model.Documents;
+import cu.searchengine.utils.Tokenizer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PartitionedIndexBuilderTest {
+    @Test
+    void matchesASingleThreadedBuild() {
+        List<Documents> documents = corpus(1000);
+        Map<String, PostingData> expected = new BuildInvertedIndex(documents, new Tokenizer(), new ConcurrentHashMap<>()).getInvertedIndex();
+
+        PartitionedIndexBuilder builder = new PartitionedIndexBuilder(4, 16);
+        List<Map<String, PostingData>> shards = builder.build(documents);
+        assertEquals(16, shards.size());
+
+        Map<String, PostingData> actual = new HashMap<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            for (Map.Entry<String, PostingData> entry : shards.get(shard).entrySet()) {
+                assertEquals(shard, builder.shardOf(entry.getKey()));
+                assertTrue(actual.put(entry.getKey(), entry.getValue()) == null, "term in two shards: " + entry.getKey());
+            }
+        }
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<String, PostingData> entry : expected.entrySet()) {
+            PostingData postings = actual.get(entry.getKey());
+            assertEquals(entry.getValue().getDf(), postings.getDf());
+            for (Map.Entry<Integer, Posting> posting : entry.getValue().getPostings().entrySet()) {
+                assertEquals(posting.getValue().getTf(), postings.getPostings().get(posting.getKey()).getTf());
+            }
+        }
+    }
+
+    @Test
+    void emptyCorpusGivesEmptyShards() {
+        List<Map<String, PostingData>> shards = new PartitionedIndexBuilder(2, 3).build(List.of());
+        assertEquals(3, shards.size());
+        assertTrue(shards.stream().allMatch(Map::isEmpty));
+    }
+
+    private static List<Documents> corpus(int size) {
+        Random random = new Random(7);
+        List<Documents> documents = new ArrayList<>();
+        for (int id = 0; id < size; id++) {
+            StringBuilder content = new StringBuilder();
+            for (int i = 0; i < 50; i++) {
+                content.append("term").append((char) ('a' + random.nextInt(26))).append((char) ('a' + random.nextInt(26))).append(' ');
+            }
+            Documents document = new Documents("https://example.com/" + id, "title" + id, List.of("heading"), List.of(), content.toString(), List.of());
+            document.setId(id);
+            documents.add(document);
+        }
+        return documents;
+    }
+}
@@ -0,0 +1,132 @@
+package cu.searchengine.Indexer;
+
+import cu.searchengine.model.Documents;
+import cu.searchengine.utils.Tokenizer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentReaderTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsBackWhatWasIndexed() throws IOException {
+        List<Documents> documents = corpus(700);
+        Map<String, PostingData> index = new BuildInvertedIndex(documents, new Tokenizer(), new ConcurrentHashMap<>()).getInvertedIndex();
+        Path file = dir.resolve("segment");
+        SegmentWriter.write(file, List.of(index), documents);
+
+        try (SegmentReader reader = SegmentReader.open(file)) {
+            assertEquals(index.size(), reader.termCount());
+            assertEquals(documents.size(), reader.docCount());
+            for (Map.Entry<String, PostingData> term : index.entrySet()) {
+                SegmentPostings postings = reader.postings(term.getKey());
+                assertEquals(term.getValue().getDf(), postings.df());
+                for (Map.Entry<Integer, Posting> expected : new TreeMap<>(term.getValue().getPostings()).entrySet()) {
+                    assertEquals((int) expected.getKey(), postings.nextDoc());
+                    assertEquals(expected.getValue().getTf(), postings.tf());
+                    assertArrayEquals(expected.getValue().getPositions(), postings.positions());
+                }
+                assertEquals(SegmentPostings.NO_MORE_DOCS, postings.nextDoc());
+            }
+            // The dictionary is in byte order
+            for (int i = 1; i < reader.termCount(); i++) {
+                assertTrue(reader.term(i - 1).compareTo(reader.term(i)) < 0);
+            }
+            assertNull(reader.postings("absent"));
+
+            SegmentReader.DocInfo document = reader.document(42);
+            assertEquals("https://example.com/42", document.url());
+            assertEquals("title42", document.title());
+            assertEquals(0.042, document.popularityScore(), 1e-12);
+            assertTrue(reader.containsDoc(699));
+            assertFalse(reader.containsDoc(700));
+            assertNull(reader.document(700));
+        }
+    }
+
+    @Test
+    void advanceSkipsBlocks() throws IOException {
+        Path file = dir.resolve("segment");
+        try (SegmentWriter writer = new SegmentWriter(file)) {
+            writer.startTerm("even".getBytes(StandardCharsets.UTF_8));
+            for (int doc = 0; doc < 10_000; doc += 2) {
+                writer.addPosting(doc, 1, PositionCodec.encode(new int[]{doc % 7}));
+                writer.addDocument(doc, "https://example.com/" + doc, "", 0);
+            }
+            writer.startTerm("never".getBytes(StandardCharsets.UTF_8));
+        }
+
+        try (SegmentReader reader = SegmentReader.open(file)) {
+            assertEquals(1, reader.termCount());
+            SegmentPostings postings = reader.postings("even");
+            assertEquals(5_000, postings.df());
+            assertEquals(0, postings.advance(0));
+            assertEquals(258, postings.advance(257));
+            assertEquals(258, postings.advance(258));
+            assertEquals(260, postings.nextDoc());
+            assertEquals(5_000, postings.advance(4_999));
+            assertArrayEquals(new int[]{5_000 % 7}, postings.positions());
+            assertEquals(9_998, postings.advance(9_998));
+            assertEquals(SegmentPostings.NO_MORE_DOCS, postings.advance(9_999));
+            assertEquals(SegmentPostings.NO_MORE_DOCS, postings.nextDoc());
+        }
+    }
+
+    @Test
+    void mappedSegmentReadsTheSame() throws IOException {
+        List<Documents> documents = corpus(300);
+        Path file = dir.resolve("segment");
+        SegmentWriter.write(file, List.of(new BuildInvertedIndex(documents, new Tokenizer(), new ConcurrentHashMap<>()).getInvertedIndex()), documents);
+
+        try (SegmentReader heap = SegmentReader.open(file); SegmentReader mapped = SegmentReader.open(file, true)) {
+            assertFalse(heap.isMapped());
+            assertTrue(mapped.isMapped());
+            assertEquals(heap.termCount(), mapped.termCount());
+            for (int term = 0; term < heap.termCount(); term++) {
+                assertEquals(heap.term(term), mapped.term(term));
+                SegmentPostings expected = heap.postings(term);
+                SegmentPostings actual = mapped.postings(heap.term(term));
+                while (expected.nextDoc() != SegmentPostings.NO_MORE_DOCS) {
+                    assertEquals(expected.docId(), actual.nextDoc());
+                    assertEquals(expected.tf(), actual.tf());
+                    assertArrayEquals(expected.positions(), actual.positions());
+                }
+                assertEquals(SegmentPostings.NO_MORE_DOCS, actual.nextDoc());
+            }
+            assertEquals(heap.document(123), mapped.document(123));
+        }
+    }
+
+    private static List<Documents> corpus(int size) {
+        Random random = new Random(11);
+        List<Documents> documents = new ArrayList<>();
+        for (int id = 0; id < size; id++) {
+            StringBuilder content = new StringBuilder();
+            for (int i = 0; i < 60; i++) {
+                content.append("term").append((char) ('a' + random.nextInt(26))).append((char) ('a' + random.nextInt(3))).append(' ');
+            }
+            Documents document = new Documents("https://example.com/" + id, "title" + id, List.of("heading"), List.of(), content.toString(), List.of());
+            document.setId(id);
+            document.setPopularityScore(id / 1000.0);
+            documents.add(document);
+        }
+        return documents;
+    }
+}
@@ -0,0 +1,124 @@
+package cu.searchengine.Indexer;
+
+import cu.searchengine.model.Documents;
+import cu.searchengine.utils.Tokenizer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentedIndexTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void newerSegmentsReplaceReindexedDocuments() throws IOException {
+        try (SegmentedIndex index = new SegmentedIndex(dir, 10, 1 << 20)) {
+            add(index, document(1, "apple banana"), document(2, "apple cherry"));
+            add(index, document(3, "banana"));
+            // Document 1 recrawled without "apple", document 2 recrawled with no words at all
+            add(index, document(1, "cherry"), document(2, ""));
+
+            assertEquals(3, segmentCount(index));
+            assertEquals("{}", postings(index, "apple"));
+            assertEquals("{3=1}", postings(index, "banana"));
+            assertEquals("{1=1}", postings(index, "cherry"));
+        }
+
+        // Reopened from the manifest
+        try (SegmentedIndex index = new SegmentedIndex(dir, 10, 1 << 20)) {
+            assertEquals(3, segmentCount(index));
+            assertEquals("{3=1}", postings(index, "banana"));
+            assertEquals("{1=1}", postings(index, "cherry"));
+        }
+    }
+
+    @Test
+    void mergesKeepTheLivePostings() throws IOException {
+        try (SegmentedIndex index = new SegmentedIndex(dir, 2, 1 << 20)) {
+            for (int run = 0; run < 8; run++) {
+                List<Documents> documents = new ArrayList<>();
+                for (int id = run * 10; id < run * 10 + 10; id++) {
+                    documents.add(document(id, "common common word" + id));
+                }
+                // Every run also reindexes document 0
+                documents.add(document(0, "common run" + (char) ('a' + run)));
+                add(index, documents.toArray(new Documents[0]));
+            }
+            index.mergeNow();
+
+            assertEquals(1, segmentCount(index));
+            String common = postings(index, "common");
+            assertEquals(80, common.split(",").length);
+            assertTrue(common.startsWith("{0=1, 1=2, "));
+            assertEquals("{0=1}", postings(index, "runh"));
+            assertEquals("{}", postings(index, "runa"));
+            assertEquals("{}", postings(index, "word0"));
+            assertEquals("{77=1}", postings(index, "word77"));
+        }
+        // The merged segments' files are gone
+        try (var files = Files.list(dir)) {
+            assertEquals(1, files.filter(file -> SegmentedIndex.segmentNumber(file) >= 0).count());
+        }
+    }
+
+    @Test
+    void deleteAllEmptiesTheIndex() throws IOException {
+        try (SegmentedIndex index = new SegmentedIndex(dir, 10, 1 << 20)) {
+            add(index, document(1, "apple"));
+            try (SegmentedIndex.Snapshot snapshot = index.acquire()) {
+                index.deleteAll();
+                // A query already running still reads the old segment
+                assertEquals(1, snapshot.segment(0).postings("apple").nextDoc());
+            }
+            assertEquals(0, segmentCount(index));
+            add(index, document(2, "apple"));
+            assertEquals("{2=1}", postings(index, "apple"));
+        }
+    }
+
+    private static void add(SegmentedIndex index, Documents... documents) throws IOException {
+        List<Documents> batch = List.of(documents);
+        index.add(List.of(new BuildInvertedIndex(batch, new Tokenizer(), new ConcurrentHashMap<>()).getInvertedIndex()), batch);
+    }
+
+    private static int segmentCount(SegmentedIndex index) {
+        try (SegmentedIndex.Snapshot snapshot = index.acquire()) {
+            return snapshot.segmentCount();
+        }
+    }
+
+    // Live docId to tf of a term, over all segments
+    private static String postings(SegmentedIndex index, String term) throws IOException {
+        TreeMap<Integer, Integer> postings = new TreeMap<>();
+        try (SegmentedIndex.Snapshot snapshot = index.acquire()) {
+            for (int i = 0; i < snapshot.segmentCount(); i++) {
+                SegmentPostings segmentPostings = snapshot.segment(i).postings(term);
+                if (segmentPostings == null) continue;
+                while (segmentPostings.nextDoc() != SegmentPostings.NO_MORE_DOCS) {
+                    if (snapshot.isLive(i, segmentPostings.docId())) {
+                        assertNull(postings.put(segmentPostings.docId(), segmentPostings.tf()));
+                    }
+                }
+            }
+        }
+        return postings.toString();
+    }
+
+    private static Documents document(int id, String content) {
+        Documents document = new Documents("https://example.com/" + id, "", List.of(), List.of(), content, List.of());
+        document.setId(id);
+        document.setPopularityScore(0.0);
+        return document;
+    }
+}
@@ -0,0 +1,127 @@
+package cu.searchengine.Search;
+
+import cu.searchengine.Indexer.BuildInvertedIndex;
+import cu.searchengine.Indexer.PositionCodec;
+import cu.searchengine.Indexer.PostingData;
+import cu.searchengine.model.Documents;
+import cu.searchengine.utils.Tokenizer;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PhraseMatcherTest {
+    @Test
+    void positionsSurviveEncoding() {
+        int[] positions = {0, 1, 2, 130, 20_000, 2_000_000, Integer.MAX_VALUE};
+        byte[] encoded = PositionCodec.encode(positions);
+        assertArrayEquals(positions, PositionCodec.decode(encoded));
+        // Gaps 0, 1 and 1 take a byte each, 128 two, 19,870 and 1,980,000 three, the last one five
+        assertEquals(1 + 1 + 1 + 2 + 3 + 3 + 5, encoded.length);
+        assertEquals(0, PositionCodec.decode(PositionCodec.encode(new int[0])).length);
+    }
+
+    @Test
+    void matchesPhrasesFromTheIndex() {
+        Documents first = document(1, "Search engines", "The state of the art in web search engines");
+        Documents second = document(2, "Engines", "An art state museum, search the web");
+        Map<String, Map<Integer, byte[]>> postings = index(first, second,
+                document(3, "Web search", "engines of all kinds"));
+        Tokenizer tokenizer = new Tokenizer();
+
+        assertTrue(new PhraseMatcher("web search engines", tokenizer).matches(1, postings, Map.of()));
+        assertFalse(new PhraseMatcher("web search engines", tokenizer).matches(2, postings, Map.of()));
+        // The title ends with "web search" and the content starts with "engines", a phrase doesn't span fields
+        assertFalse(new PhraseMatcher("web search engines", tokenizer).matches(3, postings, Map.of()));
+
+        // Stop words are not indexed but keep their place
+        assertTrue(new PhraseMatcher("state of the art", tokenizer).matches(1, postings, Map.of()));
+        assertFalse(new PhraseMatcher("state of art", tokenizer).matches(1, postings, Map.of()));
+        assertFalse(new PhraseMatcher("state of the art", tokenizer).matches(2, postings, Map.of()));
+
+    }
+
+    @Test
+    void singleWordsAndStopWordsAreMatchedOnTheText() {
+        Documents first = document(1, "Search engines", "The state of the art in web search engines");
+        Documents second = document(2, "Engines", "An art state museum, search the web");
+        Map<String, Map<Integer, byte[]>> postings = index(first, second);
+        Map<Integer, Documents> documents = Map.of(1, first, 2, second);
+        Tokenizer tokenizer = new Tokenizer();
+
+        assertFalse(new PhraseMatcher("museum", tokenizer).needsPositions());
+        assertTrue(new PhraseMatcher("museum", tokenizer).matches(2, postings, documents));
+        assertFalse(new PhraseMatcher("museum", tokenizer).matches(1, postings, documents));
+        // Part of a word, as the text search always matched
+        assertTrue(new PhraseMatcher("muse", tokenizer).matches(2, postings, documents));
+        assertTrue(new PhraseMatcher("Search Engines", tokenizer).matches(1, postings, documents));
+
+        // No term left to look up in the index
+        assertFalse(new PhraseMatcher("of the", tokenizer).needsPositions());
+        assertTrue(new PhraseMatcher("of the", tokenizer).matches(1, postings, documents));
+        assertFalse(new PhraseMatcher("of the", tokenizer).matches(2, postings, documents));
+        assertFalse(new PhraseMatcher("museum", tokenizer).matches(2, postings, Map.of()));
+    }
+
+    @Test
+    void postingsWithoutPositionsFallBackToTheText() {
+        Documents first = document(1, "Search engines", "The state of the art in web search engines");
+        Documents second = document(2, "Engines", "An art state museum, search the web");
+        Map<String, Map<Integer, byte[]>> postings = index(first, second);
+        // As indexed before positions were stored
+        postings.values().forEach(termPostings -> termPostings.replaceAll((docId, positions) -> null));
+        Map<Integer, Documents> documents = Map.of(1, first, 2, second);
+        Tokenizer tokenizer = new Tokenizer();
+
+        assertTrue(new PhraseMatcher("Web Search engines", tokenizer).matches(1, postings, documents));
+        assertFalse(new PhraseMatcher("web search engines", tokenizer).matches(2, postings, documents));
+        assertTrue(new PhraseMatcher("search engines", tokenizer).matches(1, postings, documents));
+        // All three words are in document 2, but not as a phrase, so NOT "art museum state" keeps it
+        assertFalse(new PhraseMatcher("art museum state", tokenizer).matches(2, postings, documents));
+        assertTrue(new PhraseMatcher("art state museum", tokenizer).matches(2, postings, documents));
+        // A term without a posting rules the document out before its text is read
+        assertFalse(new PhraseMatcher("art museum", tokenizer).matches(1, postings, documents));
+        // Without the document there is nothing to match against
+        assertFalse(new PhraseMatcher("web search engines", tokenizer).matches(1, postings, Map.of()));
+    }
+
+    @Test
+    void intersectsPositionLists() {
+        int[][] positions = {{3, 10, 40, 41}, {5, 12, 43}, {14, 50}};
+        assertTrue(PhraseMatcher.containsPhrase(positions, new int[]{0, 2, 4}));
+        assertFalse(PhraseMatcher.containsPhrase(positions, new int[]{0, 1, 2}));
+        // The same term twice
+        assertTrue(PhraseMatcher.containsPhrase(new int[][]{{7, 8}, {7, 8}}, new int[]{0, 1}));
+
+        assertFalse(PhraseMatcher.withinDistance(positions, 3));
+        assertTrue(PhraseMatcher.withinDistance(positions, 4));
+        assertTrue(PhraseMatcher.withinDistance(new int[][]{{20}, {18}}, 2));
+        assertFalse(PhraseMatcher.withinDistance(new int[][]{{20}, {}}, 100));
+    }
+
+    private static Documents document(int id, String title, String content) {
+        Documents document = new Documents("https://example.com/" + id, title, List.of(), List.of(), content, List.of());
+        document.setId(id);
+        document.setPopularityScore(0.0);
+        return document;
+    }
+
+    // The positions as the search reads them back from the stored postings
+    private static Map<String, Map<Integer, byte[]>> index(Documents... documents) {
+        Map<String, PostingData> index = new BuildInvertedIndex(List.of(documents), new Tokenizer(), new ConcurrentHashMap<>()).getInvertedIndex();
+        Map<String, Map<Integer, byte[]>> postings = new HashMap<>();
+        index.forEach((term, data) -> {
+            Map<Integer, byte[]> termPostings = new HashMap<>();
+            data.getPostings().forEach((docId, posting) -> termPostings.put(docId, PositionCodec.encode(posting.getPositions())));
+            postings.put(term, termPostings);
+        });
+        return postings;
+    }
+}
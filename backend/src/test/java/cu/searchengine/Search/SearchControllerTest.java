@@ -0,0 +1,167 @@
+package cu.searchengine.Search;
+
+import cu.searchengine.Indexer.BuildInvertedIndex;
+import cu.searchengine.Indexer.PositionCodec;
+import cu.searchengine.Indexer.Posting;
+import cu.searchengine.Indexer.PostingData;
+import cu.searchengine.config.IndexerProperties;
+import cu.searchengine.model.Documents;
+import cu.searchengine.model.IndexDocument;
+import cu.searchengine.model.InvertedIndexEntry;
+import cu.searchengine.model.RankedDocument;
+import cu.searchengine.service.DocumentService;
+import cu.searchengine.service.InvertedIndexService;
+import cu.searchengine.utils.Tokenizer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchControllerTest {
+    @TempDir
+    Path dir;
+
+    private final Map<Integer, Documents> documents = new HashMap<>();
+    private final MapInvertedIndexService index = new MapInvertedIndexService();
+    private final SearchController controller = new SearchController(new MapDocumentService(), index, null);
+
+    @Test
+    void notWithAPhraseOfStopWordsExcludesTheDocumentsContainingIt() {
+        add(1, "Hamlet", "To be or not to be, a search for meaning");
+        add(2, "Engines", "A search engine for the web");
+
+        assertEquals(List.of(2), filter("search NOT \"to be\""));
+        // The phrase has no indexed term, so the index is not read
+        assertTrue(index.requestedWords.isEmpty());
+    }
+
+    @Test
+    void aQuotedWordMatchesOnTheText() {
+        add(1, "Crawlers", "Running search engines at scale");
+        add(2, "Engines", "Search engines of the web");
+
+        assertEquals(List.of(1), filter("engines AND \"run\""));
+        assertEquals(List.of(2), filter("engines NOT run"));
+        assertTrue(index.requestedWords.isEmpty());
+    }
+
+    @Test
+    void longerPhrasesAreMatchedOnPositions() {
+        add(1, "Search engines", "The state of the art in web search engines");
+        add(2, "Engines", "An art state museum, search the web");
+
+        assertEquals(List.of(1), filter("\"web search\" OR \"state of the art\""));
+        assertEquals(List.of(2), filter("art NOT \"web search\""));
+        assertEquals(List.of(), filter("\"art state\" AND museum NOT \"the web\""));
+    }
+
+    @Test
+    void phrasesAreMatchedOnTheLivePostingsOfTheSegments() {
+        IndexerProperties properties = new IndexerProperties();
+        properties.setStorage(IndexerProperties.Storage.SEGMENTS);
+        properties.setSegmentDir(dir.toString());
+        InvertedIndexService segments = new InvertedIndexService(null, properties);
+        segments.openSegments();
+        try {
+            List<Documents> first = List.of(
+                    add(1, "", "The state of the art in web search engines"),
+                    add(2, "", "An art state museum, search the web"));
+            segments.addSegment(List.of(buildIndex(first)), first);
+            // Document 1 recrawled, its first version's postings are not live anymore
+            List<Documents> second = List.of(add(1, "", "Engines that search the web"));
+            segments.addSegment(List.of(buildIndex(second)), second);
+            SearchController segmentController = new SearchController(new MapDocumentService(), segments, null);
+
+            // Only the first version of document 1 has these
+            assertEquals(List.of(), filter(segmentController, "\"state of the art\""));
+            assertEquals(List.of(1, 2), filter(segmentController, "web NOT \"web search\""));
+            assertEquals(List.of(1, 2), filter(segmentController, "web AND \"search the web\""));
+            assertEquals(List.of(1), filter(segmentController, "web NOT \"art state\""));
+        } finally {
+            segments.closeSegments();
+        }
+    }
+
+    private List<Integer> filter(String query) {
+        return filter(controller, query);
+    }
+
+    // The documents the controller keeps, out of every stored one in the ranked order
+    private List<Integer> filter(SearchController controller, String query) {
+        Tokenizer tokenizer = new Tokenizer();
+        List<SearchController.QueryProcessor.LogicalOperation> operations = controller.new QueryProcessor(query, tokenizer).getOperations();
+        List<RankedDocument> ranked = new ArrayList<>();
+        for (Documents document : documents.values()) {
+            ranked.add(new RankedDocument(document.getId(), document.getUrl(), document.getTitle(), 0, 0, 0, 1));
+        }
+        return controller.filterByLogicalOperations(ranked, operations).stream().map(RankedDocument::getDocId).toList();
+    }
+
+    private Documents add(int id, String title, String content) {
+        Documents document = new Documents("https://example.com/" + id, title, List.of(), List.of(), content, List.of());
+        document.setId(id);
+        document.setPopularityScore(0.0);
+        documents.put(id, document);
+        index.build(documents.values());
+        return document;
+    }
+
+    private static Map<String, PostingData> buildIndex(List<Documents> documents) {
+        return new BuildInvertedIndex(documents, new Tokenizer(), new ConcurrentHashMap<>()).getInvertedIndex();
+    }
+
+    private class MapDocumentService extends DocumentService {
+        MapDocumentService() {
+            super(null);
+        }
+
+        @Override
+        public List<Documents> getDocumentsByIds(Set<Integer> docIds) {
+            return docIds.stream().map(documents::get).toList();
+        }
+    }
+
+    // The postings as the search reads them back from the stored entries
+    private static class MapInvertedIndexService extends InvertedIndexService {
+        final Map<String, InvertedIndexEntry> entries = new HashMap<>();
+        final List<String> requestedWords = new ArrayList<>();
+
+        MapInvertedIndexService() {
+            super(null, new IndexerProperties());
+        }
+
+        void build(Iterable<Documents> documents) {
+            List<Documents> list = new ArrayList<>();
+            documents.forEach(list::add);
+            entries.clear();
+            buildIndex(list).forEach((term, data) -> {
+                List<IndexDocument> postings = new ArrayList<>();
+                for (Map.Entry<Integer, Posting> entry : data.getPostings().entrySet()) {
+                    Posting posting = entry.getValue();
+                    postings.add(new IndexDocument(entry.getKey(), posting.getUrl(), posting.getTitle(),
+                            posting.getTf(), posting.getPopularity(), PositionCodec.encode(posting.getPositions())));
+                }
+                entries.put(term, new InvertedIndexEntry(term, postings.size(), postings));
+            });
+        }
+
+        @Override
+        public Map<String, InvertedIndexEntry> getEntriesForWords(String[] words) {
+            Map<String, InvertedIndexEntry> found = new HashMap<>();
+            for (String word : words) {
+                requestedWords.add(word);
+                if (entries.containsKey(word)) found.put(word, entries.get(word));
+            }
+            return found;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package cu.searchengine.config;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import cu.searchengine.model.UrlDictionaryEntry;
+import cu.searchengine.repository.DocumentsRepository;
+import cu.searchengine.repository.InvertedIndexRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks against a real MongoDB that the queries run on every scheduler tick or indexing run are answered
+ * from the indexes {@link MongoIndexes} creates. Runs when MONGO_TEST_URI is set, in a scratch database
+ * that is dropped afterwards.
+ */
+@EnabledIfEnvironmentVariable(named = "MONGO_TEST_URI", matches = ".+")
+class MongoIndexesTest {
+    private static final String DATABASE = "search_db_index_test";
+    // A blocking in-memory sort, as opposed to SORT_MERGE of sorted index scans
+    private static final Pattern SORT_STAGE = Pattern.compile("\"stage\":\\s*\"SORT\"");
+
+    private static MongoClient client;
+    private static MongoTemplate mongoTemplate;
+
+    @BeforeAll
+    static void createIndexes() {
+        client = MongoClients.create(System.getenv("MONGO_TEST_URI"));
+        client.getDatabase(DATABASE).drop();
+        mongoTemplate = new MongoTemplate(client, DATABASE);
+        new MongoIndexes(mongoTemplate).ensureIndexes();
+    }
+
+    @AfterAll
+    static void dropDatabase() {
+        client.getDatabase(DATABASE).drop();
+        client.close();
+    }
+
+    @Test
+    void dueForRecrawlReadsTheNextFetchAtIndexInOrder() {
+        Document filter = Document.parse(DocumentsRepository.DUE_FOR_RECRAWL.replace("?0", "1700000000000"));
+        String plan = winningPlan("documents", filter, new Document("nextFetchAt", 1));
+
+        assertTrue(plan.contains("\"indexName\": \"nextFetchAt\""), plan);
+        assertFalse(SORT_STAGE.matcher(plan).find(), plan);
+        assertFalse(plan.contains("COLLSCAN"), plan);
+    }
+
+    @Test
+    void postingsOfDocumentsAreFoundThroughTheDocIdIndex() {
+        Document filter = Document.parse(InvertedIndexRepository.POSTING_DOC_ID_IN.replace("?0", "[1, 2, 3]"));
+        String plan = winningPlan("invertedIndex", filter, new Document());
+
+        assertTrue(plan.contains("\"indexName\": \"postings_docId\""), plan);
+        assertFalse(plan.contains("COLLSCAN"), plan);
+    }
+
+    @Test
+    void linkBatchesOfAShardAreReadOldestFirstFromTheIndex() {
+        // What findByShardAndIdNotInOrderByCreatedAt sends
+        Document filter = new Document("shard", 2).append("_id", new Document("$nin", List.of("a", "b")));
+        String plan = winningPlan("crawl_link_batches", filter, new Document("createdAt", 1));
+
+        assertTrue(plan.contains("\"indexName\": \"shard_createdAt\""), plan);
+        assertFalse(SORT_STAGE.matcher(plan).find(), plan);
+    }
+
+    @Test
+    void twoUrlsCannotShareADocumentId() {
+        mongoTemplate.insert(new UrlDictionaryEntry(1L, 7, "https://example.com/a"));
+        assertThrows(DuplicateKeyException.class,
+                () -> mongoTemplate.insert(new UrlDictionaryEntry(2L, 7, "https://example.com/b")));
+    }
+
+    private static String winningPlan(String collection, Document filter, Document sort) {
+        Document explain = mongoTemplate.getCollection(collection).find(filter).sort(sort).limit(500).explain();
+        return explain.get("queryPlanner", Document.class).get("winningPlan", Document.class).toJson();
+    }
+}
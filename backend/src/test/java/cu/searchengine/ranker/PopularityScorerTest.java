@@ -0,0 +1,101 @@
+package cu.searchengine.ranker;
+
+import cu.searchengine.Crawler.UrlFingerprint;
+import cu.searchengine.model.Documents;
+import cu.searchengine.service.DocumentService;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PopularityScorerTest {
+    @Test
+    void cycleSharesRankEvenly() {
+        WebGraph graph = WebGraph.of(List.of(page(0, 1), page(1, 2), page(2, 0)));
+        double[] ranks = PopularityScorer.calculatePageRank(graph);
+        for (double rank : ranks) {
+            assertEquals(1.0 / 3, rank, 1e-6);
+        }
+    }
+
+    @Test
+    void gapsAndUncrawledLinksAreNotPages() {
+        // Ids 1 and 3 were never used, 99 is a link to a page that was not stored
+        WebGraph graph = WebGraph.of(List.of(page(0, 2, 99), page(2, 4), page(4)));
+        assertEquals(5, graph.size());
+        assertEquals(3, graph.pageCount());
+        assertEquals(2, graph.linkCount());
+        assertFalse(graph.isPage(3));
+        assertEquals(1, graph.outDegree(0));
+
+        double[] ranks = PopularityScorer.calculatePageRank(graph);
+        assertEquals(0.0, ranks[1], 0);
+        assertEquals(0.0, ranks[3], 0);
+        assertEquals(1.0, Arrays.stream(ranks).sum(), 1e-9);
+        // Rank flows down the chain, the dangling end spreads it back over every page
+        assertTrue(ranks[0] < ranks[2] && ranks[2] < ranks[4]);
+    }
+
+    @Test
+    void hashBasedIdsSkipPageRankInsteadOfFailing() {
+        // Ids from before the dictionary run far past the document count
+        ListDocumentService documents = new ListDocumentService(List.of(page(0, 1), page(1, 0), page(1_500_000_000)));
+        PopularityScorer scorer = new PopularityScorer(documents);
+        assertEquals(0, documents.graphLoads);
+
+        scorer.calculatePopularityScores();
+        assertEquals(1, documents.graphLoads);
+        assertTrue(documents.scores.isEmpty());
+    }
+
+    @Test
+    void scoresAreStoredForEveryPage() {
+        ListDocumentService documents = new ListDocumentService(List.of(page(0, 1), page(1, 2), page(2, 0)));
+        new PopularityScorer(documents).calculatePopularityScores();
+        assertEquals(Set.of(0, 1, 2), documents.scores.keySet());
+        assertEquals(1.0 / 3, documents.scores.get(1), 1e-6);
+    }
+
+    // Serves a fixed list of documents and records the scores written back
+    private static class ListDocumentService extends DocumentService {
+        private final List<Documents> documents;
+        final Map<Integer, Double> scores = new HashMap<>();
+        int graphLoads;
+
+        ListDocumentService(List<Documents> documents) {
+            super(null);
+            this.documents = documents;
+        }
+
+        @Override
+        public WebGraph getWebGraph() {
+            graphLoads++;
+            return WebGraph.of(documents);
+        }
+
+        @Override
+        public void updatePopularityScore(Integer id, Double popularityScore) {
+            scores.put(id, popularityScore);
+        }
+    }
+
+    private static Documents page(int id, int... links) {
+        Documents document = new Documents(url(id), "Page " + id, List.of(), List.of(), "", List.of());
+        document.setId(id);
+        Set<Long> webGraph = Arrays.stream(links).mapToObj(link -> UrlFingerprint.of(url(link))).collect(Collectors.toSet());
+        document.setWebGraph(webGraph);
+        return document;
+    }
+
+    private static String url(int id) {
+        return "https://example.com/" + id;
+    }
+}
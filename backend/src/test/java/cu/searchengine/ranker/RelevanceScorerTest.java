@@ -0,0 +1,86 @@
+package cu.searchengine.ranker;
+
+import cu.searchengine.Indexer.BuildInvertedIndex;
+import cu.searchengine.Indexer.PostingData;
+import cu.searchengine.Indexer.SegmentedIndex;
+import cu.searchengine.model.Documents;
+import cu.searchengine.model.IndexDocument;
+import cu.searchengine.model.InvertedIndexEntry;
+import cu.searchengine.model.RankedDocument;
+import cu.searchengine.utils.Tokenizer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RelevanceScorerTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void segmentScoresMatchPostingsListScores() throws IOException {
+        List<Documents> first = List.of(
+                document(1, "apple apple banana", 0.5),
+                document(2, "apple cherry", 0.25),
+                document(3, "banana cherry cherry", 0.125));
+        // Document 2 recrawled, its old postings are not live anymore
+        List<Documents> second = List.of(
+                document(2, "banana banana", 0.75),
+                document(4, "apple", 0.0));
+        List<Documents> current = List.of(first.get(0), second.get(0), first.get(2), second.get(1));
+        String[] query = {"apple", "banana", "banana", "durian"};
+        RelevanceScorer scorer = new RelevanceScorer(current.size());
+
+        Map<Integer, RankedDocument> expected = scorer.calculateRelevanceScores(query, entries(current));
+        try (SegmentedIndex index = new SegmentedIndex(dir, 10, 1 << 20, Long.MAX_VALUE, true)) {
+            index.add(List.of(build(first)), first);
+            index.add(List.of(build(second)), second);
+            Map<Integer, RankedDocument> actual;
+            try (SegmentedIndex.Snapshot snapshot = index.acquire()) {
+                assertEquals(3, snapshot.docFrequency("banana"));
+                actual = scorer.calculateRelevanceScores(query, snapshot);
+            }
+
+            assertEquals(expected.keySet(), actual.keySet());
+            expected.forEach((docId, doc) -> {
+                RankedDocument segmentDoc = actual.get(docId);
+                assertEquals(doc.getRelevanceScore(), segmentDoc.getRelevanceScore(), 1e-12);
+                assertEquals(doc.getPopularityScore(), segmentDoc.getPopularityScore(), 0);
+                assertEquals(doc.getUrl(), segmentDoc.getUrl());
+            });
+        }
+    }
+
+    private static Map<String, PostingData> build(List<Documents> documents) {
+        return new BuildInvertedIndex(documents, new Tokenizer(), new ConcurrentHashMap<>()).getInvertedIndex();
+    }
+
+    // The postings lists the invertedIndex collection would hold for the documents
+    private static Map<String, InvertedIndexEntry> entries(List<Documents> documents) {
+        Map<String, InvertedIndexEntry> entries = new HashMap<>();
+        build(documents).forEach((word, data) -> {
+            List<IndexDocument> postings = new ArrayList<>();
+            data.getPostings().forEach((docId, posting) -> {
+                Documents document = documents.stream().filter(d -> docId.equals(d.getId())).findFirst().orElseThrow();
+                postings.add(new IndexDocument(docId, document.getUrl(), document.getTitle(), posting.getTf(), document.getPopularityScore()));
+            });
+            entries.put(word, new InvertedIndexEntry(word, postings.size(), postings));
+        });
+        return entries;
+    }
+
+    private static Documents document(int id, String content, double popularity) {
+        Documents document = new Documents("https://example.com/" + id, "", List.of(), List.of(), content, List.of());
+        document.setId(id);
+        document.setPopularityScore(popularity);
+        return document;
+    }
+}
@@ -0,0 +1,52 @@
+package cu.searchengine.service;
+
+import cu.searchengine.Crawler.UrlFingerprint;
+import cu.searchengine.model.UrlDictionaryEntry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class DocIdDictionaryTest {
+    @Test
+    void assignsDenseStableIds() {
+        MemoryDocIdDictionary dictionary = new MemoryDocIdDictionary();
+        for (int i = 0; i < 3000; i++) {
+            assertEquals(i, dictionary.idOf("https://example.com/" + i));
+        }
+        assertEquals(17, dictionary.idOf("https://example.com/17"));
+
+        // Another process sharing the store finds the ids already assigned
+        MemoryDocIdDictionary other = new MemoryDocIdDictionary();
+        other.entries.putAll(dictionary.entries);
+        assertEquals(2999, other.idOf("https://example.com/2999"));
+    }
+
+    @Test
+    void fingerprintCollisionsGetTheirOwnId() {
+        MemoryDocIdDictionary dictionary = new MemoryDocIdDictionary();
+        String url = "https://example.com/a";
+        long fingerprint = UrlFingerprint.of(url);
+        // Another URL already holds this fingerprint
+        dictionary.entries.put(fingerprint, new UrlDictionaryEntry(fingerprint, 1000, "https://example.org/b"));
+
+        int id = dictionary.idOf(url);
+        assertNotEquals(1000, id);
+        assertEquals(url, dictionary.entries.get(fingerprint + 1).getUrl());
+        assertEquals(id, dictionary.idOf(url));
+        assertEquals(1000, dictionary.entries.get(fingerprint).getDocId());
+    }
+
+    @Test
+    void concurrentLookupsOfTheSameUrlAgree() {
+        MemoryDocIdDictionary dictionary = new MemoryDocIdDictionary();
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        IntStream.range(0, 64).parallel().forEach(i -> ids.add(dictionary.idOf("https://example.com/same")));
+        assertEquals(1, ids.size());
+        assertEquals(1, dictionary.entries.size());
+    }
+}
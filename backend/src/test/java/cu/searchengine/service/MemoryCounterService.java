@@ -0,0 +1,50 @@
+package cu.searchengine.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link CounterService} over atomic longs instead of Mongo, for tests. Reservations run the same
+ * guarded increment and give back the overshoot in a separate step, like the findAndModify version.
+ */
+public class MemoryCounterService extends CounterService {
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    public MemoryCounterService() {
+        super(null);
+    }
+
+    @Override
+    public long reserve(String name, long block, long limit) {
+        AtomicLong counter = counter(name);
+        long before;
+        do {
+            before = counter.get();
+            if (before >= limit) return 0;
+        } while (!counter.compareAndSet(before, before + block));
+
+        long granted = Math.min(block, limit - before);
+        if (granted < block) release(name, block - granted);
+        return granted;
+    }
+
+    @Override
+    public long allocate(String name, long block) {
+        return counter(name).getAndAdd(block);
+    }
+
+    @Override
+    public void release(String name, long amount) {
+        if (amount > 0) counter(name).addAndGet(-amount);
+    }
+
+    @Override
+    public long get(String name) {
+        return counter(name).get();
+    }
+
+    private AtomicLong counter(String name) {
+        return counters.computeIfAbsent(name, k -> new AtomicLong());
+    }
+}
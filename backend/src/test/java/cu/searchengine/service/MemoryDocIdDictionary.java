@@ -0,0 +1,40 @@
+package cu.searchengine.service;
+
+import cu.searchengine.model.UrlDictionaryEntry;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link DocIdDictionary} over maps instead of Mongo, for tests and the crawl replay.
+ */
+public class MemoryDocIdDictionary extends DocIdDictionary {
+    final Map<Long, UrlDictionaryEntry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong counter = new AtomicLong();
+
+    public MemoryDocIdDictionary() {
+        super(null, null);
+    }
+
+    // URLs that were given an id
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    protected Optional<UrlDictionaryEntry> load(long key) {
+        return Optional.ofNullable(entries.get(key));
+    }
+
+    @Override
+    protected boolean insert(UrlDictionaryEntry entry) {
+        return entries.putIfAbsent(entry.getKey(), entry) == null;
+    }
+
+    @Override
+    protected long reserveBlock(int size) {
+        return counter.getAndAdd(size);
+    }
+}